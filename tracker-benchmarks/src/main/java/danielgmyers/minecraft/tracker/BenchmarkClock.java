@@ -0,0 +1,52 @@
+package danielgmyers.minecraft.tracker;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A manually-advanced clock that serves as both the wall clock and the monotonic tick time source, so that a
+ * benchmark decides exactly how far apart its ticks are. Advancing and reading it doesn't allocate.
+ */
+public final class BenchmarkClock extends Clock implements TickTimeSource {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private long curTimeNanos;
+
+    public BenchmarkClock(Instant startTime) {
+        this.curTimeNanos = startTime.getEpochSecond() * NANOS_PER_SECOND + startTime.getNano();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochSecond(Math.floorDiv(curTimeNanos, NANOS_PER_SECOND),
+                                     Math.floorMod(curTimeNanos, NANOS_PER_SECOND));
+    }
+
+    @Override
+    public long millis() {
+        return Math.floorDiv(curTimeNanos, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public long nanoTime() {
+        return curTimeNanos;
+    }
+
+    public void forwardMillis(long millis) {
+        curTimeNanos += millis * NANOS_PER_MILLI;
+    }
+}
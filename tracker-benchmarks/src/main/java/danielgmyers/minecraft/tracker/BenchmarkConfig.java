@@ -0,0 +1,24 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A config with every option at its default, apart from the ones a benchmark sets.
+ */
+public final class BenchmarkConfig implements Config {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public BenchmarkConfig with(String propertyName, String value) {
+        values.put(propertyName, value);
+        return this;
+    }
+
+    @Override
+    public String retrieveConfig(String propertyName, String defaultValue) {
+        return values.getOrDefault(propertyName, defaultValue);
+    }
+}
@@ -0,0 +1,45 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.reporters.StatsReporterFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What recording the player count costs the server thread, at the rate the adapters call it (once per tick).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerCountTrackerBenchmark {
+
+    private BenchmarkClock clock;
+    private PlayerCountTracker tracker;
+    private long playerCount = 0;
+
+    @Setup
+    public void setUp() {
+        BenchmarkConfig config = new BenchmarkConfig();
+        clock = new BenchmarkClock(Instant.parse("2022-04-01T00:00:00Z"));
+        tracker = new PlayerCountTracker("server", config, StatsReporterFactory.create(config, clock), clock);
+    }
+
+    @Benchmark
+    public void updateAtTwentyPerSecond() {
+        tracker.update(playerCount++ & 7);
+        clock.forwardMillis(50);
+    }
+}
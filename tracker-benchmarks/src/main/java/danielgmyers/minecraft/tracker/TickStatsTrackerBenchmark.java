@@ -0,0 +1,58 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.reporters.StatsReporterFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What timing a tick costs the server thread: a startTick()/endTick() pair, including the work done when a tick
+ * completes a second or a reporting window. Reports go to the no-op reporter, so this is the tracker alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickStatsTrackerBenchmark {
+
+    private BenchmarkClock clock;
+    private TickStatsTracker tracker;
+
+    @Setup
+    public void setUp() {
+        BenchmarkConfig config = new BenchmarkConfig();
+        clock = new BenchmarkClock(Instant.parse("2022-04-01T00:00:00Z"));
+        tracker = new TickStatsTracker("minecraft:overworld", config, StatsReporterFactory.create(config, clock),
+                                       clock, clock);
+    }
+
+    // A healthy server: one tick in 20 completes a second, and one in 1200 completes a minute.
+    @Benchmark
+    public void tickAtTwentyPerSecond() {
+        tracker.startTick();
+        clock.forwardMillis(10);
+        tracker.endTick();
+        clock.forwardMillis(40);
+    }
+
+    // Every tick completes a second, and every 60th completes a minute, so this is mostly the boundary work.
+    @Benchmark
+    public void tickAcrossSecondBoundary() {
+        tracker.startTick();
+        clock.forwardMillis(10);
+        tracker.endTick();
+        clock.forwardMillis(990);
+    }
+}
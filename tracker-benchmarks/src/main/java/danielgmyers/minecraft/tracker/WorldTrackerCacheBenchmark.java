@@ -0,0 +1,80 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import danielgmyers.minecraft.tracker.reporters.StatsReporterFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding a world's trackers the way the adapters do on every world tick: by the world's registry key, with a
+ * non-capturing lambda that builds the dimension name the first time a key is seen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldTrackerCacheBenchmark {
+
+    // Stands in for the game's registry keys, which don't override equals() or hashCode() either.
+    private static final class DimensionKey {
+        private final String namespace;
+        private final String path;
+
+        private DimensionKey(String namespace, String path) {
+            this.namespace = namespace;
+            this.path = path;
+        }
+
+        @Override
+        public String toString() {
+            return namespace + ":" + path;
+        }
+    }
+
+    // the vanilla dimensions, plus per-run dimensions that the default rules coalesce into one source.
+    @Param({"3", "50"})
+    public int dimensionCount;
+
+    private WorldTrackerCache<DimensionKey> cache;
+    private DimensionKey[] keys;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        BenchmarkConfig config = new BenchmarkConfig();
+        BenchmarkClock clock = new BenchmarkClock(Instant.parse("2022-04-01T00:00:00Z"));
+        StatsReporter reporter = StatsReporterFactory.create(config, clock);
+        cache = new WorldTrackerCache<>(config, reporter, clock,
+                                        tickSource -> WorldTrackers.create(tickSource, config, reporter, clock, null));
+
+        keys = new DimensionKey[dimensionCount];
+        String[] vanilla = {"overworld", "the_nether", "the_end"};
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i < vanilla.length
+                    ? new DimensionKey("minecraft", vanilla[i])
+                    : new DimensionKey("the_vault", "vault_" + i);
+            cache.get(keys[i], DimensionKey::toString);
+        }
+    }
+
+    @Benchmark
+    public WorldTrackers resolveKnownDimension() {
+        DimensionKey key = keys[next];
+        next = next + 1 == keys.length ? 0 : next + 1;
+        return cache.get(key, DimensionKey::toString);
+    }
+}
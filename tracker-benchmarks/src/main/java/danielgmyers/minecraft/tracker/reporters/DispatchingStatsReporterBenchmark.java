@@ -0,0 +1,156 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What the server thread actually pays for a report: handing it to the dispatcher's queue.
+ *
+ * Nothing can drain the queue as fast as a benchmark loop fills it, so left alone this would mostly measure the path
+ * that drops reports because the queue is full. Instead, each invocation hands over a batch that fits in the queue,
+ * and the queue is given time to drain between invocations, outside of the measurement. The sink only counts what
+ * it's given, and the benchmark fails if anything was dropped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchingStatsReporterBenchmark {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    // big enough that timing each invocation costs next to nothing per report, and well within the queue.
+    private static final int BATCH_SIZE = QUEUE_CAPACITY / 4;
+
+    private CountingReporter sink;
+    private DispatchingStatsReporter reporter;
+    private long sent = 0;
+    private LogLinearHistogram histogram;
+    private long[] tickCounts;
+    private long[] totalTickNanos;
+
+    @Setup
+    public void setUp() {
+        sink = new CountingReporter();
+        reporter = new DispatchingStatsReporter(Collections.singletonMap("counting", sink), QUEUE_CAPACITY);
+        reporter.start();
+        histogram = new LogLinearHistogram();
+        for (int i = 0; i < 1200; i++) {
+            histogram.record(40_000_000 + (i % 20) * 1_000_000);
+        }
+        tickCounts = new long[ReporterBenchmark.TYPE_IDS.length];
+        totalTickNanos = new long[ReporterBenchmark.TYPE_IDS.length];
+        for (int i = 0; i < tickCounts.length; i++) {
+            tickCounts[i] = 1200L * (i + 1);
+            totalTickNanos[i] = 25_000L * tickCounts[i];
+        }
+    }
+
+    // The dispatcher parks for a few milliseconds when it runs out of work, so this mostly waits on that.
+    @Setup(Level.Invocation)
+    public void waitForDelivery() {
+        while (sink.received.get() + reporter.getDroppedEvents() < sent) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        sent += BATCH_SIZE;
+    }
+
+    @TearDown
+    public void tearDown() {
+        reporter.stop();
+        if (reporter.getDroppedEvents() > 0 || reporter.getDroppedEvents("counting") > 0) {
+            throw new IllegalStateException("Dropped " + reporter.getDroppedEvents() + " report(s) at the queue and "
+                                            + reporter.getDroppedEvents("counting")
+                                            + " at the sink, so this didn't measure the hand-off alone.");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void reportTickStats() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            reporter.reportTickStats(ReporterBenchmark.TICK_SOURCE, ReportingWindow.MINUTE, ReporterBenchmark.TIMESTAMP,
+                                     60, 1200, 19, 20, 60_000_000_000L, 40_000_000, 59_000_000, histogram);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void reportPlayerCount() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            reporter.reportPlayerCount(ReporterBenchmark.TICK_SOURCE, ReportingWindow.MINUTE,
+                                       ReporterBenchmark.TIMESTAMP, 60, 150, 2, 3);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void reportTickCostsByType() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            reporter.reportTickCostsByType(ReporterBenchmark.TICK_SOURCE, ReportingWindow.MINUTE,
+                                           ReporterBenchmark.TIMESTAMP, ReporterBenchmark.TYPE_IDS.length,
+                                           ReporterBenchmark.TYPE_IDS, tickCounts, totalTickNanos);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void reportStatistic() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            reporter.reportStatistic(ReporterBenchmark.TICK_SOURCE, ReportingWindow.MINUTE,
+                                     ReporterBenchmark.TIMESTAMP, "live-world-trackers", StatisticUnit.COUNT, 3);
+        }
+    }
+
+    // Counts what it's given, so the benchmark knows when a batch has been delivered.
+    private static final class CountingReporter implements StatsReporter {
+        private final AtomicLong received = new AtomicLong();
+
+        @Override
+        public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                    long totalTickCount, long minTickCount, long maxTickCount,
+                                    long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                    LogLinearHistogram histogram) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp,
+                                      long secondsWithData, long totalPlayerCount, long minPlayerCount,
+                                      long maxPlayerCount) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                          String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                    StatisticUnit unit, double value) {
+            received.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of each kind of report for one StatsReporter implementation, with whatever it sends to replaced by a
+ * stub. Each subclass benchmarks one implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class ReporterBenchmark {
+
+    static final String TICK_SOURCE = "minecraft:overworld";
+    static final Instant TIMESTAMP = Instant.parse("2022-04-01T00:00:00Z");
+    static final String[] TYPE_IDS = {
+            "minecraft:zombie", "minecraft:skeleton", "minecraft:creeper", "minecraft:item",
+            "minecraft:hopper", "minecraft:furnace", "minecraft:chest", "create:mechanical_press"};
+
+    private StatsReporter reporter;
+    private LogLinearHistogram histogram;
+    private long[] tickCounts;
+    private long[] totalTickNanos;
+
+    protected abstract StatsReporter createReporter() throws Exception;
+
+    protected void closeReporter(StatsReporter reporter) throws Exception {
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        reporter = createReporter();
+        histogram = new LogLinearHistogram();
+        for (int i = 0; i < 1200; i++) {
+            histogram.record(40_000_000 + (i % 20) * 1_000_000);
+        }
+        tickCounts = new long[TYPE_IDS.length];
+        totalTickNanos = new long[TYPE_IDS.length];
+        for (int i = 0; i < TYPE_IDS.length; i++) {
+            tickCounts[i] = 1200L * (i + 1);
+            totalTickNanos[i] = 25_000L * tickCounts[i];
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        closeReporter(reporter);
+    }
+
+    @Benchmark
+    public void reportTickStats() {
+        reporter.reportTickStats(TICK_SOURCE, ReportingWindow.MINUTE, TIMESTAMP, 60, 1200, 19, 20,
+                                 60_000_000_000L, 40_000_000, 59_000_000, histogram);
+    }
+
+    @Benchmark
+    public void reportPlayerCount() {
+        reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, TIMESTAMP, 60, 150, 2, 3);
+    }
+
+    @Benchmark
+    public void reportTickCostsByType() {
+        reporter.reportTickCostsByType(TICK_SOURCE, ReportingWindow.MINUTE, TIMESTAMP, TYPE_IDS.length,
+                                       TYPE_IDS, tickCounts, totalTickNanos);
+    }
+
+    @Benchmark
+    public void reportStatistic() {
+        reporter.reportStatistic(TICK_SOURCE, ReportingWindow.MINUTE, TIMESTAMP, "live-world-trackers",
+                                 StatisticUnit.COUNT, 3);
+    }
+}
@@ -0,0 +1,32 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchlogs;
+
+import danielgmyers.minecraft.tracker.BenchmarkConfig;
+import danielgmyers.minecraft.tracker.reporters.ReporterBenchmark;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Lines go to a real (rotated) file in a temporary directory, since writing them is the reporter's whole job; the
+ * file is fsynced as often as the default config allows.
+ */
+public class CloudwatchLogsEmfReporterBenchmark extends ReporterBenchmark {
+
+    private Path directory;
+
+    @Override
+    protected StatsReporter createReporter() throws Exception {
+        directory = Files.createTempDirectory("tracker-emf-benchmark");
+        return new CloudwatchLogsEmfReporter(new BenchmarkConfig(), directory.resolve("tracker-emf.log"));
+    }
+
+    @Override
+    protected void closeReporter(StatsReporter reporter) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
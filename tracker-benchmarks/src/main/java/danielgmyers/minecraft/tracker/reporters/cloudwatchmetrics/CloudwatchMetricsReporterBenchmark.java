@@ -0,0 +1,43 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchmetrics;
+
+import danielgmyers.minecraft.tracker.BenchmarkConfig;
+import danielgmyers.minecraft.tracker.reporters.ReporterBenchmark;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
+
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Every batch goes to a stub client that accepts it straight away, so this is the cost of building the data and the
+ * requests, without any network calls.
+ */
+public class CloudwatchMetricsReporterBenchmark extends ReporterBenchmark {
+
+    @Override
+    protected StatsReporter createReporter() {
+        return new CloudwatchMetricsReporter(new BenchmarkConfig(), Clock.systemUTC(), new AcceptingCloudWatchClient(),
+                                             null, 1000);
+    }
+
+    private static class AcceptingCloudWatchClient implements CloudWatchAsyncClient {
+        private final CompletableFuture<PutMetricDataResponse> accepted =
+                CompletableFuture.completedFuture(PutMetricDataResponse.builder().build());
+
+        @Override
+        public CompletableFuture<PutMetricDataResponse> putMetricData(PutMetricDataRequest request) {
+            return accepted;
+        }
+
+        @Override
+        public String serviceName() {
+            return "monitoring";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package danielgmyers.minecraft.tracker.reporters.logging;
+
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.Layout;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+
+import java.io.Serializable;
+
+/**
+ * Formats each event with its layout, the way a real appender would, and then throws it away.
+ */
+@Plugin(name = "Discarding", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE)
+public final class DiscardingAppender extends AbstractAppender {
+
+    // only kept so the formatting can't be optimized away.
+    private long formattedBytes = 0;
+
+    private DiscardingAppender(String name, Layout<? extends Serializable> layout) {
+        super(name, null, layout, true, Property.EMPTY_ARRAY);
+    }
+
+    @PluginFactory
+    public static DiscardingAppender create(@PluginAttribute("name") String name,
+                                            @PluginElement("Layout") Layout<? extends Serializable> layout) {
+        return new DiscardingAppender(name, layout);
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        formattedBytes += getLayout().toByteArray(event).length;
+    }
+
+    public long getFormattedBytes() {
+        return formattedBytes;
+    }
+}
@@ -0,0 +1,16 @@
+package danielgmyers.minecraft.tracker.reporters.logging;
+
+import danielgmyers.minecraft.tracker.BenchmarkConfig;
+import danielgmyers.minecraft.tracker.reporters.ReporterBenchmark;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+
+/**
+ * Log lines go to the DiscardingAppender set up in the benchmarks' log4j2.xml, which formats them and drops them.
+ */
+public class LoggingReporterBenchmark extends ReporterBenchmark {
+
+    @Override
+    protected StatsReporter createReporter() {
+        return new LoggingReporter(new BenchmarkConfig());
+    }
+}
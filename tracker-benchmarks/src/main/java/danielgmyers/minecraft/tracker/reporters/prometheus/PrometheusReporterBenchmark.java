@@ -0,0 +1,16 @@
+package danielgmyers.minecraft.tracker.reporters.prometheus;
+
+import danielgmyers.minecraft.tracker.BenchmarkConfig;
+import danielgmyers.minecraft.tracker.reporters.ReporterBenchmark;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+
+/**
+ * The endpoint isn't started: reports only replace the stored values, and rendering happens when something scrapes.
+ */
+public class PrometheusReporterBenchmark extends ReporterBenchmark {
+
+    @Override
+    protected StatsReporter createReporter() {
+        return new PrometheusReporter(new BenchmarkConfig());
+    }
+}
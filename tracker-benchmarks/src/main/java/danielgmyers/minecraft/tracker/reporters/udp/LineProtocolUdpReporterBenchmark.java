@@ -0,0 +1,34 @@
+package danielgmyers.minecraft.tracker.reporters.udp;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.ReporterBenchmark;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.openjdk.jmh.annotations.Param;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Packets go to a local socket that never reads them, so once its receive buffer fills up the OS drops them.
+ */
+public class LineProtocolUdpReporterBenchmark extends ReporterBenchmark {
+
+    @Param({"STATSD", "INFLUX"})
+    public LineProtocolUdpReporter.Protocol protocol;
+
+    private DatagramChannel listener;
+
+    @Override
+    protected StatsReporter createReporter() throws Exception {
+        listener = DatagramChannel.open();
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+        return new LineProtocolUdpReporter(protocol, (InetSocketAddress) listener.getLocalAddress(),
+                                           (int) Config.UDP_MAX_PACKET_BYTES_DEFAULT,
+                                           LineProtocolUdpReporter.DEFAULT_LINGER_MILLIS);
+    }
+
+    @Override
+    protected void closeReporter(StatsReporter reporter) throws Exception {
+        listener.close();
+    }
+}
@@ -0,0 +1,234 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the chunks one tick source loads, generates and unloads, and at the end of each configured reporting window
+ * reports those counts along with how many chunks are loaded.
+ *
+ * The chunk hooks can fire on the server thread or on a worldgen worker thread, so the counters are LongAdders: each
+ * thread adds to its own cell, and the threads never contend with each other or with the tick that drains them.
+ *
+ * Neither platform says whether a chunk was generated or read from disk when it's loaded, so the adapters also count
+ * every full chunk that's read from disk, and generated chunks are the loads that weren't.
+ *
+ * Several dimensions can be coalesced into one tick source, so the loaded chunks are kept per world and the reported
+ * count is their sum. A world that doesn't tick for a whole minute (e.g. because it's been unloaded) is forgotten.
+ */
+public class ChunkActivityTracker {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // How long a world can go without ticking before its loaded chunks stop counting.
+    private static final ReportingWindow IDLE_WINDOW = ReportingWindow.MINUTE;
+
+    private final String tickSource;
+    private final Config config;
+    private final StatsReporter reporter;
+    private final Clock clock;
+
+    private final LongAdder chunksLoaded = new LongAdder();
+    private final LongAdder chunksReadFromDisk = new LongAdder();
+    private final LongAdder chunksUnloaded = new LongAdder();
+
+    // only used by the thread that calls update() and flush()
+    private List<ReportingWindow> reportingWindows;
+    private WindowCounts[] windows;
+    // Keyed by the world itself, so that looking a world up doesn't allocate.
+    private final Map<Object, WorldChunks> worlds = new IdentityHashMap<>();
+    private long lastUpdateTimeMillis = 0;
+    private long loadedChunks = 0;
+
+    public ChunkActivityTracker(String tickSource, Config config, StatsReporter reporter, Clock clock) {
+        this.tickSource = tickSource;
+        this.config = config;
+        this.reporter = reporter;
+        this.clock = clock;
+        this.reportingWindows = config.getReportingWindows();
+        this.windows = new WindowCounts[reportingWindows.size()];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new WindowCounts(reportingWindows.get(i));
+        }
+        LOGGER.info("Initializing chunk activity tracker for source '{}' with reporting windows {}",
+                    tickSource, reportingWindows);
+    }
+
+    /**
+     * Should be called whenever a full chunk is loaded into the dimension, whether it was read from disk or generated.
+     * Safe to call from any thread.
+     */
+    public void chunkLoaded() {
+        chunksLoaded.increment();
+    }
+
+    /**
+     * Should be called whenever a full chunk is read from disk, before it's loaded. Safe to call from any thread.
+     */
+    public void chunkReadFromDisk() {
+        chunksReadFromDisk.increment();
+    }
+
+    /**
+     * Should be called whenever a full chunk is unloaded from the dimension. Safe to call from any thread.
+     */
+    public void chunkUnloaded() {
+        chunksUnloaded.increment();
+    }
+
+    /**
+     * Should be called once at the end of every tick of each world in the tick source, with the number of chunks that
+     * world has loaded; reports the windows that have ended.
+     */
+    public void update(Object world, long loadedChunkCount) {
+        long currentTimeMillis = clock.millis();
+        if (lastUpdateTimeMillis > 0) {
+            if (IDLE_WINDOW.inNextWindow(lastUpdateTimeMillis, currentTimeMillis)) {
+                forgetIdleWorlds();
+            }
+            boolean windowEnded = false;
+            for (WindowCounts window : windows) {
+                if (window.window.inNextWindow(lastUpdateTimeMillis, currentTimeMillis)) {
+                    if (!windowEnded) {
+                        drainCounters();
+                        windowEnded = true;
+                    }
+                    report(window, Instant.ofEpochMilli(lastUpdateTimeMillis));
+                }
+            }
+            if (windowEnded && config.getReportingWindows() != reportingWindows) {
+                refreshReportingWindows();
+            }
+        }
+        lastUpdateTimeMillis = currentTimeMillis;
+
+        WorldChunks chunks = worlds.get(world);
+        if (chunks == null) {
+            chunks = new WorldChunks();
+            worlds.put(world, chunks);
+        }
+        chunks.tickedThisMinute = true;
+        loadedChunks += loadedChunkCount - chunks.loadedChunks;
+        chunks.loadedChunks = loadedChunkCount;
+        for (WindowCounts window : windows) {
+            window.updates++;
+            window.maxLoadedChunks = Math.max(window.maxLoadedChunks, loadedChunks);
+        }
+    }
+
+    /**
+     * Reports the partial windows gathered so far, for a tracker that's about to be thrown away. Must be called from
+     * the thread that ticks the dimension.
+     */
+    public void flush() {
+        if (lastUpdateTimeMillis > 0) {
+            drainCounters();
+            for (WindowCounts window : windows) {
+                report(window, Instant.ofEpochMilli(lastUpdateTimeMillis));
+            }
+        }
+        // don't hold on to the worlds.
+        worlds.clear();
+    }
+
+    // The counters are only drained when a window ends, and go towards every window, since those that haven't ended
+    // yet still need them.
+    private void drainCounters() {
+        long loaded = chunksLoaded.sumThenReset();
+        long readFromDisk = chunksReadFromDisk.sumThenReset();
+        long unloaded = chunksUnloaded.sumThenReset();
+        for (WindowCounts window : windows) {
+            window.loaded += loaded;
+            window.readFromDisk += readFromDisk;
+            window.unloaded += unloaded;
+        }
+    }
+
+    // Called once per minute, before the windows are reported, so that unloaded worlds stop adding to them.
+    private void forgetIdleWorlds() {
+        Iterator<WorldChunks> it = worlds.values().iterator();
+        while (it.hasNext()) {
+            WorldChunks chunks = it.next();
+            if (!chunks.tickedThisMinute) {
+                loadedChunks -= chunks.loadedChunks;
+                it.remove();
+            } else {
+                chunks.tickedThisMinute = false;
+            }
+        }
+    }
+
+    // Picks up a change to the configured windows when one of ours ends, like the player count tracker does.
+    private void refreshReportingWindows() {
+        List<ReportingWindow> configured = config.getReportingWindows();
+        WindowCounts[] updated = new WindowCounts[configured.size()];
+        for (int i = 0; i < updated.length; i++) {
+            for (WindowCounts existing : windows) {
+                if (existing.window.equals(configured.get(i))) {
+                    updated[i] = existing;
+                }
+            }
+            if (updated[i] == null) {
+                updated[i] = new WindowCounts(configured.get(i));
+                updated[i].maxLoadedChunks = loadedChunks;
+            }
+        }
+        for (WindowCounts window : windows) {
+            if (!configured.contains(window.window) && window.updates > 0) {
+                report(window, Instant.ofEpochMilli(lastUpdateTimeMillis));
+            }
+        }
+        windows = updated;
+        reportingWindows = configured;
+    }
+
+    private void report(WindowCounts window, Instant timestamp) {
+        // a chunk that's read from disk just before the window ends may not finish loading until the next one.
+        long generated = Math.max(0, window.loaded - window.readFromDisk);
+
+        ReportingWindow w = window.window;
+        reporter.reportStatistic(tickSource, w, timestamp, "chunks-loaded", StatisticUnit.COUNT, window.loaded);
+        reporter.reportStatistic(tickSource, w, timestamp, "chunks-generated", StatisticUnit.COUNT, generated);
+        reporter.reportStatistic(tickSource, w, timestamp, "chunks-unloaded", StatisticUnit.COUNT, window.unloaded);
+        reporter.reportStatistic(tickSource, w, timestamp, "loaded-chunks", StatisticUnit.COUNT, loadedChunks);
+        reporter.reportStatistic(tickSource, w, timestamp, "loaded-chunks-max",
+                                 StatisticUnit.COUNT, window.maxLoadedChunks);
+        window.updates = 0;
+        window.loaded = 0;
+        window.readFromDisk = 0;
+        window.unloaded = 0;
+        window.maxLoadedChunks = loadedChunks;
+    }
+
+    // One world's loaded chunks, as of its last tick.
+    private static final class WorldChunks {
+        private boolean tickedThisMinute = false;
+        private long loadedChunks = 0;
+    }
+
+    // The counts for one reporting window.
+    private static final class WindowCounts {
+        private final ReportingWindow window;
+
+        private long updates = 0;
+        private long loaded = 0;
+        private long readFromDisk = 0;
+        private long unloaded = 0;
+        private long maxLoadedChunks = 0;
+
+        private WindowCounts(ReportingWindow window) {
+            this.window = window;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A PlayerCountTracker that can be updated from several threads at once, to go with ConcurrentTickStatsTracker.
+ *
+ * Each world's latest count is kept in a holder of its own, which only the thread ticking that world writes to. Only
+ * one datapoint is recorded per second anyway, so the first thread to update in a new second claims it with a CAS,
+ * adds up every world's latest count, and records the sum under the lock; every other update that second just
+ * stores its world's count. A world that hasn't updated for a minute is dropped from the sum.
+ */
+public class ConcurrentPlayerCountTracker extends PlayerCountTracker {
+
+    private static final long IDLE_WORLD_SECONDS = 60;
+
+    private final Clock clock;
+    private final ReentrantLock lock;
+
+    private final AtomicLong claimedSecond = new AtomicLong(Long.MIN_VALUE);
+    private final Map<Object, WorldPlayers> worlds = new ConcurrentHashMap<>();
+
+    public ConcurrentPlayerCountTracker(String tickSource, Config config, StatsReporter reporter, Clock clock) {
+        this(tickSource, config, reporter, clock, new ReentrantLock());
+    }
+
+    public ConcurrentPlayerCountTracker(String tickSource, Config config, StatsReporter reporter, Clock clock,
+                                        ReentrantLock lock) {
+        super(tickSource, config, reporter, clock);
+        this.clock = clock;
+        this.lock = lock;
+    }
+
+    @Override
+    public void update(long playerCount) {
+        long second = clock.millis() / 1000;
+        if (!claim(second)) {
+            return;
+        }
+        lock.lock();
+        try {
+            super.update(playerCount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void update(Object world, long playerCount) {
+        long second = clock.millis() / 1000;
+        WorldPlayers players = worlds.get(world);
+        if (players == null) {
+            players = worlds.computeIfAbsent(world, w -> new WorldPlayers());
+        }
+        players.playerCount = playerCount;
+        players.lastSecond = second;
+        if (!claim(second)) {
+            return;
+        }
+
+        long total = 0;
+        Iterator<WorldPlayers> it = worlds.values().iterator();
+        while (it.hasNext()) {
+            WorldPlayers other = it.next();
+            if (other.lastSecond < second - IDLE_WORLD_SECONDS) {
+                it.remove();
+            } else {
+                total += other.playerCount;
+            }
+        }
+        lock.lock();
+        try {
+            super.update(total);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean claim(long second) {
+        long claimed = claimedSecond.get();
+        return second > claimed && claimedSecond.compareAndSet(claimed, second);
+    }
+
+    /**
+     * Reports the partial windows gathered so far, like PlayerCountTracker does. Safe to call from any thread.
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            super.flush();
+        } finally {
+            lock.unlock();
+        }
+        worlds.clear();
+    }
+
+    // One world's latest count; written by the thread that ticks the world, read by whichever thread claims a second.
+    private static final class WorldPlayers {
+        private volatile long playerCount = 0;
+        private volatile long lastSecond = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,218 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+
+import java.lang.ref.WeakReference;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A TickStatsTracker for a source that's ticked on several threads at once, e.g. a group of coalesced dimensions on a
+ * server where a mod ticks dimensions on worker threads.
+ *
+ * Each thread that ticks the source gets its own buffer of finished ticks, which only that thread writes to. Once a
+ * tick starts in a new second, whichever thread finishes it takes the merge lock (if nobody else has it) and replays
+ * every thread's waiting ticks, in the order they started, into the ordinary per-second and per-window stats. Ticking
+ * threads never wait on each other: a thread that can't get the lock just leaves its ticks for the next merge. The only
+ * exception is a thread that fills its buffer, which waits to merge it rather than lose ticks. Once a thread has died
+ * and its last ticks have been merged, its buffer is dropped, so a mod that replaces its worker threads doesn't leave
+ * a trail of them behind.
+ *
+ * Reporting and history writes only happen during a merge, so they're serialized. The lock can be shared with the
+ * source's ConcurrentPlayerCountTracker, since both write to the same history.
+ *
+ * The last-tick getters, the in-progress tick and the schedule stats describe a single ticking thread, so they aren't
+ * meaningful here; the stall watchdog, profiler and JVM stats only use the server's own tracker, which is never one
+ * of these.
+ */
+public class ConcurrentTickStatsTracker extends TickStatsTracker {
+
+    // How many finished ticks each thread can hold between merges. A merge happens about once a second, and a
+    // dimension only ticks 20 times a second, so this is a lot of headroom.
+    private static final int BUFFER_TICKS = 256;
+
+    private final Clock clock;
+    private final TickTimeSource timeSource;
+    private final ReentrantLock mergeLock;
+
+    private final List<TickBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<TickBuffer> threadBuffer = ThreadLocal.withInitial(this::newBuffer);
+
+    // the second the latest merged tick started in; a tick that starts after it calls for another merge.
+    private volatile long mergedSecond = Long.MIN_VALUE;
+
+    public ConcurrentTickStatsTracker(String tickSource, Config config, StatsReporter reporter, Clock clock) {
+        this(tickSource, config, reporter, clock, TickTimeSource.SYSTEM, new ReentrantLock());
+    }
+
+    public ConcurrentTickStatsTracker(String tickSource, Config config, StatsReporter reporter, Clock clock,
+                                      TickTimeSource timeSource, ReentrantLock mergeLock) {
+        super(tickSource, config, reporter, clock, timeSource);
+        this.clock = clock;
+        this.timeSource = timeSource;
+        this.mergeLock = mergeLock;
+    }
+
+    private TickBuffer newBuffer() {
+        TickBuffer buffer = new TickBuffer(Thread.currentThread());
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    @Override
+    public void startTick() {
+        TickBuffer buffer = threadBuffer.get();
+        buffer.tickStartNanos = timeSource.nanoTime();
+        buffer.tickStartTimeMillis = clock.millis();
+        buffer.tickStarted = true;
+    }
+
+    @Override
+    public void endTick() {
+        long tickEndNanos = timeSource.nanoTime();
+        long tickEndTimeMillis = clock.millis();
+        TickBuffer buffer = threadBuffer.get();
+
+        // As in TickStatsTracker, a tick we didn't see start counts as a 0-ns tick.
+        if (!buffer.tickStarted) {
+            buffer.tickStartNanos = tickEndNanos;
+            buffer.tickStartTimeMillis = tickEndTimeMillis;
+        }
+        buffer.tickStarted = false;
+
+        if (!buffer.offer(buffer.tickStartNanos, buffer.tickStartTimeMillis, tickEndNanos, tickEndTimeMillis)) {
+            mergeLock.lock();
+            try {
+                mergeTicks();
+            } finally {
+                mergeLock.unlock();
+            }
+            buffer.offer(buffer.tickStartNanos, buffer.tickStartTimeMillis, tickEndNanos, tickEndTimeMillis);
+        }
+
+        if (buffer.tickStartTimeMillis / 1000 > mergedSecond && mergeLock.tryLock()) {
+            try {
+                mergeTicks();
+            } finally {
+                mergeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Merges every thread's waiting ticks, then reports the partial second and windows like TickStatsTracker does.
+     * Safe to call from any thread, though a tick that's in progress on another thread won't be included.
+     */
+    @Override
+    public void flush() {
+        mergeLock.lock();
+        try {
+            mergeTicks();
+            super.flush();
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    // Replays the waiting ticks into the tracker, earliest start first. A tick that's published while this runs waits
+    // for the next merge, so a thread that keeps ticking can't hold up the merge. Must hold the merge lock.
+    private void mergeTicks() {
+        for (int i = 0; i < buffers.size(); i++) {
+            TickBuffer buffer = buffers.get(i);
+            buffer.mergeEnd = buffer.tail.get();
+        }
+        long latestSecond = mergedSecond;
+        while (true) {
+            TickBuffer earliest = null;
+            for (int i = 0; i < buffers.size(); i++) {
+                TickBuffer buffer = buffers.get(i);
+                if (buffer.hasTickToMerge()
+                        && (earliest == null || buffer.nextStartTimeMillis() < earliest.nextStartTimeMillis())) {
+                    earliest = buffer;
+                }
+            }
+            if (earliest == null) {
+                break;
+            }
+            int slot = earliest.nextSlot();
+            long tickStartTimeMillis = earliest.ticks[slot + 1];
+            recordTick(earliest.ticks[slot], tickStartTimeMillis, earliest.ticks[slot + 2], earliest.ticks[slot + 3]);
+            earliest.head.lazySet(earliest.head.get() + 1);
+            latestSecond = Math.max(latestSecond, tickStartTimeMillis / 1000);
+        }
+        mergedSecond = latestSecond;
+
+        for (int i = buffers.size() - 1; i >= 0; i--) {
+            TickBuffer buffer = buffers.get(i);
+            if (buffer.isAbandoned()) {
+                buffers.remove(buffer);
+            }
+        }
+    }
+
+    // visible for testing
+    int getBufferCount() {
+        return buffers.size();
+    }
+
+    // One thread's finished ticks, waiting to be merged: a ring of four longs per tick (start nanos, start millis,
+    // end nanos, end millis). Only the owning thread adds ticks and moves the tail; only the merging thread reads
+    // them out and moves the head.
+    private static final class TickBuffer {
+        private final long[] ticks = new long[BUFFER_TICKS * 4];
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        // held weakly, so the buffer doesn't keep a dead thread around until the next merge.
+        private final WeakReference<Thread> owner;
+
+        // the owning thread's tick in progress
+        private boolean tickStarted = false;
+        private long tickStartNanos = 0;
+        private long tickStartTimeMillis = 0;
+
+        // where the current merge stops reading; only touched by the merging thread.
+        private long mergeEnd = 0;
+
+        private TickBuffer(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        private boolean offer(long startNanos, long startTimeMillis, long endNanos, long endTimeMillis) {
+            long position = tail.get();
+            if (position - head.get() >= BUFFER_TICKS) {
+                return false;
+            }
+            int slot = (int) (position % BUFFER_TICKS) * 4;
+            ticks[slot] = startNanos;
+            ticks[slot + 1] = startTimeMillis;
+            ticks[slot + 2] = endNanos;
+            ticks[slot + 3] = endTimeMillis;
+            // the merging thread reads the tail before the tick, so this ordered store is all it needs to see it whole
+            tail.lazySet(position + 1);
+            return true;
+        }
+
+        private boolean hasTickToMerge() {
+            return head.get() < mergeEnd;
+        }
+
+        // True once the owning thread has died and every tick it published has been merged. The thread's death
+        // happens-before isAlive() returns false, so its last tail update is visible by then.
+        private boolean isAbandoned() {
+            Thread thread = owner.get();
+            return (thread == null || !thread.isAlive()) && head.get() == tail.get();
+        }
+
+        private int nextSlot() {
+            return (int) (head.get() % BUFFER_TICKS) * 4;
+        }
+
+        private long nextStartTimeMillis() {
+            return ticks[nextSlot() + 1];
+        }
+    }
+}
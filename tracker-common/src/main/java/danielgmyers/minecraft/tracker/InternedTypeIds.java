@@ -0,0 +1,48 @@
+package danielgmyers.minecraft.tracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Assigns a small, stable integer index to each entity or block entity type we see, so that per-type accumulators
+ * can be plain arrays indexed by type.
+ *
+ * Types are keyed by the game's type object itself (e.g. an EntityType), which the game never recreates, so the
+ * registry ID string only gets built the first time we see a type.
+ */
+public final class InternedTypeIds {
+
+    private final ConcurrentMap<Object, Integer> indexByType = new ConcurrentHashMap<>();
+    private final List<String> typeIds = new ArrayList<>();
+
+    public int indexOf(Object type, Function<Object, String> typeIdResolver) {
+        Integer index = indexByType.get(type);
+        if (index != null) {
+            return index;
+        }
+        return assignIndex(type, typeIdResolver);
+    }
+
+    public synchronized String typeIdAt(int index) {
+        return typeIds.get(index);
+    }
+
+    public synchronized int size() {
+        return typeIds.size();
+    }
+
+    private synchronized int assignIndex(Object type, Function<Object, String> typeIdResolver) {
+        Integer index = indexByType.get(type);
+        if (index != null) {
+            return index;
+        }
+        String typeId = typeIdResolver.apply(type);
+        int newIndex = typeIds.size();
+        typeIds.add(typeId == null ? "unknown" : typeId);
+        indexByType.put(type, newIndex);
+        return newIndex;
+    }
+}
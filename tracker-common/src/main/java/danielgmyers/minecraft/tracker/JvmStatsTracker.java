@@ -0,0 +1,419 @@
+package danielgmyers.minecraft.tracker;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garbage collection, allocation and memory statistics for the whole JVM, reported once per reporting window under the
+ * "jvm" source so that they line up with the server's tick stats.
+ *
+ * Pauses come from the collectors' JMX notifications, which arrive on a JMX thread just after each collection, and are
+ * handed over to the server thread under a lock that's only ever held for a few field updates. Heap and metaspace
+ * occupancy are sampled once a second by update(), which the server thread calls at the end of every server tick.
+ *
+ * Allocation is worked out from the eden space: whatever it grew by between one collection and the next was allocated.
+ * It's credited to the second the collection was noticed in, and isn't available for collectors without an eden space.
+ *
+ * A slow server tick counts as overlapping a pause if any pause ran while it did. The notification for a pause can
+ * arrive after the tick it slowed down has ended, so a slow tick waits a couple of seconds for a matching pause before
+ * it's written off; a match is counted in the window it's found in.
+ */
+public class JvmStatsTracker {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final String SOURCE = "jvm";
+
+    // visible for testing
+    static final long PAUSE_NOTIFICATION_GRACE_MILLIS = 2000;
+    static final int RECENT_PAUSES = 64;
+
+    private static final int MAX_PENDING_SLOW_TICKS = 64;
+
+    private final TickStatsTracker serverTickTracker;
+    private final Config config;
+    private final StatsReporter reporter;
+    private final Clock clock;
+    // These are re-read from the config whenever one of the windows ends, so they follow config reloads.
+    private long slowTickNanos;
+    private List<ReportingWindow> reportingWindows;
+    private WindowStats[] windows;
+
+    private final MemoryMXBean memoryMXBean;
+    // either of these is null if the JVM doesn't have such a pool.
+    private final MemoryPoolMXBean metaspacePool;
+    private final String edenPoolName;
+    // GcInfo's times are relative to when the JVM started.
+    private final long jvmStartTimeMillis;
+
+    private final NotificationListener listener = this::handleNotification;
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+    // Written by the JMX notification thread, drained by the server thread; all guarded by pauseLock.
+    private final Object pauseLock = new Object();
+    private long pauseCount = 0;
+    private long pauseMillisTotal = 0;
+    private long pauseMillisMax = 0;
+    private long allocatedBytes = 0;
+    private boolean allocationKnown = false;
+    private long edenUsedAfterLastCollection = 0;
+    // the start and end times of the last few pauses, as a ring; recordedPauses says where the next one goes.
+    private final long[] recentPauseStarts = new long[RECENT_PAUSES];
+    private final long[] recentPauseEnds = new long[RECENT_PAUSES];
+    private long recordedPauses = 0;
+
+    // Only used by the server thread.
+    private final long[] pendingSlowTickStarts = new long[MAX_PENDING_SLOW_TICKS];
+    private final long[] pendingSlowTickEnds = new long[MAX_PENDING_SLOW_TICKS];
+    private int pendingSlowTickCount = 0;
+    private long lastTickEndTimeMillis = 0;
+    private long lastSampleTimeMillis = 0;
+
+    public JvmStatsTracker(TickStatsTracker serverTickTracker, Config config, StatsReporter reporter, Clock clock) {
+        this.serverTickTracker = serverTickTracker;
+        this.config = config;
+        this.reporter = reporter;
+        this.clock = clock;
+        this.slowTickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getJvmStatsSlowTickMillis()));
+        this.reportingWindows = config.getReportingWindows();
+        this.windows = new WindowStats[reportingWindows.size()];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new WindowStats(reportingWindows.get(i));
+        }
+
+        this.memoryMXBean = ManagementFactory.getMemoryMXBean();
+        MemoryPoolMXBean metaspace = null;
+        String eden = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace")) {
+                metaspace = pool;
+            } else if (pool.getName().contains("Eden")) {
+                eden = pool.getName();
+            }
+        }
+        this.metaspacePool = metaspace;
+        this.edenPoolName = eden;
+        this.jvmStartTimeMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    public synchronized void start() {
+        if (!emitters.isEmpty()) {
+            return;
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collector;
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+        LOG.info("Tracking JVM stats for {} garbage collector(s); allocation is {}tracked.", emitters.size(),
+                 edenPoolName == null ? "not " : "");
+    }
+
+    public synchronized void stop() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // nothing to remove, then.
+            }
+        }
+        emitters.clear();
+    }
+
+    /**
+     * Should be called once at the end of every server tick, right after the server tick tracker's endTick().
+     */
+    public void update() {
+        long currentTimeMillis = clock.millis();
+
+        if (lastSampleTimeMillis == 0 || lastSampleTimeMillis / 1000 < currentTimeMillis / 1000) {
+            completeSecond(currentTimeMillis);
+        }
+
+        long tickEndTimeMillis = serverTickTracker.getLastTickEndTimeMillis();
+        if (tickEndTimeMillis != lastTickEndTimeMillis) {
+            lastTickEndTimeMillis = tickEndTimeMillis;
+            if (serverTickTracker.getLastTickNanos() > slowTickNanos) {
+                for (WindowStats window : windows) {
+                    window.slowTicks++;
+                }
+                if (pendingSlowTickCount < MAX_PENDING_SLOW_TICKS) {
+                    pendingSlowTickStarts[pendingSlowTickCount] = serverTickTracker.getLastTickStartTimeMillis();
+                    pendingSlowTickEnds[pendingSlowTickCount] = tickEndTimeMillis;
+                    pendingSlowTickCount++;
+                }
+            }
+        }
+        if (pendingSlowTickCount > 0) {
+            matchSlowTicks(currentTimeMillis);
+        }
+    }
+
+    // Folds the collections since the last second into each window, reports the windows that have ended,
+    // and samples the heap for the new second.
+    private void completeSecond(long currentTimeMillis) {
+        long newPauseCount;
+        long newPauseMillisTotal;
+        long newPauseMillisMax;
+        long newAllocatedBytes;
+        boolean newAllocationKnown;
+        synchronized (pauseLock) {
+            newPauseCount = pauseCount;
+            newPauseMillisTotal = pauseMillisTotal;
+            newPauseMillisMax = pauseMillisMax;
+            newAllocatedBytes = allocatedBytes;
+            newAllocationKnown = allocationKnown;
+            pauseCount = 0;
+            pauseMillisTotal = 0;
+            pauseMillisMax = 0;
+            allocatedBytes = 0;
+        }
+        for (WindowStats window : windows) {
+            window.addCollections(newPauseCount, newPauseMillisTotal, newPauseMillisMax,
+                                  newAllocatedBytes, newAllocationKnown);
+        }
+
+        boolean windowEnded = false;
+        for (WindowStats window : windows) {
+            if (lastSampleTimeMillis > 0 && window.window.inNextWindow(lastSampleTimeMillis, currentTimeMillis)) {
+                window.report(currentTimeMillis, reporter);
+                windowEnded = true;
+            }
+        }
+        if (windowEnded) {
+            slowTickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getJvmStatsSlowTickMillis()));
+            if (config.getReportingWindows() != reportingWindows) {
+                refreshReportingWindows(currentTimeMillis);
+            }
+        }
+
+        // These allocate a MemoryUsage each, but only once a second.
+        long heapUsed = memoryMXBean.getHeapMemoryUsage().getUsed();
+        long metaspaceUsed = metaspacePool == null ? -1 : metaspacePool.getUsage().getUsed();
+        for (WindowStats window : windows) {
+            window.addSample(heapUsed, metaspaceUsed);
+        }
+        lastSampleTimeMillis = currentTimeMillis;
+    }
+
+    // A window that's no longer configured reports what it has, and a new one starts with this second.
+    private void refreshReportingWindows(long currentTimeMillis) {
+        List<ReportingWindow> configured = config.getReportingWindows();
+        if (configured.equals(reportingWindows)) {
+            reportingWindows = configured;
+            return;
+        }
+        WindowStats[] updated = new WindowStats[configured.size()];
+        for (int i = 0; i < updated.length; i++) {
+            for (WindowStats existing : windows) {
+                if (existing.window.equals(configured.get(i))) {
+                    updated[i] = existing;
+                }
+            }
+            if (updated[i] == null) {
+                updated[i] = new WindowStats(configured.get(i));
+            }
+        }
+        for (WindowStats window : windows) {
+            if (!configured.contains(window.window) && lastSampleTimeMillis > 0) {
+                window.report(currentTimeMillis, reporter);
+            }
+        }
+        windows = updated;
+        reportingWindows = configured;
+        LOG.info("JVM stats tracker now has reporting windows {}", configured);
+    }
+
+    private void matchSlowTicks(long currentTimeMillis) {
+        int kept = 0;
+        long matched = 0;
+        synchronized (pauseLock) {
+            for (int i = 0; i < pendingSlowTickCount; i++) {
+                long start = pendingSlowTickStarts[i];
+                long end = pendingSlowTickEnds[i];
+                if (overlapsRecentPause(start, end)) {
+                    matched++;
+                } else if (currentTimeMillis - end < PAUSE_NOTIFICATION_GRACE_MILLIS) {
+                    pendingSlowTickStarts[kept] = start;
+                    pendingSlowTickEnds[kept] = end;
+                    kept++;
+                }
+            }
+        }
+        pendingSlowTickCount = kept;
+        for (WindowStats window : windows) {
+            window.slowTicksDuringGc += matched;
+        }
+    }
+
+    // Must be called with pauseLock held.
+    private boolean overlapsRecentPause(long tickStartMillis, long tickEndMillis) {
+        long count = Math.min(recordedPauses, RECENT_PAUSES);
+        for (long i = recordedPauses - count; i < recordedPauses; i++) {
+            int slot = (int) (i % RECENT_PAUSES);
+            // the times are only precise to the millisecond, so touching counts as overlapping.
+            if (recentPauseStarts[slot] <= tickEndMillis && recentPauseEnds[slot] >= tickStartMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        GcInfo gcInfo = info.getGcInfo();
+        long edenUsedBefore = -1;
+        long edenUsedAfter = -1;
+        if (edenPoolName != null) {
+            MemoryUsage before = gcInfo.getMemoryUsageBeforeGc().get(edenPoolName);
+            MemoryUsage after = gcInfo.getMemoryUsageAfterGc().get(edenPoolName);
+            if (before != null && after != null) {
+                edenUsedBefore = before.getUsed();
+                edenUsedAfter = after.getUsed();
+            }
+        }
+        long startMillis = jvmStartTimeMillis + gcInfo.getStartTime();
+        recordCollection(isPause(info.getGcName(), info.getGcAction()), startMillis,
+                         startMillis + gcInfo.getDuration(), edenUsedBefore, edenUsedAfter);
+    }
+
+    /**
+     * Records one collection; edenUsedBefore and edenUsedAfter are -1 if there's no eden space.
+     * Called from the JMX notification thread, or directly by tests. Visible for testing.
+     */
+    void recordCollection(boolean pause, long startMillis, long endMillis, long edenUsedBefore, long edenUsedAfter) {
+        synchronized (pauseLock) {
+            if (edenUsedBefore >= 0 && edenUsedAfter >= 0) {
+                allocatedBytes += Math.max(0, edenUsedBefore - edenUsedAfterLastCollection);
+                edenUsedAfterLastCollection = edenUsedAfter;
+                allocationKnown = true;
+            }
+            if (pause) {
+                long durationMillis = Math.max(0, endMillis - startMillis);
+                pauseCount++;
+                pauseMillisTotal += durationMillis;
+                pauseMillisMax = Math.max(pauseMillisMax, durationMillis);
+                int slot = (int) (recordedPauses % RECENT_PAUSES);
+                recentPauseStarts[slot] = startMillis;
+                recentPauseEnds[slot] = endMillis;
+                recordedPauses++;
+            }
+        }
+    }
+
+    // visible for testing
+    long getRecordedPauses() {
+        synchronized (pauseLock) {
+            return recordedPauses;
+        }
+    }
+
+    // visible for testing
+    static boolean isPause(String gcName, String gcAction) {
+        // ZGC and Shenandoah report their concurrent work through separate "... Cycles" collectors, and newer versions
+        // of G1 report concurrent marking as its own action; everything else stops the application. CMS is the
+        // exception, since its whole cycle is reported as one major collection.
+        return !gcName.endsWith(" Cycles") && !"end of concurrent GC".equals(gcAction);
+    }
+
+    // The running totals for one reporting window.
+    private static final class WindowStats {
+        private final ReportingWindow window;
+
+        private long secondsSampled = 0;
+        private long heapUsedSum = 0;
+        private long heapUsedMax = 0;
+        private long metaspaceUsedMax = -1;
+
+        private long pauseCount = 0;
+        private long pauseMillisTotal = 0;
+        private long pauseMillisMax = 0;
+        private long allocatedBytes = 0;
+        private boolean allocationKnown = false;
+
+        private long slowTicks = 0;
+        private long slowTicksDuringGc = 0;
+
+        private WindowStats(ReportingWindow window) {
+            this.window = window;
+        }
+
+        private void addCollections(long count, long millisTotal, long millisMax, long allocated, boolean known) {
+            pauseCount += count;
+            pauseMillisTotal += millisTotal;
+            pauseMillisMax = Math.max(pauseMillisMax, millisMax);
+            allocatedBytes += allocated;
+            allocationKnown |= known;
+        }
+
+        private void addSample(long heapUsed, long metaspaceUsed) {
+            secondsSampled++;
+            heapUsedSum += heapUsed;
+            heapUsedMax = Math.max(heapUsedMax, heapUsed);
+            metaspaceUsedMax = Math.max(metaspaceUsedMax, metaspaceUsed);
+        }
+
+        private void report(long timestampMillis, StatsReporter reporter) {
+            Instant timestamp = Instant.ofEpochMilli(timestampMillis);
+            reporter.reportStatistic(SOURCE, window, timestamp, "gc-pauses", StatisticUnit.COUNT, pauseCount);
+            reporter.reportStatistic(SOURCE, window, timestamp, "gc-pause-total", StatisticUnit.MILLISECONDS,
+                                     pauseMillisTotal);
+            reporter.reportStatistic(SOURCE, window, timestamp, "gc-pause-max", StatisticUnit.MILLISECONDS,
+                                     pauseMillisMax);
+            if (allocationKnown) {
+                reporter.reportStatistic(SOURCE, window, timestamp, "allocation-rate", StatisticUnit.BYTES_PER_SECOND,
+                                         (double) allocatedBytes / Math.max(1, secondsSampled));
+            }
+            if (secondsSampled > 0) {
+                reporter.reportStatistic(SOURCE, window, timestamp, "heap-used-avg", StatisticUnit.BYTES,
+                                         (double) heapUsedSum / secondsSampled);
+                reporter.reportStatistic(SOURCE, window, timestamp, "heap-used-max", StatisticUnit.BYTES, heapUsedMax);
+            }
+            if (metaspaceUsedMax >= 0) {
+                reporter.reportStatistic(SOURCE, window, timestamp, "metaspace-used-max", StatisticUnit.BYTES,
+                                         metaspaceUsedMax);
+            }
+            reporter.reportStatistic(SOURCE, window, timestamp, "slow-ticks", StatisticUnit.COUNT, slowTicks);
+            reporter.reportStatistic(SOURCE, window, timestamp, "slow-ticks-during-gc", StatisticUnit.COUNT,
+                                     slowTicksDuringGc);
+
+            secondsSampled = 0;
+            heapUsedSum = 0;
+            heapUsedMax = 0;
+            metaspaceUsedMax = -1;
+            pauseCount = 0;
+            pauseMillisTotal = 0;
+            pauseMillisMax = 0;
+            allocatedBytes = 0;
+            allocationKnown = false;
+            slowTicks = 0;
+            slowTicksDuringGc = 0;
+        }
+    }
+}
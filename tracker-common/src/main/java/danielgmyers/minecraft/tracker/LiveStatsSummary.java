@@ -0,0 +1,72 @@
+package danielgmyers.minecraft.tracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns the trackers' rolling windows into a few lines of text for the in-game command: the server as a whole,
+ * then the slowest dimensions by mean ms/T. Only reads the trackers' snapshots, so it's cheap to call from any thread.
+ */
+public final class LiveStatsSummary {
+
+    public static final int DEFAULT_MAX_DIMENSIONS = 5;
+
+    private LiveStatsSummary() {}
+
+    public static List<String> describe(TickStatsTracker serverTracker, PlayerCountTracker serverPlayerCounts,
+                                        Collection<WorldTrackers> worlds, RollingWindow window, int maxDimensions) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Tick stats for the last " + describe(window) + ", slowest dimensions first:");
+        lines.add(describe(serverTracker.getSnapshot(), serverPlayerCounts.getSnapshot(), window));
+
+        List<TickStatsSnapshot> dimensions = new ArrayList<>();
+        Map<String, PlayerCountSnapshot> playerCounts = new HashMap<>();
+        for (WorldTrackers world : worlds) {
+            TickStatsSnapshot snapshot = world.getTickStatsTracker().getSnapshot();
+            if (snapshot.getSecondsWithData(window) > 0) {
+                dimensions.add(snapshot);
+                playerCounts.put(world.getTickSource(), world.getPlayerCountTracker().getSnapshot());
+            }
+        }
+        dimensions.sort(Comparator.comparingDouble((TickStatsSnapshot s) -> s.getMeanMillisPerTick(window)).reversed());
+        for (TickStatsSnapshot snapshot : dimensions.subList(0, Math.min(maxDimensions, dimensions.size()))) {
+            lines.add(describe(snapshot, playerCounts.get(snapshot.getTickSource()), window));
+        }
+        if (dimensions.size() > maxDimensions) {
+            lines.add("(" + (dimensions.size() - maxDimensions) + " more dimensions not shown)");
+        }
+        return lines;
+    }
+
+    private static String describe(TickStatsSnapshot ticks, PlayerCountSnapshot players, RollingWindow window) {
+        if (ticks.getSecondsWithData(window) == 0) {
+            return ticks.getTickSource() + ": no data yet";
+        }
+        String line = String.format(Locale.ROOT, "%s: %.1f ms/t mean, %.1f ms/t max, %.1f TPS",
+                                    ticks.getTickSource(), ticks.getMeanMillisPerTick(window),
+                                    ticks.getMaxMillisPerTick(window), ticks.getTicksPerSecond(window));
+        if (players != null && players.getSecondsWithData(window) > 0) {
+            line += String.format(Locale.ROOT, ", %.1f players (max %d)",
+                                  players.getAverage(window), (long) players.getMax(window));
+        }
+        return line;
+    }
+
+    private static String describe(RollingWindow window) {
+        switch (window) {
+            case LAST_5_SECONDS:
+                return "5 seconds";
+            case LAST_MINUTE:
+                return "minute";
+            case LAST_15_MINUTES:
+                return "15 minutes";
+            default:
+                return window.getName();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package danielgmyers.minecraft.tracker;
+
+/**
+ * A fixed-size histogram with log-linear buckets, similar in spirit to HdrHistogram.
+ *
+ * Values below 2^SUB_BUCKET_BITS each get their own bucket. Above that, every power of two is split into
+ * 2^(SUB_BUCKET_BITS - 1) equally-sized buckets, so the width of any bucket is at most ~6% of the values it holds,
+ * and the midpoint we report for a bucket is within ~3% of any value recorded in it.
+ *
+ * The bucket array is allocated once up front; recording, merging and clearing never allocate. We also keep track of
+ * the range of buckets that have ever been touched since the last clear, so merging a mostly-empty per-second
+ * histogram into a per-minute one only walks the handful of buckets that actually have data.
+ *
+ * This class is not thread-safe.
+ */
+public class LogLinearHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    static final int LINEAR_LIMIT = 1 << SUB_BUCKET_BITS;
+
+    // Anything larger than this gets clamped into the highest bucket.
+    public static final long MAX_TRACKABLE_VALUE = (1L << 40) - 1;
+
+    static final int BUCKET_COUNT = indexFor(MAX_TRACKABLE_VALUE) + 1;
+
+    private final long[] counts;
+    private long totalCount = 0;
+    private int lowestTouchedIndex = Integer.MAX_VALUE;
+    private int highestTouchedIndex = -1;
+
+    public LogLinearHistogram() {
+        this.counts = new long[BUCKET_COUNT];
+    }
+
+    public void record(long value) {
+        recordCount(value, 1);
+    }
+
+    public void recordCount(long value, long count) {
+        int index = indexFor(value);
+        counts[index] += count;
+        totalCount += count;
+        if (index < lowestTouchedIndex) {
+            lowestTouchedIndex = index;
+        }
+        if (index > highestTouchedIndex) {
+            highestTouchedIndex = index;
+        }
+    }
+
+    /**
+     * Adds all of the counts in the other histogram to this one.
+     */
+    public void add(LogLinearHistogram other) {
+        if (other.totalCount == 0) {
+            return;
+        }
+        for (int i = other.lowestTouchedIndex; i <= other.highestTouchedIndex; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        lowestTouchedIndex = Math.min(lowestTouchedIndex, other.lowestTouchedIndex);
+        highestTouchedIndex = Math.max(highestTouchedIndex, other.highestTouchedIndex);
+    }
+
+    /**
+     * Replaces the contents of this histogram with the contents of the other histogram.
+     */
+    public void copyFrom(LogLinearHistogram other) {
+        clear();
+        add(other);
+    }
+
+    public void clear() {
+        for (int i = lowestTouchedIndex; i <= highestTouchedIndex; i++) {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        lowestTouchedIndex = Integer.MAX_VALUE;
+        highestTouchedIndex = -1;
+    }
+
+    public boolean isEmpty() {
+        return totalCount == 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * The lowest bucket index that may have a nonzero count, or -1 if the histogram is empty.
+     */
+    public int getFirstIndex() {
+        return totalCount == 0 ? -1 : lowestTouchedIndex;
+    }
+
+    /**
+     * The highest bucket index that may have a nonzero count, or -1 if the histogram is empty.
+     */
+    public int getLastIndex() {
+        return totalCount == 0 ? -1 : highestTouchedIndex;
+    }
+
+    public long getCountAtIndex(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns the representative value for the given percentile (e.g. 99.9), or 0 if the histogram is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double clampedPercentile = Math.min(Math.max(percentile, 0.0), 100.0);
+        long targetRank = Math.max(1, (long) Math.ceil(clampedPercentile / 100.0 * totalCount));
+        long runningCount = 0;
+        for (int i = lowestTouchedIndex; i <= highestTouchedIndex; i++) {
+            runningCount += counts[i];
+            if (runningCount >= targetRank) {
+                return representativeValueAtIndex(i);
+            }
+        }
+        return representativeValueAtIndex(highestTouchedIndex);
+    }
+
+    public static int indexFor(long value) {
+        if (value < LINEAR_LIMIT) {
+            // negative durations can only come from a misbehaving clock, so we treat them as zero.
+            return value < 0 ? 0 : (int) value;
+        }
+        if (value > MAX_TRACKABLE_VALUE) {
+            value = MAX_TRACKABLE_VALUE;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        return (shift * SUB_BUCKET_HALF_COUNT) + (int) (value >>> shift);
+    }
+
+    public static long lowestValueAtIndex(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index / SUB_BUCKET_HALF_COUNT) - 1;
+        long mantissa = index - ((long) shift * SUB_BUCKET_HALF_COUNT);
+        return mantissa << shift;
+    }
+
+    public static long highestValueAtIndex(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index / SUB_BUCKET_HALF_COUNT) - 1;
+        long mantissa = index - ((long) shift * SUB_BUCKET_HALF_COUNT);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * The value we report for anything recorded in the given bucket: the middle of the bucket's range.
+     */
+    public static long representativeValueAtIndex(int index) {
+        long lowest = lowestValueAtIndex(index);
+        return lowest + (highestValueAtIndex(index) - lowest) / 2;
+    }
+}
@@ -0,0 +1,71 @@
+package danielgmyers.minecraft.tracker;
+
+import java.time.Instant;
+
+/**
+ * An immutable copy of a PlayerCountTracker's rolling windows, as of the last second it recorded.
+ * Every getter returns NaN for a window with no data.
+ */
+public final class PlayerCountSnapshot {
+
+    // the layout of the tracker's PublishedValues: the last second, then these fields for each window.
+    private static final int SECONDS_WITH_DATA = 0;
+    private static final int PLAYER_COUNT_SUM = 1;
+    private static final int MIN_PLAYER_COUNT = 2;
+    private static final int MAX_PLAYER_COUNT = 3;
+    private static final int FIELDS_PER_WINDOW = 4;
+    static final int SIZE = 1 + FIELDS_PER_WINDOW * RollingWindow.values().length;
+
+    private static final RollingWindow[] WINDOWS = RollingWindow.values();
+
+    private final String tickSource;
+    private final long[] values;
+
+    PlayerCountSnapshot(String tickSource, long[] values) {
+        this.tickSource = tickSource;
+        this.values = values;
+    }
+
+    static void publish(PublishedValues out, RollingSeries playerCounts) {
+        out.begin();
+        out.set(0, playerCounts.getLastSecond());
+        for (RollingWindow window : WINDOWS) {
+            int base = 1 + window.ordinal() * FIELDS_PER_WINDOW;
+            out.set(base + SECONDS_WITH_DATA, playerCounts.getCount(window));
+            out.set(base + PLAYER_COUNT_SUM, playerCounts.getSum(window));
+            out.set(base + MIN_PLAYER_COUNT, playerCounts.getMin(window));
+            out.set(base + MAX_PLAYER_COUNT, playerCounts.getMax(window));
+        }
+        out.end();
+    }
+
+    public String getTickSource() {
+        return tickSource;
+    }
+
+    // The start of the last second included in the windows, or null if there isn't one yet.
+    public Instant getLastSecond() {
+        return values[0] == 0 ? null : Instant.ofEpochSecond(values[0]);
+    }
+
+    public long getSecondsWithData(RollingWindow window) {
+        return get(window, SECONDS_WITH_DATA);
+    }
+
+    public double getAverage(RollingWindow window) {
+        long seconds = get(window, SECONDS_WITH_DATA);
+        return seconds == 0 ? Double.NaN : (double) get(window, PLAYER_COUNT_SUM) / seconds;
+    }
+
+    public double getMin(RollingWindow window) {
+        return get(window, SECONDS_WITH_DATA) == 0 ? Double.NaN : get(window, MIN_PLAYER_COUNT);
+    }
+
+    public double getMax(RollingWindow window) {
+        return get(window, SECONDS_WITH_DATA) == 0 ? Double.NaN : get(window, MAX_PLAYER_COUNT);
+    }
+
+    private long get(RollingWindow window, int field) {
+        return values[1 + window.ordinal() * FIELDS_PER_WINDOW + field];
+    }
+}
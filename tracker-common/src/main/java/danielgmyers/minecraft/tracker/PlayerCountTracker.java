@@ -1,12 +1,17 @@
 package danielgmyers.minecraft.tracker;
 
 import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.history.SourceHistory;
 import danielgmyers.minecraft.tracker.reporters.StatsReporter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 public class PlayerCountTracker {
 
@@ -18,26 +23,42 @@ public class PlayerCountTracker {
     private final StatsReporter reporter;
     private final Clock clock;
 
-    private long lastMinuteDatapointSum = 0;
-    private long lastMinuteDatapointMin = Long.MAX_VALUE;
-    private long lastMinuteDatapointMax = 0;
-    private long lastMinuteDatapointCount = 0;
+    // replaced when the configured windows change.
+    private List<ReportingWindow> reportingWindows;
+    private WindowCounts[] windows;
 
     private long lastDatapointTimeMillis = 0;
 
+    // Each world's latest player count, for a source with several coalesced worlds. Keyed by the world itself, so
+    // that looking a world up doesn't allocate.
+    private final Map<Object, WorldPlayers> worlds = new IdentityHashMap<>();
+    private long worldPlayerCount = 0;
+    private long lastWorldUpdateTimeMillis = 0;
+
+    // The live view of the last few seconds and minutes, republished every second for other threads to read.
+    private final RollingSeries rollingPlayerCounts = new RollingSeries();
+    private final PublishedValues rollingStats = new PublishedValues(PlayerCountSnapshot.SIZE);
+
+    // optional; every datapoint is also recorded here when it's set.
+    private SourceHistory history = null;
+
     public PlayerCountTracker(String tickSource, Config config, StatsReporter reporter, Clock clock) {
         this.tickSource = tickSource;
         this.config = config;
         this.reporter = reporter;
         this.clock = clock;
-        LOG.info("Initializing player count tracker for source '{}'", tickSource);
+        this.reportingWindows = config.getReportingWindows();
+        this.windows = new WindowCounts[reportingWindows.size()];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new WindowCounts(reportingWindows.get(i));
+        }
+        LOG.info("Initializing player count tracker for source '{}' with reporting windows {}", tickSource, reportingWindows);
     }
 
-    // Player counts are tracked per second for statistical purposes, but only ever reported once per minute.
+    // Player counts are tracked per second for statistical purposes, but only ever reported once per reporting window.
     public void update(long playerCount) {
-        Instant now = clock.instant();
-
-        long currentTimeMillis = now.toEpochMilli();
+        // we only need an Instant when we actually report, so we avoid allocating one on every update.
+        long currentTimeMillis = clock.millis();
 
         if (lastDatapointTimeMillis > 0 && !inNextSecond(lastDatapointTimeMillis, currentTimeMillis)) {
             // want to record a datapoint no more than once per second,
@@ -45,32 +66,166 @@ public class PlayerCountTracker {
             return;
         }
 
-        // if we're in the next minute, report our existing data before we include the new data point.
-        if (lastDatapointTimeMillis > 0 && inNextMinute(lastDatapointTimeMillis, currentTimeMillis)) {
-            reporter.reportPlayerCount(tickSource, now, lastMinuteDatapointCount,
-                                       lastMinuteDatapointSum, lastMinuteDatapointMin, lastMinuteDatapointMax);
-            lastMinuteDatapointCount = 0;
-            lastMinuteDatapointSum = 0;
-            lastMinuteDatapointMin = Long.MAX_VALUE;
-            lastMinuteDatapointMax = 0;
+        boolean windowEnded = false;
+        for (WindowCounts window : windows) {
+            // if we're in the next window, report our existing data before we include the new data point.
+            if (lastDatapointTimeMillis > 0 && window.window.inNextWindow(lastDatapointTimeMillis, currentTimeMillis)) {
+                window.report(tickSource, currentTimeMillis, reporter);
+                windowEnded = true;
+            }
+            window.add(playerCount);
+        }
+        if (windowEnded && config.getReportingWindows() != reportingWindows) {
+            refreshReportingWindows();
+        }
+        rollingPlayerCounts.record(currentTimeMillis / 1000, playerCount);
+        PlayerCountSnapshot.publish(rollingStats, rollingPlayerCounts);
+        if (history != null) {
+            history.recordPlayerSecond(currentTimeMillis / 1000, playerCount);
         }
-
-        // Yes, it's weird to sum up the player counts for each data point, but this gives us a proper average over
-        // the minute when we generate per-minute statistics.
-        lastMinuteDatapointSum += playerCount;
-        lastMinuteDatapointMin = Math.min(lastMinuteDatapointMin, playerCount);
-        lastMinuteDatapointMax = Math.max(lastMinuteDatapointMax, playerCount);
-        lastMinuteDatapointCount++;
 
         lastDatapointTimeMillis = currentTimeMillis;
     }
 
+    /**
+     * For a source made up of several worlds: should be called at the end of every tick of each world, with the number
+     * of players in it. The datapoint recorded each second is the sum of each world's latest count. A world that
+     * doesn't tick for a whole minute (e.g. because it's been unloaded) stops counting.
+     */
+    public void update(Object world, long playerCount) {
+        long currentTimeMillis = clock.millis();
+        if (lastWorldUpdateTimeMillis > 0
+                && ReportingWindow.MINUTE.inNextWindow(lastWorldUpdateTimeMillis, currentTimeMillis)) {
+            forgetIdleWorlds();
+        }
+        lastWorldUpdateTimeMillis = currentTimeMillis;
+
+        WorldPlayers players = worlds.get(world);
+        if (players == null) {
+            players = new WorldPlayers();
+            worlds.put(world, players);
+        }
+        players.tickedThisMinute = true;
+        worldPlayerCount += playerCount - players.playerCount;
+        players.playerCount = playerCount;
+        update(worldPlayerCount);
+    }
+
+    private void forgetIdleWorlds() {
+        Iterator<WorldPlayers> it = worlds.values().iterator();
+        while (it.hasNext()) {
+            WorldPlayers players = it.next();
+            if (!players.tickedThisMinute) {
+                worldPlayerCount -= players.playerCount;
+                it.remove();
+            } else {
+                players.tickedThisMinute = false;
+            }
+        }
+    }
+
+    // Picks up a change to the configured windows when one of ours ends, like TickStatsTracker does: a window that's no
+    // longer configured reports what it has, and a new one starts with the next datapoint. The tick tracker already
+    // logs the change.
+    private void refreshReportingWindows() {
+        List<ReportingWindow> configured = config.getReportingWindows();
+        if (configured.equals(reportingWindows)) {
+            reportingWindows = configured;
+            return;
+        }
+        WindowCounts[] updated = new WindowCounts[configured.size()];
+        for (int i = 0; i < updated.length; i++) {
+            for (WindowCounts existing : windows) {
+                if (existing.window.equals(configured.get(i))) {
+                    updated[i] = existing;
+                }
+            }
+            if (updated[i] == null) {
+                updated[i] = new WindowCounts(configured.get(i));
+            }
+        }
+        for (WindowCounts window : windows) {
+            if (!configured.contains(window.window) && window.datapointCount > 0) {
+                window.report(tickSource, lastDatapointTimeMillis, reporter);
+            }
+        }
+        windows = updated;
+        reportingWindows = configured;
+    }
+
+    /**
+     * Reports the partial windows gathered so far without waiting for them to end, for a tracker that's about to be
+     * thrown away. Must be called from the thread that updates this tracker.
+     */
+    public void flush() {
+        for (WindowCounts window : windows) {
+            if (window.datapointCount > 0) {
+                window.report(tickSource, lastDatapointTimeMillis, reporter);
+            }
+        }
+        // don't hold on to the worlds.
+        worlds.clear();
+        worldPlayerCount = 0;
+    }
+
+    public String getTickSource() {
+        return tickSource;
+    }
+
+    /**
+     * Returns the rolling windows as of the last recorded second. Safe to call from any thread.
+     */
+    public PlayerCountSnapshot getSnapshot() {
+        return new PlayerCountSnapshot(tickSource, rollingStats.read());
+    }
+
+    /**
+     * Sets where this tracker records its per-second history, or null to stop recording it.
+     * Set it before the tracker starts being updated; only the updating thread may write to the history.
+     */
+    public void setHistory(SourceHistory history) {
+        this.history = history;
+    }
+
     private boolean inNextSecond(long previousTimeMillis, long currentTimeMillis) {
         return (previousTimeMillis / 1000) < (currentTimeMillis / 1000);
     }
 
-    private boolean inNextMinute(long previousTimeMillis, long currentTimeMillis) {
-        // this won't line up with wall-clock minutes, but that's ok, we just need consistent 60-second windows.
-        return (previousTimeMillis / 60000) < (currentTimeMillis / 60000);
+    // One world's players, as of its last tick.
+    private static final class WorldPlayers {
+        private boolean tickedThisMinute = false;
+        private long playerCount = 0;
+    }
+
+    // The running totals for one reporting window.
+    private static final class WindowCounts {
+        private final ReportingWindow window;
+
+        private long datapointSum = 0;
+        private long datapointMin = Long.MAX_VALUE;
+        private long datapointMax = 0;
+        private long datapointCount = 0;
+
+        private WindowCounts(ReportingWindow window) {
+            this.window = window;
+        }
+
+        private void add(long playerCount) {
+            // Yes, it's weird to sum up the player counts for each data point, but this gives us a proper average over
+            // the window when we generate per-window statistics.
+            datapointSum += playerCount;
+            datapointMin = Math.min(datapointMin, playerCount);
+            datapointMax = Math.max(datapointMax, playerCount);
+            datapointCount++;
+        }
+
+        private void report(String tickSource, long timestampMillis, StatsReporter reporter) {
+            reporter.reportPlayerCount(tickSource, window, Instant.ofEpochMilli(timestampMillis), datapointCount,
+                                       datapointSum, datapointMin, datapointMax);
+            datapointCount = 0;
+            datapointSum = 0;
+            datapointMin = Long.MAX_VALUE;
+            datapointMax = 0;
+        }
     }
 }
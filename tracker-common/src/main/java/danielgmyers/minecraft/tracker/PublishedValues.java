@@ -0,0 +1,50 @@
+package danielgmyers.minecraft.tracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed number of longs that one thread updates as a group and any thread can read as a consistent group,
+ * without either side locking or the writer allocating (a sequence lock).
+ *
+ * The writer brackets its updates with begin() and end(), which bump the version to odd and back to even. A reader
+ * copies the values and retries if the version was odd or changed while it was copying. Every access is volatile,
+ * so a reader that sees the same even version before and after its copy can't have seen a half-done update.
+ */
+final class PublishedValues {
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLongArray values;
+
+    PublishedValues(int size) {
+        this.values = new AtomicLongArray(size);
+    }
+
+    void begin() {
+        version.set(version.get() + 1);
+    }
+
+    void set(int index, long value) {
+        values.set(index, value);
+    }
+
+    void end() {
+        version.set(version.get() + 1);
+    }
+
+    long[] read() {
+        long[] copy = new long[values.length()];
+        while (true) {
+            long before = version.get();
+            if ((before & 1) == 0) {
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = values.get(i);
+                }
+                if (version.get() == before) {
+                    return copy;
+                }
+            }
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package danielgmyers.minecraft.tracker;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A fixed-length window that per-second data gets rolled up into before it's reported, e.g. "minute" or "10-second".
+ *
+ * Windows are aligned to multiples of their length since the epoch, so every tracker using the same window
+ * reports on the same boundaries. The window's name is what reporters use to tell resolutions apart.
+ */
+public final class ReportingWindow {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final ReportingWindow SECOND = new ReportingWindow(1);
+    public static final ReportingWindow MINUTE = new ReportingWindow(60);
+    public static final ReportingWindow HOUR = new ReportingWindow(3600);
+
+    /**
+     * The one-second window that anomaly captures and alerts are reported in. It has its own name, so that they don't
+     * get mixed up with a configured one-second window, and it's never returned by ofSeconds() or parseList().
+     */
+    public static final ReportingWindow ANOMALY_CAPTURE = new ReportingWindow(1, "anomaly-capture");
+
+    private final long lengthSeconds;
+    private final long lengthMillis;
+    private final String name;
+
+    private ReportingWindow(long lengthSeconds) {
+        this(lengthSeconds, nameFor(lengthSeconds));
+    }
+
+    private ReportingWindow(long lengthSeconds, String name) {
+        this.lengthSeconds = lengthSeconds;
+        this.lengthMillis = lengthSeconds * 1000;
+        this.name = name;
+    }
+
+    public static ReportingWindow ofSeconds(long lengthSeconds) {
+        if (lengthSeconds < 1) {
+            throw new IllegalArgumentException("Reporting windows must be at least one second long, got " + lengthSeconds);
+        }
+        if (lengthSeconds == SECOND.lengthSeconds) {
+            return SECOND;
+        } else if (lengthSeconds == MINUTE.lengthSeconds) {
+            return MINUTE;
+        } else if (lengthSeconds == HOUR.lengthSeconds) {
+            return HOUR;
+        }
+        return new ReportingWindow(lengthSeconds);
+    }
+
+    /**
+     * Parses a comma-separated list of window lengths in seconds, e.g. "10,60,3600". Invalid and duplicate entries
+     * are skipped with a warning; if nothing valid is left, the one-minute window is used.
+     */
+    public static List<ReportingWindow> parseList(String value) {
+        List<ReportingWindow> windows = new ArrayList<>();
+        if (value != null) {
+            for (String entry : value.split(",")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                try {
+                    ReportingWindow window = ofSeconds(Long.parseLong(trimmed));
+                    if (!windows.contains(window)) {
+                        windows.add(window);
+                    }
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Ignoring invalid reporting window '{}'.", trimmed);
+                }
+            }
+        }
+        if (windows.isEmpty()) {
+            return Collections.singletonList(MINUTE);
+        }
+        return Collections.unmodifiableList(windows);
+    }
+
+    public long getLengthSeconds() {
+        return lengthSeconds;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether the window is shorter than a minute, which some reporters need to store at a finer resolution.
+     */
+    public boolean isHighResolution() {
+        return lengthSeconds < 60;
+    }
+
+    public boolean inNextWindow(long previousTimeMillis, long currentTimeMillis) {
+        return (previousTimeMillis / lengthMillis) < (currentTimeMillis / lengthMillis);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ReportingWindow other = (ReportingWindow) o;
+        return lengthSeconds == other.lengthSeconds && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lengthSeconds, name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static String nameFor(long lengthSeconds) {
+        if (lengthSeconds == 1) {
+            return "second";
+        } else if (lengthSeconds == 60) {
+            return "minute";
+        } else if (lengthSeconds == 3600) {
+            return "hour";
+        } else if (lengthSeconds % 3600 == 0) {
+            return (lengthSeconds / 3600) + "-hour";
+        } else if (lengthSeconds % 60 == 0) {
+            return (lengthSeconds / 60) + "-minute";
+        }
+        return lengthSeconds + "-second";
+    }
+}
@@ -0,0 +1,175 @@
+package danielgmyers.minecraft.tracker;
+
+/**
+ * One value per second, with the sum, count, min and max of the values over each RollingWindow kept up to date as
+ * seconds are added.
+ *
+ * The last RollingWindow.MAX_SECONDS values are kept in a primitive ring. Sums and counts are updated by adding the new
+ * second and subtracting the ones that fell out of each window; mins and maxes use a monotonic queue per window (of
+ * the seconds that could still become the min or max), so each second is added to and removed from each queue at most
+ * once. That makes record() amortized O(1) with no allocation.
+ *
+ * Seconds that are skipped just don't count toward any window. Not thread-safe; the trackers publish immutable
+ * snapshots of it for other threads.
+ */
+final class RollingSeries {
+
+    private static final RollingWindow[] WINDOWS = RollingWindow.values();
+    private static final int CAPACITY = RollingWindow.MAX_SECONDS;
+    private static final long NO_SECOND = Long.MIN_VALUE;
+
+    private final long[] seconds = new long[CAPACITY];
+    private final long[] values = new long[CAPACITY];
+    private long lastSecond = NO_SECOND;
+
+    private final long[] sums = new long[WINDOWS.length];
+    private final long[] counts = new long[WINDOWS.length];
+    private final SecondQueue[] maxQueues = new SecondQueue[WINDOWS.length];
+    private final SecondQueue[] minQueues = new SecondQueue[WINDOWS.length];
+
+    RollingSeries() {
+        for (int w = 0; w < WINDOWS.length; w++) {
+            maxQueues[w] = new SecondQueue(WINDOWS[w].getSeconds());
+            minQueues[w] = new SecondQueue(WINDOWS[w].getSeconds());
+        }
+        clear();
+    }
+
+    /**
+     * Adds the value for the given second. Seconds must be recorded in increasing order; a second that isn't after
+     * the last one recorded is ignored.
+     */
+    void record(long second, long value) {
+        if (lastSecond != NO_SECOND && second <= lastSecond) {
+            return;
+        }
+        if (lastSecond != NO_SECOND && second - lastSecond >= CAPACITY) {
+            // everything we have has fallen out of every window, so there's nothing to expire one second at a time.
+            clear();
+            lastSecond = NO_SECOND;
+        }
+
+        for (int w = 0; w < WINDOWS.length; w++) {
+            long windowStart = second - WINDOWS[w].getSeconds();
+            if (lastSecond != NO_SECOND) {
+                // subtract every second that has fallen out of this window since the last one we recorded.
+                for (long expired = lastSecond - WINDOWS[w].getSeconds() + 1; expired <= windowStart; expired++) {
+                    int slot = slotOf(expired);
+                    if (seconds[slot] == expired) {
+                        sums[w] -= values[slot];
+                        counts[w]--;
+                    }
+                }
+            }
+            maxQueues[w].expireThrough(windowStart);
+            minQueues[w].expireThrough(windowStart);
+        }
+
+        int slot = slotOf(second);
+        seconds[slot] = second;
+        values[slot] = value;
+        lastSecond = second;
+
+        for (int w = 0; w < WINDOWS.length; w++) {
+            sums[w] += value;
+            counts[w]++;
+
+            SecondQueue maxQueue = maxQueues[w];
+            while (!maxQueue.isEmpty() && values[slotOf(maxQueue.last())] <= value) {
+                maxQueue.removeLast();
+            }
+            maxQueue.add(second);
+
+            SecondQueue minQueue = minQueues[w];
+            while (!minQueue.isEmpty() && values[slotOf(minQueue.last())] >= value) {
+                minQueue.removeLast();
+            }
+            minQueue.add(second);
+        }
+    }
+
+    long getLastSecond() {
+        return lastSecond;
+    }
+
+    long getSum(RollingWindow window) {
+        return sums[window.ordinal()];
+    }
+
+    // The number of seconds in the window that have a value.
+    long getCount(RollingWindow window) {
+        return counts[window.ordinal()];
+    }
+
+    // Returns 0 if the window has no values.
+    long getMax(RollingWindow window) {
+        SecondQueue queue = maxQueues[window.ordinal()];
+        return queue.isEmpty() ? 0 : values[slotOf(queue.first())];
+    }
+
+    // Returns 0 if the window has no values.
+    long getMin(RollingWindow window) {
+        SecondQueue queue = minQueues[window.ordinal()];
+        return queue.isEmpty() ? 0 : values[slotOf(queue.first())];
+    }
+
+    private void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            seconds[i] = NO_SECOND;
+        }
+        for (int w = 0; w < WINDOWS.length; w++) {
+            sums[w] = 0;
+            counts[w] = 0;
+            maxQueues[w].clear();
+            minQueues[w].clear();
+        }
+    }
+
+    private static int slotOf(long second) {
+        return (int) Math.floorMod(second, (long) CAPACITY);
+    }
+
+    // A fixed-capacity deque of increasing second numbers, backed by a ring.
+    private static final class SecondQueue {
+        private final long[] entries;
+        private int head = 0;
+        private int size = 0;
+
+        private SecondQueue(int capacity) {
+            this.entries = new long[capacity];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private long first() {
+            return entries[head];
+        }
+
+        private long last() {
+            return entries[(head + size - 1) % entries.length];
+        }
+
+        private void add(long second) {
+            entries[(head + size) % entries.length] = second;
+            size++;
+        }
+
+        private void removeLast() {
+            size--;
+        }
+
+        private void expireThrough(long second) {
+            while (size > 0 && entries[head] <= second) {
+                head = (head + 1) % entries.length;
+                size--;
+            }
+        }
+
+        private void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
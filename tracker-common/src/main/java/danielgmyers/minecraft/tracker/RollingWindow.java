@@ -0,0 +1,31 @@
+package danielgmyers.minecraft.tracker;
+
+/**
+ * The trailing windows the trackers keep live statistics for. Unlike reporting windows, these aren't aligned to
+ * anything; they always cover the most recent seconds the tracker has completed.
+ */
+public enum RollingWindow {
+    LAST_5_SECONDS(5, "5s"),
+    LAST_MINUTE(60, "1m"),
+    LAST_15_MINUTES(900, "15m");
+
+    // the longest window, which is how many seconds the rolling series have to remember.
+    static final int MAX_SECONDS = 900;
+
+    private final int seconds;
+    private final String name;
+
+    RollingWindow(int seconds, String name) {
+        this.seconds = seconds;
+        this.name = name;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    // A short name for the window, e.g. "1m", suitable for command arguments.
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,157 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Watches one source's completed seconds for regressions, against exponentially weighted baselines (a moving mean and
+ * variance) of the mean tick time and the tick rate. TickStatsTracker feeds it each second as it completes, so it
+ * costs a few arithmetic operations per second and nothing per tick.
+ *
+ * There are three kinds of anomaly: the mean tick time staying well above its baseline, the tick rate staying well
+ * below its baseline, and the mean tick time staying over the tick budget for a while whatever the baseline says.
+ * Each one is reported (and logged) once when it starts, and can't be reported again until it's cleared. After an
+ * anomaly, the tracker reports each second's tick stats on their own for a while, so there's a detailed record of it.
+ *
+ * This class is not thread-safe; only the thread that completes the tracker's seconds touches it.
+ */
+final class TickAnomalyDetector {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // A deviation from the baseline has to last this long to count, so a one-off spike like an autosave doesn't.
+    private static final int SUSTAINED_SECONDS = 3;
+
+    // The smallest standard deviations we'll judge a deviation against, so a very steady source doesn't alert over
+    // a change nobody would notice.
+    private static final double MIN_TICK_MILLIS_STDDEV = 1.0;
+    private static final double MIN_TPS_STDDEV = 1.0;
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double TICK_BUDGET_MILLIS = TickScheduleStats.TICK_BUDGET_NANOS / NANOS_PER_MILLI;
+
+    private final String tickSource;
+    private final StatsReporter reporter;
+
+    private final double alpha;
+    private final long warmUpSeconds;
+    private final double thresholdStddevs;
+    private final long budgetOverrunSeconds;
+    private final long captureSeconds;
+
+    private long secondsSeen = 0;
+    private double tickMillisMean = 0;
+    private double tickMillisVariance = 0;
+    private double tpsMean = 0;
+    private double tpsVariance = 0;
+
+    // how many seconds in a row each kind of anomaly has lasted so far
+    private long slowSeconds = 0;
+    private long lowTpsSeconds = 0;
+    private long overrunSeconds = 0;
+    private double overrunTotalTickMillis = 0;
+
+    private long captureSecondsLeft = 0;
+
+    TickAnomalyDetector(String tickSource, Config config, StatsReporter reporter) {
+        this.tickSource = tickSource;
+        this.reporter = reporter;
+        long baselineSeconds = Math.max(1, config.getAnomalyBaselineSeconds());
+        // the usual smoothing factor for an average over this many samples
+        this.alpha = 2.0 / (baselineSeconds + 1);
+        this.warmUpSeconds = baselineSeconds;
+        this.thresholdStddevs = Math.max(1, config.getAnomalyThresholdStddevs());
+        this.budgetOverrunSeconds = Math.max(0, config.getAnomalyBudgetOverrunSeconds());
+        this.captureSeconds = Math.max(0, config.getAnomalyCaptureSeconds());
+    }
+
+    /**
+     * Checks a completed second against the baselines and then folds it into them. Returns whether the second is
+     * part of a capture, i.e. whether the tracker should report it on its own.
+     */
+    boolean recordSecond(long completedSecond, long tickCount, long totalTickNanos) {
+        double tickMillis = totalTickNanos / NANOS_PER_MILLI / tickCount;
+        double tps = tickCount;
+        if (secondsSeen == 0) {
+            tickMillisMean = tickMillis;
+            tpsMean = tps;
+        }
+        secondsSeen++;
+
+        // A new source's baselines need a while to settle before they mean anything.
+        boolean warmedUp = secondsSeen > warmUpSeconds;
+        boolean slow = warmedUp && tickMillis - tickMillisMean
+                                   > thresholdStddevs * Math.max(MIN_TICK_MILLIS_STDDEV, Math.sqrt(tickMillisVariance));
+        boolean lowTps = warmedUp && tpsMean - tps > thresholdStddevs * Math.max(MIN_TPS_STDDEV, Math.sqrt(tpsVariance));
+        slowSeconds = slow ? slowSeconds + 1 : 0;
+        lowTpsSeconds = lowTps ? lowTpsSeconds + 1 : 0;
+        if (tickMillis > TICK_BUDGET_MILLIS) {
+            overrunSeconds++;
+            overrunTotalTickMillis += tickMillis;
+        } else {
+            overrunSeconds = 0;
+            overrunTotalTickMillis = 0;
+        }
+
+        // Each streak only reaches the threshold once, so that's when we alert.
+        if (slowSeconds == SUSTAINED_SECONDS) {
+            alertSlowTicks(completedSecond, tickMillis);
+        }
+        if (lowTpsSeconds == SUSTAINED_SECONDS) {
+            alertLowTps(completedSecond, tps);
+        }
+        if (budgetOverrunSeconds > 0 && overrunSeconds == budgetOverrunSeconds) {
+            alertBudgetOverrun(completedSecond, overrunTotalTickMillis / overrunSeconds);
+        }
+
+        // A deviation is kept out of the baseline until it's been alerted on, so a brief spike doesn't skew it; after
+        // that, a lasting change gradually becomes the new baseline and the anomaly clears.
+        if (!slow || slowSeconds >= SUSTAINED_SECONDS) {
+            double difference = tickMillis - tickMillisMean;
+            tickMillisMean += alpha * difference;
+            tickMillisVariance = (1 - alpha) * (tickMillisVariance + alpha * difference * difference);
+        }
+        if (!lowTps || lowTpsSeconds >= SUSTAINED_SECONDS) {
+            double difference = tps - tpsMean;
+            tpsMean += alpha * difference;
+            tpsVariance = (1 - alpha) * (tpsVariance + alpha * difference * difference);
+        }
+
+        if (captureSecondsLeft > 0) {
+            captureSecondsLeft--;
+            return true;
+        }
+        return false;
+    }
+
+    private void alertSlowTicks(long completedSecond, double tickMillis) {
+        alert(completedSecond, "anomaly-tick-millis", "anomaly-tick-millis-baseline", StatisticUnit.MILLISECONDS,
+              tickMillis, tickMillisMean);
+    }
+
+    private void alertLowTps(long completedSecond, double tps) {
+        alert(completedSecond, "anomaly-tps", "anomaly-tps-baseline", StatisticUnit.COUNT_PER_SECOND, tps, tpsMean);
+    }
+
+    private void alertBudgetOverrun(long completedSecond, double averageTickMillis) {
+        alert(completedSecond, "anomaly-budget-overrun-millis", "anomaly-budget-overrun-millis-baseline",
+              StatisticUnit.MILLISECONDS, averageTickMillis, tickMillisMean);
+    }
+
+    private void alert(long completedSecond, String name, String baselineName, StatisticUnit unit,
+                       double observed, double baseline) {
+        Instant timestamp = Instant.ofEpochSecond(completedSecond + 1);
+        reporter.reportStatistic(tickSource, ReportingWindow.ANOMALY_CAPTURE, timestamp, name, unit, observed);
+        reporter.reportStatistic(tickSource, ReportingWindow.ANOMALY_CAPTURE, timestamp, baselineName, unit, baseline);
+        LOGGER.warn("Tick anomaly in source '{}': {} was {} against a baseline of {}.", tickSource, name,
+                    String.format(Locale.ROOT, "%.2f", observed), String.format(Locale.ROOT, "%.2f", baseline));
+        // the second that set this off is the first one captured.
+        captureSecondsLeft = captureSeconds;
+    }
+}
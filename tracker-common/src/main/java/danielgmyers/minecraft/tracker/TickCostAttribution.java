@@ -0,0 +1,72 @@
+package danielgmyers.minecraft.tracker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The entry point for the adapters' entity and block entity tick hooks.
+ *
+ * The adapters mark which dimension's TypeTickCostTracker is active around each world tick, and the hooks wrap each
+ * individual entity or block entity tick in startTiming() and record(). The active tracker is kept per thread, so
+ * that dimensions ticking on different threads don't overwrite each other's, and entity and block entity ticks for
+ * the client's world (which go through the same game code in single-player) are ignored because the client thread
+ * never has a tracker.
+ *
+ * When no thread has a tracker active (e.g. because tick cost tracking is disabled), each hook costs a field read and
+ * a compare, without touching the thread-local.
+ */
+public final class TickCostAttribution {
+
+    public static final long NOT_TIMING = Long.MIN_VALUE;
+
+    // Entity types and block entity types from every dimension share one index space.
+    private static final InternedTypeIds TYPE_IDS = new InternedTypeIds();
+
+    private static final ThreadLocal<TypeTickCostTracker> ACTIVE_TRACKER = new ThreadLocal<>();
+    // how many threads have a tracker active right now
+    private static final AtomicInteger ACTIVE_THREADS = new AtomicInteger();
+
+    private TickCostAttribution() {}
+
+    public static InternedTypeIds getTypeIds() {
+        return TYPE_IDS;
+    }
+
+    /**
+     * Makes the given tracker the one the current thread's entity and block entity ticks are attributed to, until
+     * end() is called on the same thread.
+     */
+    public static void begin(TypeTickCostTracker tracker) {
+        if (ACTIVE_TRACKER.get() == null) {
+            ACTIVE_THREADS.incrementAndGet();
+        }
+        ACTIVE_TRACKER.set(tracker);
+    }
+
+    public static void end() {
+        if (ACTIVE_TRACKER.get() != null) {
+            // set rather than remove, so the thread's entry is reused by the next begin() instead of reallocated.
+            ACTIVE_TRACKER.set(null);
+            ACTIVE_THREADS.decrementAndGet();
+        }
+    }
+
+    public static long startTiming() {
+        if (ACTIVE_THREADS.get() == 0 || ACTIVE_TRACKER.get() == null) {
+            return NOT_TIMING;
+        }
+        return System.nanoTime();
+    }
+
+    public static void record(Object type, Function<Object, String> typeIdResolver, long startNanos) {
+        if (startNanos == NOT_TIMING) {
+            return;
+        }
+        long endNanos = System.nanoTime();
+        TypeTickCostTracker tracker = ACTIVE_TRACKER.get();
+        if (tracker == null) {
+            return;
+        }
+        tracker.record(TYPE_IDS.indexOf(type, typeIdResolver), endNanos - startNanos);
+    }
+}
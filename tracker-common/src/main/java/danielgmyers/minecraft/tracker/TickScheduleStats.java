@@ -0,0 +1,116 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+
+import java.time.Instant;
+
+/**
+ * Running totals of when ticks start, relative to each other and to the schedule the server tries to keep (one tick
+ * every 50ms), as opposed to how long each tick takes. TickStatsTracker keeps one of these for the current second and
+ * one per reporting window, and folds each second into the windows the same way it does for tick durations.
+ *
+ * This class is not thread-safe; only the ticking thread touches it.
+ */
+final class TickScheduleStats {
+
+    static final long TICK_BUDGET_NANOS = 50_000_000L;
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private long intervalCount = 0;
+    private long totalIntervalNanos = 0;
+    private long maxIntervalNanos = 0;
+    private final LogLinearHistogram intervalNanosHistogram = new LogLinearHistogram();
+
+    private long jitterCount = 0;
+    private long totalJitterNanos = 0;
+
+    private long totalIdleNanos = 0;
+
+    private long totalLateNanos = 0;
+    private long maxLateNanos = 0;
+    private long catchUpTicks = 0;
+    private long skippedTicks = 0;
+
+    /**
+     * Records one tick. The interval is from the previous tick's start to this one's, idle is the gap between the
+     * previous tick's end and this one's start, jitter is how much the interval differs from the previous interval
+     * (or -1 if there wasn't one), and late is how far behind schedule this tick started. A catch-up tick is one the
+     * server ran straight away because it was still at least a whole tick behind after skipping any ticks.
+     */
+    void recordTick(long intervalNanos, long idleNanos, long jitterNanos, long lateNanos, boolean catchUp,
+                    long skipped) {
+        intervalCount++;
+        totalIntervalNanos += intervalNanos;
+        maxIntervalNanos = Math.max(maxIntervalNanos, intervalNanos);
+        intervalNanosHistogram.record(intervalNanos);
+        if (jitterNanos >= 0) {
+            jitterCount++;
+            totalJitterNanos += jitterNanos;
+        }
+        totalIdleNanos += idleNanos;
+        totalLateNanos += lateNanos;
+        maxLateNanos = Math.max(maxLateNanos, lateNanos);
+        if (catchUp) {
+            catchUpTicks++;
+        }
+        skippedTicks += skipped;
+    }
+
+    void add(TickScheduleStats other) {
+        intervalCount += other.intervalCount;
+        totalIntervalNanos += other.totalIntervalNanos;
+        maxIntervalNanos = Math.max(maxIntervalNanos, other.maxIntervalNanos);
+        intervalNanosHistogram.add(other.intervalNanosHistogram);
+        jitterCount += other.jitterCount;
+        totalJitterNanos += other.totalJitterNanos;
+        totalIdleNanos += other.totalIdleNanos;
+        totalLateNanos += other.totalLateNanos;
+        maxLateNanos = Math.max(maxLateNanos, other.maxLateNanos);
+        catchUpTicks += other.catchUpTicks;
+        skippedTicks += other.skippedTicks;
+    }
+
+    boolean isEmpty() {
+        return intervalCount == 0;
+    }
+
+    void clear() {
+        intervalCount = 0;
+        totalIntervalNanos = 0;
+        maxIntervalNanos = 0;
+        intervalNanosHistogram.clear();
+        jitterCount = 0;
+        totalJitterNanos = 0;
+        totalIdleNanos = 0;
+        totalLateNanos = 0;
+        maxLateNanos = 0;
+        catchUpTicks = 0;
+        skippedTicks = 0;
+    }
+
+    void report(String tickSource, ReportingWindow window, Instant timestamp, StatsReporter reporter) {
+        // the number of ticks over the time they actually took, rather than ticks counted per calendar second.
+        reporter.reportStatistic(tickSource, window, timestamp, "time-weighted-tps", StatisticUnit.COUNT_PER_SECOND,
+                                 intervalCount * 1_000_000_000.0 / Math.max(1, totalIntervalNanos));
+        reporter.reportStatistic(tickSource, window, timestamp, "tick-interval-avg", StatisticUnit.MILLISECONDS,
+                                 totalIntervalNanos / NANOS_PER_MILLI / intervalCount);
+        reporter.reportStatistic(tickSource, window, timestamp, "tick-interval-p50", StatisticUnit.MILLISECONDS,
+                                 intervalNanosHistogram.getValueAtPercentile(50) / NANOS_PER_MILLI);
+        reporter.reportStatistic(tickSource, window, timestamp, "tick-interval-p99", StatisticUnit.MILLISECONDS,
+                                 intervalNanosHistogram.getValueAtPercentile(99) / NANOS_PER_MILLI);
+        reporter.reportStatistic(tickSource, window, timestamp, "tick-interval-max", StatisticUnit.MILLISECONDS,
+                                 maxIntervalNanos / NANOS_PER_MILLI);
+        reporter.reportStatistic(tickSource, window, timestamp, "tick-jitter", StatisticUnit.MILLISECONDS,
+                                 totalJitterNanos / NANOS_PER_MILLI / Math.max(1, jitterCount));
+        reporter.reportStatistic(tickSource, window, timestamp, "idle-headroom", StatisticUnit.PERCENT,
+                                 Math.min(100.0, 100.0 * totalIdleNanos / (intervalCount * TICK_BUDGET_NANOS)));
+        reporter.reportStatistic(tickSource, window, timestamp, "behind-schedule-avg", StatisticUnit.MILLISECONDS,
+                                 totalLateNanos / NANOS_PER_MILLI / intervalCount);
+        reporter.reportStatistic(tickSource, window, timestamp, "behind-schedule-max", StatisticUnit.MILLISECONDS,
+                                 maxLateNanos / NANOS_PER_MILLI);
+        reporter.reportStatistic(tickSource, window, timestamp, "catch-up-ticks", StatisticUnit.COUNT, catchUpTicks);
+        reporter.reportStatistic(tickSource, window, timestamp, "skipped-ticks", StatisticUnit.COUNT, skippedTicks);
+    }
+}
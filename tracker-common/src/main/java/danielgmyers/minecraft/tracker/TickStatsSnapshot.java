@@ -0,0 +1,78 @@
+package danielgmyers.minecraft.tracker;
+
+import java.time.Instant;
+
+/**
+ * An immutable copy of a TickStatsTracker's rolling windows, as of the last second it completed.
+ * Every getter returns NaN for a window with no data.
+ */
+public final class TickStatsSnapshot {
+
+    // the layout of the tracker's PublishedValues: the last second, then these fields for each window.
+    private static final int SECONDS_WITH_DATA = 0;
+    private static final int TICK_COUNT = 1;
+    private static final int MIN_TICK_COUNT = 2;
+    private static final int TOTAL_TICK_NANOS = 3;
+    private static final int MAX_TICK_NANOS = 4;
+    private static final int FIELDS_PER_WINDOW = 5;
+    static final int SIZE = 1 + FIELDS_PER_WINDOW * RollingWindow.values().length;
+
+    private static final RollingWindow[] WINDOWS = RollingWindow.values();
+
+    private final String tickSource;
+    private final long[] values;
+
+    TickStatsSnapshot(String tickSource, long[] values) {
+        this.tickSource = tickSource;
+        this.values = values;
+    }
+
+    static void publish(PublishedValues out, RollingSeries ticks, RollingSeries tickNanos, RollingSeries maxTickNanos) {
+        out.begin();
+        out.set(0, ticks.getLastSecond());
+        for (RollingWindow window : WINDOWS) {
+            int base = 1 + window.ordinal() * FIELDS_PER_WINDOW;
+            out.set(base + SECONDS_WITH_DATA, ticks.getCount(window));
+            out.set(base + TICK_COUNT, ticks.getSum(window));
+            out.set(base + MIN_TICK_COUNT, ticks.getMin(window));
+            out.set(base + TOTAL_TICK_NANOS, tickNanos.getSum(window));
+            out.set(base + MAX_TICK_NANOS, maxTickNanos.getMax(window));
+        }
+        out.end();
+    }
+
+    public String getTickSource() {
+        return tickSource;
+    }
+
+    // The start of the last second included in the windows, or null if there isn't one yet.
+    public Instant getLastSecond() {
+        return values[0] == 0 ? null : Instant.ofEpochSecond(values[0]);
+    }
+
+    public long getSecondsWithData(RollingWindow window) {
+        return get(window, SECONDS_WITH_DATA);
+    }
+
+    public double getTicksPerSecond(RollingWindow window) {
+        long seconds = get(window, SECONDS_WITH_DATA);
+        return seconds == 0 ? Double.NaN : (double) get(window, TICK_COUNT) / seconds;
+    }
+
+    public double getMinTicksPerSecond(RollingWindow window) {
+        return get(window, SECONDS_WITH_DATA) == 0 ? Double.NaN : get(window, MIN_TICK_COUNT);
+    }
+
+    public double getMeanMillisPerTick(RollingWindow window) {
+        long ticks = get(window, TICK_COUNT);
+        return ticks == 0 ? Double.NaN : get(window, TOTAL_TICK_NANOS) / 1_000_000.0 / ticks;
+    }
+
+    public double getMaxMillisPerTick(RollingWindow window) {
+        return get(window, TICK_COUNT) == 0 ? Double.NaN : get(window, MAX_TICK_NANOS) / 1_000_000.0;
+    }
+
+    private long get(RollingWindow window, int field) {
+        return values[1 + window.ordinal() * FIELDS_PER_WINDOW + field];
+    }
+}
@@ -1,127 +1,438 @@
 package danielgmyers.minecraft.tracker;
 
 import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.history.FlightLog;
+import danielgmyers.minecraft.tracker.history.SourceHistory;
 import danielgmyers.minecraft.tracker.reporters.StatsReporter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 public class TickStatsTracker {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
+    public static final long NO_TICK_IN_PROGRESS = Long.MIN_VALUE;
+
+    // Once the server falls this far behind schedule, it gives up on the ticks it missed.
+    private static final long MAX_BEHIND_SCHEDULE_NANOS = 2_000_000_000L;
+
+    private static final AtomicLongFieldUpdater<TickStatsTracker> IN_PROGRESS_TICK_START_NANOS
+            = AtomicLongFieldUpdater.newUpdater(TickStatsTracker.class, "inProgressTickStartNanos");
+
     private final String tickSource;
+
+    // Tick durations are measured with the monotonic time source; wall-clock times are only used to decide
+    // which second or reporting window a tick belongs to, and to timestamp the reported data.
+    private boolean tickStartRecorded = false;
+    private long currentTickStartNanos = 0;
+    private long currentTickStartTimeMillis = 0;
     private long previousTickStartTimeMillis = 0;
     private long previousTickEndTimeMillis = 0;
-    private long currentTickStartTimeMillis = 0;
+    private long previousTickNanos = 0;
 
-    private int tickCountThisSecond = 0;
-    private long totalTickMillisThisSecond = 0;
-    private long minTickMillisThisSecond = Long.MAX_VALUE;
-    private long maxTickMillisThisSecond = 0;
+    // Where ticks fall relative to each other and to the server's schedule; only tracked once the schedule stats
+    // are enabled, and then scheduleThisSecond holds the current second's totals.
+    private TickScheduleStats scheduleThisSecond = null;
+    private boolean scheduleStarted = false;
+    private long scheduledTickStartNanos = 0;
+    private long previousTickStartNanos = 0;
+    private long previousTickEndNanos = 0;
+    private long previousIntervalNanos = -1;
+
+    // These are only here so other threads (like the stall watchdog) can see which tick is in progress;
+    // nothing on the tick thread ever reads them.
+    private volatile long inProgressTickStartNanos = NO_TICK_IN_PROGRESS;
+    private volatile Thread tickThread = null;
 
-    private long secondsMeasuredThisMinute = 0;
-    private long totalTickCountThisMinute = 0;
-    private long minTickCountThisMinute = Long.MAX_VALUE;
-    private long maxTickCountThisMinute = 0;
+    private int tickCountThisSecond = 0;
+    private long totalTickNanosThisSecond = 0;
+    private long minTickNanosThisSecond = Long.MAX_VALUE;
+    private long maxTickNanosThisSecond = 0;
+    private final LogLinearHistogram tickNanosHistogramThisSecond = new LogLinearHistogram();
 
-    private long totalTickMillisThisMinute = 0;
-    private long minTickMillisThisMinute = Long.MAX_VALUE;
-    private long maxTickMillisThisMinute = 0;
+    // Every completed second is folded into each of these, so each window only ever sees per-second data.
+    // They're replaced when the configured windows change.
+    private List<ReportingWindow> reportingWindows;
+    private WindowStats[] windows;
 
     private final Config config;
     private final StatsReporter reporter;
     private final Clock clock;
+    private final TickTimeSource timeSource;
+
+    // The live view of the last few seconds and minutes, republished every second for other threads to read.
+    private final RollingSeries rollingTickCounts = new RollingSeries();
+    private final RollingSeries rollingTickNanos = new RollingSeries();
+    private final RollingSeries rollingMaxTickNanos = new RollingSeries();
+    private final PublishedValues rollingStats = new PublishedValues(TickStatsSnapshot.SIZE);
+
+    // optional; every completed second is also recorded here when it's set.
+    private SourceHistory history = null;
+    // optional; every tick is also recorded here when it's set.
+    private FlightLog flightLog = null;
+
+    // null unless anomaly detection is enabled
+    private final TickAnomalyDetector anomalyDetector;
 
     public TickStatsTracker(String tickSource, Config config, StatsReporter reporter, Clock clock) {
+        this(tickSource, config, reporter, clock, TickTimeSource.SYSTEM);
+    }
+
+    public TickStatsTracker(String tickSource, Config config, StatsReporter reporter, Clock clock, TickTimeSource timeSource) {
         this.tickSource = tickSource;
         this.config = config;
         this.reporter = reporter;
         this.clock = clock;
-        LOGGER.info("Initializing tick stats tracker for source '{}'", tickSource);
+        this.timeSource = timeSource;
+        this.reportingWindows = config.getReportingWindows();
+        this.windows = new WindowStats[reportingWindows.size()];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new WindowStats(reportingWindows.get(i));
+        }
+        this.anomalyDetector = config.isAnomalyDetectionEnabled() ? new TickAnomalyDetector(tickSource, config, reporter) : null;
+        LOGGER.info("Initializing tick stats tracker for source '{}' with reporting windows {}", tickSource, reportingWindows);
     }
 
     public void startTick() {
+        currentTickStartNanos = timeSource.nanoTime();
         currentTickStartTimeMillis = clock.millis();
+        tickStartRecorded = true;
+
+        if (tickThread == null) {
+            tickThread = Thread.currentThread();
+        }
+        // This is the only volatile write we do per tick.
+        inProgressTickStartNanos = currentTickStartNanos;
     }
 
     public void endTick() {
-        Instant now = clock.instant();
-        long currentTickEndTimeMillis = now.toEpochMilli();
+        long currentTickEndNanos = timeSource.nanoTime();
+        long currentTickEndTimeMillis = clock.millis();
 
-        // In this case, startTick was never called, so we'll treat it as a 0-ms tick.
+        // An ordered store is enough here; watchers only need to notice eventually that the tick ended,
+        // and this avoids paying for a full fence a second time every tick.
+        IN_PROGRESS_TICK_START_NANOS.lazySet(this, NO_TICK_IN_PROGRESS);
+
+        // In this case, startTick was never called, so we'll treat it as a 0-ns tick.
         // Theoretically this can happen if the tracker wasn't initialized until partway through a tick,
         // and so endTick() was called first.
-        if (currentTickStartTimeMillis == 0) {
+        if (!tickStartRecorded) {
+            currentTickStartNanos = currentTickEndNanos;
             currentTickStartTimeMillis = currentTickEndTimeMillis;
+            tickStartRecorded = true;
         }
 
+        recordTick(currentTickStartNanos, currentTickStartTimeMillis, currentTickEndNanos, currentTickEndTimeMillis);
+    }
+
+    // Adds a finished tick, first completing the current second if the tick started in a later one. Ticks have to
+    // arrive in the order they started; ConcurrentTickStatsTracker feeds its threads' ticks through here one at a time.
+    void recordTick(long tickStartNanos, long tickStartTimeMillis, long tickEndNanos, long tickEndTimeMillis) {
         // If we don't have a previous end tick time, this is the first tick.
         // We'll pretend the previous tick happened already by copying this tick's data.
-        // It won't get used for anything except to determine if we're in the next second or minute,
+        // It won't get used for anything except to determine if we're in the next second or window,
         // which won't be the case if the values are equal.
         if (previousTickEndTimeMillis == 0) {
-            previousTickStartTimeMillis = currentTickStartTimeMillis;
-            previousTickEndTimeMillis = currentTickEndTimeMillis;
+            previousTickStartTimeMillis = tickStartTimeMillis;
+            previousTickEndTimeMillis = tickEndTimeMillis;
         }
 
         // we use the tick start times to figure out if we're in the next second, so that
         // variable-duration ticks don't confuse us
-        if (inNextSecond(previousTickStartTimeMillis, currentTickStartTimeMillis) && tickCountThisSecond > 0) {
-            secondsMeasuredThisMinute++;
-            totalTickCountThisMinute += tickCountThisSecond;
-            minTickCountThisMinute = Math.min(minTickCountThisMinute, tickCountThisSecond);
-            maxTickCountThisMinute = Math.max(maxTickCountThisMinute, tickCountThisSecond);
-
-            totalTickMillisThisMinute += totalTickMillisThisSecond;
-            minTickMillisThisMinute = Math.min(minTickMillisThisMinute, minTickMillisThisSecond);
-            maxTickMillisThisMinute = Math.max(maxTickMillisThisMinute, maxTickMillisThisSecond);
-
-            tickCountThisSecond = 0;
-            totalTickMillisThisSecond = 0;
-            minTickMillisThisSecond = Long.MAX_VALUE;
-            maxTickMillisThisSecond = 0;
-
-            if (inNextMinute(previousTickStartTimeMillis, currentTickStartTimeMillis)) {
-                // the timestamp we use for this datapoint should be the end time of the previous tick,
-                // since 'now' is in the next minute.
-                reporter.reportTickStats(tickSource, Instant.ofEpochMilli(previousTickEndTimeMillis),
-                                         secondsMeasuredThisMinute,
-                                         totalTickCountThisMinute, minTickCountThisMinute, maxTickCountThisMinute,
-                                         totalTickMillisThisMinute, minTickMillisThisMinute, maxTickMillisThisMinute);
-
-                secondsMeasuredThisMinute = 0;
-
-                totalTickCountThisMinute = 0;
-                minTickCountThisMinute = Long.MAX_VALUE;
-                maxTickCountThisMinute = 0;
-
-                totalTickMillisThisMinute = 0;
-                minTickMillisThisMinute = Long.MAX_VALUE;
-                maxTickMillisThisMinute = 0;
+        if (inNextSecond(previousTickStartTimeMillis, tickStartTimeMillis) && tickCountThisSecond > 0) {
+            completeSecond(previousTickStartTimeMillis / 1000);
+            boolean windowEnded = false;
+            for (WindowStats window : windows) {
+                if (window.window.inNextWindow(previousTickStartTimeMillis, tickStartTimeMillis)) {
+                    // the timestamp we use for this datapoint should be the end time of the previous tick,
+                    // since 'now' is in the next window.
+                    window.report(tickSource, previousTickEndTimeMillis, reporter);
+                    windowEnded = true;
+                }
+            }
+            if (windowEnded && config.getReportingWindows() != reportingWindows) {
+                refreshReportingWindows();
             }
         }
 
         // finally, we add the current tick to the tick duration data.
-        long currentTickDurationMillis = currentTickEndTimeMillis - currentTickStartTimeMillis;
+        // The time source is monotonic, but we clamp anyway in case a test or custom source misbehaves.
+        long currentTickDurationNanos = Math.max(0, tickEndNanos - tickStartNanos);
 
         tickCountThisSecond++;
-        totalTickMillisThisSecond += currentTickDurationMillis;
-        minTickMillisThisSecond = Math.min(minTickMillisThisSecond, currentTickDurationMillis);
-        maxTickMillisThisSecond = Math.max(maxTickMillisThisSecond, currentTickDurationMillis);
+        totalTickNanosThisSecond += currentTickDurationNanos;
+        minTickNanosThisSecond = Math.min(minTickNanosThisSecond, currentTickDurationNanos);
+        maxTickNanosThisSecond = Math.max(maxTickNanosThisSecond, currentTickDurationNanos);
+        tickNanosHistogramThisSecond.record(currentTickDurationNanos);
+        if (scheduleThisSecond != null) {
+            recordSchedule(tickStartNanos, tickEndNanos);
+        }
+        if (flightLog != null) {
+            flightLog.record(tickStartTimeMillis, currentTickDurationNanos);
+        }
+
+        previousTickStartTimeMillis = tickStartTimeMillis;
+        previousTickEndTimeMillis = tickEndTimeMillis;
+        previousTickNanos = currentTickDurationNanos;
+    }
+
+    // Works out where this tick started relative to the previous one and to the server's schedule. As in the vanilla
+    // server loop, each tick is due one tick budget after the previous one was due, the server waits for a tick to be
+    // due before starting it, and it skips the ticks it missed once it's too far behind.
+    private void recordSchedule(long tickStartNanos, long tickEndNanos) {
+        if (!scheduleStarted) {
+            scheduleStarted = true;
+            scheduledTickStartNanos = tickStartNanos;
+        } else {
+            long intervalNanos = Math.max(0, tickStartNanos - previousTickStartNanos);
+            long idleNanos = Math.max(0, tickStartNanos - previousTickEndNanos);
+            long jitterNanos = previousIntervalNanos < 0 ? -1 : Math.abs(intervalNanos - previousIntervalNanos);
+
+            scheduledTickStartNanos += TickScheduleStats.TICK_BUDGET_NANOS;
+            long lateNanos = tickStartNanos - scheduledTickStartNanos;
+            long skipped = 0;
+            if (lateNanos <= 0) {
+                // the server never starts a tick before it's due, so we've just lost track of the schedule a little.
+                scheduledTickStartNanos = tickStartNanos;
+                lateNanos = 0;
+            } else if (lateNanos > MAX_BEHIND_SCHEDULE_NANOS) {
+                skipped = lateNanos / TickScheduleStats.TICK_BUDGET_NANOS;
+                scheduledTickStartNanos += skipped * TickScheduleStats.TICK_BUDGET_NANOS;
+            }
+            boolean catchUp = tickStartNanos - scheduledTickStartNanos >= TickScheduleStats.TICK_BUDGET_NANOS;
+            scheduleThisSecond.recordTick(intervalNanos, idleNanos, jitterNanos, lateNanos, catchUp, skipped);
+            previousIntervalNanos = intervalNanos;
+        }
+        previousTickStartNanos = tickStartNanos;
+        previousTickEndNanos = tickEndNanos;
+    }
+
+    // The configured windows can change when the config is reloaded, so whenever one of our windows ends, we compare
+    // the config's list with ours; that's a single reference comparison unless the config changed. A window that's no
+    // longer configured reports what it has, and a new one starts with the next second.
+    private void refreshReportingWindows() {
+        List<ReportingWindow> configured = config.getReportingWindows();
+        if (configured.equals(reportingWindows)) {
+            reportingWindows = configured;
+            return;
+        }
+        WindowStats[] updated = new WindowStats[configured.size()];
+        for (int i = 0; i < updated.length; i++) {
+            for (WindowStats existing : windows) {
+                if (existing.window.equals(configured.get(i))) {
+                    updated[i] = existing;
+                }
+            }
+            if (updated[i] == null) {
+                updated[i] = new WindowStats(configured.get(i));
+                if (scheduleThisSecond != null) {
+                    updated[i].schedule = new TickScheduleStats();
+                }
+            }
+        }
+        for (WindowStats window : windows) {
+            if (!configured.contains(window.window) && window.secondsMeasured > 0) {
+                window.report(tickSource, previousTickEndTimeMillis, reporter);
+            }
+        }
+        windows = updated;
+        reportingWindows = configured;
+        LOGGER.info("Tick stats tracker for source '{}' now has reporting windows {}", tickSource, configured);
+    }
 
-        previousTickStartTimeMillis = currentTickStartTimeMillis;
-        previousTickEndTimeMillis = currentTickEndTimeMillis;
+    /**
+     * Reports the partial second and windows gathered so far without waiting for them to end. This is for a tracker
+     * that's about to be thrown away (e.g. because its dimension was unloaded), so the tail end of its data isn't
+     * lost. Must be called from the thread that ticks this tracker.
+     */
+    public void flush() {
+        if (tickCountThisSecond > 0) {
+            completeSecond(previousTickStartTimeMillis / 1000);
+        }
+        for (WindowStats window : windows) {
+            if (window.secondsMeasured > 0) {
+                window.report(tickSource, previousTickEndTimeMillis, reporter);
+            }
+        }
+    }
+
+    // Folds the second's ticks into the rolling windows, the history, each reporting window and the anomaly detector,
+    // and starts a new second.
+    private void completeSecond(long completedSecond) {
+        rollingTickCounts.record(completedSecond, tickCountThisSecond);
+        rollingTickNanos.record(completedSecond, totalTickNanosThisSecond);
+        rollingMaxTickNanos.record(completedSecond, maxTickNanosThisSecond);
+        TickStatsSnapshot.publish(rollingStats, rollingTickCounts, rollingTickNanos, rollingMaxTickNanos);
+
+        if (history != null) {
+            history.recordTickSecond(completedSecond, tickCountThisSecond, totalTickNanosThisSecond,
+                                     minTickNanosThisSecond, maxTickNanosThisSecond);
+        }
+        for (WindowStats window : windows) {
+            window.addSecond(tickCountThisSecond, totalTickNanosThisSecond,
+                             minTickNanosThisSecond, maxTickNanosThisSecond, tickNanosHistogramThisSecond);
+            if (scheduleThisSecond != null) {
+                window.schedule.add(scheduleThisSecond);
+            }
+        }
+        if (scheduleThisSecond != null) {
+            scheduleThisSecond.clear();
+        }
+        if (anomalyDetector != null
+                && anomalyDetector.recordSecond(completedSecond, tickCountThisSecond, totalTickNanosThisSecond)) {
+            // while capturing after an anomaly, each second is also reported on its own.
+            reporter.reportTickStats(tickSource, ReportingWindow.ANOMALY_CAPTURE, Instant.ofEpochSecond(completedSecond + 1), 1,
+                                     tickCountThisSecond, tickCountThisSecond, tickCountThisSecond,
+                                     totalTickNanosThisSecond, minTickNanosThisSecond, maxTickNanosThisSecond,
+                                     tickNanosHistogramThisSecond);
+        }
+
+        tickCountThisSecond = 0;
+        totalTickNanosThisSecond = 0;
+        minTickNanosThisSecond = Long.MAX_VALUE;
+        maxTickNanosThisSecond = 0;
+        tickNanosHistogramThisSecond.clear();
+    }
+
+    /**
+     * Sets where this tracker records its per-second history, or null to stop recording it.
+     * Set it before the tracker starts ticking; only the ticking thread may write to the history.
+     */
+    public void setHistory(SourceHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Sets where this tracker records every tick for the flight recorder, or null to stop recording them.
+     * Like the history, only the ticking thread may write to it.
+     */
+    public void setFlightLog(FlightLog flightLog) {
+        this.flightLog = flightLog;
+    }
+
+    /**
+     * Turns on the tick interval and schedule statistics (start-to-start intervals, jitter, idle headroom, how far
+     * behind schedule ticks start, and a time-weighted TPS), which are reported alongside each window's tick stats.
+     * They're only meaningful for the server's own tick, since that's what keeps to the schedule.
+     * Set it before the tracker starts ticking.
+     */
+    public void setScheduleStatsEnabled(boolean enabled) {
+        scheduleThisSecond = enabled ? new TickScheduleStats() : null;
+        for (WindowStats window : windows) {
+            window.schedule = enabled ? new TickScheduleStats() : null;
+        }
+    }
+
+    public String getTickSource() {
+        return tickSource;
+    }
+
+    /**
+     * Returns the rolling windows as of the last completed second. Safe to call from any thread.
+     */
+    public TickStatsSnapshot getSnapshot() {
+        return new TickStatsSnapshot(tickSource, rollingStats.read());
+    }
+
+    /**
+     * Returns the wall-clock time the last completed tick started, or 0 if no tick has completed yet.
+     * Only meaningful on the thread that ticks this tracker, as are the other two getters for the last tick.
+     */
+    public long getLastTickStartTimeMillis() {
+        return previousTickStartTimeMillis;
+    }
+
+    public long getLastTickEndTimeMillis() {
+        return previousTickEndTimeMillis;
+    }
+
+    public long getLastTickNanos() {
+        return previousTickNanos;
+    }
+
+    public TickTimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Returns the time source reading taken when the tick that's currently in progress started,
+     * or NO_TICK_IN_PROGRESS if we're between ticks. Safe to call from any thread.
+     */
+    public long getInProgressTickStartNanos() {
+        return inProgressTickStartNanos;
+    }
+
+    /**
+     * Returns the thread that last started a tick, or null if no tick has started yet. Safe to call from any thread.
+     */
+    public Thread getTickThread() {
+        return tickThread;
     }
 
     private boolean inNextSecond(long previousTimeMillis, long currentTimeMillis) {
         return (previousTimeMillis / 1000) < (currentTimeMillis / 1000);
     }
 
-    private boolean inNextMinute(long previousTimeMillis, long currentTimeMillis) {
-        // this may not line up with wall-clock minutes, but that's ok, we just need consistent 60-second windows.
-        return (previousTimeMillis / 60000) < (currentTimeMillis / 60000);
+    // The running totals for one reporting window, built up one second at a time.
+    private static final class WindowStats {
+        private final ReportingWindow window;
+
+        private long secondsMeasured = 0;
+        private long totalTickCount = 0;
+        private long minTickCount = Long.MAX_VALUE;
+        private long maxTickCount = 0;
+
+        private long totalTickNanos = 0;
+        private long minTickNanos = Long.MAX_VALUE;
+        private long maxTickNanos = 0;
+        private final LogLinearHistogram tickNanosHistogram = new LogLinearHistogram();
+
+        // null unless the schedule stats are enabled.
+        private TickScheduleStats schedule = null;
+
+        private WindowStats(ReportingWindow window) {
+            this.window = window;
+        }
+
+        private void addSecond(long tickCount, long secondTotalTickNanos, long secondMinTickNanos,
+                               long secondMaxTickNanos, LogLinearHistogram secondTickNanosHistogram) {
+            secondsMeasured++;
+            totalTickCount += tickCount;
+            minTickCount = Math.min(minTickCount, tickCount);
+            maxTickCount = Math.max(maxTickCount, tickCount);
+
+            totalTickNanos += secondTotalTickNanos;
+            minTickNanos = Math.min(minTickNanos, secondMinTickNanos);
+            maxTickNanos = Math.max(maxTickNanos, secondMaxTickNanos);
+            tickNanosHistogram.add(secondTickNanosHistogram);
+        }
+
+        private void report(String tickSource, long timestampMillis, StatsReporter reporter) {
+            Instant timestamp = Instant.ofEpochMilli(timestampMillis);
+            reporter.reportTickStats(tickSource, window, timestamp, secondsMeasured,
+                                     totalTickCount, minTickCount, maxTickCount,
+                                     totalTickNanos, minTickNanos, maxTickNanos,
+                                     tickNanosHistogram);
+            if (schedule != null && !schedule.isEmpty()) {
+                schedule.report(tickSource, window, timestamp, reporter);
+                schedule.clear();
+            }
+
+            secondsMeasured = 0;
+
+            totalTickCount = 0;
+            minTickCount = Long.MAX_VALUE;
+            maxTickCount = 0;
+
+            totalTickNanos = 0;
+            minTickNanos = Long.MAX_VALUE;
+            maxTickNanos = 0;
+            tickNanosHistogram.clear();
+        }
     }
 }
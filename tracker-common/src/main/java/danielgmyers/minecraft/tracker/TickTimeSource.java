@@ -0,0 +1,17 @@
+package danielgmyers.minecraft.tracker;
+
+/**
+ * A monotonic time source used to measure how long ticks take.
+ *
+ * Wall-clock time can jump around (e.g. when NTP steps the clock), which makes it unsuitable for measuring durations,
+ * so trackers only use their wall {@link java.time.Clock} to decide which second or minute a tick belongs to.
+ */
+public interface TickTimeSource {
+
+    TickTimeSource SYSTEM = System::nanoTime;
+
+    /**
+     * Returns the current value of the time source in nanoseconds. Only differences between values are meaningful.
+     */
+    long nanoTime();
+}
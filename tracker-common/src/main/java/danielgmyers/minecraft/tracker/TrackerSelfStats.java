@@ -0,0 +1,199 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how much time the tracker itself takes on the threads that tick the game, and reports it once a minute
+ * under the tracker-self source, along with the reporters' health.
+ *
+ * The adapters time their calls into the trackers as a few broad activities, chaining each activity's end into the
+ * next one's start, so that timing costs about one read of the tick time source per activity. The totals are
+ * LongAdders, so dimensions that tick on several threads don't contend on them. When self stats are disabled, start()
+ * and lap() return straight away and reporter calls aren't timed.
+ */
+public final class TrackerSelfStats {
+
+    public enum Activity {
+        // startTick() and endTick() for the server and each dimension
+        TICK_STATS("tick-stats"),
+        PLAYER_COUNTS("player-counts"),
+        // everything else the adapters do each tick: looking up each dimension's trackers, tick costs by type, chunk
+        // stats, the census, JVM stats, and the world tracker cache's upkeep
+        OTHER_TRACKERS("other-trackers"),
+        // calls into the reporter from any thread; those made during one of the activities above count towards it too
+        REPORTER_CALLS("reporter-calls");
+
+        private final String millisStatistic;
+
+        Activity(String name) {
+            this.millisStatistic = "overhead-" + name + "-millis";
+        }
+    }
+
+    private static final Activity[] ACTIVITIES = Activity.values();
+
+    private final boolean enabled;
+    private final StatsReporter reporter;
+    private final Clock clock;
+    private final TickTimeSource timeSource;
+
+    private final LongAdder[] activityNanos = new LongAdder[ACTIVITIES.length];
+    private final LongAdder reporterCalls = new LongAdder();
+
+    // only used by the thread that calls update()
+    private long lastUpdateMillis = 0;
+
+    public TrackerSelfStats(Config config, StatsReporter reporter, Clock clock) {
+        this(config, reporter, clock, TickTimeSource.SYSTEM);
+    }
+
+    public TrackerSelfStats(Config config, StatsReporter reporter, Clock clock, TickTimeSource timeSource) {
+        this.enabled = config.isTrackerSelfStatsEnabled();
+        this.reporter = reporter;
+        this.clock = clock;
+        this.timeSource = timeSource;
+        for (int i = 0; i < activityNanos.length; i++) {
+            activityNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the time the first activity starts at, to pass to lap(). Safe to call from any thread.
+     */
+    public long start() {
+        return enabled ? timeSource.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since startNanos to the given activity, and returns the current time for the next activity to
+     * start from. Safe to call from any thread.
+     */
+    public long lap(Activity activity, long startNanos) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = timeSource.nanoTime();
+        activityNanos[activity.ordinal()].add(now - startNanos);
+        return now;
+    }
+
+    /**
+     * Returns a reporter that times each call into the given one, or the given one itself if self stats are disabled.
+     * The trackers should be given this one.
+     */
+    public StatsReporter timeCalls(StatsReporter trackerReporter) {
+        return enabled ? new TimedStatsReporter(trackerReporter) : trackerReporter;
+    }
+
+    /**
+     * Should be called once at the end of every server tick. Once a minute, this reports the time spent in each
+     * activity during the minute, what share of the minute that adds up to, and the reporters' health.
+     */
+    public void update() {
+        if (!enabled) {
+            return;
+        }
+        long currentTimeMillis = clock.millis();
+        if (lastUpdateMillis > 0 && !ReportingWindow.MINUTE.inNextWindow(lastUpdateMillis, currentTimeMillis)) {
+            return;
+        }
+        long previousUpdateMillis = lastUpdateMillis;
+        lastUpdateMillis = currentTimeMillis;
+        if (previousUpdateMillis == 0) {
+            // the first minute is partial, so we start from a clean slate.
+            for (LongAdder nanos : activityNanos) {
+                nanos.reset();
+            }
+            reporterCalls.reset();
+            return;
+        }
+
+        Instant timestamp = Instant.ofEpochMilli(currentTimeMillis);
+        String source = WorldTrackerCache.TRACKER_SELF_SOURCE;
+        long tickThreadNanos = 0;
+        for (Activity activity : ACTIVITIES) {
+            long nanos = activityNanos[activity.ordinal()].sumThenReset();
+            if (activity != Activity.REPORTER_CALLS) {
+                tickThreadNanos += nanos;
+            }
+            reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, activity.millisStatistic,
+                                     StatisticUnit.MILLISECONDS, nanos / 1_000_000.0);
+        }
+        reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, "reporter-calls", StatisticUnit.COUNT,
+                                 reporterCalls.sumThenReset());
+        // As a share of the wall-clock time since the last report; 100% would be a whole thread's worth of time.
+        double elapsedNanos = Math.max(1, currentTimeMillis - previousUpdateMillis) * 1_000_000.0;
+        reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, "overhead-percent", StatisticUnit.PERCENT,
+                                 tickThreadNanos * 100.0 / elapsedNanos);
+
+        reporter.reportHealth(reporter, source, ReportingWindow.MINUTE, timestamp);
+    }
+
+    // Times every call into the trackers' reporter.
+    private final class TimedStatsReporter implements StatsReporter {
+        private final StatsReporter delegate;
+
+        private TimedStatsReporter(StatsReporter delegate) {
+            this.delegate = delegate;
+        }
+
+        private void finished(long startNanos) {
+            lap(Activity.REPORTER_CALLS, startNanos);
+            reporterCalls.increment();
+        }
+
+        @Override
+        public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                    long totalTickCount, long minTickCount, long maxTickCount,
+                                    long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                    LogLinearHistogram tickNanosHistogram) {
+            long startNanos = start();
+            delegate.reportTickStats(tickSource, window, timestamp, secondsWithData,
+                                     totalTickCount, minTickCount, maxTickCount,
+                                     totalTickNanos, minTickNanos, maxTickNanos,
+                                     tickNanosHistogram);
+            finished(startNanos);
+        }
+
+        @Override
+        public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                      long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+            long startNanos = start();
+            delegate.reportPlayerCount(tickSource, window, timestamp, secondsWithData,
+                                       playerCountSum, minPlayerCount, maxPlayerCount);
+            finished(startNanos);
+        }
+
+        @Override
+        public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                          String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+            long startNanos = start();
+            delegate.reportTickCostsByType(tickSource, window, timestamp, typeCount, typeIds, tickCounts, totalTickNanos);
+            finished(startNanos);
+        }
+
+        @Override
+        public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                    StatisticUnit unit, double value) {
+            long startNanos = start();
+            delegate.reportStatistic(tickSource, window, timestamp, name, unit, value);
+            finished(startNanos);
+        }
+
+        @Override
+        public void reportHealth(StatsReporter destination, String source, ReportingWindow window, Instant timestamp) {
+            delegate.reportHealth(destination, source, window, timestamp);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Accumulates how much time each entity type and block entity type spent ticking in one dimension, and once per
+ * minute reports the most expensive types.
+ *
+ * Accumulators are primitive arrays indexed by the type's interned index, so recording a tick is a couple of array
+ * updates. We also keep a list of the types that were touched this minute, so that reporting and resetting only
+ * walk the types that actually ticked.
+ */
+public class TypeTickCostTracker {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String tickSource;
+    private final InternedTypeIds typeIds;
+    private final int topN;
+
+    private final StatsReporter reporter;
+    private final Clock clock;
+
+    private long[] tickCountsThisMinute = new long[INITIAL_CAPACITY];
+    private long[] totalTickNanosThisMinute = new long[INITIAL_CAPACITY];
+    private int[] typesTouchedThisMinute = new int[INITIAL_CAPACITY];
+    private int typesTouchedCount = 0;
+
+    private long lastUpdateTimeMillis = 0;
+
+    // reused for every report
+    private final String[] reportTypeIds;
+    private final long[] reportTickCounts;
+    private final long[] reportTotalTickNanos;
+
+    public TypeTickCostTracker(String tickSource, InternedTypeIds typeIds, Config config, StatsReporter reporter, Clock clock) {
+        this.tickSource = tickSource;
+        this.typeIds = typeIds;
+        this.topN = (int) Math.max(1, Math.min(1000, config.getTickCostTopN()));
+        this.reporter = reporter;
+        this.clock = clock;
+        this.reportTypeIds = new String[topN];
+        this.reportTickCounts = new long[topN];
+        this.reportTotalTickNanos = new long[topN];
+        LOGGER.info("Initializing type tick cost tracker for source '{}'", tickSource);
+    }
+
+    public void record(int typeIndex, long tickNanos) {
+        if (typeIndex >= tickCountsThisMinute.length) {
+            grow(typeIndex + 1);
+        }
+        if (tickCountsThisMinute[typeIndex] == 0) {
+            typesTouchedThisMinute[typesTouchedCount++] = typeIndex;
+        }
+        tickCountsThisMinute[typeIndex]++;
+        totalTickNanosThisMinute[typeIndex] += Math.max(0, tickNanos);
+    }
+
+    /**
+     * Should be called once at the end of every tick of the dimension; reports the previous minute once it's over.
+     */
+    public void update() {
+        long currentTimeMillis = clock.millis();
+        if (lastUpdateTimeMillis > 0 && ReportingWindow.MINUTE.inNextWindow(lastUpdateTimeMillis, currentTimeMillis)
+                && typesTouchedCount > 0) {
+            report(Instant.ofEpochMilli(lastUpdateTimeMillis));
+        }
+        lastUpdateTimeMillis = currentTimeMillis;
+    }
+
+    /**
+     * Reports the partial minute gathered so far, for a tracker that's about to be thrown away. Must be called from
+     * the thread that ticks the dimension.
+     */
+    public void flush() {
+        if (lastUpdateTimeMillis > 0 && typesTouchedCount > 0) {
+            report(Instant.ofEpochMilli(lastUpdateTimeMillis));
+        }
+    }
+
+    private void report(Instant timestamp) {
+        // Partial selection sort: we only ever need the top few types, and topN is small.
+        int reportCount = Math.min(topN, typesTouchedCount);
+        for (int i = 0; i < reportCount; i++) {
+            int best = i;
+            for (int j = i + 1; j < typesTouchedCount; j++) {
+                if (totalTickNanosThisMinute[typesTouchedThisMinute[j]] > totalTickNanosThisMinute[typesTouchedThisMinute[best]]) {
+                    best = j;
+                }
+            }
+            int swap = typesTouchedThisMinute[i];
+            typesTouchedThisMinute[i] = typesTouchedThisMinute[best];
+            typesTouchedThisMinute[best] = swap;
+
+            int typeIndex = typesTouchedThisMinute[i];
+            reportTypeIds[i] = typeIds.typeIdAt(typeIndex);
+            reportTickCounts[i] = tickCountsThisMinute[typeIndex];
+            reportTotalTickNanos[i] = totalTickNanosThisMinute[typeIndex];
+        }
+
+        reporter.reportTickCostsByType(tickSource, ReportingWindow.MINUTE, timestamp, reportCount,
+                                       reportTypeIds, reportTickCounts, reportTotalTickNanos);
+
+        for (int i = 0; i < typesTouchedCount; i++) {
+            int typeIndex = typesTouchedThisMinute[i];
+            tickCountsThisMinute[typeIndex] = 0;
+            totalTickNanosThisMinute[typeIndex] = 0;
+        }
+        typesTouchedCount = 0;
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, tickCountsThisMinute.length * 2);
+        tickCountsThisMinute = Arrays.copyOf(tickCountsThisMinute, newCapacity);
+        totalTickNanosThisMinute = Arrays.copyOf(totalTickNanosThisMinute, newCapacity);
+        typesTouchedThisMinute = Arrays.copyOf(typesTouchedThisMinute, newCapacity);
+    }
+}
@@ -0,0 +1,398 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts what one tick source has loaded (entities by category, ticking block entities, loaded chunks, and pending
+ * scheduled block and fluid ticks), and at the end of each configured reporting window reports the counts from the
+ * last complete pass along with what the census itself cost.
+ *
+ * Walking everything in one go could take long enough to show up in the tick times on a busy server, so each pass is
+ * spread across ticks: each tick looks at no more than a fixed number of entities and chunks' scheduled tick lists,
+ * resuming the walk over the game's own collections where the last tick left off rather than copying them. A new pass
+ * starts at the first tick of each minute, unless the previous one is still going, so each dimension is counted about
+ * once a minute. Since the collections change while we walk them, the counts are approximate: entities that are
+ * removed before we get to them aren't counted, and ones that are added during the pass may or may not be. Not all of
+ * the game's collections cope with that: the JDK's fail fast with a ConcurrentModificationException, and fastutil's
+ * can throw just about anything once they've been rehashed under us. Whatever the iterator throws, the pass is given
+ * up and the last one keeps being reported.
+ *
+ * Several dimensions can be coalesced into one tick source, so each world gets a pass of its own, and the reported
+ * counts are the sum of each world's last complete pass. A world that doesn't tick for a whole minute (e.g. because
+ * it's been unloaded) is forgotten.
+ *
+ * This class is not thread-safe; only the thread that ticks the dimensions touches it.
+ */
+public class WorldCensus {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int INITIAL_CATEGORY_CAPACITY = 8;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    // How often a new pass starts, and how long a world can go without ticking before it's forgotten.
+    private static final ReportingWindow PASS_WINDOW = ReportingWindow.MINUTE;
+
+    private static final int PHASE_ENTITIES = 0;
+    private static final int PHASE_SCHEDULED_BLOCK_TICKS = 1;
+    private static final int PHASE_SCHEDULED_FLUID_TICKS = 2;
+
+    /**
+     * What the census needs to know about the game's worlds; each adapter has one implementation. Each method is only
+     * called from the thread that ticks the world.
+     *
+     * The census walks the iterables a little at a time across ticks, while the world changes in between. An iterator
+     * that goes wrong because of that may throw any RuntimeException; the census gives up on the pass when it does.
+     */
+    public interface Source<W> {
+        // Every entity in the world.
+        Iterable<?> entities(W world);
+
+        // The entity's category (e.g. "monster"), or null if it's been removed from the world.
+        String categoryOf(Object entity);
+
+        int tickingBlockEntities(W world);
+
+        long loadedChunks(W world);
+
+        // The lists of pending scheduled block ticks, e.g. one per loaded chunk.
+        Iterable<?> scheduledBlockTickLists(W world);
+
+        // The lists of pending scheduled fluid ticks, e.g. one per loaded chunk.
+        Iterable<?> scheduledFluidTickLists(W world);
+
+        // How many ticks are pending in one of the lists above.
+        long scheduledTickCount(Object tickList);
+    }
+
+    private final String tickSource;
+    private final Config config;
+    private final int budgetPerTick;
+    private final boolean reportLoadedChunks;
+    private final StatsReporter reporter;
+    private final Clock clock;
+    private final TickTimeSource timeSource;
+
+    private List<ReportingWindow> reportingWindows;
+    private WindowCost[] windows;
+
+    // Keyed by the world itself, so that looking a world up doesn't allocate.
+    private final Map<Object, WorldPass> passes = new IdentityHashMap<>();
+
+    // Categories only ever get added, so that their indexes stay the same for the life of the census.
+    private String[] categories = new String[INITIAL_CATEGORY_CAPACITY];
+    private String[] categoryStatNames = new String[INITIAL_CATEGORY_CAPACITY];
+    private int categoryCount = 0;
+
+    // scratch space for adding up each world's category counts when reporting.
+    private long[] categoryTotals = new long[INITIAL_CATEGORY_CAPACITY];
+
+    private long lastUpdateTimeMillis = 0;
+
+    public WorldCensus(String tickSource, Config config, StatsReporter reporter, Clock clock) {
+        this(tickSource, config, reporter, clock, TickTimeSource.SYSTEM);
+    }
+
+    public WorldCensus(String tickSource, Config config, StatsReporter reporter, Clock clock, TickTimeSource timeSource) {
+        this.tickSource = tickSource;
+        this.config = config;
+        this.budgetPerTick = (int) Math.max(1, Math.min(Integer.MAX_VALUE, config.getWorldCensusBudgetPerTick()));
+        // chunk stats already report the loaded chunks for the dimension.
+        this.reportLoadedChunks = !config.isChunkStatsEnabled();
+        this.reporter = reporter;
+        this.clock = clock;
+        this.timeSource = timeSource;
+        this.reportingWindows = config.getReportingWindows();
+        this.windows = new WindowCost[reportingWindows.size()];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new WindowCost(reportingWindows.get(i));
+        }
+        LOGGER.info("Initializing world census for source '{}' with reporting windows {}", tickSource, reportingWindows);
+    }
+
+    /**
+     * Should be called once at the end of every tick of each world in the tick source; does this tick's share of the
+     * world's census, and reports the windows that have ended. The source should be a single shared instance, so that
+     * calling this only allocates when a pass starts.
+     */
+    public <W> void update(W world, Source<? super W> source) {
+        long currentTimeMillis = clock.millis();
+        if (lastUpdateTimeMillis > 0) {
+            if (PASS_WINDOW.inNextWindow(lastUpdateTimeMillis, currentTimeMillis)) {
+                forgetIdleWorlds();
+            }
+            boolean windowEnded = false;
+            for (WindowCost window : windows) {
+                if (window.window.inNextWindow(lastUpdateTimeMillis, currentTimeMillis)) {
+                    report(window, Instant.ofEpochMilli(lastUpdateTimeMillis));
+                    windowEnded = true;
+                }
+            }
+            if (windowEnded && config.getReportingWindows() != reportingWindows) {
+                refreshReportingWindows();
+            }
+        }
+        lastUpdateTimeMillis = currentTimeMillis;
+
+        long startNanos = timeSource.nanoTime();
+        WorldPass pass = passes.get(world);
+        if (pass == null) {
+            pass = new WorldPass();
+            passes.put(world, pass);
+        }
+        pass.tickedThisMinute = true;
+        if (pass.inProgress) {
+            continuePass(pass, world, source);
+        } else if (pass.startMillis == 0 || PASS_WINDOW.inNextWindow(pass.startMillis, currentTimeMillis)) {
+            startPass(pass, world, source, currentTimeMillis);
+        }
+        long costNanos = Math.max(0, timeSource.nanoTime() - startNanos);
+        for (WindowCost window : windows) {
+            window.add(costNanos);
+        }
+    }
+
+    /**
+     * Reports the partial windows gathered so far, for a census that's about to be thrown away.
+     */
+    public void flush() {
+        if (lastUpdateTimeMillis > 0) {
+            for (WindowCost window : windows) {
+                report(window, Instant.ofEpochMilli(lastUpdateTimeMillis));
+            }
+        }
+        // don't hold on to the worlds, or our place in their collections.
+        passes.clear();
+    }
+
+    private <W> void startPass(WorldPass pass, W world, Source<? super W> source, long currentTimeMillis) {
+        Arrays.fill(pass.categoryCounts, 0);
+        pass.tickingBlockEntities = source.tickingBlockEntities(world);
+        pass.loadedChunks = source.loadedChunks(world);
+        pass.scheduledBlockTicks = 0;
+        pass.scheduledFluidTicks = 0;
+        pass.phase = PHASE_ENTITIES;
+        pass.walk = source.entities(world).iterator();
+        pass.inProgress = true;
+        pass.startMillis = currentTimeMillis;
+    }
+
+    private <W> void continuePass(WorldPass pass, W world, Source<? super W> source) {
+        int remaining = budgetPerTick;
+        try {
+            while (remaining > 0) {
+                if (!pass.walk.hasNext()) {
+                    if (pass.phase == PHASE_SCHEDULED_FLUID_TICKS) {
+                        completePass(pass);
+                        return;
+                    }
+                    pass.phase++;
+                    pass.walk = pass.phase == PHASE_SCHEDULED_BLOCK_TICKS
+                            ? source.scheduledBlockTickLists(world).iterator()
+                            : source.scheduledFluidTickLists(world).iterator();
+                    continue;
+                }
+                Object next = pass.walk.next();
+                remaining--;
+                if (pass.phase == PHASE_ENTITIES) {
+                    String category = source.categoryOf(next);
+                    if (category != null) {
+                        pass.count(indexOf(category));
+                    }
+                } else if (pass.phase == PHASE_SCHEDULED_BLOCK_TICKS) {
+                    pass.scheduledBlockTicks += source.scheduledTickCount(next);
+                } else {
+                    pass.scheduledFluidTicks += source.scheduledTickCount(next);
+                }
+            }
+        } catch (RuntimeException e) {
+            // e.g. a ConcurrentModificationException, or an ArrayIndexOutOfBoundsException from a fastutil map that
+            // shrank since the last tick.
+            LOGGER.debug("World changed too much during a census pass for source '{}', skipping it.", tickSource, e);
+            pass.walk = null;
+            pass.inProgress = false;
+        }
+    }
+
+    private void completePass(WorldPass pass) {
+        pass.walk = null;
+        if (pass.resultCategoryCounts.length < pass.categoryCounts.length) {
+            pass.resultCategoryCounts = new long[pass.categoryCounts.length];
+        }
+        System.arraycopy(pass.categoryCounts, 0, pass.resultCategoryCounts, 0, pass.categoryCounts.length);
+        pass.resultTickingBlockEntities = pass.tickingBlockEntities;
+        pass.resultLoadedChunks = pass.loadedChunks;
+        pass.resultScheduledBlockTicks = pass.scheduledBlockTicks;
+        pass.resultScheduledFluidTicks = pass.scheduledFluidTicks;
+        pass.hasResult = true;
+        pass.inProgress = false;
+    }
+
+    // Called once per minute, before the other windows are reported, so that unloaded worlds stop adding to them.
+    private void forgetIdleWorlds() {
+        Iterator<WorldPass> it = passes.values().iterator();
+        while (it.hasNext()) {
+            WorldPass pass = it.next();
+            if (!pass.tickedThisMinute) {
+                it.remove();
+            } else {
+                pass.tickedThisMinute = false;
+            }
+        }
+    }
+
+    private int indexOf(String category) {
+        // There are only a handful of categories, so a linear scan is fine.
+        for (int i = 0; i < categoryCount; i++) {
+            if (categories[i].equals(category)) {
+                return i;
+            }
+        }
+        if (categoryCount == categories.length) {
+            int newCapacity = categories.length * 2;
+            categories = Arrays.copyOf(categories, newCapacity);
+            categoryStatNames = Arrays.copyOf(categoryStatNames, newCapacity);
+            categoryTotals = Arrays.copyOf(categoryTotals, newCapacity);
+        }
+        categories[categoryCount] = category;
+        categoryStatNames[categoryCount] = "entities-" + category;
+        return categoryCount++;
+    }
+
+    // Picks up a change to the configured windows when one of ours ends, like the player count tracker does.
+    private void refreshReportingWindows() {
+        List<ReportingWindow> configured = config.getReportingWindows();
+        WindowCost[] updated = new WindowCost[configured.size()];
+        for (int i = 0; i < updated.length; i++) {
+            for (WindowCost existing : windows) {
+                if (existing.window.equals(configured.get(i))) {
+                    updated[i] = existing;
+                }
+            }
+            if (updated[i] == null) {
+                updated[i] = new WindowCost(configured.get(i));
+            }
+        }
+        for (WindowCost window : windows) {
+            if (!configured.contains(window.window) && window.updates > 0) {
+                report(window, Instant.ofEpochMilli(lastUpdateTimeMillis));
+            }
+        }
+        windows = updated;
+        reportingWindows = configured;
+    }
+
+    private void report(WindowCost window, Instant timestamp) {
+        boolean hasResult = false;
+        long tickingBlockEntities = 0;
+        long loadedChunks = 0;
+        long scheduledBlockTicks = 0;
+        long scheduledFluidTicks = 0;
+        Arrays.fill(categoryTotals, 0);
+        for (WorldPass pass : passes.values()) {
+            if (!pass.hasResult) {
+                continue;
+            }
+            hasResult = true;
+            for (int i = 0; i < categoryCount && i < pass.resultCategoryCounts.length; i++) {
+                categoryTotals[i] += pass.resultCategoryCounts[i];
+            }
+            tickingBlockEntities += pass.resultTickingBlockEntities;
+            loadedChunks += pass.resultLoadedChunks;
+            scheduledBlockTicks += pass.resultScheduledBlockTicks;
+            scheduledFluidTicks += pass.resultScheduledFluidTicks;
+        }
+        ReportingWindow w = window.window;
+        if (hasResult) {
+            long totalEntities = 0;
+            for (int i = 0; i < categoryCount; i++) {
+                totalEntities += categoryTotals[i];
+            }
+            reporter.reportStatistic(tickSource, w, timestamp, "entities", StatisticUnit.COUNT, totalEntities);
+            for (int i = 0; i < categoryCount; i++) {
+                reporter.reportStatistic(tickSource, w, timestamp, categoryStatNames[i],
+                                         StatisticUnit.COUNT, categoryTotals[i]);
+            }
+            reporter.reportStatistic(tickSource, w, timestamp, "ticking-block-entities",
+                                     StatisticUnit.COUNT, tickingBlockEntities);
+            if (reportLoadedChunks) {
+                reporter.reportStatistic(tickSource, w, timestamp, "loaded-chunks", StatisticUnit.COUNT, loadedChunks);
+            }
+            reporter.reportStatistic(tickSource, w, timestamp, "scheduled-block-ticks",
+                                     StatisticUnit.COUNT, scheduledBlockTicks);
+            reporter.reportStatistic(tickSource, w, timestamp, "scheduled-fluid-ticks",
+                                     StatisticUnit.COUNT, scheduledFluidTicks);
+        }
+        if (window.updates > 0) {
+            reporter.reportStatistic(tickSource, w, timestamp, "census-time-avg", StatisticUnit.MILLISECONDS,
+                                     window.totalCostNanos / NANOS_PER_MILLI / window.updates);
+            reporter.reportStatistic(tickSource, w, timestamp, "census-time-max", StatisticUnit.MILLISECONDS,
+                                     window.maxCostNanos / NANOS_PER_MILLI);
+        }
+        window.updates = 0;
+        window.totalCostNanos = 0;
+        window.maxCostNanos = 0;
+    }
+
+    // One world's passes.
+    private static final class WorldPass {
+        private boolean tickedThisMinute = false;
+
+        // The pass in progress: walk is where we are in the collection the current phase is counting.
+        private boolean inProgress = false;
+        private long startMillis = 0;
+        private int phase = PHASE_ENTITIES;
+        private Iterator<?> walk = null;
+        private long[] categoryCounts = new long[INITIAL_CATEGORY_CAPACITY];
+        private long tickingBlockEntities = 0;
+        private long loadedChunks = 0;
+        private long scheduledBlockTicks = 0;
+        private long scheduledFluidTicks = 0;
+
+        // The last complete pass.
+        private boolean hasResult = false;
+        private long[] resultCategoryCounts = new long[INITIAL_CATEGORY_CAPACITY];
+        private long resultTickingBlockEntities = 0;
+        private long resultLoadedChunks = 0;
+        private long resultScheduledBlockTicks = 0;
+        private long resultScheduledFluidTicks = 0;
+
+        private void count(int categoryIndex) {
+            if (categoryIndex >= categoryCounts.length) {
+                categoryCounts = Arrays.copyOf(categoryCounts, Math.max(categoryCounts.length * 2, categoryIndex + 1));
+            }
+            categoryCounts[categoryIndex]++;
+        }
+    }
+
+    // What the census cost during one reporting window.
+    private static final class WindowCost {
+        private final ReportingWindow window;
+
+        private long updates = 0;
+        private long totalCostNanos = 0;
+        private long maxCostNanos = 0;
+
+        private WindowCost(ReportingWindow window) {
+            this.window = window;
+        }
+
+        private void add(long costNanos) {
+            updates++;
+            totalCostNanos += costNanos;
+            maxCostNanos = Math.max(maxCostNanos, costNanos);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.config.DimensionCoalescingRules;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Finds the trackers for a world, keyed by an object the game keeps for the world's whole lifetime (the world itself,
+ * or its registry key). Those don't override equals() or hashCode(), so the per-tick lookup is a single identity hash
+ * lookup with no string work; the dimension name is only built and run through the coalescing rules the first time
+ * we see each key.
+ *
+ * Dimensions that coalesce to the same name share one set of trackers.
+ *
+ * Mods that create a dimension per run would otherwise make this grow forever, so trackers are discarded when their
+ * world is unloaded (once no other loaded world shares them) or once they haven't ticked for a while. Discarded
+ * trackers report what they'd gathered towards their current windows first, so nothing is lost.
+ */
+public final class WorldTrackerCache<K> {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // the source the cache's own statistics are reported under
+    public static final String TRACKER_SELF_SOURCE = "tracker-self";
+
+    private final DimensionCoalescingRules rules;
+    private final long idleExpiryMillis;
+    private final StatsReporter reporter;
+    private final Clock clock;
+    private final Function<String, WorldTrackers> factory;
+
+    private final ConcurrentMap<K, WorldTrackers> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, WorldTrackers> byTickSource = new ConcurrentHashMap<>();
+
+    // only used by the thread that calls update() and unload()
+    private long lastUpdateMillis = 0;
+    private long discardedSinceLastReport = 0;
+
+    public WorldTrackerCache(Config config, StatsReporter reporter, Clock clock, Function<String, WorldTrackers> factory) {
+        this.rules = config.getDimensionCoalescingRules();
+        this.idleExpiryMillis = Math.max(0, config.getWorldTrackerIdleExpirySeconds()) * 1000;
+        this.reporter = reporter;
+        this.clock = clock;
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the trackers for the given key. nameOf is only called the first time we see the key, to get the
+     * dimension's name; pass a non-capturing lambda or method reference so that calling this doesn't allocate.
+     */
+    public WorldTrackers get(K key, Function<? super K, String> nameOf) {
+        WorldTrackers trackers = byKey.get(key);
+        if (trackers == null) {
+            String tickSource = rules.apply(nameOf.apply(key));
+            trackers = byKey.computeIfAbsent(key, k -> byTickSource.computeIfAbsent(tickSource, factory));
+        }
+        return trackers;
+    }
+
+    /**
+     * Returns the trackers for the given key, or null if its world hasn't ticked yet or has been unloaded. Unlike
+     * get(), this never creates trackers, so it's safe to call from hooks that can fire while a world is loading or
+     * after it's been unloaded. Safe to call from any thread.
+     */
+    public WorldTrackers getIfPresent(K key) {
+        return byKey.get(key);
+    }
+
+    public Collection<WorldTrackers> getAll() {
+        return Collections.unmodifiableCollection(byTickSource.values());
+    }
+
+    /**
+     * Forgets the given key because its world was unloaded, and discards its trackers unless another loaded world
+     * shares them. Must be called from the thread that ticks the worlds.
+     */
+    public void unload(K key) {
+        WorldTrackers trackers = byKey.remove(key);
+        if (trackers != null && !byKey.containsValue(trackers)) {
+            discard(trackers, "its dimension was unloaded");
+        }
+    }
+
+    /**
+     * Discards every set of trackers because the server is stopping, after they report what they've gathered towards
+     * their current windows. Must be called from the thread that ticks the worlds.
+     */
+    public void closeAll() {
+        byKey.clear();
+        for (WorldTrackers trackers : byTickSource.values()) {
+            discard(trackers, "the server is stopping");
+        }
+    }
+
+    /**
+     * Should be called once at the end of every server tick. Once a minute, this discards the trackers that haven't
+     * ticked for longer than the idle expiry, and reports how many sets of trackers are live.
+     */
+    public void update() {
+        long currentTimeMillis = clock.millis();
+        if (lastUpdateMillis > 0 && !ReportingWindow.MINUTE.inNextWindow(lastUpdateMillis, currentTimeMillis)) {
+            return;
+        }
+        boolean firstUpdate = lastUpdateMillis == 0;
+        lastUpdateMillis = currentTimeMillis;
+        if (firstUpdate) {
+            return;
+        }
+
+        if (idleExpiryMillis > 0) {
+            for (WorldTrackers trackers : byTickSource.values()) {
+                if (currentTimeMillis - trackers.getLastActiveMillis() >= idleExpiryMillis) {
+                    byKey.values().removeIf(t -> t == trackers);
+                    discard(trackers, "it hasn't ticked recently");
+                }
+            }
+        }
+
+        Instant timestamp = Instant.ofEpochMilli(currentTimeMillis);
+        reporter.reportStatistic(TRACKER_SELF_SOURCE, ReportingWindow.MINUTE, timestamp, "live-world-trackers",
+                                 StatisticUnit.COUNT, byTickSource.size());
+        reporter.reportStatistic(TRACKER_SELF_SOURCE, ReportingWindow.MINUTE, timestamp, "discarded-world-trackers",
+                                 StatisticUnit.COUNT, discardedSinceLastReport);
+        discardedSinceLastReport = 0;
+    }
+
+    private void discard(WorldTrackers trackers, String reason) {
+        if (byTickSource.remove(trackers.getTickSource(), trackers)) {
+            LOG.info("Discarding the trackers for '{}' since {}.", trackers.getTickSource(), reason);
+            trackers.close();
+            discardedSinceLastReport++;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.history.FlightLog;
+import danielgmyers.minecraft.tracker.history.FlightRecorder;
+import danielgmyers.minecraft.tracker.history.TimeSeriesStore;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The trackers for one dimension (or one group of coalesced dimensions), created together the first time the
+ * dimension ticks.
+ */
+public final class WorldTrackers {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final AtomicBoolean WARNED_ABOUT_CONCURRENT_TRACKERS = new AtomicBoolean();
+
+    private final String tickSource;
+    private final TickStatsTracker tickStatsTracker;
+    private final PlayerCountTracker playerCountTracker;
+    private final TypeTickCostTracker typeTickCostTracker;
+    private final ChunkActivityTracker chunkActivityTracker;
+    private final WorldCensus census;
+
+    // the store the trackers record their history to, or null if they don't
+    private final TimeSeriesStore history;
+    // where the trackers record every tick, or null if they don't
+    private final FlightLog flightLog;
+    private final long createdMillis;
+
+    public WorldTrackers(TickStatsTracker tickStatsTracker, PlayerCountTracker playerCountTracker,
+                         TypeTickCostTracker typeTickCostTracker) {
+        this(tickStatsTracker, playerCountTracker, typeTickCostTracker, null, null, null, null, 0);
+    }
+
+    private WorldTrackers(TickStatsTracker tickStatsTracker, PlayerCountTracker playerCountTracker,
+                          TypeTickCostTracker typeTickCostTracker, ChunkActivityTracker chunkActivityTracker,
+                          WorldCensus census, TimeSeriesStore history, FlightLog flightLog, long createdMillis) {
+        this.tickSource = tickStatsTracker.getTickSource();
+        this.tickStatsTracker = tickStatsTracker;
+        this.playerCountTracker = playerCountTracker;
+        this.typeTickCostTracker = typeTickCostTracker;
+        this.chunkActivityTracker = chunkActivityTracker;
+        this.census = census;
+        this.history = history;
+        this.flightLog = flightLog;
+        this.createdMillis = createdMillis;
+    }
+
+    public static WorldTrackers create(String tickSource, Config config, StatsReporter reporter, Clock clock,
+                                       TimeSeriesStore history) {
+        return create(tickSource, config, reporter, clock, history, null);
+    }
+
+    /**
+     * Creates the trackers for the given tick source, with history if the store isn't null, every tick recorded if
+     * the flight recorder isn't null, and type tick costs, chunk activity and the census if they're enabled. The tick
+     * stats and player count trackers are the thread-safe variants if concurrent world trackers are enabled; the other
+     * trackers have no thread-safe variants, so they're left out in that case.
+     */
+    public static WorldTrackers create(String tickSource, Config config, StatsReporter reporter, Clock clock,
+                                       TimeSeriesStore history, FlightRecorder flightRecorder) {
+        boolean concurrent = config.isConcurrentWorldTrackersEnabled();
+        TickStatsTracker tickStatsTracker;
+        PlayerCountTracker playerCountTracker;
+        if (concurrent) {
+            // they share a lock since they write to the same history
+            ReentrantLock lock = new ReentrantLock();
+            tickStatsTracker = new ConcurrentTickStatsTracker(tickSource, config, reporter, clock, TickTimeSource.SYSTEM, lock);
+            playerCountTracker = new ConcurrentPlayerCountTracker(tickSource, config, reporter, clock, lock);
+        } else {
+            tickStatsTracker = new TickStatsTracker(tickSource, config, reporter, clock);
+            playerCountTracker = new PlayerCountTracker(tickSource, config, reporter, clock);
+        }
+        if (history != null) {
+            // this is normally the thread that ticks the source, so the files are opened in the background.
+            tickStatsTracker.setHistory(history.forSourceInBackground(tickSource));
+            playerCountTracker.setHistory(history.forSourceInBackground(tickSource));
+        }
+        FlightLog flightLog = flightRecorder != null ? flightRecorder.forSource(tickSource) : null;
+        tickStatsTracker.setFlightLog(flightLog);
+        if (concurrent && (config.isTickCostTrackingEnabled() || config.isChunkStatsEnabled()
+                           || config.isWorldCensusEnabled())
+                && WARNED_ABOUT_CONCURRENT_TRACKERS.compareAndSet(false, true)) {
+            LOG.warn("Tick cost tracking, chunk stats and the world census can't be used with concurrent world "
+                     + "trackers, so they're disabled.");
+        }
+        TypeTickCostTracker typeTickCostTracker = null;
+        if (config.isTickCostTrackingEnabled() && !concurrent) {
+            typeTickCostTracker = new TypeTickCostTracker(tickSource, TickCostAttribution.getTypeIds(), config, reporter, clock);
+        }
+        ChunkActivityTracker chunkActivityTracker = null;
+        if (config.isChunkStatsEnabled() && !concurrent) {
+            chunkActivityTracker = new ChunkActivityTracker(tickSource, config, reporter, clock);
+        }
+        WorldCensus census = null;
+        if (config.isWorldCensusEnabled() && !concurrent) {
+            census = new WorldCensus(tickSource, config, reporter, clock);
+        }
+        return new WorldTrackers(tickStatsTracker, playerCountTracker, typeTickCostTracker, chunkActivityTracker,
+                                 census, history, flightLog, clock.millis());
+    }
+
+    public String getTickSource() {
+        return tickSource;
+    }
+
+    public TickStatsTracker getTickStatsTracker() {
+        return tickStatsTracker;
+    }
+
+    public PlayerCountTracker getPlayerCountTracker() {
+        return playerCountTracker;
+    }
+
+    // null unless tick cost tracking is enabled
+    public TypeTickCostTracker getTypeTickCostTracker() {
+        return typeTickCostTracker;
+    }
+
+    // null unless chunk stats are enabled
+    public ChunkActivityTracker getChunkActivityTracker() {
+        return chunkActivityTracker;
+    }
+
+    // null unless the world census is enabled
+    public WorldCensus getCensus() {
+        return census;
+    }
+
+    /**
+     * Returns when the dimension last finished a second of ticks, or when the trackers were created if it hasn't yet.
+     * Safe to call from any thread.
+     */
+    public long getLastActiveMillis() {
+        Instant lastSecond = tickStatsTracker.getSnapshot().getLastSecond();
+        if (lastSecond == null) {
+            return createdMillis;
+        }
+        return Math.max(createdMillis, (lastSecond.getEpochSecond() + 1) * 1000);
+    }
+
+    /**
+     * Reports whatever the trackers have gathered towards their current windows and closes their history and flight
+     * log. The trackers mustn't be used afterwards. Must be called from the thread that ticks the dimension.
+     */
+    public void close() {
+        tickStatsTracker.flush();
+        playerCountTracker.flush();
+        if (typeTickCostTracker != null) {
+            typeTickCostTracker.flush();
+        }
+        if (chunkActivityTracker != null) {
+            chunkActivityTracker.flush();
+        }
+        if (census != null) {
+            census.flush();
+        }
+        if (history != null) {
+            tickStatsTracker.setHistory(null);
+            playerCountTracker.setHistory(null);
+            history.closeSource(tickSource);
+        }
+        if (flightLog != null) {
+            tickStatsTracker.setFlightLog(null);
+            flightLog.close();
+        }
+    }
+}
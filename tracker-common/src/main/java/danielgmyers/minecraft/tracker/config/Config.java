@@ -1,15 +1,189 @@
 package danielgmyers.minecraft.tracker.config;
 
+import danielgmyers.minecraft.tracker.ReportingWindow;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 
 public interface Config {
 
+    // one reporter type, or a comma-separated list of them to report to several sinks at once
     String REPORTER_TYPE = "reporter-type";
     ReporterType REPORTER_TYPE_DEFAULT = ReporterType.NONE;
 
+    String REPORTER_QUEUE_CAPACITY = "reporter-queue-capacity";
+    long REPORTER_QUEUE_CAPACITY_DEFAULT = 256;
+
     String CLOUDWATCH_METRIC_NAMESPACE = "cloudwatch-metric-namespace";
     String CLOUDWATCH_METRIC_NAMESPACE_DEFAULT = "minecraft-tracker";
 
+    // batches that CloudWatch couldn't take are kept here until they can be retried
+    String CLOUDWATCH_SPOOL_FILE = "cloudwatch-spool-file";
+    String CLOUDWATCH_SPOOL_FILE_DEFAULT = "tracker-cloudwatch.spool";
+
+    // 0 disables spooling
+    String CLOUDWATCH_SPOOL_MAX_BYTES = "cloudwatch-spool-max-bytes";
+    long CLOUDWATCH_SPOOL_MAX_BYTES_DEFAULT = 50 * 1024 * 1024;
+
+    String CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS = "cloudwatch-max-in-flight-requests";
+    long CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS_DEFAULT = 4;
+
+    String CLOUDWATCH_MAX_RETRY_BACKOFF_MILLIS = "cloudwatch-max-retry-backoff-millis";
+    long CLOUDWATCH_MAX_RETRY_BACKOFF_MILLIS_DEFAULT = 5 * 60 * 1000;
+
+    String CLOUDWATCH_EMF_LOG_FILE = "cloudwatch-emf-log-file";
+    String CLOUDWATCH_EMF_LOG_FILE_DEFAULT = "logs/tracker-emf.log";
+
+    String CLOUDWATCH_EMF_MAX_FILE_BYTES = "cloudwatch-emf-max-file-bytes";
+    long CLOUDWATCH_EMF_MAX_FILE_BYTES_DEFAULT = 10 * 1024 * 1024;
+
+    String CLOUDWATCH_EMF_FSYNC_INTERVAL_MILLIS = "cloudwatch-emf-fsync-interval-millis";
+    long CLOUDWATCH_EMF_FSYNC_INTERVAL_MILLIS_DEFAULT = 5000;
+
+    String PROMETHEUS_BIND_ADDRESS = "prometheus-bind-address";
+    String PROMETHEUS_BIND_ADDRESS_DEFAULT = "127.0.0.1";
+
+    String PROMETHEUS_PORT = "prometheus-port";
+    long PROMETHEUS_PORT_DEFAULT = 9225;
+
+    String STATSD_HOST = "statsd-host";
+    String STATSD_HOST_DEFAULT = "127.0.0.1";
+
+    String STATSD_PORT = "statsd-port";
+    long STATSD_PORT_DEFAULT = 8125;
+
+    String INFLUX_UDP_HOST = "influx-udp-host";
+    String INFLUX_UDP_HOST_DEFAULT = "127.0.0.1";
+
+    String INFLUX_UDP_PORT = "influx-udp-port";
+    long INFLUX_UDP_PORT_DEFAULT = 8089;
+
+    // fits in a single 1500-byte Ethernet frame, with room to spare for IP options and tunnels
+    String UDP_MAX_PACKET_BYTES = "udp-max-packet-bytes";
+    long UDP_MAX_PACKET_BYTES_DEFAULT = 1432;
+
+    // comma-separated window lengths in seconds
+    String REPORTING_WINDOWS = "reporting-windows";
+    String REPORTING_WINDOWS_DEFAULT = "60";
+
+    // comma-separated "pattern=name" rules; '*' matches anything. The default folds Vault Hunters' per-run dimensions.
+    String DIMENSION_COALESCING_RULES = "dimension-coalescing-rules";
+    String DIMENSION_COALESCING_RULES_DEFAULT = "the_vault:vault_*=the_vault:vault,the_vault:arena_*=the_vault:arena,"
+                                                + "the_vault:the_other_side_*=the_vault:the_other_side";
+
+    // trackers for a dimension that hasn't ticked for this long are reported and discarded; 0 disables this
+    String WORLD_TRACKER_IDLE_EXPIRY_SECONDS = "world-tracker-idle-expiry-seconds";
+    long WORLD_TRACKER_IDLE_EXPIRY_SECONDS_DEFAULT = 300;
+
+    String STALL_WATCHDOG_ENABLED = "stall-watchdog-enabled";
+    boolean STALL_WATCHDOG_ENABLED_DEFAULT = false;
+
+    String STALL_WATCHDOG_THRESHOLD_MILLIS = "stall-watchdog-threshold-millis";
+    long STALL_WATCHDOG_THRESHOLD_MILLIS_DEFAULT = 1000;
+
+    String STALL_WATCHDOG_SAMPLE_INTERVAL_MILLIS = "stall-watchdog-sample-interval-millis";
+    long STALL_WATCHDOG_SAMPLE_INTERVAL_MILLIS_DEFAULT = 50;
+
+    // relative to the server's log directory
+    String STALL_WATCHDOG_FILE = "stall-watchdog-file";
+    String STALL_WATCHDOG_FILE_DEFAULT = "tracker-stalls.log";
+
+    String STALL_WATCHDOG_MAX_FILE_BYTES = "stall-watchdog-max-file-bytes";
+    long STALL_WATCHDOG_MAX_FILE_BYTES_DEFAULT = 10 * 1024 * 1024;
+
+    String PROFILER_ENABLED = "profiler-enabled";
+    boolean PROFILER_ENABLED_DEFAULT = false;
+
+    String PROFILER_SAMPLE_INTERVAL_MILLIS = "profiler-sample-interval-millis";
+    long PROFILER_SAMPLE_INTERVAL_MILLIS_DEFAULT = 5;
+
+    String PROFILER_MAX_FRAMES = "profiler-max-frames";
+    long PROFILER_MAX_FRAMES_DEFAULT = 100000;
+
+    String PROFILER_FILES_TO_KEEP = "profiler-files-to-keep";
+    long PROFILER_FILES_TO_KEEP_DEFAULT = 60;
+
+    String TICK_COST_TRACKING_ENABLED = "tick-cost-tracking-enabled";
+    boolean TICK_COST_TRACKING_ENABLED_DEFAULT = false;
+
+    String TICK_COST_TOP_N = "tick-cost-top-n";
+    long TICK_COST_TOP_N_DEFAULT = 10;
+
+    String CHUNK_STATS_ENABLED = "chunk-stats-enabled";
+    boolean CHUNK_STATS_ENABLED_DEFAULT = false;
+
+    String WORLD_CENSUS_ENABLED = "world-census-enabled";
+    boolean WORLD_CENSUS_ENABLED_DEFAULT = false;
+
+    // the most entities the census classifies per dimension per tick
+    String WORLD_CENSUS_BUDGET_PER_TICK = "world-census-budget-per-tick";
+    long WORLD_CENSUS_BUDGET_PER_TICK_DEFAULT = 500;
+
+    String TRACKER_SELF_STATS_ENABLED = "tracker-self-stats-enabled";
+    boolean TRACKER_SELF_STATS_ENABLED_DEFAULT = false;
+
+    // for servers where mods tick dimensions on several threads at once
+    String CONCURRENT_WORLD_TRACKERS_ENABLED = "concurrent-world-trackers-enabled";
+    boolean CONCURRENT_WORLD_TRACKERS_ENABLED_DEFAULT = false;
+
+    String ANOMALY_DETECTION_ENABLED = "anomaly-detection-enabled";
+    boolean ANOMALY_DETECTION_ENABLED_DEFAULT = false;
+
+    // roughly how many seconds the baselines remember, and how long a new source is watched before it can alert
+    String ANOMALY_BASELINE_SECONDS = "anomaly-baseline-seconds";
+    long ANOMALY_BASELINE_SECONDS_DEFAULT = 300;
+
+    // how many standard deviations from the baseline counts as an anomaly
+    String ANOMALY_THRESHOLD_STDDEVS = "anomaly-threshold-stddevs";
+    long ANOMALY_THRESHOLD_STDDEVS_DEFAULT = 4;
+
+    // how long the mean tick time has to stay over the tick budget to count as an anomaly; 0 disables this check
+    String ANOMALY_BUDGET_OVERRUN_SECONDS = "anomaly-budget-overrun-seconds";
+    long ANOMALY_BUDGET_OVERRUN_SECONDS_DEFAULT = 10;
+
+    // 0 disables the capture
+    String ANOMALY_CAPTURE_SECONDS = "anomaly-capture-seconds";
+    long ANOMALY_CAPTURE_SECONDS_DEFAULT = 10;
+
+    String TICK_SCHEDULE_STATS_ENABLED = "tick-schedule-stats-enabled";
+    boolean TICK_SCHEDULE_STATS_ENABLED_DEFAULT = false;
+
+    String JVM_STATS_ENABLED = "jvm-stats-enabled";
+    boolean JVM_STATS_ENABLED_DEFAULT = false;
+
+    // server ticks that take longer than this are checked for overlapping GC pauses
+    String JVM_STATS_SLOW_TICK_MILLIS = "jvm-stats-slow-tick-millis";
+    long JVM_STATS_SLOW_TICK_MILLIS_DEFAULT = 50;
+
+    String HISTORY_ENABLED = "history-enabled";
+    boolean HISTORY_ENABLED_DEFAULT = false;
+
+    // relative paths are resolved against the game directory
+    String HISTORY_DIRECTORY = "history-directory";
+    String HISTORY_DIRECTORY_DEFAULT = "tracker-history";
+
+    String HISTORY_SECOND_RETENTION_HOURS = "history-second-retention-hours";
+    long HISTORY_SECOND_RETENTION_HOURS_DEFAULT = 24;
+
+    String HISTORY_MINUTE_RETENTION_DAYS = "history-minute-retention-days";
+    long HISTORY_MINUTE_RETENTION_DAYS_DEFAULT = 30;
+
+    String HISTORY_FLUSH_INTERVAL_SECONDS = "history-flush-interval-seconds";
+    long HISTORY_FLUSH_INTERVAL_SECONDS_DEFAULT = 60;
+
+    String FLIGHT_RECORDER_ENABLED = "flight-recorder-enabled";
+    boolean FLIGHT_RECORDER_ENABLED_DEFAULT = false;
+
+    // relative paths are resolved against the game directory
+    String FLIGHT_RECORDER_FILE = "flight-recorder-file";
+    String FLIGHT_RECORDER_FILE_DEFAULT = "logs/tracker-flight.rec";
+
+    // about a day of 20 TPS for the server and 10 dimensions
+    String FLIGHT_RECORDER_MAX_BYTES = "flight-recorder-max-bytes";
+    long FLIGHT_RECORDER_MAX_BYTES_DEFAULT = 64 * 1024 * 1024;
+
     default String retrieveConfig(String propertyName, String defaultValue) {
         return defaultValue;
     }
@@ -22,6 +196,18 @@ public interface Config {
         return Boolean.parseBoolean(value);
     }
 
+    default long retrieveLong(String propertyName, long defaultValue) {
+        String value = retrieveConfig(propertyName, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     default <T extends Enum> T retrieveEnumConfig(String propertyName, T defaultValue) {
         String rawValue = retrieveConfig(propertyName, null);
         if (rawValue == null) {
@@ -40,10 +226,230 @@ public interface Config {
     }
 
     default ReporterType getReporterType() {
-        return retrieveEnumConfig(REPORTER_TYPE, REPORTER_TYPE_DEFAULT);
+        return getReporterTypes().get(0);
+    }
+
+    // NONE only ever comes back on its own; it's dropped from a list that names any other type.
+    default List<ReporterType> getReporterTypes() {
+        String rawValue = retrieveConfig(REPORTER_TYPE, null);
+        if (rawValue == null) {
+            return Collections.singletonList(REPORTER_TYPE_DEFAULT);
+        }
+        List<ReporterType> types = new ArrayList<>();
+        for (String entry : rawValue.split(",")) {
+            for (ReporterType type : EnumSet.allOf(ReporterType.class)) {
+                if (type != ReporterType.NONE && type.toString().equalsIgnoreCase(entry.trim()) && !types.contains(type)) {
+                    types.add(type);
+                }
+            }
+        }
+        if (types.isEmpty()) {
+            return Collections.singletonList(REPORTER_TYPE_DEFAULT);
+        }
+        return types;
+    }
+
+    default long getReporterQueueCapacity() {
+        return retrieveLong(REPORTER_QUEUE_CAPACITY, REPORTER_QUEUE_CAPACITY_DEFAULT);
     }
 
     default String getCloudWatchMetricNamespace() {
         return retrieveConfig(CLOUDWATCH_METRIC_NAMESPACE, CLOUDWATCH_METRIC_NAMESPACE_DEFAULT);
     }
+
+    default String getCloudWatchSpoolFile() {
+        return retrieveConfig(CLOUDWATCH_SPOOL_FILE, CLOUDWATCH_SPOOL_FILE_DEFAULT);
+    }
+
+    default long getCloudWatchSpoolMaxBytes() {
+        return retrieveLong(CLOUDWATCH_SPOOL_MAX_BYTES, CLOUDWATCH_SPOOL_MAX_BYTES_DEFAULT);
+    }
+
+    default long getCloudWatchMaxInFlightRequests() {
+        return retrieveLong(CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS, CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS_DEFAULT);
+    }
+
+    default long getCloudWatchMaxRetryBackoffMillis() {
+        return retrieveLong(CLOUDWATCH_MAX_RETRY_BACKOFF_MILLIS, CLOUDWATCH_MAX_RETRY_BACKOFF_MILLIS_DEFAULT);
+    }
+
+    default String getCloudWatchEmfLogFile() {
+        return retrieveConfig(CLOUDWATCH_EMF_LOG_FILE, CLOUDWATCH_EMF_LOG_FILE_DEFAULT);
+    }
+
+    default long getCloudWatchEmfMaxFileBytes() {
+        return retrieveLong(CLOUDWATCH_EMF_MAX_FILE_BYTES, CLOUDWATCH_EMF_MAX_FILE_BYTES_DEFAULT);
+    }
+
+    default long getCloudWatchEmfFsyncIntervalMillis() {
+        return retrieveLong(CLOUDWATCH_EMF_FSYNC_INTERVAL_MILLIS, CLOUDWATCH_EMF_FSYNC_INTERVAL_MILLIS_DEFAULT);
+    }
+
+    default String getPrometheusBindAddress() {
+        return retrieveConfig(PROMETHEUS_BIND_ADDRESS, PROMETHEUS_BIND_ADDRESS_DEFAULT);
+    }
+
+    default long getPrometheusPort() {
+        return retrieveLong(PROMETHEUS_PORT, PROMETHEUS_PORT_DEFAULT);
+    }
+
+    default String getStatsdHost() {
+        return retrieveConfig(STATSD_HOST, STATSD_HOST_DEFAULT);
+    }
+
+    default long getStatsdPort() {
+        return retrieveLong(STATSD_PORT, STATSD_PORT_DEFAULT);
+    }
+
+    default String getInfluxUdpHost() {
+        return retrieveConfig(INFLUX_UDP_HOST, INFLUX_UDP_HOST_DEFAULT);
+    }
+
+    default long getInfluxUdpPort() {
+        return retrieveLong(INFLUX_UDP_PORT, INFLUX_UDP_PORT_DEFAULT);
+    }
+
+    default long getUdpMaxPacketBytes() {
+        return retrieveLong(UDP_MAX_PACKET_BYTES, UDP_MAX_PACKET_BYTES_DEFAULT);
+    }
+
+    default List<ReportingWindow> getReportingWindows() {
+        return ReportingWindow.parseList(retrieveConfig(REPORTING_WINDOWS, REPORTING_WINDOWS_DEFAULT));
+    }
+
+    default DimensionCoalescingRules getDimensionCoalescingRules() {
+        return DimensionCoalescingRules.parse(retrieveConfig(DIMENSION_COALESCING_RULES, DIMENSION_COALESCING_RULES_DEFAULT));
+    }
+
+    default long getWorldTrackerIdleExpirySeconds() {
+        return retrieveLong(WORLD_TRACKER_IDLE_EXPIRY_SECONDS, WORLD_TRACKER_IDLE_EXPIRY_SECONDS_DEFAULT);
+    }
+
+    default boolean isStallWatchdogEnabled() {
+        return retrieveBoolean(STALL_WATCHDOG_ENABLED, STALL_WATCHDOG_ENABLED_DEFAULT);
+    }
+
+    default long getStallWatchdogThresholdMillis() {
+        return retrieveLong(STALL_WATCHDOG_THRESHOLD_MILLIS, STALL_WATCHDOG_THRESHOLD_MILLIS_DEFAULT);
+    }
+
+    default long getStallWatchdogSampleIntervalMillis() {
+        return retrieveLong(STALL_WATCHDOG_SAMPLE_INTERVAL_MILLIS, STALL_WATCHDOG_SAMPLE_INTERVAL_MILLIS_DEFAULT);
+    }
+
+    default String getStallWatchdogFile() {
+        return retrieveConfig(STALL_WATCHDOG_FILE, STALL_WATCHDOG_FILE_DEFAULT);
+    }
+
+    default long getStallWatchdogMaxFileBytes() {
+        return retrieveLong(STALL_WATCHDOG_MAX_FILE_BYTES, STALL_WATCHDOG_MAX_FILE_BYTES_DEFAULT);
+    }
+
+    default boolean isProfilerEnabled() {
+        return retrieveBoolean(PROFILER_ENABLED, PROFILER_ENABLED_DEFAULT);
+    }
+
+    default long getProfilerSampleIntervalMillis() {
+        return retrieveLong(PROFILER_SAMPLE_INTERVAL_MILLIS, PROFILER_SAMPLE_INTERVAL_MILLIS_DEFAULT);
+    }
+
+    default long getProfilerMaxFrames() {
+        return retrieveLong(PROFILER_MAX_FRAMES, PROFILER_MAX_FRAMES_DEFAULT);
+    }
+
+    default long getProfilerFilesToKeep() {
+        return retrieveLong(PROFILER_FILES_TO_KEEP, PROFILER_FILES_TO_KEEP_DEFAULT);
+    }
+
+    default boolean isTickCostTrackingEnabled() {
+        return retrieveBoolean(TICK_COST_TRACKING_ENABLED, TICK_COST_TRACKING_ENABLED_DEFAULT);
+    }
+
+    default long getTickCostTopN() {
+        return retrieveLong(TICK_COST_TOP_N, TICK_COST_TOP_N_DEFAULT);
+    }
+
+    default boolean isChunkStatsEnabled() {
+        return retrieveBoolean(CHUNK_STATS_ENABLED, CHUNK_STATS_ENABLED_DEFAULT);
+    }
+
+    default boolean isWorldCensusEnabled() {
+        return retrieveBoolean(WORLD_CENSUS_ENABLED, WORLD_CENSUS_ENABLED_DEFAULT);
+    }
+
+    default long getWorldCensusBudgetPerTick() {
+        return retrieveLong(WORLD_CENSUS_BUDGET_PER_TICK, WORLD_CENSUS_BUDGET_PER_TICK_DEFAULT);
+    }
+
+    default boolean isTrackerSelfStatsEnabled() {
+        return retrieveBoolean(TRACKER_SELF_STATS_ENABLED, TRACKER_SELF_STATS_ENABLED_DEFAULT);
+    }
+
+    default boolean isConcurrentWorldTrackersEnabled() {
+        return retrieveBoolean(CONCURRENT_WORLD_TRACKERS_ENABLED, CONCURRENT_WORLD_TRACKERS_ENABLED_DEFAULT);
+    }
+
+    default boolean isAnomalyDetectionEnabled() {
+        return retrieveBoolean(ANOMALY_DETECTION_ENABLED, ANOMALY_DETECTION_ENABLED_DEFAULT);
+    }
+
+    default long getAnomalyBaselineSeconds() {
+        return retrieveLong(ANOMALY_BASELINE_SECONDS, ANOMALY_BASELINE_SECONDS_DEFAULT);
+    }
+
+    default long getAnomalyThresholdStddevs() {
+        return retrieveLong(ANOMALY_THRESHOLD_STDDEVS, ANOMALY_THRESHOLD_STDDEVS_DEFAULT);
+    }
+
+    default long getAnomalyBudgetOverrunSeconds() {
+        return retrieveLong(ANOMALY_BUDGET_OVERRUN_SECONDS, ANOMALY_BUDGET_OVERRUN_SECONDS_DEFAULT);
+    }
+
+    default long getAnomalyCaptureSeconds() {
+        return retrieveLong(ANOMALY_CAPTURE_SECONDS, ANOMALY_CAPTURE_SECONDS_DEFAULT);
+    }
+
+    default boolean isTickScheduleStatsEnabled() {
+        return retrieveBoolean(TICK_SCHEDULE_STATS_ENABLED, TICK_SCHEDULE_STATS_ENABLED_DEFAULT);
+    }
+
+    default boolean isJvmStatsEnabled() {
+        return retrieveBoolean(JVM_STATS_ENABLED, JVM_STATS_ENABLED_DEFAULT);
+    }
+
+    default long getJvmStatsSlowTickMillis() {
+        return retrieveLong(JVM_STATS_SLOW_TICK_MILLIS, JVM_STATS_SLOW_TICK_MILLIS_DEFAULT);
+    }
+
+    default boolean isHistoryEnabled() {
+        return retrieveBoolean(HISTORY_ENABLED, HISTORY_ENABLED_DEFAULT);
+    }
+
+    default String getHistoryDirectory() {
+        return retrieveConfig(HISTORY_DIRECTORY, HISTORY_DIRECTORY_DEFAULT);
+    }
+
+    default long getHistorySecondRetentionHours() {
+        return retrieveLong(HISTORY_SECOND_RETENTION_HOURS, HISTORY_SECOND_RETENTION_HOURS_DEFAULT);
+    }
+
+    default long getHistoryMinuteRetentionDays() {
+        return retrieveLong(HISTORY_MINUTE_RETENTION_DAYS, HISTORY_MINUTE_RETENTION_DAYS_DEFAULT);
+    }
+
+    default long getHistoryFlushIntervalSeconds() {
+        return retrieveLong(HISTORY_FLUSH_INTERVAL_SECONDS, HISTORY_FLUSH_INTERVAL_SECONDS_DEFAULT);
+    }
+
+    default boolean isFlightRecorderEnabled() {
+        return retrieveBoolean(FLIGHT_RECORDER_ENABLED, FLIGHT_RECORDER_ENABLED_DEFAULT);
+    }
+
+    default String getFlightRecorderFile() {
+        return retrieveConfig(FLIGHT_RECORDER_FILE, FLIGHT_RECORDER_FILE_DEFAULT);
+    }
+
+    default long getFlightRecorderMaxBytes() {
+        return retrieveLong(FLIGHT_RECORDER_MAX_BYTES, FLIGHT_RECORDER_MAX_BYTES_DEFAULT);
+    }
 }
@@ -0,0 +1,119 @@
+package danielgmyers.minecraft.tracker.config;
+
+import danielgmyers.minecraft.tracker.ReportingWindow;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable copy of the configuration, with every value parsed up front.
+ *
+ * Some settings get read on the tick path (e.g. isEnabled() every server tick, and the reporting windows once a
+ * second), so nothing here parses or allocates after construction: the structured settings are parsed once, and each
+ * numeric or boolean property is parsed once and then looked up by name. Being immutable, a snapshot can be shared
+ * between threads and swapped out wholesale when the config file changes.
+ */
+public final class ConfigSnapshot implements Config {
+
+    private final Map<String, String> values;
+    private final Map<String, Long> longValues;
+    private final Map<String, Boolean> booleanValues;
+
+    private final List<ReporterType> reporterTypes;
+    private final boolean enabled;
+    private final List<ReportingWindow> reportingWindows;
+    private final DimensionCoalescingRules dimensionCoalescingRules;
+
+    private ConfigSnapshot(Map<String, String> values) {
+        this.values = values;
+        Map<String, Long> longs = new HashMap<>();
+        Map<String, Boolean> booleans = new HashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            // a property that isn't a valid number falls back to the default, just like Config.retrieveLong does.
+            try {
+                longs.put(entry.getKey(), Long.parseLong(entry.getValue().trim()));
+            } catch (NumberFormatException e) {
+                // not a number
+            }
+            booleans.put(entry.getKey(), Boolean.parseBoolean(entry.getValue()));
+        }
+        this.longValues = longs;
+        this.booleanValues = booleans;
+
+        // these go through Config's own parsing, reading from the values above.
+        this.reporterTypes = Collections.unmodifiableList(Config.super.getReporterTypes());
+        this.enabled = reporterTypes.get(0) != ReporterType.NONE;
+        this.reportingWindows = Config.super.getReportingWindows();
+        this.dimensionCoalescingRules = Config.super.getDimensionCoalescingRules();
+    }
+
+    public static ConfigSnapshot of(Properties properties) {
+        Map<String, String> values = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            values.put(name, properties.getProperty(name));
+        }
+        return new ConfigSnapshot(values);
+    }
+
+    /**
+     * Whether the two snapshots were read from the same properties.
+     */
+    public boolean hasSameValues(ConfigSnapshot other) {
+        return values.equals(other.values);
+    }
+
+    /**
+     * Whether the given property has the same value (or is missing) in both snapshots.
+     */
+    public boolean hasSameValue(ConfigSnapshot other, String propertyName) {
+        String value = values.get(propertyName);
+        String otherValue = other.values.get(propertyName);
+        return value == null ? otherValue == null : value.equals(otherValue);
+    }
+
+    @Override
+    public String retrieveConfig(String propertyName, String defaultValue) {
+        String value = values.get(propertyName);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public boolean retrieveBoolean(String propertyName, boolean defaultValue) {
+        Boolean value = booleanValues.get(propertyName);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public long retrieveLong(String propertyName, long defaultValue) {
+        Long value = longValues.get(propertyName);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public ReporterType getReporterType() {
+        return reporterTypes.get(0);
+    }
+
+    @Override
+    public List<ReporterType> getReporterTypes() {
+        return reporterTypes;
+    }
+
+    @Override
+    public List<ReportingWindow> getReportingWindows() {
+        return reportingWindows;
+    }
+
+    @Override
+    public DimensionCoalescingRules getDimensionCoalescingRules() {
+        return dimensionCoalescingRules;
+    }
+}
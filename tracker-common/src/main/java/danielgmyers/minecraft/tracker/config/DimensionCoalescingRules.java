@@ -0,0 +1,90 @@
+package danielgmyers.minecraft.tracker.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Rules for folding several dimensions into one tick source, for mods that create a new dimension per instance
+ * (e.g. Vault Hunters' "the_vault:vault_<id>"), which would otherwise produce a new set of metrics every time.
+ *
+ * The rules are a comma-separated list of "pattern=name" entries, where '*' in the pattern matches any run of
+ * characters; the first rule that matches the whole dimension name wins. They're compiled once when the config is
+ * read, and the trackers only ever apply them the first time they see each dimension.
+ */
+public final class DimensionCoalescingRules {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final DimensionCoalescingRules NONE = new DimensionCoalescingRules(Collections.emptyList());
+
+    private final List<Rule> rules;
+
+    private DimensionCoalescingRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Parses the rules, e.g. "the_vault:vault_*=the_vault:vault,mymod:instance_*=mymod:instance".
+     * Invalid entries are skipped with a warning.
+     */
+    public static DimensionCoalescingRules parse(String value) {
+        List<Rule> rules = new ArrayList<>();
+        if (value != null) {
+            for (String entry : value.split(",")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int separator = trimmed.indexOf('=');
+                String pattern = separator < 0 ? "" : trimmed.substring(0, separator).trim();
+                String name = separator < 0 ? "" : trimmed.substring(separator + 1).trim();
+                if (pattern.isEmpty() || name.isEmpty()) {
+                    LOG.warn("Ignoring invalid dimension coalescing rule '{}'.", trimmed);
+                    continue;
+                }
+                rules.add(new Rule(compile(pattern), name));
+            }
+        }
+        return rules.isEmpty() ? NONE : new DimensionCoalescingRules(Collections.unmodifiableList(rules));
+    }
+
+    private static Pattern compile(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        int wildcard;
+        while ((wildcard = glob.indexOf('*', start)) >= 0) {
+            regex.append(Pattern.quote(glob.substring(start, wildcard))).append(".*");
+            start = wildcard + 1;
+        }
+        regex.append(Pattern.quote(glob.substring(start)));
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Returns the tick source name to use for the given dimension: the name from the first matching rule,
+     * or the dimension name itself if no rule matches.
+     */
+    public String apply(String dimension) {
+        for (Rule rule : rules) {
+            if (rule.pattern.matcher(dimension).matches()) {
+                return rule.name;
+            }
+        }
+        return dimension;
+    }
+
+    private static final class Rule {
+        private final Pattern pattern;
+        private final String name;
+
+        private Rule(Pattern pattern, String name) {
+            this.pattern = pattern;
+            this.name = name;
+        }
+    }
+}
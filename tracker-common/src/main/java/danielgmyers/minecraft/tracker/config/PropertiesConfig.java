@@ -1,5 +1,6 @@
 package danielgmyers.minecraft.tracker.config;
 
+import danielgmyers.minecraft.tracker.ReportingWindow;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -8,55 +9,304 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-public class PropertiesConfig implements Config {
+/**
+ * The configuration from tracker.properties. The file is parsed into an immutable ConfigSnapshot, and every getter
+ * reads from the current snapshot, so reading the config never parses anything.
+ *
+ * Once watching has been started, the file is re-read whenever it changes: the new snapshot replaces the old one in
+ * a single volatile write, so a reader always sees one consistent version of the config, and the reload listeners are
+ * told about it. A file that can't be read leaves the current snapshot in place.
+ */
+public class PropertiesConfig implements Config, Runnable {
 
     private static final Logger LOG = LogManager.getLogger();
 
-    private final Properties properties;
+    // Editors often write a file in several steps, so we wait for the changes to settle before re-reading it.
+    private static final long RELOAD_SETTLE_MILLIS = 250;
 
-    private PropertiesConfig() {
-        this.properties = new Properties();
+    private final Path configPath;
+    private final List<Consumer<ConfigSnapshot>> reloadListeners = new CopyOnWriteArrayList<>();
+
+    private volatile ConfigSnapshot snapshot;
+
+    private volatile boolean watching = false;
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    private PropertiesConfig(Path configPath, ConfigSnapshot snapshot) {
+        this.configPath = configPath;
+        this.snapshot = snapshot;
     }
 
     public static PropertiesConfig create(Path configPath) {
         File configFile = configPath.toFile();
-        PropertiesConfig config = new PropertiesConfig();
+        Properties properties;
 
         if (!configFile.exists()) {
-            config.saveDefaults(configFile);
+            properties = saveDefaults(configFile);
         } else {
-            config.load(configFile);
+            properties = load(configFile);
+            if (properties == null) {
+                properties = new Properties();
+            }
         }
 
-        return config;
+        return new PropertiesConfig(configPath, ConfigSnapshot.of(properties));
     }
 
-    private void saveDefaults(File configFile) {
-        properties.clear();
+    private static Properties saveDefaults(File configFile) {
+        Properties properties = new Properties();
         properties.setProperty(REPORTER_TYPE, REPORTER_TYPE_DEFAULT.toString());
+        properties.setProperty(REPORTER_QUEUE_CAPACITY, Long.toString(REPORTER_QUEUE_CAPACITY_DEFAULT));
         properties.setProperty(CLOUDWATCH_METRIC_NAMESPACE, CLOUDWATCH_METRIC_NAMESPACE_DEFAULT);
+        properties.setProperty(CLOUDWATCH_SPOOL_FILE, CLOUDWATCH_SPOOL_FILE_DEFAULT);
+        properties.setProperty(CLOUDWATCH_SPOOL_MAX_BYTES, Long.toString(CLOUDWATCH_SPOOL_MAX_BYTES_DEFAULT));
+        properties.setProperty(CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS, Long.toString(CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS_DEFAULT));
+        properties.setProperty(CLOUDWATCH_MAX_RETRY_BACKOFF_MILLIS, Long.toString(CLOUDWATCH_MAX_RETRY_BACKOFF_MILLIS_DEFAULT));
+        properties.setProperty(CLOUDWATCH_EMF_LOG_FILE, CLOUDWATCH_EMF_LOG_FILE_DEFAULT);
+        properties.setProperty(CLOUDWATCH_EMF_MAX_FILE_BYTES, Long.toString(CLOUDWATCH_EMF_MAX_FILE_BYTES_DEFAULT));
+        properties.setProperty(CLOUDWATCH_EMF_FSYNC_INTERVAL_MILLIS, Long.toString(CLOUDWATCH_EMF_FSYNC_INTERVAL_MILLIS_DEFAULT));
+        properties.setProperty(PROMETHEUS_BIND_ADDRESS, PROMETHEUS_BIND_ADDRESS_DEFAULT);
+        properties.setProperty(PROMETHEUS_PORT, Long.toString(PROMETHEUS_PORT_DEFAULT));
+        properties.setProperty(STATSD_HOST, STATSD_HOST_DEFAULT);
+        properties.setProperty(STATSD_PORT, Long.toString(STATSD_PORT_DEFAULT));
+        properties.setProperty(INFLUX_UDP_HOST, INFLUX_UDP_HOST_DEFAULT);
+        properties.setProperty(INFLUX_UDP_PORT, Long.toString(INFLUX_UDP_PORT_DEFAULT));
+        properties.setProperty(UDP_MAX_PACKET_BYTES, Long.toString(UDP_MAX_PACKET_BYTES_DEFAULT));
+        properties.setProperty(REPORTING_WINDOWS, REPORTING_WINDOWS_DEFAULT);
+        properties.setProperty(DIMENSION_COALESCING_RULES, DIMENSION_COALESCING_RULES_DEFAULT);
+        properties.setProperty(WORLD_TRACKER_IDLE_EXPIRY_SECONDS, Long.toString(WORLD_TRACKER_IDLE_EXPIRY_SECONDS_DEFAULT));
+        properties.setProperty(STALL_WATCHDOG_ENABLED, Boolean.toString(STALL_WATCHDOG_ENABLED_DEFAULT));
+        properties.setProperty(STALL_WATCHDOG_THRESHOLD_MILLIS, Long.toString(STALL_WATCHDOG_THRESHOLD_MILLIS_DEFAULT));
+        properties.setProperty(STALL_WATCHDOG_SAMPLE_INTERVAL_MILLIS, Long.toString(STALL_WATCHDOG_SAMPLE_INTERVAL_MILLIS_DEFAULT));
+        properties.setProperty(STALL_WATCHDOG_FILE, STALL_WATCHDOG_FILE_DEFAULT);
+        properties.setProperty(STALL_WATCHDOG_MAX_FILE_BYTES, Long.toString(STALL_WATCHDOG_MAX_FILE_BYTES_DEFAULT));
+        properties.setProperty(PROFILER_ENABLED, Boolean.toString(PROFILER_ENABLED_DEFAULT));
+        properties.setProperty(PROFILER_SAMPLE_INTERVAL_MILLIS, Long.toString(PROFILER_SAMPLE_INTERVAL_MILLIS_DEFAULT));
+        properties.setProperty(PROFILER_MAX_FRAMES, Long.toString(PROFILER_MAX_FRAMES_DEFAULT));
+        properties.setProperty(PROFILER_FILES_TO_KEEP, Long.toString(PROFILER_FILES_TO_KEEP_DEFAULT));
+        properties.setProperty(TICK_COST_TRACKING_ENABLED, Boolean.toString(TICK_COST_TRACKING_ENABLED_DEFAULT));
+        properties.setProperty(TICK_COST_TOP_N, Long.toString(TICK_COST_TOP_N_DEFAULT));
+        properties.setProperty(CHUNK_STATS_ENABLED, Boolean.toString(CHUNK_STATS_ENABLED_DEFAULT));
+        properties.setProperty(WORLD_CENSUS_ENABLED, Boolean.toString(WORLD_CENSUS_ENABLED_DEFAULT));
+        properties.setProperty(WORLD_CENSUS_BUDGET_PER_TICK, Long.toString(WORLD_CENSUS_BUDGET_PER_TICK_DEFAULT));
+        properties.setProperty(TRACKER_SELF_STATS_ENABLED, Boolean.toString(TRACKER_SELF_STATS_ENABLED_DEFAULT));
+        properties.setProperty(CONCURRENT_WORLD_TRACKERS_ENABLED, Boolean.toString(CONCURRENT_WORLD_TRACKERS_ENABLED_DEFAULT));
+        properties.setProperty(ANOMALY_DETECTION_ENABLED, Boolean.toString(ANOMALY_DETECTION_ENABLED_DEFAULT));
+        properties.setProperty(ANOMALY_BASELINE_SECONDS, Long.toString(ANOMALY_BASELINE_SECONDS_DEFAULT));
+        properties.setProperty(ANOMALY_THRESHOLD_STDDEVS, Long.toString(ANOMALY_THRESHOLD_STDDEVS_DEFAULT));
+        properties.setProperty(ANOMALY_BUDGET_OVERRUN_SECONDS, Long.toString(ANOMALY_BUDGET_OVERRUN_SECONDS_DEFAULT));
+        properties.setProperty(ANOMALY_CAPTURE_SECONDS, Long.toString(ANOMALY_CAPTURE_SECONDS_DEFAULT));
+        properties.setProperty(TICK_SCHEDULE_STATS_ENABLED, Boolean.toString(TICK_SCHEDULE_STATS_ENABLED_DEFAULT));
+        properties.setProperty(JVM_STATS_ENABLED, Boolean.toString(JVM_STATS_ENABLED_DEFAULT));
+        properties.setProperty(JVM_STATS_SLOW_TICK_MILLIS, Long.toString(JVM_STATS_SLOW_TICK_MILLIS_DEFAULT));
+        properties.setProperty(HISTORY_ENABLED, Boolean.toString(HISTORY_ENABLED_DEFAULT));
+        properties.setProperty(HISTORY_DIRECTORY, HISTORY_DIRECTORY_DEFAULT);
+        properties.setProperty(HISTORY_SECOND_RETENTION_HOURS, Long.toString(HISTORY_SECOND_RETENTION_HOURS_DEFAULT));
+        properties.setProperty(HISTORY_MINUTE_RETENTION_DAYS, Long.toString(HISTORY_MINUTE_RETENTION_DAYS_DEFAULT));
+        properties.setProperty(HISTORY_FLUSH_INTERVAL_SECONDS, Long.toString(HISTORY_FLUSH_INTERVAL_SECONDS_DEFAULT));
+        properties.setProperty(FLIGHT_RECORDER_ENABLED, Boolean.toString(FLIGHT_RECORDER_ENABLED_DEFAULT));
+        properties.setProperty(FLIGHT_RECORDER_FILE, FLIGHT_RECORDER_FILE_DEFAULT);
+        properties.setProperty(FLIGHT_RECORDER_MAX_BYTES, Long.toString(FLIGHT_RECORDER_MAX_BYTES_DEFAULT));
         try (FileWriter writer = new FileWriter(configFile)) {
             properties.store(writer, "Default configuration for tracker.");
         } catch (IOException e) {
             LOG.warn("Failed to write configuration to {}.", configFile.getPath(), e);
         }
+        return properties;
     }
 
-    private void load(File configFile) {
+    // Returns null if the file couldn't be read.
+    private static Properties load(File configFile) {
+        Properties properties = new Properties();
         try (FileReader reader = new FileReader(configFile)) {
             properties.load(reader);
+            return properties;
         } catch (FileNotFoundException e) {
             LOG.info("Config file not found at {}, using defaults.", configFile.getPath());
         } catch (IOException e) {
             LOG.warn("Failed to load configuration from {}, using defaults.", configFile.getPath(), e);
         }
+        return null;
+    }
+
+    /**
+     * Returns the config as it currently stands. Safe to call from any thread.
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Registers a listener that's called with the new snapshot after each reload that changed something. Listeners
+     * are called on the thread doing the reload, so anything that needs to happen on the server thread should only
+     * be handed over from here.
+     */
+    public void addReloadListener(Consumer<ConfigSnapshot> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Re-reads the config file, and if anything in it changed, swaps in the new snapshot and tells the listeners.
+     * Returns whether the config changed.
+     */
+    public synchronized boolean reload() {
+        Properties properties = load(configPath.toFile());
+        if (properties == null) {
+            LOG.warn("Keeping the current configuration, since {} couldn't be read.", configPath);
+            return false;
+        }
+        ConfigSnapshot reloaded = ConfigSnapshot.of(properties);
+        if (reloaded.hasSameValues(snapshot)) {
+            return false;
+        }
+        snapshot = reloaded;
+        LOG.info("Reloaded configuration from {}.", configPath);
+        for (Consumer<ConfigSnapshot> listener : reloadListeners) {
+            try {
+                listener.accept(reloaded);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to apply the reloaded configuration.", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a background thread that reloads the config whenever the file changes.
+     */
+    public synchronized void startWatching() {
+        if (watching) {
+            return;
+        }
+        Path directory = configPath.toAbsolutePath().getParent();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                               StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOG.warn("Failed to watch {} for changes; the configuration won't be reloaded.", configPath, e);
+            closeWatchService();
+            return;
+        }
+        LOG.info("Watching {} for configuration changes.", configPath);
+        watching = true;
+        watcherThread = new Thread(this, "tracker-config-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    public synchronized void stopWatching() {
+        watching = false;
+        closeWatchService();
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+            watcherThread = null;
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to close the config watch service.", e);
+            }
+            watchService = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        WatchService service;
+        synchronized (this) {
+            service = watchService;
+        }
+        Path fileName = configPath.getFileName();
+        try {
+            while (watching) {
+                WatchKey key = service.take();
+                boolean changed = touchesConfigFile(key, fileName);
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                // let the rest of the write land, then fold any events it caused into this reload.
+                Thread.sleep(RELOAD_SETTLE_MILLIS);
+                WatchKey pending;
+                while ((pending = service.poll(0, TimeUnit.MILLISECONDS)) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // we're stopping.
+        } catch (RuntimeException e) {
+            LOG.warn("Config watcher stopped unexpectedly; the configuration won't be reloaded.", e);
+        }
+    }
+
+    private static boolean touchesConfigFile(WatchKey key, Path fileName) {
+        boolean touches = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                touches = true;
+            }
+        }
+        return touches;
     }
 
     @Override
     public String retrieveConfig(String propertyName, String defaultValue) {
-        return properties.getProperty(propertyName, defaultValue);
+        return snapshot.retrieveConfig(propertyName, defaultValue);
+    }
+
+    @Override
+    public boolean retrieveBoolean(String propertyName, boolean defaultValue) {
+        return snapshot.retrieveBoolean(propertyName, defaultValue);
+    }
+
+    @Override
+    public long retrieveLong(String propertyName, long defaultValue) {
+        return snapshot.retrieveLong(propertyName, defaultValue);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return snapshot.isEnabled();
+    }
+
+    @Override
+    public ReporterType getReporterType() {
+        return snapshot.getReporterType();
+    }
+
+    @Override
+    public List<ReporterType> getReporterTypes() {
+        return snapshot.getReporterTypes();
+    }
+
+    @Override
+    public List<ReportingWindow> getReportingWindows() {
+        return snapshot.getReportingWindows();
+    }
+
+    @Override
+    public DimensionCoalescingRules getDimensionCoalescingRules() {
+        return snapshot.getDimensionCoalescingRules();
     }
 }
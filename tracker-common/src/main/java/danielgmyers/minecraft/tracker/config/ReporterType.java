@@ -7,7 +7,10 @@ public enum ReporterType {
     NONE,
     APPLICATION_LOG,
     CLOUDWATCH_DIRECT,
-    CLOUDWATCH_LOGS_EMF;
+    CLOUDWATCH_LOGS_EMF,
+    PROMETHEUS,
+    STATSD,
+    INFLUX_UDP;
 
     private static final Logger LOG = LogManager.getLogger();
 
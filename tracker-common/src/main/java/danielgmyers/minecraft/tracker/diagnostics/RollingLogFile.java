@@ -0,0 +1,62 @@
+package danielgmyers.minecraft.tracker.diagnostics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A text file that gets rotated to name.1, name.2, ... once it grows past a size limit.
+ * Only the most recent few rotated files are kept.
+ *
+ * This class is not thread-safe; it's meant to be owned by a single background thread.
+ */
+public class RollingLogFile {
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int filesToKeep;
+
+    public RollingLogFile(Path file, long maxFileBytes, int filesToKeep) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.filesToKeep = filesToKeep;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void append(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (Files.exists(file) && Files.size(file) + bytes.length > maxFileBytes) {
+            rotate();
+        }
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(bytes);
+        }
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotatedFile(filesToKeep));
+        for (int i = filesToKeep - 1; i >= 1; i--) {
+            Path rotated = rotatedFile(i);
+            if (Files.exists(rotated)) {
+                Files.move(rotated, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (filesToKeep > 0) {
+            Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+    }
+
+    private Path rotatedFile(int index) {
+        return file.resolveSibling(file.getFileName().toString() + "." + index);
+    }
+}
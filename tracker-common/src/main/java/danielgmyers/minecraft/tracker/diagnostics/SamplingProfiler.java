@@ -0,0 +1,213 @@
+package danielgmyers.minecraft.tracker.diagnostics;
+
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.TickStatsTracker;
+import danielgmyers.minecraft.tracker.TickTimeSource;
+import danielgmyers.minecraft.tracker.WorldTrackerCache;
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Continuously samples the stack of the thread that ticks a tracker, but only while one of its ticks is in progress,
+ * and aggregates the samples into a StackTrie. At the end of every minute, the aggregated stacks are written in the
+ * collapsed-stack format (which most flame graph tools accept) to a file named after that minute, and the profiler's
+ * own sampling cost for the minute is logged and reported as statistics under the tracker-self source.
+ *
+ * Like the stall watchdog, this runs entirely on its own daemon thread and only reads the tracker's in-progress tick
+ * state, so it adds nothing to the tick thread beyond the cost of the stack captures themselves.
+ */
+public class SamplingProfiler implements Runnable {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    static final String PROFILE_FILE_PREFIX = "tracker-profile-";
+    static final String PROFILE_FILE_SUFFIX = ".collapsed";
+    private static final DateTimeFormatter FILE_TIMESTAMP_FORMAT
+            = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm", Locale.ROOT).withZone(ZoneOffset.UTC);
+
+    private final TickStatsTracker tracker;
+    private final StatsReporter reporter;
+    private final TickTimeSource timeSource;
+    private final Clock clock;
+    private final ThreadMXBean threadMXBean;
+    private final Path outputDirectory;
+    private final long sampleIntervalNanos;
+    private final int filesToKeep;
+    private final StackTrie stackTrie;
+
+    private long currentMinute = -1;
+    private long lastSampleEndTimeMillis = 0;
+    private long idlePollsThisMinute = 0;
+    private long samplingNanosThisMinute = 0;
+    private long maxSampleNanosThisMinute = 0;
+
+    private volatile boolean running = false;
+    private Thread profilerThread;
+
+    // The reporter is called from the profiler's own thread.
+    public SamplingProfiler(TickStatsTracker tracker, Config config, StatsReporter reporter, Path outputDirectory,
+                            Clock clock) {
+        this.tracker = tracker;
+        this.reporter = reporter;
+        this.timeSource = tracker.getTimeSource();
+        this.clock = clock;
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.outputDirectory = outputDirectory;
+        this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getProfilerSampleIntervalMillis()));
+        this.filesToKeep = (int) Math.max(1, config.getProfilerFilesToKeep());
+        this.stackTrie = new StackTrie((int) Math.min(Integer.MAX_VALUE, Math.max(2, config.getProfilerMaxFrames())));
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        LOG.info("Starting sampling profiler for source '{}': sampling every {} ms, writing profiles to {}.",
+                 tracker.getTickSource(), TimeUnit.NANOSECONDS.toMillis(sampleIntervalNanos), outputDirectory);
+        running = true;
+        profilerThread = new Thread(this, "tracker-sampling-profiler");
+        profilerThread.setDaemon(true);
+        profilerThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (profilerThread != null) {
+            profilerThread.interrupt();
+            profilerThread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                long nowMillis = clock.millis();
+                long minute = nowMillis / 60000;
+                if (currentMinute != minute) {
+                    if (currentMinute >= 0) {
+                        finishMinute(lastSampleEndTimeMillis > 0 ? lastSampleEndTimeMillis : nowMillis);
+                    }
+                    currentMinute = minute;
+                }
+
+                if (tracker.getInProgressTickStartNanos() != TickStatsTracker.NO_TICK_IN_PROGRESS) {
+                    sample();
+                } else {
+                    idlePollsThisMinute++;
+                }
+
+                TimeUnit.NANOSECONDS.sleep(sampleIntervalNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.warn("Sampling profiler for source '{}' stopped unexpectedly.", tracker.getTickSource(), e);
+        }
+    }
+
+    private void sample() {
+        Thread tickThread = tracker.getTickThread();
+        if (tickThread == null) {
+            return;
+        }
+        long sampleStartNanos = timeSource.nanoTime();
+        ThreadInfo info = threadMXBean.getThreadInfo(tickThread.getId(), Integer.MAX_VALUE);
+        if (info != null) {
+            stackTrie.addSample(info.getStackTrace());
+        }
+        long sampleNanos = timeSource.nanoTime() - sampleStartNanos;
+        samplingNanosThisMinute += sampleNanos;
+        maxSampleNanosThisMinute = Math.max(maxSampleNanosThisMinute, sampleNanos);
+        lastSampleEndTimeMillis = clock.millis();
+    }
+
+    private void finishMinute(long timestampMillis) {
+        long samples = stackTrie.getTotalSamples();
+        if (samples > 0) {
+            Path profileFile = outputDirectory.resolve(PROFILE_FILE_PREFIX
+                                                       + FILE_TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(timestampMillis))
+                                                       + PROFILE_FILE_SUFFIX);
+            try {
+                Files.createDirectories(outputDirectory);
+                try (Writer writer = Files.newBufferedWriter(profileFile, StandardCharsets.UTF_8)) {
+                    stackTrie.writeCollapsed(writer);
+                }
+                deleteOldProfiles();
+            } catch (IOException e) {
+                LOG.warn("Failed to write profile to {}.", profileFile, e);
+            }
+
+            // The sampling cost is paid by the profiler thread, but getting a stack trace also briefly pauses the
+            // tick thread, so this is also roughly how much we slowed the server down.
+            LOG.info("Last minute {} profile: {} samples ({} truncated), {} stack nodes, {} idle polls. Sampling cost: {} ms total, {} us (avg), {} us (max), {}% of the minute.",
+                     tracker.getTickSource(), samples, stackTrie.getTruncatedSamples(), stackTrie.getNodeCount(),
+                     idlePollsThisMinute,
+                     TimeUnit.NANOSECONDS.toMillis(samplingNanosThisMinute),
+                     TimeUnit.NANOSECONDS.toMicros(samplingNanosThisMinute / samples),
+                     TimeUnit.NANOSECONDS.toMicros(maxSampleNanosThisMinute),
+                     String.format(Locale.ROOT, "%.3f", samplingNanosThisMinute * 100.0 / TimeUnit.MINUTES.toNanos(1)));
+        }
+        reportSamplingCost(samples, Instant.ofEpochMilli(timestampMillis));
+
+        stackTrie.clear();
+        lastSampleEndTimeMillis = 0;
+        idlePollsThisMinute = 0;
+        samplingNanosThisMinute = 0;
+        maxSampleNanosThisMinute = 0;
+    }
+
+    private void reportSamplingCost(long samples, Instant timestamp) {
+        String source = WorldTrackerCache.TRACKER_SELF_SOURCE;
+        reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, "profiler-samples",
+                                 StatisticUnit.COUNT, samples);
+        reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, "profiler-truncated-samples",
+                                 StatisticUnit.COUNT, stackTrie.getTruncatedSamples());
+        reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, "profiler-sampling-millis",
+                                 StatisticUnit.MILLISECONDS, samplingNanosThisMinute / 1_000_000.0);
+        reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, "profiler-sample-millis-max",
+                                 StatisticUnit.MILLISECONDS, maxSampleNanosThisMinute / 1_000_000.0);
+        reporter.reportStatistic(source, ReportingWindow.MINUTE, timestamp, "profiler-overhead-percent",
+                                 StatisticUnit.PERCENT, samplingNanosThisMinute * 100.0 / TimeUnit.MINUTES.toNanos(1));
+    }
+
+    private void deleteOldProfiles() throws IOException {
+        List<Path> profiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(outputDirectory,
+                                                                    PROFILE_FILE_PREFIX + "*" + PROFILE_FILE_SUFFIX)) {
+            for (Path file : files) {
+                profiles.add(file);
+            }
+        }
+        if (profiles.size() <= filesToKeep) {
+            return;
+        }
+        // the timestamps in the file names sort chronologically.
+        Collections.sort(profiles);
+        for (int i = 0; i < profiles.size() - filesToKeep; i++) {
+            Files.deleteIfExists(profiles.get(i));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package danielgmyers.minecraft.tracker.diagnostics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates stack samples into a trie (root at the bottom of the stack, leaves at the top) whose nodes are stored in
+ * parallel primitive arrays. Frames are interned to small integer IDs, and each node only stores its parent,
+ * its frame, and how many samples ended there.
+ *
+ * The total number of nodes is capped; once the cap is reached, samples that would need new nodes are attributed
+ * to the deepest existing node on their path and counted as truncated.
+ *
+ * This class is not thread-safe; it's meant to be owned by the profiler's sampling thread.
+ */
+public class StackTrie {
+
+    private static final int ROOT = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = -1;
+
+    private final int maxNodes;
+
+    // Frames are identified by "class.method" so that samples from different lines of the same method merge together.
+    private final Map<String, Integer> frameIdsByName = new HashMap<>();
+    private final List<String> frameNames = new ArrayList<>();
+    // Caches the frame ID for each StackTraceElement we've seen, so we only build the name once per element. There's
+    // an element per line rather than per method, so this is capped separately, and just starts over when it's full.
+    private final Map<StackTraceElement, Integer> frameIdsByElement = new HashMap<>();
+    private final int maxCachedElements;
+
+    private int[] parents;
+    private int[] frames;
+    private long[] selfCounts;
+    private int nodeCount;
+
+    // open-addressing table from (parent node, frame ID) to child node
+    private int[] childTable;
+    private int childTableMask;
+
+    private long totalSamples;
+    private long truncatedSamples;
+
+    public StackTrie(int maxNodes) {
+        this.maxNodes = Math.max(2, maxNodes);
+        this.maxCachedElements = this.maxNodes;
+        int capacity = Math.min(INITIAL_CAPACITY, this.maxNodes);
+        this.parents = new int[capacity];
+        this.frames = new int[capacity];
+        this.selfCounts = new long[capacity];
+        this.childTable = new int[tableSizeFor(capacity)];
+        this.childTableMask = childTable.length - 1;
+        clear();
+    }
+
+    /**
+     * Adds a sample. The stack is in the same order as Thread.getStackTrace(): the innermost frame comes first.
+     */
+    public void addSample(StackTraceElement[] stack) {
+        totalSamples++;
+        int node = ROOT;
+        for (int i = stack.length - 1; i >= 0; i--) {
+            int child = findOrCreateChild(node, internFrame(stack[i]));
+            if (child == EMPTY) {
+                truncatedSamples++;
+                break;
+            }
+            node = child;
+        }
+        selfCounts[node]++;
+    }
+
+    public void clear() {
+        Arrays.fill(childTable, EMPTY);
+        Arrays.fill(selfCounts, 0, nodeCount, 0);
+        parents[ROOT] = EMPTY;
+        frames[ROOT] = EMPTY;
+        selfCounts[ROOT] = 0;
+        nodeCount = 1;
+        totalSamples = 0;
+        truncatedSamples = 0;
+        // we don't want the interned frames to grow without bound either.
+        if (frameNames.size() > maxNodes) {
+            frameIdsByName.clear();
+            frameNames.clear();
+            frameIdsByElement.clear();
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public long getTruncatedSamples() {
+        return truncatedSamples;
+    }
+
+    // visible for testing
+    int getCachedElementCount() {
+        return frameIdsByElement.size();
+    }
+
+    /**
+     * Writes one line per distinct stack in the "collapsed" format used by flame graph tools:
+     * frames from the outermost to the innermost separated by semicolons, then a space and the sample count.
+     */
+    public void writeCollapsed(Appendable out) throws IOException {
+        int[] path = new int[16];
+        for (int node = 1; node < nodeCount; node++) {
+            if (selfCounts[node] == 0) {
+                continue;
+            }
+            int depth = 0;
+            for (int n = node; n != ROOT; n = parents[n]) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, path.length * 2);
+                }
+                path[depth++] = frames[n];
+            }
+            for (int i = depth - 1; i >= 0; i--) {
+                out.append(frameNames.get(path[i]));
+                if (i > 0) {
+                    out.append(';');
+                }
+            }
+            out.append(' ').append(Long.toString(selfCounts[node])).append('\n');
+        }
+        if (selfCounts[ROOT] > 0) {
+            out.append("[unknown] ").append(Long.toString(selfCounts[ROOT])).append('\n');
+        }
+    }
+
+    private int internFrame(StackTraceElement element) {
+        Integer id = frameIdsByElement.get(element);
+        if (id != null) {
+            return id;
+        }
+        String name = element.getClassName() + "." + element.getMethodName();
+        id = frameIdsByName.get(name);
+        if (id == null) {
+            id = frameNames.size();
+            frameNames.add(name);
+            frameIdsByName.put(name, id);
+        }
+        if (frameIdsByElement.size() >= maxCachedElements) {
+            frameIdsByElement.clear();
+        }
+        frameIdsByElement.put(element, id);
+        return id;
+    }
+
+    private int findOrCreateChild(int parent, int frame) {
+        int slot = hash(parent, frame) & childTableMask;
+        while (true) {
+            int candidate = childTable[slot];
+            if (candidate == EMPTY) {
+                break;
+            }
+            if (parents[candidate] == parent && frames[candidate] == frame) {
+                return candidate;
+            }
+            slot = (slot + 1) & childTableMask;
+        }
+
+        if (nodeCount >= maxNodes) {
+            return EMPTY;
+        }
+        if (nodeCount == parents.length) {
+            grow();
+            // the table was rebuilt, so we need to find our slot again.
+            slot = hash(parent, frame) & childTableMask;
+            while (childTable[slot] != EMPTY) {
+                slot = (slot + 1) & childTableMask;
+            }
+        }
+
+        int node = nodeCount++;
+        parents[node] = parent;
+        frames[node] = frame;
+        selfCounts[node] = 0;
+        childTable[slot] = node;
+        return node;
+    }
+
+    private void grow() {
+        int newCapacity = Math.min(parents.length * 2, maxNodes);
+        parents = Arrays.copyOf(parents, newCapacity);
+        frames = Arrays.copyOf(frames, newCapacity);
+        selfCounts = Arrays.copyOf(selfCounts, newCapacity);
+
+        childTable = new int[tableSizeFor(newCapacity)];
+        childTableMask = childTable.length - 1;
+        Arrays.fill(childTable, EMPTY);
+        for (int node = 1; node < nodeCount; node++) {
+            int slot = hash(parents[node], frames[node]) & childTableMask;
+            while (childTable[slot] != EMPTY) {
+                slot = (slot + 1) & childTableMask;
+            }
+            childTable[slot] = node;
+        }
+    }
+
+    private static int hash(int parent, int frame) {
+        int h = parent * 0x9E3779B9 + frame;
+        return h ^ (h >>> 16);
+    }
+
+    // keeps the table at most half full
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(2, capacity) - 1) << 2;
+    }
+}
@@ -0,0 +1,194 @@
+package danielgmyers.minecraft.tracker.diagnostics;
+
+import danielgmyers.minecraft.tracker.TickStatsTracker;
+import danielgmyers.minecraft.tracker.TickTimeSource;
+import danielgmyers.minecraft.tracker.config.Config;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the tick that's currently in progress on a tracker, and if it runs longer than the configured threshold,
+ * repeatedly samples the ticking thread's stack until the tick ends. The distinct stacks we saw (and how often we saw
+ * each of them) are then appended to a rolling file in the log directory.
+ *
+ * All of the work happens on the watchdog's own daemon thread. The tick thread only publishes the in-progress tick
+ * for it to watch: TickStatsTracker.startTick() reads the tick thread (setting it on the first tick) and does one
+ * volatile write of the start time, and endTick() clears it again with an ordered store.
+ */
+public class StallWatchdog implements Runnable {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final int ROTATED_FILES_TO_KEEP = 3;
+
+    // We don't want to spin too quickly while waiting for a tick to cross the threshold.
+    private static final long MAX_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Bounds the memory used by a single stall report if the stack keeps changing.
+    private static final int MAX_DISTINCT_STACKS_PER_STALL = 256;
+
+    private final TickStatsTracker tracker;
+    private final TickTimeSource timeSource;
+    private final Clock clock;
+    private final ThreadMXBean threadMXBean;
+    private final RollingLogFile stallLog;
+    // the threshold and sample interval are read from here as they're needed, so they follow config reloads.
+    private final Config config;
+
+    private volatile boolean running = false;
+    private Thread watchdogThread;
+
+    public StallWatchdog(TickStatsTracker tracker, Config config, Path logDirectory, Clock clock) {
+        this.tracker = tracker;
+        this.timeSource = tracker.getTimeSource();
+        this.clock = clock;
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.stallLog = new RollingLogFile(logDirectory.resolve(config.getStallWatchdogFile()),
+                                           config.getStallWatchdogMaxFileBytes(), ROTATED_FILES_TO_KEEP);
+        this.config = config;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        LOG.info("Starting stall watchdog for source '{}': threshold {} ms, writing stacks to {}.",
+                 tracker.getTickSource(), TimeUnit.NANOSECONDS.toMillis(thresholdNanos()), stallLog.getFile());
+        running = true;
+        watchdogThread = new Thread(this, "tracker-stall-watchdog");
+        watchdogThread.setDaemon(true);
+        watchdogThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (watchdogThread != null) {
+            watchdogThread.interrupt();
+            watchdogThread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                long tickStartNanos = tracker.getInProgressTickStartNanos();
+                if (tickStartNanos == TickStatsTracker.NO_TICK_IN_PROGRESS) {
+                    sleepNanos(MAX_POLL_INTERVAL_NANOS);
+                    continue;
+                }
+
+                long thresholdNanos = thresholdNanos();
+                long elapsedNanos = timeSource.nanoTime() - tickStartNanos;
+                if (elapsedNanos < thresholdNanos) {
+                    sleepNanos(Math.min(MAX_POLL_INTERVAL_NANOS, thresholdNanos - elapsedNanos));
+                    continue;
+                }
+
+                captureStall(tickStartNanos, thresholdNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.warn("Stall watchdog for source '{}' stopped unexpectedly.", tracker.getTickSource(), e);
+        }
+    }
+
+    private long thresholdNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getStallWatchdogThresholdMillis()));
+    }
+
+    private void captureStall(long tickStartNanos, long thresholdNanos) throws InterruptedException {
+        Thread tickThread = tracker.getTickThread();
+        if (tickThread == null) {
+            sleepNanos(MAX_POLL_INTERVAL_NANOS);
+            return;
+        }
+
+        Instant stallDetectedAt = clock.instant();
+        LOG.warn("Tick for source '{}' has been running for more than {} ms, sampling stacks of thread '{}'.",
+                 tracker.getTickSource(), TimeUnit.NANOSECONDS.toMillis(thresholdNanos), tickThread.getName());
+
+        Map<List<StackTraceElement>, Integer> stackCounts = new HashMap<>();
+        int totalSamples = 0;
+        int droppedSamples = 0;
+        long lastSampleNanos = timeSource.nanoTime();
+        long sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getStallWatchdogSampleIntervalMillis()));
+
+        // The tick is over as soon as the tracker's in-progress start time changes, either because the tick ended
+        // or because a new tick started in between our samples.
+        while (running && tracker.getInProgressTickStartNanos() == tickStartNanos) {
+            ThreadInfo info = threadMXBean.getThreadInfo(tickThread.getId(), Integer.MAX_VALUE);
+            lastSampleNanos = timeSource.nanoTime();
+            if (info != null && info.getStackTrace().length > 0) {
+                List<StackTraceElement> stack = Arrays.asList(info.getStackTrace());
+                Integer previousCount = stackCounts.get(stack);
+                if (previousCount != null) {
+                    stackCounts.put(stack, previousCount + 1);
+                    totalSamples++;
+                } else if (stackCounts.size() < MAX_DISTINCT_STACKS_PER_STALL) {
+                    stackCounts.put(stack, 1);
+                    totalSamples++;
+                } else {
+                    droppedSamples++;
+                }
+            }
+            sleepNanos(sampleIntervalNanos);
+        }
+
+        // this is a lower bound, since we only know the tick ended sometime after our last sample.
+        long stallMillis = TimeUnit.NANOSECONDS.toMillis(lastSampleNanos - tickStartNanos);
+        LOG.warn("Tick for source '{}' ran for at least {} ms; captured {} distinct stacks from {} samples.",
+                 tracker.getTickSource(), stallMillis, stackCounts.size(), totalSamples);
+
+        try {
+            stallLog.append(formatReport(tickThread, stallDetectedAt, stallMillis, thresholdNanos, stackCounts,
+                                         totalSamples, droppedSamples));
+        } catch (IOException e) {
+            LOG.warn("Failed to write stall report to {}.", stallLog.getFile(), e);
+        }
+    }
+
+    private String formatReport(Thread tickThread, Instant stallDetectedAt, long stallMillis, long thresholdNanos,
+                                Map<List<StackTraceElement>, Integer> stackCounts, int totalSamples, int droppedSamples) {
+        StringBuilder report = new StringBuilder();
+        report.append("=== Stall on source '").append(tracker.getTickSource())
+              .append("' (thread '").append(tickThread.getName()).append("') detected at ").append(stallDetectedAt)
+              .append(": tick ran for at least ").append(stallMillis).append(" ms (threshold ")
+              .append(TimeUnit.NANOSECONDS.toMillis(thresholdNanos)).append(" ms). ")
+              .append(totalSamples).append(" samples, ").append(stackCounts.size()).append(" distinct stacks");
+        if (droppedSamples > 0) {
+            report.append(", ").append(droppedSamples).append(" samples dropped after reaching the distinct stack limit");
+        }
+        report.append(".\n");
+
+        List<Map.Entry<List<StackTraceElement>, Integer>> sortedStacks = new ArrayList<>(stackCounts.entrySet());
+        sortedStacks.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        for (Map.Entry<List<StackTraceElement>, Integer> entry : sortedStacks) {
+            report.append("--- ").append(entry.getValue()).append(" of ").append(totalSamples).append(" samples ---\n");
+            for (StackTraceElement frame : entry.getKey()) {
+                report.append("    at ").append(frame).append('\n');
+            }
+        }
+        report.append('\n');
+        return report.toString();
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(Math.max(1, nanos));
+    }
+}
@@ -0,0 +1,96 @@
+package danielgmyers.minecraft.tracker.history;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One source's ticks on their way into the flight recording: a small ring that the thread ticking the source appends
+ * to, and that the FlightRecorder's thread drains a few times a second.
+ *
+ * Recording a tick is two array writes and an ordered store, with no allocation and no waiting. If the recorder falls
+ * so far behind that the ring fills up, ticks are dropped (and counted) instead.
+ */
+public final class FlightLog {
+
+    // about 50 seconds of ticks at 20 TPS; must be a power of two
+    static final int CAPACITY = 1024;
+
+    private final String source;
+    private final int id;
+
+    // two longs per tick: start time in epoch millis, and duration in nanos
+    private final long[] ticks = new long[CAPACITY * 2];
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong droppedTicks = new AtomicLong();
+    private volatile boolean closed = false;
+
+    // where this log's ticks were last written in the recording; only used by the recorder's thread.
+    long chunkSequence = 0;
+    long lastStartMillis = 0;
+
+    FlightLog(String source, int id) {
+        this.source = source;
+        this.id = id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Adds a tick to the log. Must only be called from one thread at a time, i.e. the thread ticking the source.
+     */
+    public void record(long tickStartTimeMillis, long tickNanos) {
+        long position = tail.get();
+        if (position - head.get() >= CAPACITY) {
+            droppedTicks.incrementAndGet();
+            return;
+        }
+        int slot = slotOf(position);
+        ticks[slot] = tickStartTimeMillis;
+        ticks[slot + 1] = tickNanos;
+        // the recorder reads the tail before the tick, so this ordered store is all it needs to see the tick whole
+        tail.lazySet(position + 1);
+    }
+
+    /**
+     * Stops recording this source; the recorder writes out whatever is still waiting and then forgets it.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    long getDroppedTicks() {
+        return droppedTicks.get();
+    }
+
+    // The rest is only for the recorder's thread.
+
+    int pendingTicks() {
+        return (int) (tail.get() - head.get());
+    }
+
+    long peekStartMillis(int index) {
+        return ticks[slotOf(head.get() + index)];
+    }
+
+    long peekNanos(int index) {
+        return ticks[slotOf(head.get() + index) + 1];
+    }
+
+    void consume(int count) {
+        head.lazySet(head.get() + count);
+    }
+
+    private static int slotOf(long position) {
+        return (int) (position & (CAPACITY - 1)) * 2;
+    }
+}
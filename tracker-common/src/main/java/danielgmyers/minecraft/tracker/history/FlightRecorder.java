@@ -0,0 +1,296 @@
+package danielgmyers.minecraft.tracker.history;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records every tick of every source (when it started and how long it took) to a rolling memory-mapped file, for
+ * post-mortems that need more detail than the per-second history. FlightRecordingReader reads it back, and
+ * FlightRecordingAnalyzer summarizes it from the command line.
+ *
+ * The tick threads only append to their source's FlightLog; this recorder's own thread drains the logs a few times a
+ * second and encodes their ticks into the file, so encoding and page faults never hold up a tick.
+ *
+ * The file is a 64-byte header followed by fixed-size chunks used as a ring, so once it's full the oldest chunk is
+ * overwritten. Each chunk starts with its sequence number and where its data ends, and can be decoded on its own: it
+ * names each source before that source's first ticks, and each source's first tick in a chunk starts from zero. After
+ * that, a tick is the change in start time from the source's previous tick (a zigzag varint, in millis) followed by
+ * its duration (a varint, in micros), which usually comes to three bytes.
+ *
+ * Everything written to the mapping is in the OS page cache straight away, so it survives the JVM crashing, and
+ * stop(), which the mod calls when the server stops, writes out whatever is still waiting. When the recorder starts,
+ * the recordings from the previous few runs are kept next to the file as name.1, name.2, and so on.
+ */
+public class FlightRecorder implements Runnable {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    static final int MAGIC = 0x54524b46; // "TRKF"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int CHUNK_BYTES = 64 * 1024;
+    // the chunk's sequence number (0 if it's never been used), then the offset where its data ends
+    static final int CHUNK_HEADER_BYTES = 16;
+
+    static final byte SOURCE_RECORD = 1;
+    static final byte TICKS_RECORD = 2;
+
+    // a varint takes at most 10 bytes, and a tick is two of them
+    private static final int MAX_TICK_BYTES = 20;
+    // a record's type, then two varints that fit in an int
+    private static final int MAX_RECORD_HEADER_BYTES = 11;
+
+    private static final int FILES_TO_KEEP = 3;
+    private static final long DRAIN_INTERVAL_MILLIS = 250;
+    // the whole file is mapped as a single buffer, so it has to stay under 2GB.
+    private static final long MAX_FILE_BYTES = 1024L * 1024 * 1024;
+
+    private final Path file;
+    private final int chunkCount;
+
+    private final List<FlightLog> logs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextLogId = new AtomicInteger(1);
+
+    // only touched while holding this recorder's lock
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int chunkIndex = -1;
+    private long chunkSequence = 0;
+    private int chunkEnd = 0;
+    private long droppedTicks = 0;
+
+    private volatile boolean running = false;
+    private Thread writerThread;
+
+    public FlightRecorder(Config config, Path file) {
+        this.file = file;
+        long fileBytes = Math.min(MAX_FILE_BYTES, config.getFlightRecorderMaxBytes());
+        this.chunkCount = (int) Math.max(2, (fileBytes - HEADER_BYTES) / CHUNK_BYTES);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            LOG.warn("Unable to open the flight recording {}, ticks won't be recorded.", file, e);
+            return;
+        }
+        LOG.info("Recording every tick to {}.", file);
+        running = true;
+        writerThread = new Thread(this, "tracker-flight-recorder");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Writes out the ticks that are still waiting, forces the file to disk and closes it. Ticks recorded after this
+     * are dropped.
+     */
+    public void stop() {
+        Thread writer;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            writer = writerThread;
+            writerThread = null;
+        }
+        writer.interrupt();
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        close();
+    }
+
+    /**
+     * Returns the log to record the given source's ticks to, or null if the recorder isn't running. The log should be
+     * closed when the source's trackers are discarded.
+     */
+    public FlightLog forSource(String source) {
+        if (!running) {
+            return null;
+        }
+        FlightLog log = new FlightLog(source, nextLogId.getAndIncrement());
+        logs.add(log);
+        return log;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(DRAIN_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to write to the flight recording {}.", file, e);
+            }
+        }
+    }
+
+    /**
+     * Writes every log's waiting ticks into the file.
+     */
+    public synchronized void flush() {
+        if (buffer == null) {
+            return;
+        }
+        for (FlightLog log : logs) {
+            drain(log);
+            if (log.isClosed() && log.pendingTicks() == 0) {
+                logs.remove(log);
+                droppedTicks += log.getDroppedTicks();
+            }
+        }
+    }
+
+    private synchronized void close() {
+        flush();
+        for (FlightLog log : logs) {
+            droppedTicks += log.getDroppedTicks();
+        }
+        if (droppedTicks > 0) {
+            LOG.warn("Dropped {} tick(s) from the flight recording because it fell behind.", droppedTicks);
+        }
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to close the flight recording {}.", file, e);
+        }
+        buffer = null;
+        logs.clear();
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (Files.exists(file)) {
+            // it's from the last run, which might have ended in a crash, so it's kept.
+            rotate();
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) chunkCount * CHUNK_BYTES);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, CHUNK_BYTES);
+        buffer.putInt(12, chunkCount);
+        // written last, so a half-written header is never mistaken for a valid one
+        buffer.putInt(0, MAGIC);
+        startChunk();
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotatedFile(FILES_TO_KEEP));
+        for (int i = FILES_TO_KEEP - 1; i >= 1; i--) {
+            Path rotated = rotatedFile(i);
+            if (Files.exists(rotated)) {
+                Files.move(rotated, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rotatedFile(int index) {
+        return file.resolveSibling(file.getFileName().toString() + "." + index);
+    }
+
+    private int chunkOffset() {
+        return HEADER_BYTES + chunkIndex * CHUNK_BYTES;
+    }
+
+    // Moves on to the next chunk in the ring, overwriting whatever it held.
+    private void startChunk() {
+        chunkIndex = (chunkIndex + 1) % chunkCount;
+        chunkSequence++;
+        chunkEnd = CHUNK_HEADER_BYTES;
+        int offset = chunkOffset();
+        // the sequence number is cleared first and written last, so a half-reset chunk is never mistaken for either
+        // the old one or the new one.
+        buffer.putLong(offset, 0);
+        buffer.putInt(offset + 8, chunkEnd);
+        buffer.putLong(offset, chunkSequence);
+    }
+
+    private void drain(FlightLog log) {
+        int pending = log.pendingTicks();
+        while (pending > 0) {
+            boolean named = log.chunkSequence == chunkSequence;
+            byte[] name = named ? null : log.getSource().getBytes(StandardCharsets.UTF_8);
+            int recordBytes = MAX_RECORD_HEADER_BYTES + (named ? 0 : MAX_RECORD_HEADER_BYTES + name.length);
+            int room = (CHUNK_BYTES - chunkEnd - recordBytes) / MAX_TICK_BYTES;
+            if (room <= 0) {
+                if (chunkEnd == CHUNK_HEADER_BYTES) {
+                    // the name alone doesn't fit in a chunk, so there's no way to record this source.
+                    log.consume(pending);
+                    return;
+                }
+                startChunk();
+                continue;
+            }
+
+            int position = chunkOffset() + chunkEnd;
+            if (!named) {
+                buffer.put(position++, SOURCE_RECORD);
+                position = putVarint(position, log.getId());
+                position = putVarint(position, name.length);
+                for (byte b : name) {
+                    buffer.put(position++, b);
+                }
+                log.chunkSequence = chunkSequence;
+                log.lastStartMillis = 0;
+            }
+            int count = Math.min(room, pending);
+            buffer.put(position++, TICKS_RECORD);
+            position = putVarint(position, log.getId());
+            position = putVarint(position, count);
+            for (int i = 0; i < count; i++) {
+                long startMillis = log.peekStartMillis(i);
+                long delta = startMillis - log.lastStartMillis;
+                position = putVarint(position, (delta << 1) ^ (delta >> 63));
+                position = putVarint(position, Math.max(0, log.peekNanos(i)) / 1000);
+                log.lastStartMillis = startMillis;
+            }
+            log.consume(count);
+            pending -= count;
+
+            chunkEnd = position - chunkOffset();
+            // the records are in place before the chunk says they're there.
+            buffer.putInt(chunkOffset() + 8, chunkEnd);
+        }
+    }
+
+    private int putVarint(int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(position++, (byte) value);
+        return position;
+    }
+}
@@ -0,0 +1,202 @@
+package danielgmyers.minecraft.tracker.history;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Summarizes a flight recording from the command line, e.g.
+ *
+ *   java -cp tracker-common.jar danielgmyers.minecraft.tracker.history.FlightRecordingAnalyzer logs/tracker-flight.rec
+ *
+ * It prints each source's tick count, TPS and tick time percentiles, and a timeline of spikes: runs of ticks slower
+ * than the spike threshold (50ms unless a second argument says otherwise), merged when they're less than a second
+ * apart. The recording is streamed rather than loaded, so memory use only depends on the number of sources.
+ */
+public final class FlightRecordingAnalyzer {
+
+    private static final long DEFAULT_SPIKE_MILLIS = 50;
+    // spikes in the same source closer together than this are shown as one
+    private static final long SPIKE_GAP_MILLIS = 1000;
+    private static final int MAX_SPIKES_SHOWN = 100;
+
+    private FlightRecordingAnalyzer() {
+    }
+
+    public static void main(String[] args) {
+        long spikeMillis = DEFAULT_SPIKE_MILLIS;
+        try {
+            if (args.length < 1 || args.length > 2) {
+                throw new IllegalArgumentException();
+            }
+            if (args.length > 1) {
+                spikeMillis = Long.parseLong(args[1]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Usage: FlightRecordingAnalyzer <recording file> [spike threshold in ms]");
+            System.exit(2);
+        }
+        try {
+            analyze(Paths.get(args[0]), spikeMillis, System.out);
+        } catch (IOException e) {
+            System.err.println("Unable to read " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static void analyze(Path file, long spikeMillis, PrintStream out) throws IOException {
+        long spikeMicros = spikeMillis * 1000;
+        Map<String, SourceSummary> sources = new TreeMap<>();
+        // the worst spikes that have finished, least bad first so it's cheap to drop
+        PriorityQueue<Spike> spikes = new PriorityQueue<>(Comparator.comparingLong((Spike spike) -> spike.worstMicros));
+        long[] spikeCount = new long[1];
+
+        try (FlightRecordingReader reader = new FlightRecordingReader(file)) {
+            reader.read((source, tickStartTimeMillis, tickMicros) -> {
+                SourceSummary summary = sources.computeIfAbsent(source, SourceSummary::new);
+                summary.add(tickStartTimeMillis, tickMicros);
+                if (tickMicros < spikeMicros) {
+                    return;
+                }
+                summary.spikeTicks++;
+                Spike spike = summary.currentSpike;
+                if (spike == null || tickStartTimeMillis - spike.endMillis > SPIKE_GAP_MILLIS) {
+                    if (spike != null) {
+                        keepIfWorst(spikes, spike);
+                    }
+                    spike = new Spike(source, tickStartTimeMillis);
+                    summary.currentSpike = spike;
+                    spikeCount[0]++;
+                }
+                spike.add(tickStartTimeMillis, tickMicros);
+            });
+        }
+        for (SourceSummary summary : sources.values()) {
+            if (summary.currentSpike != null) {
+                keepIfWorst(spikes, summary.currentSpike);
+            }
+        }
+
+        long totalTicks = 0;
+        long firstMillis = Long.MAX_VALUE;
+        long lastMillis = Long.MIN_VALUE;
+        int nameWidth = "source".length();
+        for (SourceSummary summary : sources.values()) {
+            totalTicks += summary.ticks;
+            firstMillis = Math.min(firstMillis, summary.firstMillis);
+            lastMillis = Math.max(lastMillis, summary.lastMillis);
+            nameWidth = Math.max(nameWidth, summary.source.length());
+        }
+        if (totalTicks == 0) {
+            out.println("Flight recording " + file + " has no ticks in it.");
+            return;
+        }
+        out.printf(Locale.ROOT, "Flight recording %s: %d ticks from %s to %s.%n", file, totalTicks,
+                   Instant.ofEpochMilli(firstMillis), Instant.ofEpochMilli(lastMillis));
+
+        out.println();
+        out.println("Tick times by source, in ms:");
+        String row = "%-" + nameWidth + "s %10s %7s %8s %8s %8s %8s %8s %8s %7s%n";
+        out.printf(Locale.ROOT, row, "source", "ticks", "TPS", "mean", "p50", "p90", "p99", "p99.9", "max", "spikes");
+        for (SourceSummary summary : sources.values()) {
+            double seconds = (summary.lastMillis - summary.firstMillis) / 1000.0;
+            out.printf(Locale.ROOT, row, summary.source, summary.ticks,
+                       seconds > 0 ? String.format(Locale.ROOT, "%.2f", summary.ticks / seconds) : "-",
+                       millis(summary.totalMicros * 1000 / summary.ticks),
+                       millis(summary.tickNanos.getValueAtPercentile(50)),
+                       millis(summary.tickNanos.getValueAtPercentile(90)),
+                       millis(summary.tickNanos.getValueAtPercentile(99)),
+                       millis(summary.tickNanos.getValueAtPercentile(99.9)),
+                       millis(summary.maxMicros * 1000), summary.spikeTicks);
+        }
+
+        out.println();
+        if (spikeCount[0] == 0) {
+            out.printf(Locale.ROOT, "No ticks took %d ms or more.%n", spikeMillis);
+            return;
+        }
+        out.printf(Locale.ROOT, "Spikes (ticks of %d ms or more, less than a second apart counted together): %d%n",
+                   spikeMillis, spikeCount[0]);
+        if (spikeCount[0] > spikes.size()) {
+            out.printf(Locale.ROOT, "Showing the worst %d:%n", spikes.size());
+        }
+        List<Spike> timeline = new ArrayList<>(spikes);
+        timeline.sort(Comparator.comparingLong((Spike spike) -> spike.startMillis));
+        for (Spike spike : timeline) {
+            out.printf(Locale.ROOT, "%s  %-" + nameWidth + "s  %d tick(s) over %.1f s, worst %s ms%n",
+                       Instant.ofEpochMilli(spike.startMillis), spike.source, spike.ticks,
+                       (spike.endMillis - spike.startMillis + spike.lastTickMicros / 1000) / 1000.0,
+                       millis(spike.worstMicros * 1000));
+        }
+    }
+
+    // Keeps a finished spike if it's one of the worst so far.
+    private static void keepIfWorst(PriorityQueue<Spike> spikes, Spike spike) {
+        spikes.add(spike);
+        if (spikes.size() > MAX_SPIKES_SHOWN) {
+            spikes.poll();
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    private static final class SourceSummary {
+        private final String source;
+        private final LogLinearHistogram tickNanos = new LogLinearHistogram();
+        private long ticks = 0;
+        private long firstMillis = Long.MAX_VALUE;
+        private long lastMillis = Long.MIN_VALUE;
+        private long totalMicros = 0;
+        private long maxMicros = 0;
+        private long spikeTicks = 0;
+        private Spike currentSpike = null;
+
+        private SourceSummary(String source) {
+            this.source = source;
+        }
+
+        private void add(long tickStartTimeMillis, long tickMicros) {
+            ticks++;
+            firstMillis = Math.min(firstMillis, tickStartTimeMillis);
+            lastMillis = Math.max(lastMillis, tickStartTimeMillis);
+            totalMicros += tickMicros;
+            maxMicros = Math.max(maxMicros, tickMicros);
+            tickNanos.record(Math.min(LogLinearHistogram.MAX_TRACKABLE_VALUE, tickMicros * 1000));
+        }
+    }
+
+    private static final class Spike {
+        private final String source;
+        private final long startMillis;
+        private long endMillis;
+        private long ticks = 0;
+        private long worstMicros = 0;
+        private long lastTickMicros = 0;
+
+        private Spike(String source, long startMillis) {
+            this.source = source;
+            this.startMillis = startMillis;
+            this.endMillis = startMillis;
+        }
+
+        private void add(long tickStartTimeMillis, long tickMicros) {
+            ticks++;
+            endMillis = tickStartTimeMillis;
+            worstMicros = Math.max(worstMicros, tickMicros);
+            lastTickMicros = tickMicros;
+        }
+    }
+}
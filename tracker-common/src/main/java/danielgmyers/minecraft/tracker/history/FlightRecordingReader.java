@@ -0,0 +1,142 @@
+package danielgmyers.minecraft.tracker.history;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads back a file written by FlightRecorder, oldest chunk first, one chunk at a time, so a recording of any size
+ * can be read in a small, fixed amount of memory. The ticks of different sources are interleaved roughly in the order
+ * they happened; each source's own ticks are always in order.
+ */
+public final class FlightRecordingReader implements Closeable {
+
+    public interface TickVisitor {
+        void tick(String source, long tickStartTimeMillis, long tickMicros);
+    }
+
+    private final FileChannel channel;
+    private final int chunkBytes;
+    private final int chunkCount;
+
+    public FlightRecordingReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(0, FlightRecorder.HEADER_BYTES);
+            if (header.getInt(0) != FlightRecorder.MAGIC || header.getInt(4) != FlightRecorder.VERSION) {
+                throw new IOException(file + " isn't a flight recording.");
+            }
+            this.chunkBytes = header.getInt(8);
+            this.chunkCount = header.getInt(12);
+            if (chunkBytes <= FlightRecorder.CHUNK_HEADER_BYTES || chunkCount <= 0) {
+                throw new IOException(file + " has an invalid flight recording header.");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Calls the visitor for every tick in the recording.
+     */
+    public void read(TickVisitor visitor) throws IOException {
+        for (int chunk : chunksInOrder()) {
+            ByteBuffer data = readFully(chunkOffset(chunk), chunkBytes);
+            readChunk(data, visitor);
+        }
+    }
+
+    // The chunks that hold data, by sequence number.
+    private List<Integer> chunksInOrder() throws IOException {
+        List<Integer> chunks = new ArrayList<>();
+        long[] sequences = new long[chunkCount];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            sequences[chunk] = readFully(chunkOffset(chunk), Long.BYTES).getLong(0);
+            if (sequences[chunk] != 0) {
+                chunks.add(chunk);
+            }
+        }
+        chunks.sort((a, b) -> Long.compare(sequences[a], sequences[b]));
+        return chunks;
+    }
+
+    private void readChunk(ByteBuffer data, TickVisitor visitor) throws IOException {
+        int end = Math.min(data.getInt(8), chunkBytes);
+        data.position(FlightRecorder.CHUNK_HEADER_BYTES);
+        data.limit(Math.max(FlightRecorder.CHUNK_HEADER_BYTES, end));
+
+        // source names and start times only carry over within a chunk.
+        Map<Integer, String> names = new HashMap<>();
+        Map<Integer, Long> lastStartMillis = new HashMap<>();
+        while (data.hasRemaining()) {
+            byte type = data.get();
+            int id = (int) getVarint(data);
+            if (type == FlightRecorder.SOURCE_RECORD) {
+                byte[] name = new byte[(int) getVarint(data)];
+                data.get(name);
+                names.put(id, new String(name, StandardCharsets.UTF_8));
+                lastStartMillis.put(id, 0L);
+            } else if (type == FlightRecorder.TICKS_RECORD) {
+                String source = names.get(id);
+                if (source == null) {
+                    throw new IOException("Ticks for unknown source " + id + " in flight recording.");
+                }
+                long startMillis = lastStartMillis.get(id);
+                long count = getVarint(data);
+                for (long i = 0; i < count; i++) {
+                    long zigzag = getVarint(data);
+                    startMillis += (zigzag >>> 1) ^ -(zigzag & 1);
+                    visitor.tick(source, startMillis, getVarint(data));
+                }
+                lastStartMillis.put(id, startMillis);
+            } else {
+                throw new IOException("Unknown record type " + type + " in flight recording.");
+            }
+        }
+    }
+
+    private static long getVarint(ByteBuffer data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!data.hasRemaining()) {
+                throw new EOFException("Truncated record in flight recording.");
+            }
+            byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in flight recording.");
+    }
+
+    private long chunkOffset(int chunk) {
+        return FlightRecorder.HEADER_BYTES + (long) chunk * chunkBytes;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Flight recording ends early.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
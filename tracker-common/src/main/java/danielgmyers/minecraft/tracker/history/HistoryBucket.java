@@ -0,0 +1,132 @@
+package danielgmyers.minecraft.tracker.history;
+
+import java.time.Instant;
+
+/**
+ * The tick and player statistics for one stretch of a source's history: either a single bucket as stored, or several
+ * consecutive buckets merged together by TimeSeriesStore.aggregate.
+ */
+public final class HistoryBucket {
+
+    private final long startSecond;
+    private long durationSeconds;
+
+    private long tickSeconds;
+    private long tickCount;
+    private long minTickCount = Long.MAX_VALUE;
+    private long maxTickCount;
+    private long totalTickNanos;
+    private long minTickNanos = Long.MAX_VALUE;
+    private long maxTickNanos;
+
+    private long playerSeconds;
+    private long playerCountSum;
+    private long minPlayerCount = Long.MAX_VALUE;
+    private long maxPlayerCount;
+
+    HistoryBucket(long startSecond, long durationSeconds) {
+        this.startSecond = startSecond;
+        this.durationSeconds = durationSeconds;
+    }
+
+    void merge(long[] fields) {
+        if (fields[RingSegment.TICK_SECONDS] > 0) {
+            tickSeconds += fields[RingSegment.TICK_SECONDS];
+            tickCount += fields[RingSegment.TICK_COUNT];
+            minTickCount = Math.min(minTickCount, fields[RingSegment.MIN_TICK_COUNT]);
+            maxTickCount = Math.max(maxTickCount, fields[RingSegment.MAX_TICK_COUNT]);
+            totalTickNanos += fields[RingSegment.TOTAL_TICK_NANOS];
+            minTickNanos = Math.min(minTickNanos, fields[RingSegment.MIN_TICK_NANOS]);
+            maxTickNanos = Math.max(maxTickNanos, fields[RingSegment.MAX_TICK_NANOS]);
+        }
+        if (fields[RingSegment.PLAYER_SECONDS] > 0) {
+            playerSeconds += fields[RingSegment.PLAYER_SECONDS];
+            playerCountSum += fields[RingSegment.PLAYER_COUNT_SUM];
+            minPlayerCount = Math.min(minPlayerCount, fields[RingSegment.MIN_PLAYER_COUNT]);
+            maxPlayerCount = Math.max(maxPlayerCount, fields[RingSegment.MAX_PLAYER_COUNT]);
+        }
+    }
+
+    void merge(HistoryBucket other) {
+        tickSeconds += other.tickSeconds;
+        tickCount += other.tickCount;
+        minTickCount = Math.min(minTickCount, other.minTickCount);
+        maxTickCount = Math.max(maxTickCount, other.maxTickCount);
+        totalTickNanos += other.totalTickNanos;
+        minTickNanos = Math.min(minTickNanos, other.minTickNanos);
+        maxTickNanos = Math.max(maxTickNanos, other.maxTickNanos);
+        playerSeconds += other.playerSeconds;
+        playerCountSum += other.playerCountSum;
+        minPlayerCount = Math.min(minPlayerCount, other.minPlayerCount);
+        maxPlayerCount = Math.max(maxPlayerCount, other.maxPlayerCount);
+    }
+
+    void extendTo(long endSecond) {
+        durationSeconds = Math.max(durationSeconds, endSecond - startSecond);
+    }
+
+    public Instant getStart() {
+        return Instant.ofEpochSecond(startSecond);
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    // The number of seconds in this bucket that we have tick data for.
+    public long getTickSeconds() {
+        return tickSeconds;
+    }
+
+    // The number of seconds in this bucket that we have player count data for.
+    public long getPlayerSeconds() {
+        return playerSeconds;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getTotalTickNanos() {
+        return totalTickNanos;
+    }
+
+    /**
+     * Returns the requested aggregation of the metric over this bucket, or NaN if there's no data for it.
+     */
+    public double get(TimeSeriesStore.Metric metric, TimeSeriesStore.Aggregation aggregation) {
+        switch (metric) {
+            case TICKS_PER_SECOND:
+                if (tickSeconds == 0) {
+                    return Double.NaN;
+                }
+                return pick(aggregation, minTickCount, (double) tickCount / tickSeconds, maxTickCount);
+            case MILLIS_PER_TICK:
+                if (tickCount == 0) {
+                    return Double.NaN;
+                }
+                return pick(aggregation, minTickNanos / 1_000_000.0, totalTickNanos / 1_000_000.0 / tickCount,
+                            maxTickNanos / 1_000_000.0);
+            case PLAYER_COUNT:
+                if (playerSeconds == 0) {
+                    return Double.NaN;
+                }
+                return pick(aggregation, minPlayerCount, (double) playerCountSum / playerSeconds, maxPlayerCount);
+            default:
+                throw new IllegalArgumentException("Unknown metric: " + metric);
+        }
+    }
+
+    private static double pick(TimeSeriesStore.Aggregation aggregation, double min, double avg, double max) {
+        switch (aggregation) {
+            case MIN:
+                return min;
+            case AVG:
+                return avg;
+            case MAX:
+                return max;
+            default:
+                throw new IllegalArgumentException("Unknown aggregation: " + aggregation);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package danielgmyers.minecraft.tracker.history;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed number of fixed-size buckets in a memory-mapped file, used as a ring: the bucket starting at second S lives
+ * in slot (S / resolution) % slotCount, so once the ring has wrapped, new buckets simply overwrite the oldest ones.
+ *
+ * Each slot holds the merged per-second tick and player statistics for one bucket (see the field offsets below).
+ * Merging a second into a slot is a handful of absolute reads and writes on the mapping, with no allocation.
+ *
+ * Because the file is mapped, every write is in the OS page cache as soon as it's made, so it survives the JVM
+ * crashing; force() additionally protects against the machine going down. When a slot is reused for a new bucket,
+ * its start time is cleared first and written last, so a crash part way through leaves an empty slot rather than a
+ * slot with the wrong data in it.
+ *
+ * Readers on other threads can't see a merge as it happens: each slot also has a sequence number in memory, which the
+ * writer makes odd while it changes the slot and even again afterwards, and a reader retries (or gives up on the
+ * slot) if the number was odd or changed while it was copying the fields.
+ *
+ * There must only ever be one writer per segment.
+ */
+final class RingSegment {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final int MAGIC = 0x54524b48; // "TRKH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    // slot layout, as offsets in longs
+    static final int BUCKET_START = 0;
+    static final int TICK_SECONDS = 1;
+    static final int TICK_COUNT = 2;
+    static final int MIN_TICK_COUNT = 3;
+    static final int MAX_TICK_COUNT = 4;
+    static final int TOTAL_TICK_NANOS = 5;
+    static final int MIN_TICK_NANOS = 6;
+    static final int MAX_TICK_NANOS = 7;
+    static final int PLAYER_SECONDS = 8;
+    static final int PLAYER_COUNT_SUM = 9;
+    static final int MIN_PLAYER_COUNT = 10;
+    static final int MAX_PLAYER_COUNT = 11;
+    static final int FIELDS = 12;
+
+    private static final int SLOT_BYTES = FIELDS * Long.BYTES;
+    // a slot that's being merged into on every try is given up on; the caller just goes without it.
+    private static final int READ_ATTEMPTS = 4;
+
+    private final Path file;
+    private final long resolutionSeconds;
+    private final int slotCount;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // odd while the writer is changing the slot; see read().
+    private final AtomicLongArray sequences;
+    // the start of the newest bucket we hold, or 0 if there isn't one.
+    private volatile long newestBucketStart = 0;
+
+    RingSegment(Path file, long resolutionSeconds, int slotCount) throws IOException {
+        this.file = file;
+        this.resolutionSeconds = resolutionSeconds;
+        this.slotCount = slotCount;
+
+        long fileBytes = HEADER_BYTES + (long) slotCount * SLOT_BYTES;
+        if (Files.exists(file) && !hasMatchingHeader(file, fileBytes)) {
+            LOG.warn("History file {} doesn't match the configured retention, starting it over.", file);
+            Files.delete(file);
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, SLOT_BYTES);
+            buffer.putInt(12, slotCount);
+            buffer.putLong(16, resolutionSeconds);
+            // written last, so a half-written header is never mistaken for a valid one
+            buffer.putInt(0, MAGIC);
+        }
+        this.sequences = new AtomicLongArray(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            newestBucketStart = Math.max(newestBucketStart, buffer.getLong(HEADER_BYTES + slot * SLOT_BYTES));
+        }
+    }
+
+    private boolean hasMatchingHeader(Path file, long expectedBytes) throws IOException {
+        try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (existing.size() != expectedBytes) {
+                return false;
+            }
+            MappedByteBuffer header = existing.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == SLOT_BYTES
+                   && header.getInt(12) == slotCount && header.getLong(16) == resolutionSeconds;
+        }
+    }
+
+    long getResolutionSeconds() {
+        return resolutionSeconds;
+    }
+
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    long bucketStartFor(long epochSecond) {
+        return Math.floorDiv(epochSecond, resolutionSeconds) * resolutionSeconds;
+    }
+
+    // Returns 0 if the ring is empty.
+    long getNewestBucketStart() {
+        return newestBucketStart;
+    }
+
+    // Returns 0 if the ring is empty. Anything before this has been overwritten.
+    long getOldestRetainedBucketStart() {
+        long newest = newestBucketStart;
+        return newest == 0 ? 0 : newest - (slotCount - 1) * resolutionSeconds;
+    }
+
+    void mergeTicks(long epochSecond, long tickCount, long totalTickNanos, long minTickNanos, long maxTickNanos) {
+        long bucketStart = bucketStartFor(epochSecond);
+        int index = indexOf(bucketStart);
+        long sequence = beginWrite(index);
+        int slot = claim(bucketStart);
+        add(slot, TICK_SECONDS, 1);
+        add(slot, TICK_COUNT, tickCount);
+        min(slot, MIN_TICK_COUNT, tickCount);
+        max(slot, MAX_TICK_COUNT, tickCount);
+        add(slot, TOTAL_TICK_NANOS, totalTickNanos);
+        min(slot, MIN_TICK_NANOS, minTickNanos);
+        max(slot, MAX_TICK_NANOS, maxTickNanos);
+        endWrite(index, sequence);
+    }
+
+    void mergePlayers(long epochSecond, long playerCount) {
+        long bucketStart = bucketStartFor(epochSecond);
+        int index = indexOf(bucketStart);
+        long sequence = beginWrite(index);
+        int slot = claim(bucketStart);
+        add(slot, PLAYER_SECONDS, 1);
+        add(slot, PLAYER_COUNT_SUM, playerCount);
+        min(slot, MIN_PLAYER_COUNT, playerCount);
+        max(slot, MAX_PLAYER_COUNT, playerCount);
+        endWrite(index, sequence);
+    }
+
+    // The increment is a read-modify-write, so none of the writes to the slot that follow can be seen before it.
+    private long beginWrite(int index) {
+        return sequences.incrementAndGet(index);
+    }
+
+    private void endWrite(int index, long sequence) {
+        sequences.set(index, sequence + 1);
+    }
+
+    /**
+     * Copies the bucket starting at bucketStart into fields, returning false if the ring doesn't hold that bucket
+     * (because there was no data for it, it has been overwritten, or it kept being written while we tried to read it).
+     */
+    boolean read(long bucketStart, long[] fields) {
+        if (bucketStart == 0) {
+            return false;
+        }
+        int index = indexOf(bucketStart);
+        int offset = HEADER_BYTES + index * SLOT_BYTES;
+        for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+            long before = sequences.get(index);
+            if ((before & 1) != 0) {
+                continue;
+            }
+            for (int i = 0; i < FIELDS; i++) {
+                fields[i] = buffer.getLong(offset + i * Long.BYTES);
+            }
+            // a read-modify-write rather than a plain volatile read, so the copies above can't be reordered after it.
+            if (sequences.getAndAdd(index, 0) == before) {
+                return fields[BUCKET_START] == bucketStart;
+            }
+        }
+        return false;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    private int indexOf(long bucketStart) {
+        return (int) Math.floorMod(Math.floorDiv(bucketStart, resolutionSeconds), (long) slotCount);
+    }
+
+    private int offsetOf(long bucketStart) {
+        return HEADER_BYTES + indexOf(bucketStart) * SLOT_BYTES;
+    }
+
+    // Returns the offset of the slot for this bucket, resetting it first if it held an older bucket.
+    private int claim(long bucketStart) {
+        int offset = offsetOf(bucketStart);
+        if (buffer.getLong(offset) != bucketStart) {
+            buffer.putLong(offset, 0);
+            for (int i = 1; i < FIELDS; i++) {
+                buffer.putLong(offset + i * Long.BYTES, 0);
+            }
+            buffer.putLong(offset + MIN_TICK_COUNT * Long.BYTES, Long.MAX_VALUE);
+            buffer.putLong(offset + MIN_TICK_NANOS * Long.BYTES, Long.MAX_VALUE);
+            buffer.putLong(offset + MIN_PLAYER_COUNT * Long.BYTES, Long.MAX_VALUE);
+            buffer.putLong(offset, bucketStart);
+            if (bucketStart > newestBucketStart) {
+                newestBucketStart = bucketStart;
+            }
+        }
+        return offset;
+    }
+
+    private void add(int offset, int field, long value) {
+        int position = offset + field * Long.BYTES;
+        buffer.putLong(position, buffer.getLong(position) + value);
+    }
+
+    private void min(int offset, int field, long value) {
+        int position = offset + field * Long.BYTES;
+        if (value < buffer.getLong(position)) {
+            buffer.putLong(position, value);
+        }
+    }
+
+    private void max(int offset, int field, long value) {
+        int position = offset + field * Long.BYTES;
+        if (value > buffer.getLong(position)) {
+            buffer.putLong(position, value);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package danielgmyers.minecraft.tracker.history;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The on-disk history of a single source: a ring of per-second buckets, and a longer ring of per-minute buckets.
+ *
+ * Every second recorded is merged into both rings as it's written, so the per-minute ring is always up to date and
+ * there's never a separate downsampling pass over old data. The trackers call this once per second from the thread
+ * that ticks the source, which must be the only thread writing to it.
+ *
+ * Creating and mapping the ring files can take a while, so the store may open them on its own thread after handing
+ * this out; seconds recorded before they're open are dropped.
+ */
+public final class SourceHistory {
+
+    static final long SECOND_RESOLUTION = 1;
+    static final long MINUTE_RESOLUTION = 60;
+
+    private final String source;
+    private final Path directory;
+    private final int secondSlots;
+    private final int minuteSlots;
+
+    // only assigned by open(), before open is set.
+    private RingSegment seconds;
+    private RingSegment minutes;
+    private volatile boolean open = false;
+    // once closed, a history stays closed, even if the store's thread gets around to opening it afterwards.
+    private boolean closed = false;
+
+    SourceHistory(String source, Path directory, int secondSlots, int minuteSlots) {
+        this.source = source;
+        this.directory = directory;
+        this.secondSlots = secondSlots;
+        this.minuteSlots = minuteSlots;
+    }
+
+    synchronized void open() throws IOException {
+        if (open || closed) {
+            return;
+        }
+        RingSegment openedSeconds = new RingSegment(directory.resolve("seconds.ring"), SECOND_RESOLUTION, secondSlots);
+        try {
+            minutes = new RingSegment(directory.resolve("minutes.ring"), MINUTE_RESOLUTION, minuteSlots);
+        } catch (IOException e) {
+            openedSeconds.close();
+            throw e;
+        }
+        seconds = openedSeconds;
+        open = true;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void recordTickSecond(long epochSecond, long tickCount, long totalTickNanos,
+                                 long minTickNanos, long maxTickNanos) {
+        if (!open) {
+            return;
+        }
+        seconds.mergeTicks(epochSecond, tickCount, totalTickNanos, minTickNanos, maxTickNanos);
+        minutes.mergeTicks(epochSecond, tickCount, totalTickNanos, minTickNanos, maxTickNanos);
+    }
+
+    public void recordPlayerSecond(long epochSecond, long playerCount) {
+        if (!open) {
+            return;
+        }
+        seconds.mergePlayers(epochSecond, playerCount);
+        minutes.mergePlayers(epochSecond, playerCount);
+    }
+
+    RingSegment getSeconds() {
+        return seconds;
+    }
+
+    RingSegment getMinutes() {
+        return minutes;
+    }
+
+    void force() {
+        if (!open) {
+            return;
+        }
+        seconds.force();
+        minutes.force();
+    }
+
+    synchronized void close() throws IOException {
+        closed = true;
+        if (!open) {
+            return;
+        }
+        // later records are dropped, rather than going into a segment we've closed.
+        open = false;
+        seconds.close();
+        minutes.close();
+    }
+}
@@ -0,0 +1,319 @@
+package danielgmyers.minecraft.tracker.history;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local store of each source's recent history, kept in memory-mapped ring files under a single directory (one
+ * subdirectory per source), so it's still there after a restart or a crash.
+ *
+ * Writes go through the SourceHistory returned by forSource(), which the trackers call once per second. Reads can come
+ * from any thread via query() and aggregate(); a reader may miss a bucket that's being written to over and over while
+ * it reads, but never sees a half-merged one.
+ *
+ * The background thread periodically forces the mapped files to disk; that only matters if the whole machine goes
+ * down, since the OS already has every write in its page cache. It also opens the files for sources handed out by
+ * forSourceInBackground(), so that a dimension's first tick doesn't wait on creating and mapping them.
+ */
+public class TimeSeriesStore implements Runnable {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // RingSegment maps the whole file as a single buffer, so it has to stay under 2GB.
+    private static final int MAX_SLOTS = (Integer.MAX_VALUE - 64) / (RingSegment.FIELDS * Long.BYTES);
+
+    public enum Metric {
+        TICKS_PER_SECOND,
+        MILLIS_PER_TICK,
+        PLAYER_COUNT,
+    }
+
+    public enum Aggregation {
+        MIN,
+        AVG,
+        MAX,
+    }
+
+    private final Path directory;
+    private final Clock clock;
+    private final int secondSlots;
+    private final int minuteSlots;
+    private final long flushIntervalMillis;
+
+    private final Map<String, SourceHistory> sources = new ConcurrentHashMap<>();
+    private final BlockingQueue<SourceHistory> pendingOpens = new LinkedBlockingQueue<>();
+
+    private volatile boolean running = false;
+    private Thread flusherThread;
+
+    public TimeSeriesStore(Config config, Path directory, Clock clock) {
+        this.directory = directory;
+        this.clock = clock;
+        this.secondSlots = slotsFor(config.getHistorySecondRetentionHours() * 3600);
+        this.minuteSlots = slotsFor(config.getHistoryMinuteRetentionDays() * 24 * 60);
+        this.flushIntervalMillis = Math.max(1, config.getHistoryFlushIntervalSeconds()) * 1000;
+    }
+
+    private static int slotsFor(long buckets) {
+        return (int) Math.max(1, Math.min(MAX_SLOTS, buckets));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the history for the given source, opening (or creating) its files the first time it's asked for.
+     * Returns null if the files can't be opened, in which case the source just doesn't get any history recorded.
+     */
+    public SourceHistory forSource(String source) {
+        SourceHistory history = sources.get(source);
+        if (history != null && history.isOpen()) {
+            return history;
+        }
+        synchronized (sources) {
+            history = sources.computeIfAbsent(source, this::newSourceHistory);
+        }
+        return open(history) ? history : null;
+    }
+
+    /**
+     * Like forSource(), but never waits for the files to be opened: while the store is running, that's left to its
+     * background thread, and the seconds recorded until then are dropped. For the thread that ticks the source.
+     */
+    public SourceHistory forSourceInBackground(String source) {
+        if (!running) {
+            return forSource(source);
+        }
+        SourceHistory history = sources.get(source);
+        if (history != null) {
+            return history;
+        }
+        synchronized (sources) {
+            history = sources.get(source);
+            if (history == null) {
+                history = newSourceHistory(source);
+                sources.put(source, history);
+                pendingOpens.add(history);
+            }
+        }
+        return history;
+    }
+
+    private SourceHistory newSourceHistory(String source) {
+        return new SourceHistory(source, directoryFor(source), secondSlots, minuteSlots);
+    }
+
+    private boolean open(SourceHistory history) {
+        try {
+            history.open();
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Unable to open the history files for source '{}', it won't have any history.",
+                     history.getSource(), e);
+            // forget it, so asking for the source again tries again.
+            sources.remove(history.getSource(), history);
+            return false;
+        }
+    }
+
+    /**
+     * Closes the files for the given source, e.g. because its dimension has been unloaded. Its history stays on disk;
+     * asking for the source again reopens it.
+     */
+    public void closeSource(String source) {
+        SourceHistory history;
+        synchronized (sources) {
+            history = sources.remove(source);
+        }
+        if (history != null) {
+            closeQuietly(history);
+        }
+    }
+
+    private static void closeQuietly(SourceHistory history) {
+        try {
+            history.close();
+        } catch (IOException e) {
+            LOG.warn("Unable to close the history files for source '{}'.", history.getSource(), e);
+        }
+    }
+
+    /**
+     * Returns the buckets of this source's history between from (inclusive) and to (exclusive), each covering
+     * stepSeconds (rounded up to the resolution we have data at for that time range). Buckets without data are
+     * omitted. Data from the last day or so comes from the per-second ring, anything older from the per-minute ring.
+     */
+    public List<HistoryBucket> query(String source, Instant from, Instant to, long stepSeconds) {
+        SourceHistory history = existingSource(source);
+        if (history == null || !from.isBefore(to)) {
+            return Collections.emptyList();
+        }
+        RingSegment ring = ringFor(history, from.getEpochSecond(), stepSeconds);
+        long resolution = ring.getResolutionSeconds();
+        long step = Math.max(resolution, (stepSeconds + resolution - 1) / resolution * resolution);
+
+        List<HistoryBucket> result = new ArrayList<>();
+        long[] fields = new long[RingSegment.FIELDS];
+        // there's no point looking at slots outside what the ring still holds.
+        long oldest = ring.getOldestRetainedBucketStart();
+        if (oldest == 0) {
+            return result;
+        }
+        long start = Math.max(ring.bucketStartFor(from.getEpochSecond()), oldest);
+        long end = Math.min(to.getEpochSecond(), ring.getNewestBucketStart() + resolution);
+        HistoryBucket current = null;
+        for (long bucket = start; bucket < end; bucket += resolution) {
+            if (!ring.read(bucket, fields)) {
+                continue;
+            }
+            long stepStart = Math.floorDiv(bucket, step) * step;
+            if (current == null || current.getStart().getEpochSecond() != stepStart) {
+                current = new HistoryBucket(stepStart, step);
+                result.add(current);
+            }
+            current.merge(fields);
+        }
+        return result;
+    }
+
+    /**
+     * Merges all of this source's history between from (inclusive) and to (exclusive) into a single bucket.
+     */
+    public HistoryBucket aggregate(String source, Instant from, Instant to) {
+        HistoryBucket result = new HistoryBucket(from.getEpochSecond(), 0);
+        for (HistoryBucket bucket : query(source, from, to, 1)) {
+            result.merge(bucket);
+        }
+        result.extendTo(to.getEpochSecond());
+        return result;
+    }
+
+    /**
+     * Shorthand for aggregate(source, from, to).get(metric, aggregation); returns NaN if there's no data.
+     */
+    public double aggregate(String source, Metric metric, Aggregation aggregation, Instant from, Instant to) {
+        return aggregate(source, from, to).get(metric, aggregation);
+    }
+
+    private SourceHistory existingSource(String source) {
+        SourceHistory history = sources.get(source);
+        // it may still be waiting to be opened in the background.
+        if ((history != null && !history.isOpen()) || (history == null && Files.isDirectory(directoryFor(source)))) {
+            history = forSource(source);
+        }
+        return history;
+    }
+
+    private RingSegment ringFor(SourceHistory history, long fromSecond, long stepSeconds) {
+        RingSegment seconds = history.getSeconds();
+        long oldestSecond = clock.instant().getEpochSecond() - seconds.getSlotCount() + 1;
+        if (stepSeconds < SourceHistory.MINUTE_RESOLUTION && fromSecond >= oldestSecond) {
+            return seconds;
+        }
+        return history.getMinutes();
+    }
+
+    /**
+     * Percent-encodes the source into a directory name, so that every source gets its own directory. Upper case
+     * letters are encoded too, in case the file system ignores case, and so is a leading dot, so that no source
+     * becomes "." or "..".
+     */
+    static String directoryNameFor(String source) {
+        StringBuilder name = new StringBuilder(source.length());
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            boolean plain = (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_' || b == '-'
+                            || (b == '.' && i > 0);
+            if (plain) {
+                name.append((char) b);
+            } else {
+                name.append('%').append(Character.toUpperCase(Character.forDigit(b >> 4, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+            }
+        }
+        return name.toString();
+    }
+
+    private Path directoryFor(String source) {
+        return directory.resolve(directoryNameFor(source));
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        LOG.info("Recording history to {}.", directory);
+        running = true;
+        flusherThread = new Thread(this, "tracker-history");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (flusherThread != null) {
+            flusherThread.interrupt();
+            try {
+                flusherThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusherThread = null;
+        }
+        // closing the channels doesn't unmap the files, so a tracker that's still writing won't fail.
+        for (SourceHistory history : sources.values()) {
+            closeQuietly(history);
+        }
+    }
+
+    @Override
+    public void run() {
+        long nextFlushNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (running) {
+            long waitNanos = nextFlushNanos - System.nanoTime();
+            if (waitNanos <= 0) {
+                flush();
+                nextFlushNanos += TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                continue;
+            }
+            SourceHistory pending;
+            try {
+                pending = pendingOpens.poll(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pending != null && open(pending) && sources.get(pending.getSource()) != pending) {
+                // the source was closed while it was waiting.
+                closeQuietly(pending);
+            }
+        }
+    }
+
+    public void flush() {
+        for (SourceHistory history : sources.values()) {
+            try {
+                history.force();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to flush the history files for source '{}'.", history.getSource(), e);
+            }
+        }
+    }
+}
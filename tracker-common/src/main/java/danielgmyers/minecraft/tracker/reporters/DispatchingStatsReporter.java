@@ -0,0 +1,295 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes all reporting work off the threads that call the trackers.
+ *
+ * A report call only copies its arguments into a preallocated slot of a bounded ring and returns. A single dispatcher
+ * thread drains that ring and copies each event into a separate bounded ring per sink, and each sink has its own
+ * worker thread that makes the actual StatsReporter calls. That way, a sink that's slow or stuck (e.g. waiting on the
+ * network) only fills up its own ring, and neither the game nor the other sinks wait on it.
+ *
+ * When a ring is full the event is dropped and counted instead of blocking; the counts are logged periodically,
+ * reported by reportHealth(), and are available from the getters.
+ */
+public class DispatchingStatsReporter implements StatsReporter {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // Reports are produced at most a few times per second per tracker, so there's no need to spin.
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DROP_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final ReportQueue queue;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final List<SinkWorker> sinks = new ArrayList<>();
+    // only used by the thread that calls reportHealth()
+    private long lastReportedDrops = 0;
+
+    private volatile boolean running = false;
+    private Thread dispatcherThread;
+
+    public DispatchingStatsReporter(Map<String, StatsReporter> sinksByName, int queueCapacity) {
+        this.queue = new ReportQueue(queueCapacity);
+        for (Map.Entry<String, StatsReporter> sink : sinksByName.entrySet()) {
+            sinks.add(new SinkWorker(sink.getKey(), sink.getValue(), queueCapacity));
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (SinkWorker sink : sinks) {
+            sink.start();
+        }
+        dispatcherThread = new Thread(this::dispatchLoop, "tracker-reporter-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+        LOG.info("Started reporter dispatcher with {} sink(s) and a queue capacity of {}.", sinks.size(), queue.capacity());
+    }
+
+    /**
+     * Stops the background threads after they've delivered whatever was already queued.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        joinQuietly(dispatcherThread);
+        for (SinkWorker sink : sinks) {
+            sink.stop();
+        }
+    }
+
+    /**
+     * Stops the background threads like stop() does, and then closes the sinks.
+     */
+    @Override
+    public void close() {
+        stop();
+        for (SinkWorker sink : sinks) {
+            try {
+                sink.sink.close();
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to close sink {}.", sink.name, e);
+            }
+        }
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public long getDroppedEvents(String sinkName) {
+        for (SinkWorker sink : sinks) {
+            if (sink.name.equals(sinkName)) {
+                return sink.droppedEvents.get();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                long totalTickCount, long minTickCount, long maxTickCount,
+                                long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                LogLinearHistogram tickNanosHistogram) {
+        long position = queue.tryClaim();
+        if (position == ReportQueue.FULL) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        queue.slot(position).setTickStats(tickSource, window, timestamp, secondsWithData,
+                                          totalTickCount, minTickCount, maxTickCount,
+                                          totalTickNanos, minTickNanos, maxTickNanos,
+                                          tickNanosHistogram);
+        queue.publish(position);
+    }
+
+    @Override
+    public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                  long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+        long position = queue.tryClaim();
+        if (position == ReportQueue.FULL) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        queue.slot(position).setPlayerCount(tickSource, window, timestamp, secondsWithData,
+                                            playerCountSum, minPlayerCount, maxPlayerCount);
+        queue.publish(position);
+    }
+
+    @Override
+    public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                      String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        long position = queue.tryClaim();
+        if (position == ReportQueue.FULL) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        queue.slot(position).setTickCostsByType(tickSource, window, timestamp, typeCount,
+                                                typeIds, tickCounts, totalTickNanos);
+        queue.publish(position);
+    }
+
+    @Override
+    public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                StatisticUnit unit, double value) {
+        long position = queue.tryClaim();
+        if (position == ReportQueue.FULL) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        queue.slot(position).setStatistic(tickSource, window, timestamp, name, unit, value);
+        queue.publish(position);
+    }
+
+    // Reports the drops since the last call, both here and for each sink, and then each sink's own health.
+    @Override
+    public void reportHealth(StatsReporter destination, String source, ReportingWindow window, Instant timestamp) {
+        long dropped = droppedEvents.get();
+        destination.reportStatistic(source, window, timestamp, "reporter-dropped-reports", StatisticUnit.COUNT,
+                                    dropped - lastReportedDrops);
+        lastReportedDrops = dropped;
+        for (SinkWorker sink : sinks) {
+            long sinkDropped = sink.droppedEvents.get();
+            destination.reportStatistic(source, window, timestamp, sink.droppedReportsStatistic, StatisticUnit.COUNT,
+                                        sinkDropped - sink.lastReportedDrops);
+            sink.lastReportedDrops = sinkDropped;
+            try {
+                sink.sink.reportHealth(destination, source, window, timestamp);
+            } catch (RuntimeException e) {
+                LOG.warn("Sink {} failed to report its health.", sink.name, e);
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        long lastLoggedDrops = 0;
+        long lastDropLogNanos = System.nanoTime();
+        while (true) {
+            ReportEvent event = queue.peek();
+            if (event == null) {
+                if (!running) {
+                    return;
+                }
+                long now = System.nanoTime();
+                if (now - lastDropLogNanos >= DROP_LOG_INTERVAL_NANOS) {
+                    lastLoggedDrops = logDrops(lastLoggedDrops);
+                    lastDropLogNanos = now;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            for (SinkWorker sink : sinks) {
+                sink.offer(event);
+            }
+            queue.release();
+        }
+    }
+
+    private long logDrops(long lastLoggedDrops) {
+        long dropped = droppedEvents.get();
+        if (dropped != lastLoggedDrops) {
+            LOG.warn("Dropped {} report(s) so far because the reporter queue was full.", dropped);
+        }
+        for (SinkWorker sink : sinks) {
+            long sinkDropped = sink.droppedEvents.get();
+            if (sinkDropped != sink.lastLoggedDrops) {
+                LOG.warn("Dropped {} report(s) so far for sink {} because it isn't keeping up.", sinkDropped, sink.name);
+                sink.lastLoggedDrops = sinkDropped;
+            }
+        }
+        return dropped;
+    }
+
+    private static void joinQuietly(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One sink, with its own queue and thread.
+    private static final class SinkWorker {
+        private final String name;
+        private final StatsReporter sink;
+        private final ReportQueue queue;
+        private final AtomicLong droppedEvents = new AtomicLong();
+        private final String droppedReportsStatistic;
+        // only used by the dispatcher thread
+        private long lastLoggedDrops = 0;
+        // only used by the thread that calls reportHealth()
+        private long lastReportedDrops = 0;
+
+        private volatile boolean running = false;
+        private Thread thread;
+
+        private SinkWorker(String name, StatsReporter sink, int queueCapacity) {
+            this.name = name;
+            this.sink = sink;
+            this.queue = new ReportQueue(queueCapacity);
+            this.droppedReportsStatistic = "reporter-" + name.replace('_', '-') + "-dropped-reports";
+        }
+
+        private void start() {
+            running = true;
+            thread = new Thread(this::run, "tracker-reporter-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void stop() {
+            running = false;
+            joinQuietly(thread);
+        }
+
+        private void offer(ReportEvent event) {
+            long position = queue.tryClaim();
+            if (position == ReportQueue.FULL) {
+                droppedEvents.incrementAndGet();
+                return;
+            }
+            queue.slot(position).copyFrom(event);
+            queue.publish(position);
+        }
+
+        private void run() {
+            while (true) {
+                ReportEvent event = queue.peek();
+                if (event == null) {
+                    if (!running) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                try {
+                    event.dispatchTo(sink);
+                } catch (RuntimeException e) {
+                    LOG.warn("Sink {} failed to handle a {} report for {}.", name, event.kind, event.tickSource, e);
+                }
+                queue.release();
+            }
+        }
+    }
+}
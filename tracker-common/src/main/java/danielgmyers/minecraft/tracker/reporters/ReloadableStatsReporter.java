@@ -0,0 +1,147 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.config.ConfigSnapshot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * The reporter the trackers hold on to when the config can be reloaded. Every call goes straight through to the
+ * reporter built from the current config; when a reload changes any reporter setting, a new one is built and the old
+ * one is closed, so the trackers never need to know.
+ *
+ * Only the swap is synchronized. Reporting costs a single volatile read on top of the underlying reporter, and a
+ * report that races with a swap may go to the old reporter just before it's closed, in which case it's lost.
+ */
+public class ReloadableStatsReporter implements StatsReporter {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // Everything StatsReporterFactory reads; a change to any other setting leaves the reporter alone.
+    private static final String[] REPORTER_SETTINGS = {
+            Config.REPORTER_TYPE,
+            Config.REPORTER_QUEUE_CAPACITY,
+            Config.CLOUDWATCH_METRIC_NAMESPACE,
+            Config.CLOUDWATCH_SPOOL_FILE,
+            Config.CLOUDWATCH_SPOOL_MAX_BYTES,
+            Config.CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS,
+            Config.CLOUDWATCH_MAX_RETRY_BACKOFF_MILLIS,
+            Config.CLOUDWATCH_EMF_LOG_FILE,
+            Config.CLOUDWATCH_EMF_MAX_FILE_BYTES,
+            Config.CLOUDWATCH_EMF_FSYNC_INTERVAL_MILLIS,
+            Config.PROMETHEUS_BIND_ADDRESS,
+            Config.PROMETHEUS_PORT,
+            Config.STATSD_HOST,
+            Config.STATSD_PORT,
+            Config.INFLUX_UDP_HOST,
+            Config.INFLUX_UDP_PORT,
+            Config.UDP_MAX_PACKET_BYTES,
+    };
+
+    private final Clock clock;
+
+    // guarded by this; the config the running reporter was built from, or null if none could be built
+    private ConfigSnapshot config;
+    private volatile StatsReporter delegate;
+
+    public ReloadableStatsReporter(ConfigSnapshot config, Clock clock) {
+        this.clock = clock;
+        this.config = config;
+        this.delegate = StatsReporterFactory.create(config, clock);
+    }
+
+    /**
+     * Rebuilds the reporter if any of its settings differ from the config it was built from. Safe to call from any
+     * thread; the old reporter is closed before the new one is built, since they may need the same port or files.
+     *
+     * If the new reporter can't be built (e.g. a port is out of range or already taken), the previous settings are
+     * put back; if even that fails, nothing is reported until a later reload has settings that work.
+     */
+    public synchronized void reconfigure(ConfigSnapshot newConfig) {
+        if (config != null && !reporterSettingsChanged(config, newConfig)) {
+            config = newConfig;
+            return;
+        }
+        LOG.info("Reporter settings changed, replacing the stats reporter.");
+        delegate.close();
+        try {
+            delegate = StatsReporterFactory.create(newConfig, clock);
+            config = newConfig;
+            return;
+        } catch (RuntimeException e) {
+            LOG.error("Unable to create a stats reporter with the new settings, going back to the previous ones.", e);
+        }
+        if (config != null) {
+            try {
+                delegate = StatsReporterFactory.create(config, clock);
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Unable to recreate the previous stats reporter either.", e);
+            }
+        }
+        LOG.error("Nothing will be reported until the reporter settings are fixed.");
+        delegate = StatsReporterFactory.createNoOp();
+        // no reporter settings are in effect, so the next reload tries again whatever it changes.
+        config = null;
+    }
+
+    // visible for testing
+    static boolean reporterSettingsChanged(ConfigSnapshot previous, ConfigSnapshot current) {
+        for (String setting : REPORTER_SETTINGS) {
+            if (!previous.hasSameValue(current, setting)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // visible for testing
+    StatsReporter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                long totalTickCount, long minTickCount, long maxTickCount,
+                                long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                LogLinearHistogram tickNanosHistogram) {
+        delegate.reportTickStats(tickSource, window, timestamp, secondsWithData,
+                                 totalTickCount, minTickCount, maxTickCount,
+                                 totalTickNanos, minTickNanos, maxTickNanos,
+                                 tickNanosHistogram);
+    }
+
+    @Override
+    public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                  long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+        delegate.reportPlayerCount(tickSource, window, timestamp, secondsWithData,
+                                   playerCountSum, minPlayerCount, maxPlayerCount);
+    }
+
+    @Override
+    public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                      String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        delegate.reportTickCostsByType(tickSource, window, timestamp, typeCount, typeIds, tickCounts, totalTickNanos);
+    }
+
+    @Override
+    public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                StatisticUnit unit, double value) {
+        delegate.reportStatistic(tickSource, window, timestamp, name, unit, value);
+    }
+
+    @Override
+    public void reportHealth(StatsReporter destination, String source, ReportingWindow window, Instant timestamp) {
+        delegate.reportHealth(destination, source, window, timestamp);
+    }
+
+    @Override
+    public synchronized void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,172 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * One StatsReporter call, captured as plain fields so it can be handed to another thread.
+ *
+ * Events live in the slots of a ReportQueue and are reused over and over, so capturing a call only copies fields
+ * into memory that already exists. The exceptions are the first tick stats report a slot holds, which allocates
+ * its histogram, and a per-type report with more types than the slot has seen before, which grows its arrays.
+ */
+final class ReportEvent {
+
+    enum Kind {
+        TICK_STATS,
+        PLAYER_COUNT,
+        TICK_COSTS_BY_TYPE,
+        STATISTIC
+    }
+
+    private static final int INITIAL_TYPE_CAPACITY = 16;
+
+    Kind kind;
+    String tickSource;
+    ReportingWindow window;
+    Instant timestamp;
+    long secondsWithData;
+
+    // tick stats, or player counts in the tick count fields
+    long totalTickCount;
+    long minTickCount;
+    long maxTickCount;
+    long totalTickNanos;
+    long minTickNanos;
+    long maxTickNanos;
+    // histograms are fairly large, so slots only get one once they're actually used for tick stats.
+    LogLinearHistogram tickNanosHistogram;
+
+    // tick costs by type
+    int typeCount;
+    String[] typeIds = new String[INITIAL_TYPE_CAPACITY];
+    long[] typeTickCounts = new long[INITIAL_TYPE_CAPACITY];
+    long[] typeTotalTickNanos = new long[INITIAL_TYPE_CAPACITY];
+
+    // single statistics
+    String statisticName;
+    StatisticUnit statisticUnit;
+    double statisticValue;
+
+    void setTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                      long totalTickCount, long minTickCount, long maxTickCount,
+                      long totalTickNanos, long minTickNanos, long maxTickNanos,
+                      LogLinearHistogram tickNanosHistogram) {
+        this.kind = Kind.TICK_STATS;
+        this.tickSource = tickSource;
+        this.window = window;
+        this.timestamp = timestamp;
+        this.secondsWithData = secondsWithData;
+        this.totalTickCount = totalTickCount;
+        this.minTickCount = minTickCount;
+        this.maxTickCount = maxTickCount;
+        this.totalTickNanos = totalTickNanos;
+        this.minTickNanos = minTickNanos;
+        this.maxTickNanos = maxTickNanos;
+        if (this.tickNanosHistogram == null) {
+            this.tickNanosHistogram = new LogLinearHistogram();
+        }
+        this.tickNanosHistogram.copyFrom(tickNanosHistogram);
+    }
+
+    void setPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                        long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+        this.kind = Kind.PLAYER_COUNT;
+        this.tickSource = tickSource;
+        this.window = window;
+        this.timestamp = timestamp;
+        this.secondsWithData = secondsWithData;
+        this.totalTickCount = playerCountSum;
+        this.minTickCount = minPlayerCount;
+        this.maxTickCount = maxPlayerCount;
+    }
+
+    void setTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                            String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        this.kind = Kind.TICK_COSTS_BY_TYPE;
+        this.tickSource = tickSource;
+        this.window = window;
+        this.timestamp = timestamp;
+        if (typeCount > this.typeIds.length) {
+            this.typeIds = Arrays.copyOf(this.typeIds, typeCount);
+            this.typeTickCounts = Arrays.copyOf(this.typeTickCounts, typeCount);
+            this.typeTotalTickNanos = Arrays.copyOf(this.typeTotalTickNanos, typeCount);
+        }
+        this.typeCount = typeCount;
+        System.arraycopy(typeIds, 0, this.typeIds, 0, typeCount);
+        System.arraycopy(tickCounts, 0, this.typeTickCounts, 0, typeCount);
+        System.arraycopy(totalTickNanos, 0, this.typeTotalTickNanos, 0, typeCount);
+    }
+
+    void setStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                      StatisticUnit unit, double value) {
+        this.kind = Kind.STATISTIC;
+        this.tickSource = tickSource;
+        this.window = window;
+        this.timestamp = timestamp;
+        this.statisticName = name;
+        this.statisticUnit = unit;
+        this.statisticValue = value;
+    }
+
+    void copyFrom(ReportEvent other) {
+        switch (other.kind) {
+            case TICK_STATS:
+                setTickStats(other.tickSource, other.window, other.timestamp, other.secondsWithData,
+                             other.totalTickCount, other.minTickCount, other.maxTickCount,
+                             other.totalTickNanos, other.minTickNanos, other.maxTickNanos,
+                             other.tickNanosHistogram);
+                break;
+            case PLAYER_COUNT:
+                setPlayerCount(other.tickSource, other.window, other.timestamp, other.secondsWithData,
+                               other.totalTickCount, other.minTickCount, other.maxTickCount);
+                break;
+            case TICK_COSTS_BY_TYPE:
+                setTickCostsByType(other.tickSource, other.window, other.timestamp, other.typeCount,
+                                   other.typeIds, other.typeTickCounts, other.typeTotalTickNanos);
+                break;
+            case STATISTIC:
+                setStatistic(other.tickSource, other.window, other.timestamp,
+                             other.statisticName, other.statisticUnit, other.statisticValue);
+                break;
+            default:
+                throw new IllegalStateException("Unknown report event kind " + other.kind);
+        }
+    }
+
+    void dispatchTo(StatsReporter reporter) {
+        switch (kind) {
+            case TICK_STATS:
+                reporter.reportTickStats(tickSource, window, timestamp, secondsWithData,
+                                         totalTickCount, minTickCount, maxTickCount,
+                                         totalTickNanos, minTickNanos, maxTickNanos,
+                                         tickNanosHistogram);
+                break;
+            case PLAYER_COUNT:
+                reporter.reportPlayerCount(tickSource, window, timestamp, secondsWithData,
+                                           totalTickCount, minTickCount, maxTickCount);
+                break;
+            case TICK_COSTS_BY_TYPE:
+                reporter.reportTickCostsByType(tickSource, window, timestamp, typeCount,
+                                               typeIds, typeTickCounts, typeTotalTickNanos);
+                break;
+            case STATISTIC:
+                reporter.reportStatistic(tickSource, window, timestamp, statisticName, statisticUnit, statisticValue);
+                break;
+            default:
+                throw new IllegalStateException("Unknown report event kind " + kind);
+        }
+    }
+
+    // drops references so a slot that's sitting unused doesn't keep anything alive.
+    void clearReferences() {
+        tickSource = null;
+        window = null;
+        timestamp = null;
+        statisticName = null;
+        Arrays.fill(typeIds, 0, typeCount, null);
+    }
+}
@@ -0,0 +1,94 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free ring of preallocated ReportEvents with any number of producers and exactly one consumer.
+ *
+ * Each slot carries a sequence number that says whose turn it is: a producer may fill slot (pos % capacity) once its
+ * sequence equals pos, and the consumer may read it once its sequence equals pos + 1. Producers claim positions with
+ * a CAS on the tail, so they never wait on each other or on the consumer; when the ring is full, tryClaim() simply
+ * fails and the caller decides what to do (in practice, count a drop).
+ *
+ * Usage on the producer side is tryClaim(), fill slot(position), then publish(position).
+ * On the consumer side it's peek(), read the event, then release().
+ */
+final class ReportQueue {
+
+    static final long FULL = -1;
+
+    private final ReportEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    // only ever touched by the consumer thread
+    private long head = 0;
+
+    ReportQueue(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity) - 1) << 1;
+        this.slots = new ReportEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new ReportEvent();
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Claims the next free slot, returning its position, or FULL if the consumer hasn't caught up.
+     */
+    long tryClaim() {
+        long position = tail.get();
+        while (true) {
+            long sequence = sequences.get((int) position & mask);
+            long difference = sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return FULL;
+            } else {
+                // another producer claimed this position first
+                position = tail.get();
+            }
+        }
+    }
+
+    ReportEvent slot(long position) {
+        return slots[(int) position & mask];
+    }
+
+    void publish(long position) {
+        sequences.lazySet((int) position & mask, position + 1);
+    }
+
+    /**
+     * Returns the oldest published event without removing it, or null if there isn't one. Consumer thread only.
+     */
+    ReportEvent peek() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        return slots[index];
+    }
+
+    /**
+     * Hands the slot returned by the last peek() back to the producers. Consumer thread only.
+     */
+    void release() {
+        int index = (int) head & mask;
+        slots[index].clearReferences();
+        sequences.lazySet(index, head + slots.length);
+        head++;
+    }
+}
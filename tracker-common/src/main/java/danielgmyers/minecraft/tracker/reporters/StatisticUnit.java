@@ -0,0 +1,31 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+/**
+ * The unit of a value passed to StatsReporter.reportStatistic.
+ */
+public enum StatisticUnit {
+    COUNT("Count", ""),
+    COUNT_PER_SECOND("Count/Second", "/s"),
+    MILLISECONDS("Milliseconds", "ms"),
+    BYTES("Bytes", "bytes"),
+    BYTES_PER_SECOND("Bytes/Second", "bytes/s"),
+    PERCENT("Percent", "%");
+
+    private final String cloudWatchName;
+    private final String symbol;
+
+    StatisticUnit(String cloudWatchName, String symbol) {
+        this.cloudWatchName = cloudWatchName;
+        this.symbol = symbol;
+    }
+
+    // The unit's name in CloudWatch, which is also what embedded metric format uses.
+    public String getCloudWatchName() {
+        return cloudWatchName;
+    }
+
+    // A short suffix for human-readable output; empty for plain counts.
+    public String getSymbol() {
+        return symbol;
+    }
+}
@@ -1,15 +1,43 @@
 package danielgmyers.minecraft.tracker.reporters;
 
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+
 import java.time.Instant;
 
 public interface StatsReporter {
 
     // we need to know how many seconds we have datapoints for, because if a tick took (for example) two seconds,
     // then we won't get data for that second.
-    void reportTickStats(String tickSource, Instant timestamp, long secondsWithData,
+    // The histogram is owned by the tracker and gets reused as soon as this call returns, so reporters must copy
+    // anything they want to keep.
+    void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                          long totalTickCount, long minTickCount, long maxTickCount,
-                         long totalTickMillis, long minTickMillis, long maxTickMillis);
+                         long totalTickNanos, long minTickNanos, long maxTickNanos,
+                         LogLinearHistogram tickNanosHistogram);
 
-    void reportPlayerCount(String tickSource, Instant timestamp, long secondsWithData,
+    void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                            long playerCountSum, long minPlayerCount, long maxPlayerCount);
+
+    // The first typeCount entries of each array describe one entity or block entity type, most expensive first.
+    // Like the histogram above, the arrays are owned by the tracker and get reused as soon as this call returns.
+    void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                               String[] typeIds, long[] tickCounts, long[] totalTickNanos);
+
+    // A single named value for the window, for things that don't need a method of their own (e.g. how many trackers
+    // are live). Names are lower case words separated by hyphens, like "live-world-trackers".
+    void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                         StatisticUnit unit, double value);
+
+    // Reports how the reporter itself is doing (e.g. queued metrics, failed requests, dropped reports) as statistics for
+    // the given source, by calling reportStatistic on the destination, which is normally the reporter the trackers use.
+    // Counts cover the time since the last call. This gets called once a minute from the server thread while other
+    // threads are reporting, so it must be thread-safe and must never block.
+    default void reportHealth(StatsReporter destination, String source, ReportingWindow window, Instant timestamp) {
+    }
+
+    // Releases whatever the reporter holds (threads, sockets, files) once it's being replaced or shut down.
+    // Nothing gets reported to it afterwards.
+    default void close() {
+    }
 }
@@ -1,42 +1,135 @@
 package danielgmyers.minecraft.tracker.reporters;
 
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
 import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.config.PropertiesConfig;
+import danielgmyers.minecraft.tracker.config.ReporterType;
+import danielgmyers.minecraft.tracker.reporters.cloudwatchlogs.CloudwatchLogsEmfReporter;
 import danielgmyers.minecraft.tracker.reporters.cloudwatchmetrics.CloudwatchMetricsReporter;
 import danielgmyers.minecraft.tracker.reporters.logging.LoggingReporter;
+import danielgmyers.minecraft.tracker.reporters.prometheus.PrometheusReporter;
+import danielgmyers.minecraft.tracker.reporters.udp.LineProtocolUdpReporter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public final class StatsReporterFactory {
 
     private static final Logger LOG = LogManager.getLogger();
 
     public static StatsReporter create(Config config, Clock clock) {
-        LOG.info("Creating tick stats reporter with type {}.", config.getReporterType());
-        switch(config.getReporterType()) {
-            case NONE:
-                // we'll hand back a no-op reporter in this case.
-                return new StatsReporter() {
-                    @Override
-                    public void reportTickStats(String tickSource, Instant timestamp, long secondsWithData,
-                                                long totalTickCount, long minTickCount, long maxTickCount,
-                                                long totalTickMillis, long minTickMillis, long maxTickMillis) {
-                    }
-
-                    @Override
-                    public void reportPlayerCount(String tickSource, Instant timestamp, long secondsWithData,
-                                                  long playerCountSum, long minPlayerCount, long maxPlayerCount) {
-                    }
-                };
+        List<ReporterType> reporterTypes = config.getReporterTypes();
+        LOG.info("Creating tick stats reporter with type(s) {}.", reporterTypes);
+        if (reporterTypes.contains(ReporterType.NONE)) {
+            return createNoOp();
+        }
+
+        // The actual reporters run on background threads, so that none of their work happens on the server thread.
+        Map<String, StatsReporter> sinks = new LinkedHashMap<>();
+        try {
+            for (ReporterType reporterType : reporterTypes) {
+                sinks.put(reporterType.toString().toLowerCase(Locale.ROOT), createSink(reporterType, config, clock));
+            }
+        } catch (RuntimeException e) {
+            // the ones that did start may be holding ports or files that the next attempt will need.
+            for (StatsReporter sink : sinks.values()) {
+                sink.close();
+            }
+            throw e;
+        }
+        int queueCapacity = (int) Math.max(2, Math.min(4096, config.getReporterQueueCapacity()));
+        DispatchingStatsReporter reporter = new DispatchingStatsReporter(sinks, queueCapacity);
+        reporter.start();
+        return reporter;
+    }
+
+    /**
+     * Creates a reporter that ignores everything.
+     */
+    static StatsReporter createNoOp() {
+        return new StatsReporter() {
+            @Override
+            public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp,
+                                        long secondsWithData,
+                                        long totalTickCount, long minTickCount, long maxTickCount,
+                                        long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                        LogLinearHistogram tickNanosHistogram) {
+            }
+
+            @Override
+            public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp,
+                                          long secondsWithData,
+                                          long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+            }
+
+            @Override
+            public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp,
+                                              int typeCount,
+                                              String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+            }
+
+            @Override
+            public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                        StatisticUnit unit, double value) {
+            }
+        };
+    }
+
+    /**
+     * Creates a reporter that's rebuilt whenever a config reload changes the reporter settings.
+     */
+    public static StatsReporter createReloadable(PropertiesConfig config, Clock clock) {
+        ReloadableStatsReporter reporter = new ReloadableStatsReporter(config.getSnapshot(), clock);
+        config.addReloadListener(reporter::reconfigure);
+        return reporter;
+    }
+
+    private static StatsReporter createSink(ReporterType reporterType, Config config, Clock clock) {
+        switch(reporterType) {
             case APPLICATION_LOG:
                 return new LoggingReporter(config);
             case CLOUDWATCH_DIRECT:
                 return new CloudwatchMetricsReporter(config, clock);
             case CLOUDWATCH_LOGS_EMF:
+                return new CloudwatchLogsEmfReporter(config);
+            case PROMETHEUS:
+                PrometheusReporter prometheusReporter = new PrometheusReporter(config);
+                try {
+                    prometheusReporter.start();
+                } catch (IOException e) {
+                    LOG.warn("Failed to start the Prometheus endpoint on {}:{}, metrics won't be served.",
+                             config.getPrometheusBindAddress(), config.getPrometheusPort(), e);
+                }
+                return prometheusReporter;
+            case STATSD:
+                return createUdpSink(LineProtocolUdpReporter.Protocol.STATSD,
+                                     config.getStatsdHost(), config.getStatsdPort(), config);
+            case INFLUX_UDP:
+                return createUdpSink(LineProtocolUdpReporter.Protocol.INFLUX,
+                                     config.getInfluxUdpHost(), config.getInfluxUdpPort(), config);
             default:
-                throw new RuntimeException("Reporter type " + config.getReporterType() + " not implemented.");
+                throw new RuntimeException("Reporter type " + reporterType + " not implemented.");
+        }
+    }
+
+    private static StatsReporter createUdpSink(LineProtocolUdpReporter.Protocol protocol, String host, long port,
+                                               Config config) {
+        int maxPacketBytes = (int) Math.max(512, Math.min(65507, config.getUdpMaxPacketBytes()));
+        try {
+            return new LineProtocolUdpReporter(protocol, new InetSocketAddress(host, (int) port), maxPacketBytes,
+                                               LineProtocolUdpReporter.DEFAULT_LINGER_MILLIS);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open a UDP channel for the " + protocol + " reporter.", e);
         }
     }
 }
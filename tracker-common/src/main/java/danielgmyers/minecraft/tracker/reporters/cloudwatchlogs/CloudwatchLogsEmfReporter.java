@@ -0,0 +1,240 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchlogs;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+/**
+ * Writes statistics as CloudWatch Embedded Metric Format (EMF) JSON lines, for the CloudWatch agent to ship.
+ *
+ * Every line carries the tick source and the reporting window as EMF dimensions, so they show up as CloudWatch
+ * dimensions rather than being baked into the metric names. Per-type tick costs get one line per type, with the
+ * type as a third dimension.
+ *
+ * Lines are built in a reused StringBuilder and handed to an EmfLogWriter, which batches them into a single write
+ * per report call.
+ */
+public class CloudwatchLogsEmfReporter implements StatsReporter {
+
+    // visible for testing
+    static final String SOURCE_DIMENSION = "Source";
+    static final String WINDOW_DIMENSION = "Window";
+    static final String TYPE_DIMENSION = "Type";
+
+    private static final String COUNT = "Count";
+    private static final String COUNT_PER_SECOND = "Count/Second";
+    private static final String MILLISECONDS = "Milliseconds";
+
+    private static final int ROTATED_FILES_TO_KEEP = 3;
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private final String metricNamespace;
+    private final EmfLogWriter writer;
+    private final StringBuilder line = new StringBuilder(1024);
+
+    // true once we've added the first metric to the line we're building.
+    private boolean firstMetric;
+
+    public CloudwatchLogsEmfReporter(Config config) {
+        this(config, Paths.get(config.getCloudWatchEmfLogFile()));
+    }
+
+    // visible for testing
+    CloudwatchLogsEmfReporter(Config config, Path file) {
+        this.metricNamespace = config.getCloudWatchMetricNamespace();
+        this.writer = new EmfLogWriter(file, config.getCloudWatchEmfMaxFileBytes(), ROTATED_FILES_TO_KEEP,
+                                       config.getCloudWatchEmfFsyncIntervalMillis());
+        LOG.info("Writing embedded metric format logs to {}.", file);
+    }
+
+    @Override
+    public synchronized void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp,
+                                             long secondsWithData,
+                                             long totalTickCount, long minTickCount, long maxTickCount,
+                                             long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                             LogLinearHistogram tickNanosHistogram) {
+        startLine(timestamp, false);
+        declareMetric("tick-count-avg", COUNT_PER_SECOND);
+        declareMetric("tick-count-min", COUNT_PER_SECOND);
+        declareMetric("tick-count-max", COUNT_PER_SECOND);
+        declareMetric("tick-millis-avg", MILLISECONDS);
+        declareMetric("tick-millis-min", MILLISECONDS);
+        declareMetric("tick-millis-max", MILLISECONDS);
+        declareMetric("tick-millis-p50", MILLISECONDS);
+        declareMetric("tick-millis-p95", MILLISECONDS);
+        declareMetric("tick-millis-p99", MILLISECONDS);
+        declareMetric("tick-millis-p99.9", MILLISECONDS);
+        endDeclarations(tickSource, window, null);
+
+        appendProperty("seconds-with-data", secondsWithData);
+        appendProperty("tick-count-avg", (double) totalTickCount / Math.max(1, secondsWithData));
+        appendProperty("tick-count-min", minTickCount);
+        appendProperty("tick-count-max", maxTickCount);
+        // the average duration is over all ticks, not over the seconds we have data for.
+        appendProperty("tick-millis-avg", nanosToMillis(totalTickNanos / Math.max(1, totalTickCount)));
+        appendProperty("tick-millis-min", nanosToMillis(minTickNanos));
+        appendProperty("tick-millis-max", nanosToMillis(maxTickNanos));
+        appendProperty("tick-millis-p50", nanosToMillis(tickNanosHistogram.getValueAtPercentile(50)));
+        appendProperty("tick-millis-p95", nanosToMillis(tickNanosHistogram.getValueAtPercentile(95)));
+        appendProperty("tick-millis-p99", nanosToMillis(tickNanosHistogram.getValueAtPercentile(99)));
+        appendProperty("tick-millis-p99.9", nanosToMillis(tickNanosHistogram.getValueAtPercentile(99.9)));
+        endLine();
+        flush();
+    }
+
+    @Override
+    public synchronized void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp,
+                                               long secondsWithData,
+                                               long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+        startLine(timestamp, false);
+        declareMetric("player-count-avg", COUNT);
+        declareMetric("player-count-min", COUNT);
+        declareMetric("player-count-max", COUNT);
+        endDeclarations(tickSource, window, null);
+
+        appendProperty("seconds-with-data", secondsWithData);
+        appendProperty("player-count-avg", (double) playerCountSum / Math.max(1, secondsWithData));
+        appendProperty("player-count-min", minPlayerCount);
+        appendProperty("player-count-max", maxPlayerCount);
+        endLine();
+        flush();
+    }
+
+    @Override
+    public synchronized void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp,
+                                                   int typeCount,
+                                                   String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        for (int i = 0; i < typeCount; i++) {
+            startLine(timestamp, true);
+            declareMetric("tick-millis", MILLISECONDS);
+            declareMetric("tick-count", COUNT);
+            endDeclarations(tickSource, window, typeIds[i]);
+
+            appendProperty("tick-millis", nanosToMillis(totalTickNanos[i]));
+            appendProperty("tick-count", tickCounts[i]);
+            endLine();
+        }
+        flush();
+    }
+
+    @Override
+    public synchronized void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                             StatisticUnit unit, double value) {
+        // JSON has no way to write NaN or infinity, and CloudWatch wouldn't take them anyway.
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        startLine(timestamp, false);
+        declareMetric(name, unit.getCloudWatchName());
+        endDeclarations(tickSource, window, null);
+
+        appendProperty(name, value);
+        endLine();
+        flush();
+    }
+
+    private void startLine(Instant timestamp, boolean withType) {
+        line.setLength(0);
+        line.append("{\"_aws\":{\"Timestamp\":").append(timestamp.toEpochMilli());
+        line.append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+        appendString(metricNamespace);
+        line.append(",\"Dimensions\":[[\"").append(SOURCE_DIMENSION).append("\",\"").append(WINDOW_DIMENSION).append('"');
+        if (withType) {
+            line.append(",\"").append(TYPE_DIMENSION).append('"');
+        }
+        line.append("]],\"Metrics\":[");
+        firstMetric = true;
+    }
+
+    private void declareMetric(String name, String unit) {
+        if (!firstMetric) {
+            line.append(',');
+        }
+        firstMetric = false;
+        line.append("{\"Name\":\"").append(name).append("\",\"Unit\":\"").append(unit).append("\"}");
+    }
+
+    private void endDeclarations(String tickSource, ReportingWindow window, String typeId) {
+        line.append("]}]}");
+        line.append(",\"").append(SOURCE_DIMENSION).append("\":");
+        appendString(tickSource);
+        line.append(",\"").append(WINDOW_DIMENSION).append("\":");
+        appendString(window.getName());
+        if (typeId != null) {
+            line.append(",\"").append(TYPE_DIMENSION).append("\":");
+            appendString(typeId);
+        }
+    }
+
+    private void appendProperty(String name, long value) {
+        line.append(",\"").append(name).append("\":").append(value);
+    }
+
+    // The values we compute ourselves are always finite, but a stray NaN or infinity is written as null rather than
+    // making the whole line invalid JSON.
+    private void appendProperty(String name, double value) {
+        line.append(",\"").append(name).append("\":");
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            line.append("null");
+        } else {
+            line.append(value);
+        }
+    }
+
+    private void endLine() {
+        line.append('}');
+        try {
+            writer.appendLine(line);
+        } catch (IOException e) {
+            LOG.warn("Failed to write embedded metric format log line to {}.", writer.getFile(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close embedded metric format log {}.", writer.getFile(), e);
+        }
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            LOG.warn("Failed to flush embedded metric format logs to {}.", writer.getFile(), e);
+        }
+    }
+
+    // Tick sources and type IDs come from the game, so they get escaped like any other JSON string.
+    private void appendString(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append("\\u00");
+                line.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
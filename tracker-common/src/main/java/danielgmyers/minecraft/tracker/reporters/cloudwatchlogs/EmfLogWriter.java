@@ -0,0 +1,162 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchlogs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends lines to a file that gets rotated to name.1, name.2, ... once it grows past a size limit, the same way
+ * RollingLogFile does. Unlike RollingLogFile, the file stays open and lines are encoded into a reused buffer, which
+ * only goes to the file when it fills up or when flush() is called, so a batch of lines costs a single write.
+ * The file is fsynced at most once per fsync interval, on a flush.
+ *
+ * Lines are never split across files, so whatever tails the file (e.g. the CloudWatch agent) only sees whole lines.
+ *
+ * This class is not thread-safe; it's meant to be owned by a single reporter.
+ */
+class EmfLogWriter {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int filesToKeep;
+    private final long fsyncIntervalNanos;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    private FileChannel channel;
+    private long fileBytes;
+    private long lastFsyncNanos;
+    private boolean unsyncedWrites = false;
+
+    EmfLogWriter(Path file, long maxFileBytes, int filesToKeep, long fsyncIntervalMillis) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.filesToKeep = filesToKeep;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.lastFsyncNanos = System.nanoTime();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Adds one line (without its trailing newline) to the buffer.
+     */
+    void appendLine(CharSequence line) throws IOException {
+        ensureOpen();
+        // Most lines are plain ASCII, so this is usually exact; rotating a little early or late doesn't matter.
+        if (fileBytes + buffer.position() + line.length() + 1 > maxFileBytes && fileBytes + buffer.position() > 0) {
+            drainBuffer();
+            rotate();
+        }
+
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                // a line longer than the buffer goes out in pieces, but still before any other line.
+                drainBuffer();
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drainBuffer();
+        }
+        if (!buffer.hasRemaining()) {
+            drainBuffer();
+        }
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * Writes out everything that's buffered, and fsyncs the file if it hasn't been for a while.
+     */
+    void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        drainBuffer();
+        long now = System.nanoTime();
+        if (unsyncedWrites && now - lastFsyncNanos >= fsyncIntervalNanos) {
+            channel.force(false);
+            lastFsyncNanos = now;
+            unsyncedWrites = false;
+        }
+    }
+
+    void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        drainBuffer();
+        channel.force(false);
+        channel.close();
+        channel = null;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                fileBytes += channel.write(buffer);
+                unsyncedWrites = true;
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        channel = null;
+
+        Files.deleteIfExists(rotatedFile(filesToKeep));
+        for (int i = filesToKeep - 1; i >= 1; i--) {
+            Path rotated = rotatedFile(i);
+            if (Files.exists(rotated)) {
+                Files.move(rotated, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (filesToKeep > 0) {
+            Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        ensureOpen();
+    }
+
+    private Path rotatedFile(int index) {
+        return file.resolveSibling(file.getFileName().toString() + "." + index);
+    }
+}
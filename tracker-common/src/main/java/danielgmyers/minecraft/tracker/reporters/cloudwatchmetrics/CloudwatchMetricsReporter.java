@@ -1,9 +1,13 @@
 package danielgmyers.minecraft.tracker.reporters.cloudwatchmetrics;
 
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
 import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
 import danielgmyers.minecraft.tracker.reporters.StatsReporter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
 import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
 import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
@@ -11,23 +15,53 @@ import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
 import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
 import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Submits metrics to CloudWatch in batches.
+ *
+ * At most a configured number of PutMetricData requests are outstanding at once. A batch that can't be sent (because
+ * that limit has been reached, or because CloudWatch was unreachable or throttled us) goes to a MetricSpool on disk,
+ * and a background thread replays the spool oldest-first, backing off exponentially while the failures continue.
+ * Batches that CloudWatch rejects outright (e.g. for being invalid) are logged and dropped, since retrying won't help.
+ *
+ * How that's going (queued metrics, requests and their latency, failures, spooled and dropped batches) is counted as
+ * it happens, and reported by reportHealth().
+ */
 public class CloudwatchMetricsReporter implements StatsReporter {
 
     // visible for testing
-    static final String MINUTE = ".minute.";
     static final String TICK_COUNT = "tick-count";
     static final String TICK_MILLIS = "tick-millis";
     static final String PLAYER_COUNT = "player-count";
+    static final String TYPE = "type.";
 
-    static final int MINUTE_STORAGE_RESOLUTION = 60;
+    // CloudWatch only accepts these two storage resolutions; anything finer than a minute needs high resolution.
+    static final int STANDARD_STORAGE_RESOLUTION = 60;
+    static final int HIGH_STORAGE_RESOLUTION = 1;
+
+    // CloudWatch accepts at most this many entries in the Values/Counts arrays of a single datum.
+    static final int MAX_VALUES_PER_DATUM = 150;
+
+    private static final long INITIAL_RETRY_BACKOFF_MILLIS = 1000;
 
     private static final Logger LOG = LogManager.getLogger();
     private final CloudWatchAsyncClient cw;
@@ -35,71 +69,282 @@ public class CloudwatchMetricsReporter implements StatsReporter {
     private final Clock clock;
     private final String metricNamespace;
     private final List<MetricDatum> queuedMetrics;
+    // full batches that putMetric() has handed to the retry thread to send or spool, so that the disk I/O doesn't
+    // happen under the reporter's lock, on the thread that's reporting.
+    private final Queue<List<MetricDatum>> pendingBatches = new ConcurrentLinkedQueue<>();
+
+    private final int maxInFlightRequests;
+    private final Semaphore inFlightRequests;
+    // null when spooling is disabled or the spool file couldn't be opened
+    private final MetricSpool spool;
+    private final ScheduledExecutorService retryExecutor;
+    private final long initialRetryBackoffMillis;
+    private final long maxRetryBackoffMillis;
+
+    private final Object replayLock = new Object();
+    // true while a replay is scheduled or running; guarded by replayLock
+    private boolean replayScheduled = false;
+    private volatile long retryBackoffMillis;
 
     private Instant lastMetricSubmission;
 
+    // for reportHealth(); the counters are reset each time they're reported.
+    private volatile int queuedMetricCount = 0;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong totalRequestNanos = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong spooledBatches = new AtomicLong();
+    private final AtomicLong droppedBatches = new AtomicLong();
+
     public CloudwatchMetricsReporter(Config config, Clock clock) {
-        this(config, clock, CloudWatchAsyncClient.create());
+        this(config, clock, CloudWatchAsyncClient.create(), openSpool(config), INITIAL_RETRY_BACKOFF_MILLIS);
     }
 
     // visible for testing
-    CloudwatchMetricsReporter(Config config, Clock clock, CloudWatchAsyncClient client) {
+    CloudwatchMetricsReporter(Config config, Clock clock, CloudWatchAsyncClient client, MetricSpool spool,
+                              long initialRetryBackoffMillis) {
         this.config = config;
         this.clock = clock;
         cw = client;
         metricNamespace = config.getCloudWatchMetricNamespace();
         queuedMetrics = new ArrayList<>();
         lastMetricSubmission = Instant.EPOCH;
+
+        maxInFlightRequests = (int) Math.max(1, config.getCloudWatchMaxInFlightRequests());
+        inFlightRequests = new Semaphore(maxInFlightRequests);
+        this.spool = spool;
+        this.initialRetryBackoffMillis = initialRetryBackoffMillis;
+        this.maxRetryBackoffMillis = Math.max(initialRetryBackoffMillis, config.getCloudWatchMaxRetryBackoffMillis());
+        this.retryBackoffMillis = initialRetryBackoffMillis;
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tracker-cloudwatch-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // anything left over from the last run gets replayed right away.
+        if (spool != null && !spool.isEmpty()) {
+            scheduleReplay();
+        }
+    }
+
+    private static MetricSpool openSpool(Config config) {
+        long maxBytes = config.getCloudWatchSpoolMaxBytes();
+        if (maxBytes <= 0) {
+            return null;
+        }
+        try {
+            return new MetricSpool(Paths.get(config.getCloudWatchSpoolFile()), maxBytes);
+        } catch (IOException e) {
+            LOG.warn("Couldn't open the CloudWatch metric spool at {}, failed submissions won't be retried.",
+                     config.getCloudWatchSpoolFile(), e);
+            return null;
+        }
     }
 
     @Override
-    public void reportTickStats(String tickSource, Instant timestamp, long secondsWithData,
+    public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                                 long totalTickCount, long minTickCount, long maxTickCount,
-                                long totalTickMillis, long minTickMillis, long maxTickMillis) {
+                                long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                LogLinearHistogram tickNanosHistogram) {
         // The CloudWatch SDK is not nice enough to do this for us.
         Instant timestampTruncated = timestamp.truncatedTo(ChronoUnit.MILLIS);
+        int storageResolution = storageResolutionFor(window);
 
         MetricDatum.Builder tickCount = MetricDatum.builder();
-        tickCount.storageResolution(MINUTE_STORAGE_RESOLUTION);
+        tickCount.storageResolution(storageResolution);
         tickCount.timestamp(timestampTruncated);
-        tickCount.metricName(tickSource + MINUTE + TICK_COUNT);
+        tickCount.metricName(metricName(tickSource, window, TICK_COUNT));
         tickCount.statisticValues(buildSet(secondsWithData, totalTickCount, minTickCount, maxTickCount));
         tickCount.unit(StandardUnit.COUNT_SECOND);
 
-        MetricDatum.Builder tickMillis = MetricDatum.builder();
-        tickMillis.storageResolution(MINUTE_STORAGE_RESOLUTION);
-        tickMillis.timestamp(timestampTruncated);
-        tickMillis.metricName(tickSource + MINUTE + TICK_MILLIS);
-        // we use totalTickCount instead of datapointCount because average totalTickMillis is divided among all ticks.
-        tickMillis.statisticValues(buildSet(totalTickCount, totalTickMillis, minTickMillis, maxTickMillis));
-        tickMillis.unit(StandardUnit.MILLISECONDS);
-
         putMetric(tickCount.build());
-        putMetric(tickMillis.build());
+
+        if (tickNanosHistogram.isEmpty()) {
+            MetricDatum.Builder tickMillis = MetricDatum.builder();
+            tickMillis.storageResolution(storageResolution);
+            tickMillis.timestamp(timestampTruncated);
+            tickMillis.metricName(metricName(tickSource, window, TICK_MILLIS));
+            // we use totalTickCount instead of datapointCount because average totalTickMillis is divided among all ticks.
+            tickMillis.statisticValues(buildSet(totalTickCount, nanosToMillis(totalTickNanos),
+                                                nanosToMillis(minTickNanos), nanosToMillis(maxTickNanos)));
+            tickMillis.unit(StandardUnit.MILLISECONDS);
+            putMetric(tickMillis.build());
+        } else {
+            // Sending the distribution as values and counts (rather than a StatisticSet) lets CloudWatch compute percentiles.
+            for (MetricDatum datum : buildDistribution(metricName(tickSource, window, TICK_MILLIS), storageResolution,
+                                                       timestampTruncated, tickNanosHistogram,
+                                                       minTickNanos, maxTickNanos)) {
+                putMetric(datum);
+            }
+        }
     }
 
     @Override
-    public void reportPlayerCount(String tickSource, Instant timestamp, long secondsWithData,
+    public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                                   long playerCountSum, long minPlayerCount, long maxPlayerCount) {
         // The CloudWatch SDK is not nice enough to do this for us.
         Instant timestampTruncated = timestamp.truncatedTo(ChronoUnit.MILLIS);
+        int storageResolution = storageResolutionFor(window);
 
         MetricDatum.Builder playerCount = MetricDatum.builder();
-        playerCount.storageResolution(MINUTE_STORAGE_RESOLUTION);
+        playerCount.storageResolution(storageResolution);
         playerCount.timestamp(timestampTruncated);
-        playerCount.metricName(tickSource + MINUTE + PLAYER_COUNT);
+        playerCount.metricName(metricName(tickSource, window, PLAYER_COUNT));
         playerCount.statisticValues(buildSet(secondsWithData, playerCountSum, minPlayerCount, maxPlayerCount));
         playerCount.unit(StandardUnit.COUNT);
 
         putMetric(playerCount.build());
     }
 
-    private StatisticSet buildSet(long sampleCount, long total, long min, long max) {
+    @Override
+    public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                      String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        // The CloudWatch SDK is not nice enough to do this for us.
+        Instant timestampTruncated = timestamp.truncatedTo(ChronoUnit.MILLIS);
+        int storageResolution = storageResolutionFor(window);
+
+        // We only know the total time each type spent ticking over the minute, not the individual tick durations,
+        // so that total is what we send. Only the top few types are reported, which bounds how many metrics we create.
+        for (int i = 0; i < typeCount; i++) {
+            MetricDatum.Builder typeMillis = MetricDatum.builder();
+            typeMillis.storageResolution(storageResolution);
+            typeMillis.timestamp(timestampTruncated);
+            typeMillis.metricName(metricName(tickSource, window, TYPE + typeIds[i] + "." + TICK_MILLIS));
+            typeMillis.value(nanosToMillis(totalTickNanos[i]));
+            typeMillis.unit(StandardUnit.MILLISECONDS);
+            putMetric(typeMillis.build());
+        }
+    }
+
+    @Override
+    public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                StatisticUnit unit, double value) {
+        MetricDatum.Builder statistic = MetricDatum.builder();
+        statistic.storageResolution(storageResolutionFor(window));
+        // The CloudWatch SDK is not nice enough to do this for us.
+        statistic.timestamp(timestamp.truncatedTo(ChronoUnit.MILLIS));
+        statistic.metricName(metricName(tickSource, window, name));
+        statistic.value(value);
+        statistic.unit(StandardUnit.fromValue(unit.getCloudWatchName()));
+        putMetric(statistic.build());
+    }
+
+    @Override
+    public void reportHealth(StatsReporter destination, String source, ReportingWindow window, Instant timestamp) {
+        long requests = requestCount.getAndSet(0);
+        long requestNanos = totalRequestNanos.getAndSet(0);
+        destination.reportStatistic(source, window, timestamp, "cloudwatch-queued-metrics", StatisticUnit.COUNT,
+                                    queuedMetricCount);
+        destination.reportStatistic(source, window, timestamp, "cloudwatch-in-flight-requests", StatisticUnit.COUNT,
+                                    maxInFlightRequests - inFlightRequests.availablePermits());
+        destination.reportStatistic(source, window, timestamp, "cloudwatch-requests", StatisticUnit.COUNT, requests);
+        if (requests > 0) {
+            destination.reportStatistic(source, window, timestamp, "cloudwatch-request-millis",
+                                        StatisticUnit.MILLISECONDS, nanosToMillis(requestNanos / requests));
+        }
+        destination.reportStatistic(source, window, timestamp, "cloudwatch-failed-requests", StatisticUnit.COUNT,
+                                    failedRequests.getAndSet(0));
+        destination.reportStatistic(source, window, timestamp, "cloudwatch-spooled-batches", StatisticUnit.COUNT,
+                                    spooledBatches.getAndSet(0));
+        destination.reportStatistic(source, window, timestamp, "cloudwatch-dropped-batches", StatisticUnit.COUNT,
+                                    droppedBatches.getAndSet(0));
+    }
+
+    // Anything still queued or waiting to be sent goes into the spool, for the next reporter to replay. A batch that's
+    // in flight when this is called is lost if it fails, since there's nobody left to retry it.
+    @Override
+    public void close() {
+        List<MetricDatum> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(queuedMetrics);
+            queuedMetrics.clear();
+            queuedMetricCount = 0;
+        }
+        if (!batch.isEmpty()) {
+            spool(batch);
+        }
+        List<MetricDatum> pending;
+        while ((pending = pendingBatches.poll()) != null) {
+            spool(pending);
+        }
+        retryExecutor.shutdownNow();
+        cw.close();
+    }
+
+    // visible for testing
+    static List<MetricDatum> buildDistribution(String metricName, int storageResolution, Instant timestamp,
+                                               LogLinearHistogram nanosHistogram, long exactMinNanos, long exactMaxNanos) {
+        List<Double> values = new ArrayList<>();
+        List<Double> counts = new ArrayList<>();
+
+        // The histogram only knows bucket midpoints, but we know the exact min and max, so we send those
+        // as their own values and take them out of their buckets. That keeps the Minimum and Maximum statistics exact.
+        int minIndex = -1;
+        int maxIndex = -1;
+        if (nanosHistogram.getTotalCount() > 1) {
+            minIndex = LogLinearHistogram.indexFor(exactMinNanos);
+            maxIndex = LogLinearHistogram.indexFor(exactMaxNanos);
+            values.add(nanosToMillis(exactMinNanos));
+            counts.add(1.0);
+            values.add(nanosToMillis(exactMaxNanos));
+            counts.add(1.0);
+        }
+
+        for (int i = nanosHistogram.getFirstIndex(); i <= nanosHistogram.getLastIndex(); i++) {
+            long count = nanosHistogram.getCountAtIndex(i);
+            if (i == minIndex) {
+                count--;
+            }
+            if (i == maxIndex) {
+                count--;
+            }
+            if (count <= 0) {
+                continue;
+            }
+            long valueNanos = LogLinearHistogram.representativeValueAtIndex(i);
+            if (nanosHistogram.getTotalCount() > 1) {
+                valueNanos = Math.min(Math.max(valueNanos, exactMinNanos), exactMaxNanos);
+            }
+            values.add(nanosToMillis(valueNanos));
+            counts.add((double) count);
+        }
+
+        List<MetricDatum> datums = new ArrayList<>();
+        for (int start = 0; start < values.size(); start += MAX_VALUES_PER_DATUM) {
+            int end = Math.min(start + MAX_VALUES_PER_DATUM, values.size());
+            MetricDatum.Builder datum = MetricDatum.builder();
+            datum.storageResolution(storageResolution);
+            datum.timestamp(timestamp);
+            datum.metricName(metricName);
+            datum.values(new ArrayList<>(values.subList(start, end)));
+            datum.counts(new ArrayList<>(counts.subList(start, end)));
+            datum.unit(StandardUnit.MILLISECONDS);
+            datums.add(datum.build());
+        }
+        return datums;
+    }
+
+    // visible for testing
+    static String metricName(String tickSource, ReportingWindow window, String metric) {
+        return tickSource + "." + window.getName() + "." + metric;
+    }
+
+    // visible for testing
+    static int storageResolutionFor(ReportingWindow window) {
+        return window.isHighResolution() ? HIGH_STORAGE_RESOLUTION : STANDARD_STORAGE_RESOLUTION;
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private StatisticSet buildSet(long sampleCount, double total, double min, double max) {
         StatisticSet.Builder stats = StatisticSet.builder();
         stats.sampleCount((double) sampleCount);
-        stats.sum((double) total);
-        stats.minimum((double) min);
-        stats.maximum((double) max);
+        stats.sum(total);
+        stats.minimum(min);
+        stats.maximum(max);
         return stats.build();
     }
 
@@ -109,29 +354,187 @@ public class CloudwatchMetricsReporter implements StatsReporter {
         queuedMetrics.add(datum);
         Instant now = clock.instant();
         final int queueSize = queuedMetrics.size();
+        queuedMetricCount = queueSize;
         LOG.debug("{} metrics queued for submission.", queueSize);
         if (queueSize < 20 && lastMetricSubmission.isAfter(now.minus(Duration.ofMinutes(1)))) {
             return;
         }
 
+        List<MetricDatum> batch = new ArrayList<>(queuedMetrics);
+        lastMetricSubmission = now;
+        queuedMetrics.clear();
+        queuedMetricCount = 0;
+        LOG.debug("Metrics queue is clear.");
+
+        pendingBatches.add(batch);
+        try {
+            retryExecutor.execute(this::submitPending);
+        } catch (RejectedExecutionException e) {
+            // we've been closed; close() spools whatever's pending.
+        }
+    }
+
+    // Runs on the retry thread, and sends (or spools) the batches putMetric() handed over, in the order they filled.
+    private void submitPending() {
+        List<MetricDatum> batch;
+        while ((batch = pendingBatches.poll()) != null) {
+            submit(batch);
+        }
+    }
+
+    // Sends a batch now, unless too many requests are already in flight, in which case it waits in the spool.
+    private void submit(List<MetricDatum> batch) {
+        if (!inFlightRequests.tryAcquire()) {
+            LOG.debug("Too many CloudWatch requests in flight, spooling {} metric(s).", batch.size());
+            spool(batch);
+            return;
+        }
+        send(batch).whenCompleteAsync((putMetricDataResponse, throwable) -> {
+            inFlightRequests.release();
+            if (throwable == null) {
+                String requestId = putMetricDataResponse.responseMetadata().requestId();
+                LOG.debug("{} metric(s) submitted. RequestId={}", batch.size(), requestId);
+            } else if (isRetryable(throwable)) {
+                LOG.warn("Got an exception submitting metrics to CloudWatch, spooling them to retry later.", throwable);
+                spool(batch);
+            } else {
+                LOG.warn("CloudWatch rejected {} metric(s), dropping them.", batch.size(), throwable);
+                droppedBatches.incrementAndGet();
+            }
+        }, retryExecutor);
+    }
+
+    private CompletableFuture<PutMetricDataResponse> send(List<MetricDatum> batch) {
         PutMetricDataRequest request
                 = PutMetricDataRequest.builder()
                 .namespace(metricNamespace)
-                .metricData(new ArrayList<>(queuedMetrics))
+                .metricData(batch)
                 .build();
-
-        CompletableFuture<PutMetricDataResponse> response = cw.putMetricData(request);
-        response.whenCompleteAsync((putMetricDataResponse, throwable) -> {
+        long sentNanos = System.nanoTime();
+        CompletableFuture<PutMetricDataResponse> response;
+        try {
+            response = cw.putMetricData(request);
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        return response.whenComplete((putMetricDataResponse, throwable) -> {
+            requestCount.incrementAndGet();
+            totalRequestNanos.addAndGet(System.nanoTime() - sentNanos);
             if (throwable != null) {
-                LOG.warn("Got an exception submitting metrics to CloudWatch", throwable);
-            } else {
-                String requestId = putMetricDataResponse.responseMetadata().requestId();
-                LOG.debug("{} metric(s) submitted. RequestId={}", queueSize, requestId);
+                failedRequests.incrementAndGet();
             }
         });
+    }
 
-        lastMetricSubmission = now;
-        queuedMetrics.clear();
-        LOG.debug("Metrics queue is clear.");
+    private void spool(List<MetricDatum> batch) {
+        if (spool == null) {
+            LOG.warn("Dropping {} metric(s) that couldn't be submitted, since spooling is disabled.", batch.size());
+            droppedBatches.incrementAndGet();
+            return;
+        }
+        try {
+            if (!spool.append(batch)) {
+                LOG.warn("Dropping {} metric(s), they're too large for the spool.", batch.size());
+                droppedBatches.incrementAndGet();
+                return;
+            }
+        } catch (IOException e) {
+            LOG.warn("Couldn't spool {} metric(s), dropping them.", batch.size(), e);
+            droppedBatches.incrementAndGet();
+            return;
+        }
+        spooledBatches.incrementAndGet();
+        scheduleReplay();
+    }
+
+    private void scheduleReplay() {
+        synchronized (replayLock) {
+            if (!replayScheduled) {
+                replayScheduled = true;
+                retryExecutor.schedule(this::replayOldest, jitter(retryBackoffMillis), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Always runs on the retry thread. Sends the oldest spooled batch, and schedules the next attempt when it's done.
+    private void replayOldest() {
+        MetricSpool.SpooledBatch oldest;
+        synchronized (replayLock) {
+            try {
+                oldest = spool.peekOldestSpooled();
+            } catch (IOException e) {
+                LOG.warn("Couldn't read the CloudWatch metric spool, discarding it.", e);
+                clearSpool();
+                oldest = null;
+            }
+            if (oldest == null) {
+                replayScheduled = false;
+                retryBackoffMillis = initialRetryBackoffMillis;
+                return;
+            }
+        }
+        if (!inFlightRequests.tryAcquire()) {
+            retryExecutor.schedule(this::replayOldest, jitter(retryBackoffMillis), TimeUnit.MILLISECONDS);
+            return;
+        }
+        final int batchSize = oldest.batch.size();
+        final long sequence = oldest.sequence;
+        send(oldest.batch).whenCompleteAsync((putMetricDataResponse, throwable) -> {
+            inFlightRequests.release();
+            if (throwable == null) {
+                LOG.debug("{} spooled metric(s) submitted.", batchSize);
+                removeOldestSpooled(sequence);
+                retryBackoffMillis = initialRetryBackoffMillis;
+                retryExecutor.execute(this::replayOldest);
+            } else if (isRetryable(throwable)) {
+                retryBackoffMillis = Math.min(maxRetryBackoffMillis, retryBackoffMillis * 2);
+                LOG.debug("Retrying spooled metrics failed, trying again in about {}ms.", retryBackoffMillis, throwable);
+                retryExecutor.schedule(this::replayOldest, jitter(retryBackoffMillis), TimeUnit.MILLISECONDS);
+            } else {
+                LOG.warn("CloudWatch rejected {} spooled metric(s), dropping them.", batchSize, throwable);
+                droppedBatches.incrementAndGet();
+                removeOldestSpooled(sequence);
+                retryExecutor.execute(this::replayOldest);
+            }
+        }, retryExecutor);
+    }
+
+    // The batch may have been evicted to make room while it was being sent, in which case the batch that's now oldest
+    // hasn't been sent yet and has to stay.
+    private void removeOldestSpooled(long sequence) {
+        try {
+            spool.removeOldest(sequence);
+        } catch (IOException e) {
+            LOG.warn("Couldn't update the CloudWatch metric spool, discarding it.", e);
+            clearSpool();
+        }
+    }
+
+    private void clearSpool() {
+        try {
+            spool.clear();
+        } catch (IOException e) {
+            LOG.warn("Couldn't clear the CloudWatch metric spool.", e);
+        }
+    }
+
+    // Spreads retries out a bit, so that many servers that lost connectivity together don't all retry in lockstep.
+    private static long jitter(long delayMillis) {
+        return delayMillis / 2 + ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1);
+    }
+
+    // Throttling, server-side errors and client-side (e.g. network) failures are worth retrying; other rejections aren't.
+    // visible for testing
+    static boolean isRetryable(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof AwsServiceException) {
+            AwsServiceException serviceException = (AwsServiceException) cause;
+            return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+        }
+        return true;
     }
 }
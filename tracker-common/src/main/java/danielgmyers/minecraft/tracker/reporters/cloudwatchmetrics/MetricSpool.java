@@ -0,0 +1,399 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchmetrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A bounded, append-only file of metric batches that couldn't be submitted, oldest first.
+ *
+ * Each batch is one record: a 4-byte payload length, a 4-byte CRC32 of the payload, and the payload itself, which is
+ * a compact binary encoding of the batch's datums. Batches are consumed from the front by advancing a head offset,
+ * which is kept in a small sidecar file so that a restart doesn't replay batches we already submitted. The consumed
+ * prefix is only actually removed (by copying the rest of the file) once it's grown past half the size cap.
+ *
+ * When appending would push the spooled data past the size cap, the oldest batches are evicted first.
+ * A record that fails its checksum (e.g. because the server died partway through writing it) is treated as the end
+ * of the spool, and everything from it onward is discarded.
+ *
+ * Each batch that leaves the front of the spool (submitted, evicted or discarded) bumps a sequence number, so a batch
+ * that was read for replay is only removed if it's still at the front when the replay finishes.
+ *
+ * Appended batches are forced to disk before append() returns, so they survive the host crashing. The head offset
+ * isn't, so after a host crash a few batches that were already submitted may be replayed again.
+ */
+class MetricSpool {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final int HEADER_BYTES = 8;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HAS_VALUE = 1;
+    private static final int HAS_STATISTIC_VALUES = 2;
+    private static final int HAS_VALUES = 4;
+    private static final int HAS_COUNTS = 8;
+
+    private final Path file;
+    private final Path positionFile;
+    private final long maxBytes;
+
+    private long headOffset;
+    private long fileSize;
+    // how many batches have left the front of the spool since it was opened
+    private long headSequence = 0;
+
+    MetricSpool(Path file, long maxBytes) throws IOException {
+        this.file = file;
+        this.positionFile = file.resolveSibling(file.getFileName() + ".position");
+        this.maxBytes = maxBytes;
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.fileSize = Files.exists(file) ? Files.size(file) : 0;
+        this.headOffset = readPosition();
+        if (headOffset > fileSize) {
+            headOffset = 0;
+        }
+        if (!isEmpty()) {
+            LOG.info("Found {} bytes of spooled metrics in {}.", pendingBytes(), file);
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return headOffset >= fileSize;
+    }
+
+    synchronized long pendingBytes() {
+        return fileSize - headOffset;
+    }
+
+    /**
+     * Adds a batch to the end of the spool, evicting the oldest batches if needed to stay under the size cap.
+     * Returns false if the batch is too large to ever fit.
+     */
+    synchronized boolean append(List<MetricDatum> batch) throws IOException {
+        byte[] payload = encode(batch);
+        long recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes > maxBytes) {
+            return false;
+        }
+        int evicted = 0;
+        while (!isEmpty() && pendingBytes() + recordBytes > maxBytes) {
+            skipOldest();
+            evicted++;
+        }
+        if (evicted > 0) {
+            LOG.warn("Metric spool {} is full, evicted the {} oldest batch(es).", file, evicted);
+        }
+        if (fileSize + recordBytes > maxBytes) {
+            compact();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate((int) recordBytes);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.position(fileSize);
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        }
+        fileSize += recordBytes;
+        return true;
+    }
+
+    /**
+     * Returns the oldest batch without removing it, or null if the spool is empty.
+     */
+    synchronized List<MetricDatum> peekOldest() throws IOException {
+        SpooledBatch oldest = peekOldestSpooled();
+        return oldest != null ? oldest.batch : null;
+    }
+
+    /**
+     * Returns the oldest batch and its sequence number without removing it, or null if the spool is empty.
+     */
+    synchronized SpooledBatch peekOldestSpooled() throws IOException {
+        if (isEmpty()) {
+            return null;
+        }
+        byte[] payload = readPayload(headOffset);
+        if (payload == null) {
+            LOG.warn("Metric spool {} has a damaged record at offset {}, discarding the {} bytes after it.",
+                     file, headOffset, pendingBytes());
+            clear();
+            return null;
+        }
+        return new SpooledBatch(decode(payload), headSequence);
+    }
+
+    /**
+     * Removes the oldest batch, usually because it has been submitted successfully.
+     */
+    synchronized void removeOldest() throws IOException {
+        if (isEmpty()) {
+            return;
+        }
+        skipOldest();
+        if (!isEmpty() && headOffset > maxBytes / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes the oldest batch if it's still the one with the given sequence number, i.e. if it hasn't been evicted
+     * or discarded since it was read. Returns whether it was removed.
+     */
+    synchronized boolean removeOldest(long sequence) throws IOException {
+        if (sequence != headSequence || isEmpty()) {
+            return false;
+        }
+        removeOldest();
+        return true;
+    }
+
+    synchronized void clear() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(positionFile);
+        fileSize = 0;
+        headOffset = 0;
+        headSequence++;
+    }
+
+    private void skipOldest() throws IOException {
+        int payloadLength = readPayloadLength(headOffset);
+        if (payloadLength < 0) {
+            clear();
+            return;
+        }
+        headOffset += HEADER_BYTES + payloadLength;
+        headSequence++;
+        if (headOffset >= fileSize) {
+            clear();
+        } else {
+            writePosition();
+        }
+    }
+
+    // Copies everything after the head to a new file, so the consumed prefix stops taking up space.
+    private void compact() throws IOException {
+        if (headOffset == 0) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = headOffset;
+            while (position < fileSize) {
+                position += source.transferTo(position, fileSize - position, target);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileSize -= headOffset;
+        headOffset = 0;
+        writePosition();
+    }
+
+    private int readPayloadLength(long offset) throws IOException {
+        if (offset + HEADER_BYTES > fileSize) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readFully(channel, header, offset);
+        }
+        int payloadLength = header.getInt(0);
+        if (payloadLength < 0 || offset + HEADER_BYTES + payloadLength > fileSize) {
+            return -1;
+        }
+        return payloadLength;
+    }
+
+    private byte[] readPayload(long offset) throws IOException {
+        int payloadLength = readPayloadLength(offset);
+        if (payloadLength < 0) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payloadLength);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readFully(channel, record, offset);
+        }
+        byte[] payload = new byte[payloadLength];
+        record.position(HEADER_BYTES);
+        record.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != record.getInt(4)) {
+            return null;
+        }
+        return payload;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of spool file");
+            }
+        }
+    }
+
+    private long readPosition() {
+        try {
+            if (Files.exists(positionFile)) {
+                byte[] bytes = Files.readAllBytes(positionFile);
+                if (bytes.length == Long.BYTES) {
+                    return ByteBuffer.wrap(bytes).getLong();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Couldn't read metric spool position from {}, replaying the whole spool.", positionFile, e);
+        }
+        return 0;
+    }
+
+    private void writePosition() throws IOException {
+        Files.write(positionFile, ByteBuffer.allocate(Long.BYTES).putLong(headOffset).array());
+    }
+
+    // visible for testing
+    static byte[] encode(List<MetricDatum> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(batch.size());
+            for (MetricDatum datum : batch) {
+                out.writeUTF(datum.metricName());
+                out.writeLong(datum.timestamp() == null ? 0 : datum.timestamp().toEpochMilli());
+                out.writeUTF(datum.unitAsString() == null ? "" : datum.unitAsString());
+                out.writeInt(datum.storageResolution() == null ? 0 : datum.storageResolution());
+
+                int flags = 0;
+                flags |= datum.value() != null ? HAS_VALUE : 0;
+                flags |= datum.statisticValues() != null ? HAS_STATISTIC_VALUES : 0;
+                flags |= datum.hasValues() ? HAS_VALUES : 0;
+                flags |= datum.hasCounts() ? HAS_COUNTS : 0;
+                out.writeByte(flags);
+
+                if (datum.value() != null) {
+                    out.writeDouble(datum.value());
+                }
+                if (datum.statisticValues() != null) {
+                    StatisticSet stats = datum.statisticValues();
+                    out.writeDouble(stats.sampleCount());
+                    out.writeDouble(stats.sum());
+                    out.writeDouble(stats.minimum());
+                    out.writeDouble(stats.maximum());
+                }
+                if (datum.hasValues()) {
+                    writeDoubles(out, datum.values());
+                }
+                if (datum.hasCounts()) {
+                    writeDoubles(out, datum.counts());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    // visible for testing
+    static List<MetricDatum> decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported metric spool format version " + version);
+            }
+            int count = in.readInt();
+            List<MetricDatum> batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                MetricDatum.Builder datum = MetricDatum.builder();
+                datum.metricName(in.readUTF());
+                long timestampMillis = in.readLong();
+                if (timestampMillis != 0) {
+                    datum.timestamp(Instant.ofEpochMilli(timestampMillis));
+                }
+                String unit = in.readUTF();
+                if (!unit.isEmpty()) {
+                    datum.unit(unit);
+                }
+                int storageResolution = in.readInt();
+                if (storageResolution != 0) {
+                    datum.storageResolution(storageResolution);
+                }
+
+                int flags = in.readUnsignedByte();
+                if ((flags & HAS_VALUE) != 0) {
+                    datum.value(in.readDouble());
+                }
+                if ((flags & HAS_STATISTIC_VALUES) != 0) {
+                    datum.statisticValues(StatisticSet.builder()
+                                                  .sampleCount(in.readDouble())
+                                                  .sum(in.readDouble())
+                                                  .minimum(in.readDouble())
+                                                  .maximum(in.readDouble())
+                                                  .build());
+                }
+                if ((flags & HAS_VALUES) != 0) {
+                    datum.values(readDoubles(in));
+                }
+                if ((flags & HAS_COUNTS) != 0) {
+                    datum.counts(readDoubles(in));
+                }
+                batch.add(datum.build());
+            }
+            return batch;
+        }
+    }
+
+    static final class SpooledBatch {
+        final List<MetricDatum> batch;
+        final long sequence;
+
+        private SpooledBatch(List<MetricDatum> batch, long sequence) {
+            this.batch = batch;
+            this.sequence = sequence;
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, List<Double> values) throws IOException {
+        out.writeInt(values.size());
+        for (Double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static List<Double> readDoubles(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Double> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readDouble());
+        }
+        return values;
+    }
+}
@@ -1,11 +1,15 @@
 package danielgmyers.minecraft.tracker.reporters.logging;
 
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
 import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
 import danielgmyers.minecraft.tracker.reporters.StatsReporter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Instant;
+import java.util.Locale;
 
 public class LoggingReporter implements StatsReporter {
 
@@ -17,22 +21,53 @@ public class LoggingReporter implements StatsReporter {
     }
 
     @Override
-    public void reportTickStats(String tickSource, Instant timestamp, long secondsWithData,
+    public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                                 long totalTickCount, long minTickCount, long maxTickCount,
-                                long totalTickMillis, long minTickMillis, long maxTickMillis) {
+                                long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                LogLinearHistogram tickNanosHistogram) {
         long avgTickCount = totalTickCount / secondsWithData;
-        long avgTickMillis = totalTickMillis / secondsWithData;
-        LOG.info("Last minute {} stats: {} data points. TPS: {} (min), {} (avg), {} (max). Tick durations: {} ms (min), {} ms (avg), {} ms (max).",
-                 tickSource, secondsWithData,
+        // the average duration is over all ticks, not over the seconds we have data for.
+        long avgTickNanos = totalTickNanos / Math.max(1, totalTickCount);
+        LOG.info("Last {} {} stats: {} data points. TPS: {} (min), {} (avg), {} (max). Tick durations: {} ms (min), {} ms (avg), {} ms (max). Tick duration percentiles: {} ms (p50), {} ms (p95), {} ms (p99), {} ms (p99.9).",
+                 window.getName(), tickSource, secondsWithData,
                  minTickCount, avgTickCount, maxTickCount,
-                 minTickMillis, avgTickMillis, maxTickMillis);
+                 formatMillis(minTickNanos), formatMillis(avgTickNanos), formatMillis(maxTickNanos),
+                 formatMillis(tickNanosHistogram.getValueAtPercentile(50)),
+                 formatMillis(tickNanosHistogram.getValueAtPercentile(95)),
+                 formatMillis(tickNanosHistogram.getValueAtPercentile(99)),
+                 formatMillis(tickNanosHistogram.getValueAtPercentile(99.9)));
     }
 
     @Override
-    public void reportPlayerCount(String tickSource, Instant timestamp, long secondsWithData,
+    public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                                   long playerCountSum, long minPlayerCount, long maxPlayerCount) {
         long avgPlayerCount = playerCountSum / secondsWithData;
-        LOG.info("Last minute {} player counts: {} data points. {} (min), {} (avg), {} (max).",
-                 tickSource, secondsWithData, minPlayerCount, avgPlayerCount, maxPlayerCount);
+        LOG.info("Last {} {} player counts: {} data points. {} (min), {} (avg), {} (max).",
+                 window.getName(), tickSource, secondsWithData, minPlayerCount, avgPlayerCount, maxPlayerCount);
+    }
+
+    @Override
+    public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                      String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        StringBuilder types = new StringBuilder();
+        for (int i = 0; i < typeCount; i++) {
+            if (i > 0) {
+                types.append(", ");
+            }
+            types.append(typeIds[i]).append(' ').append(formatMillis(totalTickNanos[i]))
+                 .append(" ms (").append(tickCounts[i]).append(" ticks)");
+        }
+        LOG.info("Last {} {} most expensive types: {}.", window.getName(), tickSource, types);
+    }
+
+    @Override
+    public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                StatisticUnit unit, double value) {
+        LOG.info("Last {} {} {}: {}{}.", window.getName(), tickSource, name,
+                 String.format(Locale.ROOT, "%.2f", value), unit == StatisticUnit.COUNT ? "" : " " + unit.getSymbol());
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
     }
 }
@@ -0,0 +1,451 @@
+package danielgmyers.minecraft.tracker.reporters.prometheus;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the most recent report for each tick source and window on an HTTP endpoint, in the Prometheus text format.
+ *
+ * Each report replaces an immutable record for its source and window, and bumps a version number. A scrape renders
+ * the records into text only if the version has changed since the last render, and otherwise serves the cached bytes,
+ * so scraping every second costs almost nothing between reports. Scrapes run on the HTTP server's own thread and
+ * only ever read the records, so they never touch the server thread or hold up reporting.
+ *
+ * A record that hasn't been replaced for two of its windows (and at least five minutes) of report time is dropped, so
+ * the series for a dimension that unloads, or a window that's no longer configured, don't hang around forever.
+ */
+public class PrometheusReporter implements StatsReporter {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // visible for testing
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String[] TICK_DURATION_STATS = {"min", "avg", "max", "p50", "p95", "p99", "p99.9"};
+    private static final double[] PERCENTILES = {50, 95, 99, 99.9};
+    private static final long MIN_SERIES_LIFETIME_MILLIS = 5 * 60 * 1000;
+
+    private final String bindAddress;
+    private final int port;
+
+    private final Map<String, TickStats> tickStats = new ConcurrentHashMap<>();
+    private final Map<String, PlayerCounts> playerCounts = new ConcurrentHashMap<>();
+    private final Map<String, TypeCosts> typeCosts = new ConcurrentHashMap<>();
+    // keyed by family first, so that sorting the keys groups each family's samples together. Names that sanitize to
+    // the same family share a series, and the latest report wins.
+    private final Map<String, Statistic> statistics = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // the newest report timestamp we've seen, which is the clock that records expire against.
+    private final AtomicLong latestReportMillis = new AtomicLong(Long.MIN_VALUE);
+
+    private final Object renderLock = new Object();
+    private volatile Rendered rendered = new Rendered(-1, new byte[0]);
+    // visible for testing
+    final AtomicLong renderCount = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PrometheusReporter(Config config) {
+        this(config.getPrometheusBindAddress(), (int) config.getPrometheusPort());
+    }
+
+    // visible for testing
+    PrometheusReporter(String bindAddress, int port) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/metrics", this::handleScrape);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tracker-prometheus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+
+        // The HTTP server's dispatcher thread takes its daemon status from the thread that starts it, and we have no
+        // hook to stop it when the game shuts down, so it's started from a daemon thread to keep it from holding the
+        // JVM open.
+        Thread starter = new Thread(server::start, "tracker-prometheus-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("Serving Prometheus metrics on http://{}:{}/metrics.", bindAddress, getPort());
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdown();
+        server = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    // visible for testing
+    synchronized int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    @Override
+    public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                long totalTickCount, long minTickCount, long maxTickCount,
+                                long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                LogLinearHistogram tickNanosHistogram) {
+        // the histogram gets reused as soon as we return, so the percentiles are worked out now.
+        double[] durations = new double[TICK_DURATION_STATS.length];
+        durations[0] = nanosToSeconds(minTickNanos);
+        // the average duration is over all ticks, not over the seconds we have data for.
+        durations[1] = nanosToSeconds(totalTickNanos) / Math.max(1, totalTickCount);
+        durations[2] = nanosToSeconds(maxTickNanos);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            durations[3 + i] = nanosToSeconds(tickNanosHistogram.getValueAtPercentile(PERCENTILES[i]));
+        }
+        tickStats.put(key(tickSource, window),
+                      new TickStats(tickSource, window.getName(), expiresAt(window, timestamp), minTickCount,
+                                    (double) totalTickCount / Math.max(1, secondsWithData), maxTickCount, durations));
+        reported(timestamp);
+    }
+
+    @Override
+    public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
+                                  long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+        playerCounts.put(key(tickSource, window),
+                         new PlayerCounts(tickSource, window.getName(), expiresAt(window, timestamp), minPlayerCount,
+                                          (double) playerCountSum / Math.max(1, secondsWithData), maxPlayerCount));
+        reported(timestamp);
+    }
+
+    @Override
+    public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                      String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        // the whole set is replaced, so types that dropped out of the top N stop being exported.
+        typeCosts.put(key(tickSource, window),
+                      new TypeCosts(tickSource, window.getName(), expiresAt(window, timestamp),
+                                    Arrays.copyOf(typeIds, typeCount), Arrays.copyOf(tickCounts, typeCount),
+                                    Arrays.copyOf(totalTickNanos, typeCount)));
+        reported(timestamp);
+    }
+
+    @Override
+    public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                StatisticUnit unit, double value) {
+        String family = familyName(name, unit);
+        statistics.put(family + '\0' + key(tickSource, window),
+                       new Statistic(family, name, tickSource, window.getName(), expiresAt(window, timestamp), value));
+        reported(timestamp);
+    }
+
+    private static long expiresAt(ReportingWindow window, Instant timestamp) {
+        return timestamp.toEpochMilli() + Math.max(2 * window.getLengthSeconds() * 1000, MIN_SERIES_LIFETIME_MILLIS);
+    }
+
+    private void reported(Instant timestamp) {
+        long timestampMillis = timestamp.toEpochMilli();
+        latestReportMillis.accumulateAndGet(timestampMillis, Math::max);
+        version.incrementAndGet();
+    }
+
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = currentBody();
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // visible for testing
+    byte[] currentBody() {
+        Rendered current = rendered;
+        if (current.version == version.get()) {
+            return current.body;
+        }
+        synchronized (renderLock) {
+            // the version is read before the records, so a report that lands mid-render just causes another render.
+            long renderVersion = version.get();
+            if (rendered.version == renderVersion) {
+                return rendered.body;
+            }
+            rendered = new Rendered(renderVersion, render().getBytes(StandardCharsets.UTF_8));
+            renderCount.incrementAndGet();
+            return rendered.body;
+        }
+    }
+
+    private String render() {
+        long now = latestReportMillis.get();
+        expire(tickStats, now);
+        expire(playerCounts, now);
+        expire(typeCosts, now);
+        expire(statistics, now);
+
+        StringBuilder text = new StringBuilder(4096);
+
+        Map<String, TickStats> sortedTickStats = new TreeMap<>(tickStats);
+        family(text, "tracker_ticks_per_second", "Ticks per second over the reporting window.");
+        for (TickStats stats : sortedTickStats.values()) {
+            sample(text, "tracker_ticks_per_second", stats.source, stats.window, "stat", "min", stats.minTicksPerSecond);
+            sample(text, "tracker_ticks_per_second", stats.source, stats.window, "stat", "avg", stats.avgTicksPerSecond);
+            sample(text, "tracker_ticks_per_second", stats.source, stats.window, "stat", "max", stats.maxTicksPerSecond);
+        }
+        family(text, "tracker_tick_duration_seconds", "Tick durations over the reporting window.");
+        for (TickStats stats : sortedTickStats.values()) {
+            for (int i = 0; i < TICK_DURATION_STATS.length; i++) {
+                sample(text, "tracker_tick_duration_seconds", stats.source, stats.window,
+                       "stat", TICK_DURATION_STATS[i], stats.tickDurationSeconds[i]);
+            }
+        }
+
+        family(text, "tracker_player_count", "Online players over the reporting window.");
+        for (PlayerCounts counts : new TreeMap<>(playerCounts).values()) {
+            sample(text, "tracker_player_count", counts.source, counts.window, "stat", "min", counts.min);
+            sample(text, "tracker_player_count", counts.source, counts.window, "stat", "avg", counts.avg);
+            sample(text, "tracker_player_count", counts.source, counts.window, "stat", "max", counts.max);
+        }
+
+        Map<String, TypeCosts> sortedTypeCosts = new TreeMap<>(typeCosts);
+        if (!sortedTypeCosts.isEmpty()) {
+            family(text, "tracker_type_tick_seconds",
+                   "Time the most expensive entity and block entity types spent ticking over the reporting window.");
+            for (TypeCosts costs : sortedTypeCosts.values()) {
+                for (int i = 0; i < costs.typeIds.length; i++) {
+                    sample(text, "tracker_type_tick_seconds", costs.source, costs.window,
+                           "type", costs.typeIds[i], nanosToSeconds(costs.totalTickNanos[i]));
+                }
+            }
+            family(text, "tracker_type_tick_count",
+                   "How many times the most expensive entity and block entity types ticked over the reporting window.");
+            for (TypeCosts costs : sortedTypeCosts.values()) {
+                for (int i = 0; i < costs.typeIds.length; i++) {
+                    sample(text, "tracker_type_tick_count", costs.source, costs.window,
+                           "type", costs.typeIds[i], costs.tickCounts[i]);
+                }
+            }
+        }
+
+        String currentFamily = null;
+        for (Statistic statistic : new TreeMap<>(statistics).values()) {
+            if (!statistic.family.equals(currentFamily)) {
+                currentFamily = statistic.family;
+                family(text, currentFamily, "The " + statistic.name + " statistic over the reporting window.");
+            }
+            sample(text, currentFamily, statistic.source, statistic.window, statistic.value);
+        }
+        return text.toString();
+    }
+
+    private static <T extends Series> void expire(Map<String, T> series, long now) {
+        for (Map.Entry<String, T> entry : series.entrySet()) {
+            if (entry.getValue().expiresAtMillis < now) {
+                // only removes the record we looked at, in case a fresh report just replaced it.
+                series.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    // e.g. live-world-trackers becomes tracker_live_world_trackers, and gc-pause in MILLISECONDS becomes
+    // tracker_gc_pause_milliseconds.
+    // visible for testing
+    static String familyName(String name, StatisticUnit unit) {
+        StringBuilder family = new StringBuilder("tracker_");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            family.append((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ? c : '_');
+        }
+        if (unit != StatisticUnit.COUNT) {
+            family.append('_').append(unit.name().toLowerCase(Locale.ROOT));
+        }
+        return family.toString();
+    }
+
+    private static void family(StringBuilder text, String name, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static void sample(StringBuilder text, String name, String source, String window,
+                               String labelName, String labelValue, double value) {
+        text.append(name).append("{source=\"");
+        appendLabelValue(text, source);
+        text.append("\",window=\"");
+        appendLabelValue(text, window);
+        text.append("\",").append(labelName).append("=\"");
+        appendLabelValue(text, labelValue);
+        text.append("\"} ");
+        appendValue(text, value);
+        text.append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String source, String window, double value) {
+        text.append(name).append("{source=\"");
+        appendLabelValue(text, source);
+        text.append("\",window=\"");
+        appendLabelValue(text, window);
+        text.append("\"} ");
+        appendValue(text, value);
+        text.append('\n');
+    }
+
+    // Java writes infinities as "Infinity", but the exposition format spells them +Inf and -Inf. NaN is spelled the same.
+    private static void appendValue(StringBuilder text, double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            text.append("+Inf");
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            text.append("-Inf");
+        } else {
+            text.append(value);
+        }
+    }
+
+    private static void appendLabelValue(StringBuilder text, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                text.append('\\').append(c);
+            } else if (c == '\n') {
+                text.append("\\n");
+            } else {
+                text.append(c);
+            }
+        }
+    }
+
+    private static String key(String tickSource, ReportingWindow window) {
+        return tickSource + '\0' + window.getName();
+    }
+
+    private static double nanosToSeconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    private static final class Rendered {
+        private final long version;
+        private final byte[] body;
+
+        private Rendered(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    // the fields are package-private so they're visible through the subclasses.
+    private abstract static class Series {
+        final String source;
+        final String window;
+        final long expiresAtMillis;
+
+        private Series(String source, String window, long expiresAtMillis) {
+            this.source = source;
+            this.window = window;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static final class TickStats extends Series {
+        private final double minTicksPerSecond;
+        private final double avgTicksPerSecond;
+        private final double maxTicksPerSecond;
+        // in the same order as TICK_DURATION_STATS
+        private final double[] tickDurationSeconds;
+
+        private TickStats(String source, String window, long expiresAtMillis, double minTicksPerSecond,
+                          double avgTicksPerSecond, double maxTicksPerSecond, double[] tickDurationSeconds) {
+            super(source, window, expiresAtMillis);
+            this.minTicksPerSecond = minTicksPerSecond;
+            this.avgTicksPerSecond = avgTicksPerSecond;
+            this.maxTicksPerSecond = maxTicksPerSecond;
+            this.tickDurationSeconds = tickDurationSeconds;
+        }
+    }
+
+    private static final class PlayerCounts extends Series {
+        private final double min;
+        private final double avg;
+        private final double max;
+
+        private PlayerCounts(String source, String window, long expiresAtMillis, double min, double avg, double max) {
+            super(source, window, expiresAtMillis);
+            this.min = min;
+            this.avg = avg;
+            this.max = max;
+        }
+    }
+
+    private static final class TypeCosts extends Series {
+        private final String[] typeIds;
+        private final long[] tickCounts;
+        private final long[] totalTickNanos;
+
+        private TypeCosts(String source, String window, long expiresAtMillis, String[] typeIds, long[] tickCounts,
+                          long[] totalTickNanos) {
+            super(source, window, expiresAtMillis);
+            this.typeIds = typeIds;
+            this.tickCounts = tickCounts;
+            this.totalTickNanos = totalTickNanos;
+        }
+    }
+
+    private static final class Statistic extends Series {
+        private final String family;
+        private final String name;
+        private final double value;
+
+        private Statistic(String family, String name, String source, String window, long expiresAtMillis,
+                          double value) {
+            super(source, window, expiresAtMillis);
+            this.family = family;
+            this.name = name;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package danielgmyers.minecraft.tracker.reporters.udp;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends statistics as StatsD or InfluxDB line protocol over UDP, fire-and-forget.
+ *
+ * Each line is encoded straight into a reused buffer, and lines are packed into a single reused direct buffer until
+ * the next one wouldn't fit in a datagram, at which point the datagram is sent. Reports for every tick source arrive
+ * together at the end of each window, so they end up sharing a handful of datagrams; a partly filled datagram is sent
+ * shortly after its first line was added, so nothing waits for the next window.
+ *
+ * The channel is non-blocking, so a send never waits; if the OS can't take a datagram right away, it's dropped and
+ * counted. A single line too long to fit in a datagram is dropped and counted too.
+ */
+public class LineProtocolUdpReporter implements StatsReporter {
+
+    public enum Protocol {
+        STATSD,
+        INFLUX
+    }
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // visible for testing
+    static final String PREFIX = "tracker";
+
+    // How long a partly filled datagram waits for more lines; long enough for one window's reports to share datagrams.
+    public static final long DEFAULT_LINGER_MILLIS = 100;
+
+    private static final int DECIMAL_PLACES = 3;
+    private static final long DECIMAL_SCALE = 1000;
+
+    private final Protocol protocol;
+    private final InetSocketAddress target;
+    private final long lingerMillis;
+    private final DatagramChannel channel;
+    private final ByteBuffer packet;
+    private final ByteBuffer line;
+    private final ScheduledExecutorService flushExecutor;
+
+    private boolean flushScheduled = false;
+    private long droppedLines = 0;
+    private long droppedPackets = 0;
+    private long sentPackets = 0;
+
+    // only used while building a line, to know whether a field separator is needed.
+    private boolean firstField;
+    // set when the line being built didn't fit in the line buffer.
+    private boolean lineOverflowed;
+
+    public LineProtocolUdpReporter(Protocol protocol, InetSocketAddress target, int maxPacketBytes, long lingerMillis)
+            throws IOException {
+        this.protocol = protocol;
+        this.target = target;
+        this.lingerMillis = lingerMillis;
+        this.channel = DatagramChannel.open();
+        this.channel.configureBlocking(false);
+        this.packet = ByteBuffer.allocateDirect(maxPacketBytes);
+        this.line = ByteBuffer.allocate(maxPacketBytes);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tracker-udp-" + protocol.toString().toLowerCase());
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOG.info("Sending {} lines to {} in datagrams of up to {} bytes.", protocol, target, maxPacketBytes);
+    }
+
+    public synchronized long getDroppedLines() {
+        return droppedLines;
+    }
+
+    public synchronized long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    public synchronized long getSentPackets() {
+        return sentPackets;
+    }
+
+    @Override
+    public synchronized void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp,
+                                             long secondsWithData,
+                                             long totalTickCount, long minTickCount, long maxTickCount,
+                                             long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                             LogLinearHistogram tickNanosHistogram) {
+        double avgTickCount = (double) totalTickCount / Math.max(1, secondsWithData);
+        // the average duration is over all ticks, not over the seconds we have data for.
+        double avgTickMillis = nanosToMillis(totalTickNanos) / Math.max(1, totalTickCount);
+        double p50 = nanosToMillis(tickNanosHistogram.getValueAtPercentile(50));
+        double p95 = nanosToMillis(tickNanosHistogram.getValueAtPercentile(95));
+        double p99 = nanosToMillis(tickNanosHistogram.getValueAtPercentile(99));
+        double p999 = nanosToMillis(tickNanosHistogram.getValueAtPercentile(99.9));
+
+        if (protocol == Protocol.INFLUX) {
+            startInfluxLine("tick", tickSource, window, null, null);
+            putField("tps_min", minTickCount);
+            putField("tps_avg", avgTickCount);
+            putField("tps_max", maxTickCount);
+            putField("millis_min", nanosToMillis(minTickNanos));
+            putField("millis_avg", avgTickMillis);
+            putField("millis_max", nanosToMillis(maxTickNanos));
+            putField("millis_p50", p50);
+            putField("millis_p95", p95);
+            putField("millis_p99", p99);
+            putField("millis_p99_9", p999);
+            endInfluxLine(timestamp);
+        } else {
+            statsdGauge(tickSource, window, null, "tps.min", minTickCount);
+            statsdGauge(tickSource, window, null, "tps.avg", avgTickCount);
+            statsdGauge(tickSource, window, null, "tps.max", maxTickCount);
+            statsdGauge(tickSource, window, null, "tick_millis.min", nanosToMillis(minTickNanos));
+            statsdGauge(tickSource, window, null, "tick_millis.avg", avgTickMillis);
+            statsdGauge(tickSource, window, null, "tick_millis.max", nanosToMillis(maxTickNanos));
+            statsdGauge(tickSource, window, null, "tick_millis.p50", p50);
+            statsdGauge(tickSource, window, null, "tick_millis.p95", p95);
+            statsdGauge(tickSource, window, null, "tick_millis.p99", p99);
+            statsdGauge(tickSource, window, null, "tick_millis.p99_9", p999);
+        }
+    }
+
+    @Override
+    public synchronized void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp,
+                                               long secondsWithData,
+                                               long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+        double avgPlayerCount = (double) playerCountSum / Math.max(1, secondsWithData);
+        if (protocol == Protocol.INFLUX) {
+            startInfluxLine("players", tickSource, window, null, null);
+            putField("min", minPlayerCount);
+            putField("avg", avgPlayerCount);
+            putField("max", maxPlayerCount);
+            endInfluxLine(timestamp);
+        } else {
+            statsdGauge(tickSource, window, null, "players.min", minPlayerCount);
+            statsdGauge(tickSource, window, null, "players.avg", avgPlayerCount);
+            statsdGauge(tickSource, window, null, "players.max", maxPlayerCount);
+        }
+    }
+
+    @Override
+    public synchronized void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp,
+                                                   int typeCount,
+                                                   String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        for (int i = 0; i < typeCount; i++) {
+            if (protocol == Protocol.INFLUX) {
+                startInfluxLine("type_cost", tickSource, window, "type", typeIds[i]);
+                putField("millis", nanosToMillis(totalTickNanos[i]));
+                putField("ticks", tickCounts[i]);
+                endInfluxLine(timestamp);
+            } else {
+                statsdGauge(tickSource, window, typeIds[i], "tick_millis", nanosToMillis(totalTickNanos[i]));
+                statsdGauge(tickSource, window, typeIds[i], "ticks", tickCounts[i]);
+            }
+        }
+    }
+
+    // e.g. tracker_stat,source=tracker-self,window=minute,name=live-world-trackers value=12.000 ...
+    // and tracker.tracker-self.minute.live-world-trackers:12.000|g
+    @Override
+    public synchronized void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                             StatisticUnit unit, double value) {
+        if (protocol == Protocol.INFLUX) {
+            startInfluxLine("stat", tickSource, window, "name", name);
+            putField("value", value);
+            endInfluxLine(timestamp);
+        } else {
+            startStatsdName(tickSource, window, null);
+            putStatsdName(name);
+            putChar(':');
+            putDecimal(value);
+            endStatsdLine();
+        }
+    }
+
+    /**
+     * Sends whatever is waiting in the current datagram.
+     */
+    public synchronized void flush() {
+        flushScheduled = false;
+        if (packet.position() == 0) {
+            return;
+        }
+        packet.flip();
+        try {
+            if (channel.send(packet, target) == 0) {
+                droppedPackets++;
+            } else {
+                sentPackets++;
+            }
+        } catch (IOException e) {
+            droppedPackets++;
+            LOG.debug("Failed to send a {} datagram to {}.", protocol, target, e);
+        } finally {
+            packet.clear();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        flushExecutor.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Failed to close the {} channel.", protocol, e);
+        }
+    }
+
+    // e.g. tracker.minecraft_overworld.minute.tps.avg:19.95|g
+    private void statsdGauge(String tickSource, ReportingWindow window, String typeId, String metric, long value) {
+        startStatsdLine(tickSource, window, typeId, metric);
+        putLong(value);
+        endStatsdLine();
+    }
+
+    private void statsdGauge(String tickSource, ReportingWindow window, String typeId, String metric, double value) {
+        startStatsdLine(tickSource, window, typeId, metric);
+        putDecimal(value);
+        endStatsdLine();
+    }
+
+    private void startStatsdLine(String tickSource, ReportingWindow window, String typeId, String metric) {
+        startStatsdName(tickSource, window, typeId);
+        putAscii(metric);
+        putChar(':');
+    }
+
+    // Everything in a StatsD name up to the metric itself, including the trailing '.'.
+    private void startStatsdName(String tickSource, ReportingWindow window, String typeId) {
+        line.clear();
+        lineOverflowed = false;
+        putAscii(PREFIX);
+        putChar('.');
+        putStatsdName(tickSource);
+        putChar('.');
+        putAscii(window.getName());
+        putChar('.');
+        if (typeId != null) {
+            putAscii("type.");
+            putStatsdName(typeId);
+            putChar('.');
+        }
+    }
+
+    private void endStatsdLine() {
+        putAscii("|g\n");
+        addLine();
+    }
+
+    // e.g. tracker_tick,source=minecraft:overworld,window=minute tps_min=19i,tps_avg=19.95,... 1650000000000000000
+    private void startInfluxLine(String measurement, String tickSource, ReportingWindow window,
+                                 String extraTag, String extraTagValue) {
+        line.clear();
+        lineOverflowed = false;
+        putAscii(PREFIX);
+        putChar('_');
+        putAscii(measurement);
+        putAscii(",source=");
+        putInfluxTag(tickSource);
+        putAscii(",window=");
+        putInfluxTag(window.getName());
+        if (extraTag != null) {
+            putChar(',');
+            putAscii(extraTag);
+            putChar('=');
+            putInfluxTag(extraTagValue);
+        }
+        putChar(' ');
+        firstField = true;
+    }
+
+    private void putField(String name, long value) {
+        startField(name);
+        putLong(value);
+        putChar('i');
+    }
+
+    private void putField(String name, double value) {
+        startField(name);
+        putDecimal(value);
+    }
+
+    private void startField(String name) {
+        if (!firstField) {
+            putChar(',');
+        }
+        firstField = false;
+        putAscii(name);
+        putChar('=');
+    }
+
+    private void endInfluxLine(Instant timestamp) {
+        putChar(' ');
+        putLong(timestamp.getEpochSecond());
+        // nanosecond precision, which is the line protocol's default
+        putPadded(timestamp.getNano(), 9);
+        putChar('\n');
+        addLine();
+    }
+
+    // Moves the finished line into the current datagram, sending the datagram first if the line doesn't fit.
+    private void addLine() {
+        if (lineOverflowed) {
+            droppedLines++;
+            return;
+        }
+        line.flip();
+        if (line.remaining() > packet.remaining()) {
+            flush();
+        }
+        packet.put(line);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flushExecutor.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void putAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            putChar(value.charAt(i));
+        }
+    }
+
+    // StatsD uses '.' to separate name parts and ':', '|' and '@' as delimiters, so those can't appear in a name part.
+    private void putStatsdName(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '.' || c == ':' || c == '|' || c == '@' || c == ' ' || c == '\n') {
+                c = '_';
+            }
+            putChar(c);
+        }
+    }
+
+    private void putInfluxTag(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '=' || c == ' ') {
+                putChar('\\');
+            } else if (c == '\n') {
+                c = '_';
+            }
+            putChar(c);
+        }
+    }
+
+    // Only ASCII goes on the wire; anything else becomes '_' so we never have to encode strings.
+    private void putChar(char c) {
+        if (!line.hasRemaining()) {
+            lineOverflowed = true;
+            return;
+        }
+        line.put(c < 0x80 ? (byte) c : (byte) '_');
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            putChar('-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            putChar((char) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private void putPadded(long value, int digits) {
+        long divisor = 1;
+        for (int i = 1; i < digits; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            putChar((char) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    // Writes the value with DECIMAL_PLACES decimal places, which is plenty for milliseconds and ticks per second.
+    private void putDecimal(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            value = 0;
+        }
+        long scaled = Math.round(Math.abs(value) * DECIMAL_SCALE);
+        if (value < 0 && scaled != 0) {
+            putChar('-');
+        }
+        putLong(scaled / DECIMAL_SCALE);
+        putChar('.');
+        putPadded(scaled % DECIMAL_SCALE, DECIMAL_PLACES);
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
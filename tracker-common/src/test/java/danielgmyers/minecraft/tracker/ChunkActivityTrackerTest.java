@@ -0,0 +1,201 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChunkActivityTrackerTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+    private static final Object WORLD = new Object();
+
+    private TestClock clock;
+
+    @BeforeEach
+    public void setupClock() {
+        // set up the clock so that it's clamped to the beginning of the current minute.
+        Instant startTime = Instant.now().with(ChronoField.NANO_OF_SECOND, 0);
+        LocalDateTime ldt = LocalDateTime.ofInstant(startTime, ZoneId.systemDefault());
+        startTime = startTime.minusSeconds(ldt.getSecond());
+        clock = new TestClock(startTime);
+    }
+
+    @Test
+    public void testReportsChunkActivityOncePerMinute() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        ChunkActivityTracker tracker = new ChunkActivityTracker(TICK_SOURCE, StaticConfig.create(), reporter, clock);
+
+        // each tick loads three chunks, two of which were on disk, and unloads one.
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.chunkReadFromDisk();
+            tracker.chunkReadFromDisk();
+            tracker.chunkLoaded();
+            tracker.chunkLoaded();
+            tracker.chunkLoaded();
+            tracker.chunkUnloaded();
+            tracker.update(WORLD, i == 600 ? 5000 : 1000 + i);
+            clock.forward(Duration.ofMillis(50));
+        }
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+
+        Instant lastUpdate = clock.instant().minusMillis(50);
+        tracker.update(WORLD, 3000);
+        tracker.chunkLoaded();
+
+        Assertions.assertEquals(3600, reporter.getStatistic(TICK_SOURCE, "chunks-loaded"));
+        Assertions.assertEquals(1200, reporter.getStatistic(TICK_SOURCE, "chunks-generated"));
+        Assertions.assertEquals(1200, reporter.getStatistic(TICK_SOURCE, "chunks-unloaded"));
+        Assertions.assertEquals(1000 + 1199, reporter.getStatistic(TICK_SOURCE, "loaded-chunks"));
+        Assertions.assertEquals(5000, reporter.getStatistic(TICK_SOURCE, "loaded-chunks-max"));
+        for (StatisticBlock block : reporter.getStatistics()) {
+            Assertions.assertEquals(TICK_SOURCE, block.tickSource);
+            Assertions.assertEquals(ReportingWindow.MINUTE, block.window);
+            Assertions.assertEquals(lastUpdate, block.timestamp);
+        }
+
+        // the next minute starts from scratch, apart from the gauge.
+        reporter.getStatistics().clear();
+        tracker.flush();
+        Assertions.assertEquals(1, reporter.getStatistic(TICK_SOURCE, "chunks-loaded"));
+        Assertions.assertEquals(1, reporter.getStatistic(TICK_SOURCE, "chunks-generated"));
+        Assertions.assertEquals(0, reporter.getStatistic(TICK_SOURCE, "chunks-unloaded"));
+        Assertions.assertEquals(3000, reporter.getStatistic(TICK_SOURCE, "loaded-chunks-max"));
+    }
+
+    @Test
+    public void testCountsFromManyThreads() throws Exception {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        ChunkActivityTracker tracker = new ChunkActivityTracker(TICK_SOURCE, StaticConfig.create(), reporter, clock);
+        tracker.update(WORLD, 0);
+
+        // worldgen threads load and unload chunks while the server thread keeps ticking.
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    tracker.chunkLoaded();
+                    if (i % 2 == 0) {
+                        tracker.chunkReadFromDisk();
+                    }
+                    if (i % 4 == 0) {
+                        tracker.chunkUnloaded();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (int i = 0; i < 100; i++) {
+            tracker.update(WORLD, i);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        tracker.flush();
+
+        Assertions.assertEquals(400_000, reporter.getStatistic(TICK_SOURCE, "chunks-loaded"));
+        Assertions.assertEquals(200_000, reporter.getStatistic(TICK_SOURCE, "chunks-generated"));
+        Assertions.assertEquals(100_000, reporter.getStatistic(TICK_SOURCE, "chunks-unloaded"));
+    }
+
+    @Test
+    public void testAddsUpCoalescedWorlds() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        ChunkActivityTracker tracker = new ChunkActivityTracker(TICK_SOURCE, StaticConfig.create(), reporter, clock);
+        Object overworld = new Object();
+        Object nether = new Object();
+
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.update(overworld, 1000);
+            tracker.update(nether, i == 600 ? 900 : 400);
+            clock.forward(Duration.ofMillis(50));
+        }
+        tracker.update(overworld, 1000);
+        Assertions.assertEquals(1400, reporter.getStatistic(TICK_SOURCE, "loaded-chunks"));
+        Assertions.assertEquals(1900, reporter.getStatistic(TICK_SOURCE, "loaded-chunks-max"));
+
+        // the nether stops ticking, and is left out once it's been idle for a whole minute.
+        reporter.getStatistics().clear();
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.update(overworld, 1000);
+            clock.forward(Duration.ofMillis(50));
+        }
+        tracker.update(overworld, 1000);
+        Assertions.assertEquals(1000, reporter.getStatistic(TICK_SOURCE, "loaded-chunks"));
+        Assertions.assertEquals(1400, reporter.getStatistic(TICK_SOURCE, "loaded-chunks-max"));
+
+        reporter.getStatistics().clear();
+        tracker.flush();
+        Assertions.assertEquals(1000, reporter.getStatistic(TICK_SOURCE, "loaded-chunks-max"));
+    }
+
+    @Test
+    public void testReportsEachConfiguredWindow() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setReportingWindows("10,60");
+        ChunkActivityTracker tracker = new ChunkActivityTracker(TICK_SOURCE, config, reporter, clock);
+
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.update(WORLD, 100);
+            tracker.chunkLoaded();
+            clock.forward(Duration.ofMillis(50));
+        }
+        tracker.update(WORLD, 100);
+
+        List<StatisticBlock> loaded = new ArrayList<>();
+        for (StatisticBlock block : reporter.getStatistics()) {
+            if (block.name.equals("chunks-loaded")) {
+                loaded.add(block);
+            }
+        }
+        Assertions.assertEquals(7, loaded.size());
+        for (StatisticBlock block : loaded) {
+            if (block.window == ReportingWindow.MINUTE) {
+                Assertions.assertEquals(1200, block.value);
+            } else {
+                Assertions.assertEquals(10, block.window.getLengthSeconds());
+                Assertions.assertEquals(200, block.value);
+            }
+        }
+    }
+
+    @Test
+    public void testReportsARemovedWindowsPartialData() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setReportingWindows("10,60");
+        ChunkActivityTracker tracker = new ChunkActivityTracker(TICK_SOURCE, config, reporter, clock);
+
+        for (int i = 0; i < 20 * 10; i++) {
+            tracker.update(WORLD, 100);
+            tracker.chunkLoaded();
+            if (i == 100) {
+                config.setReportingWindows("10");
+            }
+            clock.forward(Duration.ofMillis(50));
+        }
+        tracker.update(WORLD, 100);
+
+        // the minute ended early, when the 10-second window noticed the change.
+        List<StatisticBlock> loaded = new ArrayList<>();
+        for (StatisticBlock block : reporter.getStatistics()) {
+            if (block.name.equals("chunks-loaded")) {
+                loaded.add(block);
+            }
+        }
+        Assertions.assertEquals(2, loaded.size());
+        for (StatisticBlock block : loaded) {
+            Assertions.assertEquals(200, block.value);
+        }
+        Assertions.assertEquals(1, loaded.stream().filter(block -> block.window == ReportingWindow.MINUTE).count());
+    }
+}
@@ -0,0 +1,112 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentPlayerCountTrackerTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+
+    private static final int THREADS = 8;
+    private static final int SECONDS = 150;
+    private static final int UPDATES_PER_SECOND = 20;
+
+    @Test
+    public void testOneDatapointPerSecondWithManyUpdatingThreads() throws Exception {
+        ConcurrentTestClock clock = new ConcurrentTestClock(Instant.now().truncatedTo(ChronoUnit.MINUTES));
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        ConcurrentPlayerCountTracker tracker = new ConcurrentPlayerCountTracker(TICK_SOURCE, StaticConfig.create(),
+                                                                                reporter, clock);
+
+        // every thread updates with the second's player count a few times, then they all wait for the next second.
+        CyclicBarrier nextSecond = new CyclicBarrier(THREADS, () -> clock.forwardMillis(1000));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    for (int second = 0; second < SECONDS; second++) {
+                        for (int i = 0; i < UPDATES_PER_SECOND; i++) {
+                            tracker.update(second);
+                        }
+                        nextSecond.await();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        tracker.flush();
+
+        long datapoints = 0;
+        long playerCountSum = 0;
+        for (PlayerCountStatsBlock block : reporter.getPlayerCounts()) {
+            datapoints += block.datapointCount;
+            playerCountSum += block.playerCountSum;
+        }
+        Assertions.assertEquals(SECONDS, datapoints);
+        Assertions.assertEquals((long) SECONDS * (SECONDS - 1) / 2, playerCountSum);
+        // two full minutes, then the partial one from the flush
+        Assertions.assertEquals(3, reporter.getPlayerCounts().size());
+    }
+
+    @Test
+    public void testAddsUpEachThreadsWorld() throws Exception {
+        ConcurrentTestClock clock = new ConcurrentTestClock(Instant.now().truncatedTo(ChronoUnit.MINUTES));
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        ConcurrentPlayerCountTracker tracker = new ConcurrentPlayerCountTracker(TICK_SOURCE, StaticConfig.create(),
+                                                                                reporter, clock);
+
+        // each thread ticks a world of its own, with t + 1 players in it.
+        CyclicBarrier nextSecond = new CyclicBarrier(THREADS, () -> clock.forwardMillis(1000));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int players = t + 1;
+                results.add(executor.submit(() -> {
+                    Object world = new Object();
+                    for (int second = 0; second < SECONDS; second++) {
+                        for (int i = 0; i < UPDATES_PER_SECOND; i++) {
+                            tracker.update(world, players);
+                        }
+                        nextSecond.await();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        tracker.flush();
+
+        long allPlayers = (long) THREADS * (THREADS + 1) / 2;
+        long datapoints = 0;
+        long playerCountSum = 0;
+        for (PlayerCountStatsBlock block : reporter.getPlayerCounts()) {
+            datapoints += block.datapointCount;
+            playerCountSum += block.playerCountSum;
+            Assertions.assertEquals(allPlayers, block.maxPlayerCount);
+        }
+        Assertions.assertEquals(SECONDS, datapoints);
+        // in the first second, the thread that records the datapoint may not have seen every world yet.
+        Assertions.assertTrue(playerCountSum > allPlayers * (SECONDS - 1), Long.toString(playerCountSum));
+        Assertions.assertTrue(playerCountSum <= allPlayers * SECONDS, Long.toString(playerCountSum));
+    }
+}
@@ -0,0 +1,55 @@
+package danielgmyers.minecraft.tracker;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A manually-advanced clock for tests that tick from several threads. The wall clock is shared between threads, while
+ * each thread has its own tick time source, so a thread's tick durations are exactly what it advanced them by no
+ * matter what the other threads are doing.
+ */
+public class ConcurrentTestClock extends Clock implements TickTimeSource {
+
+    private final AtomicLong curTimeMillis;
+    private final ThreadLocal<long[]> threadNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ConcurrentTestClock(Instant startTime) {
+        this.curTimeMillis = new AtomicLong(startTime.toEpochMilli());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(curTimeMillis.get());
+    }
+
+    @Override
+    public long millis() {
+        return curTimeMillis.get();
+    }
+
+    @Override
+    public long nanoTime() {
+        return threadNanos.get()[0];
+    }
+
+    public void forwardMillis(long millis) {
+        curTimeMillis.addAndGet(millis);
+    }
+
+    // only advances the calling thread's tick time source
+    public void forwardThreadNanos(long nanos) {
+        threadNanos.get()[0] += nanos;
+    }
+}
@@ -0,0 +1,145 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentTickStatsTrackerTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+
+    private static final int THREADS = 8;
+    private static final int TICKS_PER_THREAD = 20_000;
+
+    @Test
+    public void testTotalsAreExactWithManyTickingThreads() throws Exception {
+        ConcurrentTestClock clock = new ConcurrentTestClock(Instant.now().truncatedTo(ChronoUnit.MINUTES));
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        testConfig.setReportingWindows("10,60");
+        ConcurrentTickStatsTracker tracker = new ConcurrentTickStatsTracker(TICK_SOURCE, testConfig, reporter, clock,
+                                                                            clock, new ReentrantLock());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < TICKS_PER_THREAD; i++) {
+                        tracker.startTick();
+                        clock.forwardThreadNanos(tickNanos(thread, i));
+                        tracker.endTick();
+                        // every tick moves the shared wall clock along, so the threads keep crossing into new seconds
+                        // (and filling their buffers) while the others are mid-tick.
+                        clock.forwardMillis(1);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        tracker.flush();
+
+        long expectedTickCount = (long) THREADS * TICKS_PER_THREAD;
+        long expectedTickNanos = 0;
+        long expectedMaxTickNanos = 0;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < TICKS_PER_THREAD; i++) {
+                expectedTickNanos += tickNanos(t, i);
+                expectedMaxTickNanos = Math.max(expectedMaxTickNanos, tickNanos(t, i));
+            }
+        }
+
+        for (ReportingWindow window : testConfig.getReportingWindows()) {
+            long tickCount = 0;
+            long tickNanos = 0;
+            long histogramCount = 0;
+            long maxTickNanos = 0;
+            for (TickStatsBlock block : reporter.getTickStats()) {
+                if (block.window.equals(window)) {
+                    Assertions.assertEquals(TICK_SOURCE, block.tickSource);
+                    tickCount += block.totalTickCount;
+                    tickNanos += block.totalTickNanos;
+                    histogramCount += block.tickNanosHistogram.getTotalCount();
+                    maxTickNanos = Math.max(maxTickNanos, block.maxTickNanos);
+                }
+            }
+            Assertions.assertEquals(expectedTickCount, tickCount, window.toString());
+            Assertions.assertEquals(expectedTickNanos, tickNanos, window.toString());
+            Assertions.assertEquals(expectedTickCount, histogramCount, window.toString());
+            Assertions.assertEquals(expectedMaxTickNanos, maxTickNanos, window.toString());
+        }
+    }
+
+    @Test
+    public void testFlushIncludesTicksThatHaveNotBeenMerged() {
+        ConcurrentTestClock clock = new ConcurrentTestClock(Instant.now().truncatedTo(ChronoUnit.MINUTES));
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        ConcurrentTickStatsTracker tracker = new ConcurrentTickStatsTracker(TICK_SOURCE, StaticConfig.create(), reporter,
+                                                                            clock, clock, new ReentrantLock());
+
+        for (int i = 0; i < 5; i++) {
+            tracker.startTick();
+            clock.forwardThreadNanos(2_000_000);
+            tracker.endTick();
+            clock.forwardMillis(50);
+        }
+        Assertions.assertTrue(reporter.getTickStats().isEmpty());
+
+        tracker.flush();
+        Assertions.assertEquals(1, reporter.getTickStats().size());
+        TickStatsBlock block = reporter.getTickStats().get(0);
+        Assertions.assertEquals(1, block.secondsWithData);
+        Assertions.assertEquals(5, block.totalTickCount);
+        Assertions.assertEquals(10_000_000, block.totalTickNanos);
+    }
+
+    @Test
+    public void testDropsADeadThreadsBufferOnceItsTicksAreMerged() throws Exception {
+        ConcurrentTestClock clock = new ConcurrentTestClock(Instant.now().truncatedTo(ChronoUnit.MINUTES));
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        ConcurrentTickStatsTracker tracker = new ConcurrentTickStatsTracker(TICK_SOURCE, StaticConfig.create(), reporter,
+                                                                            clock, clock, new ReentrantLock());
+
+        for (int t = 0; t < THREADS; t++) {
+            Thread worker = new Thread(() -> {
+                tracker.startTick();
+                clock.forwardThreadNanos(2_000_000);
+                tracker.endTick();
+            });
+            worker.start();
+            worker.join();
+        }
+        tracker.startTick();
+        clock.forwardThreadNanos(2_000_000);
+        tracker.endTick();
+        // the clock hasn't moved, so only the first worker's tick has been merged so far.
+        Assertions.assertEquals(THREADS + 1, tracker.getBufferCount());
+
+        tracker.flush();
+        Assertions.assertEquals(1, tracker.getBufferCount());
+        Assertions.assertEquals(THREADS + 1, reporter.getTickStats().get(0).totalTickCount);
+    }
+
+    // a different spread of durations on each thread, so a tick counted twice or lost changes the totals
+    private static long tickNanos(int thread, int tick) {
+        return 1_000_000L * (thread + 1) + (tick % 97) * 1_000L;
+    }
+}
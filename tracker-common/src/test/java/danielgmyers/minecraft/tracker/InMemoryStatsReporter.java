@@ -1,6 +1,8 @@
 package danielgmyers.minecraft.tracker;
 
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
 import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.junit.jupiter.api.Assertions;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -10,10 +12,14 @@ public class InMemoryStatsReporter implements StatsReporter {
 
     private final List<TickStatsBlock> tickStats = new ArrayList<>();
     private final List<PlayerCountStatsBlock> playerCounts = new ArrayList<>();
+    private final List<TypeTickCostBlock> typeTickCosts = new ArrayList<>();
+    private final List<StatisticBlock> statistics = new ArrayList<>();
 
     public void clear() {
         tickStats.clear();
         playerCounts.clear();
+        typeTickCosts.clear();
+        statistics.clear();
     }
 
     public List<TickStatsBlock> getTickStats() {
@@ -24,19 +30,57 @@ public class InMemoryStatsReporter implements StatsReporter {
         return playerCounts;
     }
 
+    public List<TypeTickCostBlock> getTypeTickCosts() {
+        return typeTickCosts;
+    }
+
+    public List<StatisticBlock> getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the value of the named statistic, failing the test unless it was reported exactly once for the source.
+     */
+    public double getStatistic(String tickSource, String name) {
+        double value = Double.NaN;
+        int found = 0;
+        for (StatisticBlock block : statistics) {
+            if (block.tickSource.equals(tickSource) && block.name.equals(name)) {
+                value = block.value;
+                found++;
+            }
+        }
+        Assertions.assertEquals(1, found, "Expected exactly one report of " + name + " for " + tickSource);
+        return value;
+    }
+
     @Override
-    public void reportTickStats(String tickSource, Instant timestamp, long secondsWithData,
+    public void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                                 long totalTickCount, long minTickCount, long maxTickCount,
-                                long totalTickMillis, long minTickMillis, long maxTickMillis) {
-        tickStats.add(new TickStatsBlock(tickSource, timestamp, secondsWithData,
+                                long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                LogLinearHistogram tickNanosHistogram) {
+        tickStats.add(new TickStatsBlock(tickSource, window, timestamp, secondsWithData,
                                          totalTickCount, minTickCount, maxTickCount,
-                                         totalTickMillis, minTickMillis, maxTickMillis));
+                                         totalTickNanos, minTickNanos, maxTickNanos,
+                                         tickNanosHistogram));
     }
 
     @Override
-    public void reportPlayerCount(String tickSource, Instant timestamp, long secondsWithData,
+    public void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                                   long playerCountSum, long minPlayerCount, long maxPlayerCount) {
-        playerCounts.add(new PlayerCountStatsBlock(tickSource, timestamp, secondsWithData,
+        playerCounts.add(new PlayerCountStatsBlock(tickSource, window, timestamp, secondsWithData,
                                                    playerCountSum, minPlayerCount, maxPlayerCount));
     }
+
+    @Override
+    public void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                                      String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        typeTickCosts.add(new TypeTickCostBlock(tickSource, window, timestamp, typeCount, typeIds, tickCounts, totalTickNanos));
+    }
+
+    @Override
+    public void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                StatisticUnit unit, double value) {
+        statistics.add(new StatisticBlock(tickSource, window, timestamp, name, unit, value));
+    }
 }
@@ -0,0 +1,133 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoField;
+import java.util.concurrent.TimeUnit;
+
+public class JvmStatsTrackerTest {
+
+    private TestClock clock;
+    private Instant startTime;
+
+    @BeforeEach
+    public void setupClock() {
+        // set up the clock so that it's clamped to the beginning of the current minute.
+        startTime = Instant.now().with(ChronoField.NANO_OF_SECOND, 0);
+        LocalDateTime ldt = LocalDateTime.ofInstant(startTime, ZoneId.systemDefault());
+        startTime = startTime.minusSeconds(ldt.getSecond());
+        clock = new TestClock(startTime);
+    }
+
+    @Test
+    public void testReportsPausesAllocationAndSlowTicksPerWindow() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        TickStatsTracker serverTickTracker = new TickStatsTracker("server", config, reporter, clock, clock);
+        JvmStatsTracker tracker = new JvmStatsTracker(serverTickTracker, config, reporter, clock);
+
+        long minuteEndMillis = startTime.toEpochMilli() + 60_000;
+        long slowTickStartMillis = 0;
+        for (int i = 0; clock.millis() < minuteEndMillis; i++) {
+            // tick 100 is slowed down by a 60ms pause, whose notification only shows up during the next tick;
+            // tick 400 is slow for some other reason, and tick 600 runs into a short pause without being slow.
+            long tickMillis = i == 100 ? 120 : i == 400 ? 80 : 10;
+            serverTickTracker.startTick();
+            clock.forwardMillis(tickMillis);
+            serverTickTracker.endTick();
+            if (i == 100) {
+                slowTickStartMillis = serverTickTracker.getLastTickStartTimeMillis();
+            } else if (i == 101) {
+                tracker.recordCollection(true, slowTickStartMillis + 20, slowTickStartMillis + 80, 1000, 0);
+                // a concurrent cycle doesn't count as a pause, and without an eden space it says nothing about allocation.
+                tracker.recordCollection(false, slowTickStartMillis, slowTickStartMillis + 500, -1, -1);
+            } else if (i == 600) {
+                long tickStartMillis = serverTickTracker.getLastTickStartTimeMillis();
+                tracker.recordCollection(true, tickStartMillis + 2, tickStartMillis + 7, 6000, 0);
+            }
+            tracker.update();
+            clock.forwardMillis(Math.max(0, 50 - tickMillis));
+        }
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+
+        // one more tick in the next minute to close out the window.
+        serverTickTracker.startTick();
+        clock.forwardMillis(10);
+        serverTickTracker.endTick();
+        tracker.update();
+
+        Assertions.assertEquals(2, reporter.getStatistic(JvmStatsTracker.SOURCE, "gc-pauses"));
+        Assertions.assertEquals(65, reporter.getStatistic(JvmStatsTracker.SOURCE, "gc-pause-total"));
+        Assertions.assertEquals(60, reporter.getStatistic(JvmStatsTracker.SOURCE, "gc-pause-max"));
+        // 7000 bytes allocated over the 60 seconds we have samples for.
+        Assertions.assertEquals(7000.0 / 60, reporter.getStatistic(JvmStatsTracker.SOURCE, "allocation-rate"), 0.001);
+        Assertions.assertTrue(reporter.getStatistic(JvmStatsTracker.SOURCE, "heap-used-max") > 0);
+        Assertions.assertTrue(reporter.getStatistic(JvmStatsTracker.SOURCE, "heap-used-avg")
+                              <= reporter.getStatistic(JvmStatsTracker.SOURCE, "heap-used-max"));
+        Assertions.assertEquals(2, reporter.getStatistic(JvmStatsTracker.SOURCE, "slow-ticks"));
+        Assertions.assertEquals(1, reporter.getStatistic(JvmStatsTracker.SOURCE, "slow-ticks-during-gc"));
+        for (StatisticBlock block : reporter.getStatistics()) {
+            Assertions.assertEquals(JvmStatsTracker.SOURCE, block.tickSource);
+            Assertions.assertEquals(clock.instant(), block.timestamp);
+        }
+    }
+
+    @Test
+    public void testSlowTickWithoutPauseIsWrittenOff() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        TickStatsTracker serverTickTracker = new TickStatsTracker("server", config, reporter, clock, clock);
+        JvmStatsTracker tracker = new JvmStatsTracker(serverTickTracker, config, reporter, clock);
+
+        serverTickTracker.startTick();
+        clock.forwardMillis(200);
+        serverTickTracker.endTick();
+        long slowTickStartMillis = serverTickTracker.getLastTickStartTimeMillis();
+        tracker.update();
+
+        // once the grace period is up, a pause that turns up late isn't matched any more.
+        clock.forwardMillis(JvmStatsTracker.PAUSE_NOTIFICATION_GRACE_MILLIS);
+        tracker.update();
+        tracker.recordCollection(true, slowTickStartMillis, slowTickStartMillis + 150, -1, -1);
+        clock.forwardMillis(TimeUnit.MINUTES.toMillis(1));
+        tracker.update();
+
+        Assertions.assertEquals(1, reporter.getStatistic(JvmStatsTracker.SOURCE, "slow-ticks"));
+        Assertions.assertEquals(0, reporter.getStatistic(JvmStatsTracker.SOURCE, "slow-ticks-during-gc"));
+        Assertions.assertEquals(1, reporter.getStatistic(JvmStatsTracker.SOURCE, "gc-pauses"));
+    }
+
+    @Test
+    public void testRecordsRealCollections() throws Exception {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        TickStatsTracker serverTickTracker = new TickStatsTracker("server", config, reporter, clock, clock);
+        JvmStatsTracker tracker = new JvmStatsTracker(serverTickTracker, config, reporter, clock);
+
+        tracker.start();
+        try {
+            System.gc();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (tracker.getRecordedPauses() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertTrue(tracker.getRecordedPauses() > 0);
+        } finally {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    public void testConcurrentCyclesAreNotPauses() {
+        Assertions.assertTrue(JvmStatsTracker.isPause("G1 Young Generation", "end of minor GC"));
+        Assertions.assertTrue(JvmStatsTracker.isPause("PS MarkSweep", "end of major GC"));
+        Assertions.assertTrue(JvmStatsTracker.isPause("ZGC Pauses", "end of GC pause"));
+        Assertions.assertFalse(JvmStatsTracker.isPause("ZGC Cycles", "end of GC cycle"));
+        Assertions.assertFalse(JvmStatsTracker.isPause("G1 Concurrent GC", "end of concurrent GC"));
+    }
+}
@@ -0,0 +1,51 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+public class LiveStatsSummaryTest {
+
+    @Test
+    public void testListsSlowestDimensionsFirst() {
+        TestClock clock = new TestClock(Instant.ofEpochSecond(1_650_000_000L));
+        StaticConfig config = StaticConfig.create();
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        TickStatsTracker server = new TickStatsTracker("server", config, reporter, clock, clock);
+        PlayerCountTracker serverPlayers = new PlayerCountTracker("server", config, reporter, clock);
+        TickStatsTracker overworld = new TickStatsTracker("minecraft:overworld", config, reporter, clock, clock);
+        TickStatsTracker nether = new TickStatsTracker("minecraft:the_nether", config, reporter, clock, clock);
+        PlayerCountTracker netherPlayers = new PlayerCountTracker("minecraft:the_nether", config, reporter, clock);
+        TickStatsTracker end = new TickStatsTracker("minecraft:the_end", config, reporter, clock, clock);
+
+        // three seconds of ticks, plus one to complete the last second.
+        for (int i = 0; i < 20 * 3 + 1; i++) {
+            server.startTick();
+            overworld.startTick();
+            clock.forward(Duration.ofMillis(4));
+            overworld.endTick();
+            nether.startTick();
+            clock.forward(Duration.ofMillis(10));
+            nether.endTick();
+            server.endTick();
+            serverPlayers.update(3);
+            netherPlayers.update(2);
+            clock.forward(Duration.ofMillis(36));
+        }
+
+        List<WorldTrackers> worlds = Arrays.asList(
+                new WorldTrackers(overworld, new PlayerCountTracker("minecraft:overworld", config, reporter, clock), null),
+                new WorldTrackers(nether, netherPlayers, null),
+                new WorldTrackers(end, new PlayerCountTracker("minecraft:the_end", config, reporter, clock), null));
+        List<String> lines = LiveStatsSummary.describe(server, serverPlayers, worlds, RollingWindow.LAST_MINUTE, 1);
+        Assertions.assertEquals(Arrays.asList(
+                "Tick stats for the last minute, slowest dimensions first:",
+                "server: 14.0 ms/t mean, 14.0 ms/t max, 20.0 TPS, 3.0 players (max 3)",
+                "minecraft:the_nether: 10.0 ms/t mean, 10.0 ms/t max, 20.0 TPS, 2.0 players (max 2)",
+                "(1 more dimensions not shown)"), lines);
+    }
+}
@@ -0,0 +1,91 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LogLinearHistogramTest {
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int i = 1; i < LogLinearHistogram.BUCKET_COUNT; i++) {
+            Assertions.assertEquals(LogLinearHistogram.highestValueAtIndex(i - 1) + 1,
+                                    LogLinearHistogram.lowestValueAtIndex(i));
+        }
+        Assertions.assertEquals(LogLinearHistogram.MAX_TRACKABLE_VALUE,
+                                LogLinearHistogram.highestValueAtIndex(LogLinearHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void testValuesLandInTheirBucket() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int index = LogLinearHistogram.indexFor(value);
+            Assertions.assertTrue(LogLinearHistogram.lowestValueAtIndex(index) <= value);
+            Assertions.assertTrue(LogLinearHistogram.highestValueAtIndex(index) >= value);
+        }
+    }
+
+    @Test
+    public void testRelativeErrorIsBounded() {
+        for (long value = 1; value < LogLinearHistogram.MAX_TRACKABLE_VALUE; value = value * 3 + 1) {
+            long representative = LogLinearHistogram.representativeValueAtIndex(LogLinearHistogram.indexFor(value));
+            Assertions.assertTrue(Math.abs(representative - value) <= value * 0.035,
+                                  "value " + value + " was represented as " + representative);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assertions.assertEquals(1000, histogram.getTotalCount());
+        assertWithinBucket(500, histogram.getValueAtPercentile(50));
+        assertWithinBucket(950, histogram.getValueAtPercentile(95));
+        assertWithinBucket(990, histogram.getValueAtPercentile(99));
+        assertWithinBucket(999, histogram.getValueAtPercentile(99.9));
+        assertWithinBucket(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testMergeAndClear() {
+        LogLinearHistogram second = new LogLinearHistogram();
+        LogLinearHistogram minute = new LogLinearHistogram();
+
+        second.record(5);
+        second.record(900);
+        minute.add(second);
+        second.clear();
+
+        Assertions.assertTrue(second.isEmpty());
+        Assertions.assertEquals(-1, second.getFirstIndex());
+
+        second.record(10);
+        minute.add(second);
+
+        Assertions.assertEquals(3, minute.getTotalCount());
+        Assertions.assertEquals(5, minute.getValueAtPercentile(0));
+        Assertions.assertEquals(10, minute.getValueAtPercentile(50));
+        assertWithinBucket(900, minute.getValueAtPercentile(100));
+
+        minute.clear();
+        Assertions.assertTrue(minute.isEmpty());
+        for (int i = 0; i < LogLinearHistogram.BUCKET_COUNT; i++) {
+            Assertions.assertEquals(0, minute.getCountAtIndex(i));
+        }
+    }
+
+    @Test
+    public void testOutOfRangeValuesAreClamped() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        Assertions.assertEquals(0, histogram.getFirstIndex());
+        Assertions.assertEquals(LogLinearHistogram.BUCKET_COUNT - 1, histogram.getLastIndex());
+    }
+
+    private void assertWithinBucket(long expected, long actual) {
+        Assertions.assertEquals(LogLinearHistogram.indexFor(expected), LogLinearHistogram.indexFor(actual),
+                                "expected " + actual + " to be in the same bucket as " + expected);
+    }
+}
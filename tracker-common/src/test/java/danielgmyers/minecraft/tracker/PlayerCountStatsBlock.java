@@ -4,15 +4,17 @@ import java.time.Instant;
 
 public class PlayerCountStatsBlock {
     public final String tickSource;
+    public final ReportingWindow window;
     public final Instant timestamp;
     public final long datapointCount;
     public final long playerCountSum;
     public final long minPlayerCount;
     public final long maxPlayerCount;
 
-    public PlayerCountStatsBlock(String tickSource, Instant timestamp, long datapointCount,
+    public PlayerCountStatsBlock(String tickSource, ReportingWindow window, Instant timestamp, long datapointCount,
                                  long playerCountSum, long minPlayerCount, long maxPlayerCount) {
         this.tickSource = tickSource;
+        this.window = window;
         this.timestamp = timestamp;
         this.datapointCount = datapointCount;
         this.playerCountSum = playerCountSum;
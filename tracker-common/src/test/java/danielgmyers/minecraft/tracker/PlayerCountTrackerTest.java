@@ -1,9 +1,12 @@
 package danielgmyers.minecraft.tracker;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -62,4 +65,91 @@ public class PlayerCountTrackerTest {
         Assertions.assertEquals(2, block.maxPlayerCount);
     }
 
+    @Test
+    public void testAddsUpCoalescedWorlds() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        PlayerCountTracker tracker = new PlayerCountTracker(TICK_SOURCE, StaticConfig.create(), reporter, clock);
+        Object overworld = new Object();
+        Object nether = new Object();
+
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.update(overworld, 3);
+            tracker.update(nether, 2);
+            clock.forward(Duration.ofMillis(50));
+        }
+        // the nether stops ticking; it still counts for the rest of the minute it was last seen in, and the next.
+        for (int i = 0; i < 20 * 120; i++) {
+            tracker.update(overworld, 3);
+            clock.forward(Duration.ofMillis(50));
+        }
+        tracker.update(overworld, 3);
+
+        Assertions.assertEquals(3, reporter.getPlayerCounts().size());
+        PlayerCountStatsBlock first = reporter.getPlayerCounts().get(0);
+        // the very first datapoint only has the overworld, which ticked first.
+        Assertions.assertEquals(3 + 59 * 5, first.playerCountSum);
+        Assertions.assertEquals(5, first.maxPlayerCount);
+        Assertions.assertEquals(60 * 5, reporter.getPlayerCounts().get(1).playerCountSum);
+        Assertions.assertEquals(60 * 3, reporter.getPlayerCounts().get(2).playerCountSum);
+    }
+
+    @Test
+    public void testRollingWindowSnapshot() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        PlayerCountTracker tracker = new PlayerCountTracker(TICK_SOURCE, testConfig, reporter, clock);
+
+        // one player for a minute, then five players for five seconds.
+        for (int i = 0; i < 20 * 65; i++) {
+            tracker.update(i < 20 * 60 ? 1 : 5);
+            clock.forward(Duration.ofMillis(50));
+        }
+
+        PlayerCountSnapshot snapshot = tracker.getSnapshot();
+        Assertions.assertEquals(5.0, snapshot.getAverage(RollingWindow.LAST_5_SECONDS));
+        Assertions.assertEquals(5.0, snapshot.getMin(RollingWindow.LAST_5_SECONDS));
+        Assertions.assertEquals(60, snapshot.getSecondsWithData(RollingWindow.LAST_MINUTE));
+        Assertions.assertEquals((55 * 1 + 5 * 5) / 60.0, snapshot.getAverage(RollingWindow.LAST_MINUTE), 0.0001);
+        Assertions.assertEquals(1.0, snapshot.getMin(RollingWindow.LAST_15_MINUTES));
+        Assertions.assertEquals(5.0, snapshot.getMax(RollingWindow.LAST_15_MINUTES));
+    }
+
+    @Test
+    public void testUpdateDoesNotAllocate() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationTracker = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assumptions.assumeTrue(allocationTracker.isThreadAllocatedMemorySupported()
+                               && allocationTracker.isThreadAllocatedMemoryEnabled());
+
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        PlayerCountTracker tracker = new PlayerCountTracker(TICK_SOURCE, testConfig, reporter, clock);
+
+        // warm up across a minute rollover first.
+        for (int i = 0; i < 20 * 61; i++) {
+            tracker.update(2);
+            clock.forwardMillis(50);
+        }
+        Assertions.assertEquals(1, reporter.getPlayerCounts().size());
+
+        long threadId = Thread.currentThread().getId();
+        // Reading the counter can allocate by itself, so we measure that first and allow for it.
+        long calibrationStart = allocationTracker.getThreadAllocatedBytes(threadId);
+        long calibrationEnd = allocationTracker.getThreadAllocatedBytes(threadId);
+        long measurementOverhead = calibrationEnd - calibrationStart;
+
+        // 5000 updates 10ms apart cross 50 second boundaries without reaching the next minute.
+        long before = allocationTracker.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 5000; i++) {
+            tracker.update(i % 7);
+            clock.forwardMillis(10);
+        }
+        long after = allocationTracker.getThreadAllocatedBytes(threadId);
+
+        Assertions.assertEquals(1, reporter.getPlayerCounts().size());
+        Assertions.assertTrue(after - before <= measurementOverhead,
+                              "Expected no allocations, but " + (after - before - measurementOverhead) + " bytes were allocated.");
+    }
+
 }
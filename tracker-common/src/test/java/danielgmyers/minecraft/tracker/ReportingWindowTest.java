@@ -0,0 +1,42 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ReportingWindowTest {
+
+    @Test
+    public void testNames() {
+        Assertions.assertEquals("second", ReportingWindow.ofSeconds(1).getName());
+        Assertions.assertEquals("10-second", ReportingWindow.ofSeconds(10).getName());
+        Assertions.assertEquals("minute", ReportingWindow.ofSeconds(60).getName());
+        Assertions.assertEquals("5-minute", ReportingWindow.ofSeconds(300).getName());
+        Assertions.assertEquals("90-second", ReportingWindow.ofSeconds(90).getName());
+        Assertions.assertEquals("hour", ReportingWindow.ofSeconds(3600).getName());
+        Assertions.assertEquals("24-hour", ReportingWindow.ofSeconds(86400).getName());
+    }
+
+    @Test
+    public void testParseList() {
+        Assertions.assertEquals(Arrays.asList(ReportingWindow.ofSeconds(10), ReportingWindow.MINUTE, ReportingWindow.HOUR),
+                                ReportingWindow.parseList(" 10, 60,3600 "));
+        // invalid and duplicate entries are skipped
+        Assertions.assertEquals(Arrays.asList(ReportingWindow.SECOND, ReportingWindow.MINUTE),
+                                ReportingWindow.parseList("1,banana,0,-5,60,1,"));
+        // and we fall back to one minute if nothing is left
+        Assertions.assertEquals(Collections.singletonList(ReportingWindow.MINUTE), ReportingWindow.parseList("banana"));
+        Assertions.assertEquals(Collections.singletonList(ReportingWindow.MINUTE), ReportingWindow.parseList(null));
+    }
+
+    @Test
+    public void testWindowBoundaries() {
+        ReportingWindow window = ReportingWindow.ofSeconds(10);
+        Assertions.assertFalse(window.inNextWindow(20_000, 29_999));
+        Assertions.assertTrue(window.inNextWindow(29_999, 30_000));
+        Assertions.assertTrue(window.isHighResolution());
+        Assertions.assertFalse(ReportingWindow.MINUTE.isHighResolution());
+    }
+}
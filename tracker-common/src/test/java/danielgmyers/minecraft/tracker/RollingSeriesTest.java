@@ -0,0 +1,76 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class RollingSeriesTest {
+
+    @Test
+    public void testMatchesBruteForceWithGaps() {
+        RollingSeries series = new RollingSeries();
+        TreeMap<Long, Long> recorded = new TreeMap<>();
+        Random random = new Random(1234);
+
+        long second = 1_650_000_000L;
+        for (int i = 0; i < 5000; i++) {
+            // mostly consecutive seconds, with the occasional gap (including some longer than every window).
+            int roll = random.nextInt(100);
+            second += roll < 90 ? 1 : roll < 99 ? 1 + random.nextInt(30) : 1000;
+            long value = random.nextInt(40);
+            series.record(second, value);
+            recorded.put(second, value);
+
+            for (RollingWindow window : RollingWindow.values()) {
+                long sum = 0;
+                long count = 0;
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long v : recorded.subMap(second - window.getSeconds(), false, second, true).values()) {
+                    sum += v;
+                    count++;
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                Assertions.assertEquals(sum, series.getSum(window), window + " sum at step " + i);
+                Assertions.assertEquals(count, series.getCount(window), window + " count at step " + i);
+                Assertions.assertEquals(min, series.getMin(window), window + " min at step " + i);
+                Assertions.assertEquals(max, series.getMax(window), window + " max at step " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testIgnoresSecondsOutOfOrder() {
+        RollingSeries series = new RollingSeries();
+        series.record(100, 5);
+        series.record(100, 50);
+        series.record(99, 50);
+        Assertions.assertEquals(5, series.getSum(RollingWindow.LAST_5_SECONDS));
+        Assertions.assertEquals(1, series.getCount(RollingWindow.LAST_5_SECONDS));
+        Assertions.assertEquals(100, series.getLastSecond());
+    }
+
+    @Test
+    public void testLongGapDoesntWalkEverySecond() {
+        RollingSeries series = new RollingSeries();
+        series.record(1_650_000_000L, 7);
+        series.record(1_650_000_001L, 9);
+        // e.g. the clock jumping forward; expiring one second at a time would take forever.
+        long later = 1_650_000_001L + 1_000_000_000_000L;
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> series.record(later, 3));
+        for (RollingWindow window : RollingWindow.values()) {
+            Assertions.assertEquals(3, series.getSum(window), window.toString());
+            Assertions.assertEquals(1, series.getCount(window), window.toString());
+            Assertions.assertEquals(3, series.getMin(window), window.toString());
+            Assertions.assertEquals(3, series.getMax(window), window.toString());
+        }
+        Assertions.assertEquals(later, series.getLastSecond());
+
+        series.record(later + 1, 5);
+        Assertions.assertEquals(8, series.getSum(RollingWindow.LAST_5_SECONDS));
+    }
+}
@@ -3,15 +3,48 @@ package danielgmyers.minecraft.tracker;
 import danielgmyers.minecraft.tracker.config.Config;
 import danielgmyers.minecraft.tracker.config.ReporterType;
 
+import java.util.Collections;
+import java.util.List;
+
 public class StaticConfig implements Config {
 
     private ReporterType reporterType;
     private String cloudwatchMetricNamespace;
+    private long cloudwatchMaxInFlightRequests;
+    private List<ReportingWindow> reportingWindows;
+    private long worldTrackerIdleExpirySeconds;
+    private long stallWatchdogThresholdMillis;
+    private long stallWatchdogSampleIntervalMillis;
+    private String stallWatchdogFile;
+    private long tickCostTopN;
+    private long worldCensusBudgetPerTick;
+    private boolean tickCostTrackingEnabled;
+    private boolean concurrentWorldTrackersEnabled;
+    private boolean trackerSelfStatsEnabled;
+    private boolean anomalyDetectionEnabled;
+    private long anomalyBaselineSeconds;
+    private long anomalyBudgetOverrunSeconds;
+    private long flightRecorderMaxBytes;
 
     public static StaticConfig create() {
         StaticConfig config = new StaticConfig();
         config.reporterType = ReporterType.APPLICATION_LOG;
         config.cloudwatchMetricNamespace = CLOUDWATCH_METRIC_NAMESPACE_DEFAULT;
+        config.cloudwatchMaxInFlightRequests = CLOUDWATCH_MAX_IN_FLIGHT_REQUESTS_DEFAULT;
+        config.reportingWindows = ReportingWindow.parseList(REPORTING_WINDOWS_DEFAULT);
+        config.worldTrackerIdleExpirySeconds = WORLD_TRACKER_IDLE_EXPIRY_SECONDS_DEFAULT;
+        config.stallWatchdogThresholdMillis = STALL_WATCHDOG_THRESHOLD_MILLIS_DEFAULT;
+        config.stallWatchdogSampleIntervalMillis = STALL_WATCHDOG_SAMPLE_INTERVAL_MILLIS_DEFAULT;
+        config.stallWatchdogFile = STALL_WATCHDOG_FILE_DEFAULT;
+        config.tickCostTopN = TICK_COST_TOP_N_DEFAULT;
+        config.worldCensusBudgetPerTick = WORLD_CENSUS_BUDGET_PER_TICK_DEFAULT;
+        config.tickCostTrackingEnabled = TICK_COST_TRACKING_ENABLED_DEFAULT;
+        config.concurrentWorldTrackersEnabled = CONCURRENT_WORLD_TRACKERS_ENABLED_DEFAULT;
+        config.trackerSelfStatsEnabled = TRACKER_SELF_STATS_ENABLED_DEFAULT;
+        config.anomalyDetectionEnabled = ANOMALY_DETECTION_ENABLED_DEFAULT;
+        config.anomalyBaselineSeconds = ANOMALY_BASELINE_SECONDS_DEFAULT;
+        config.anomalyBudgetOverrunSeconds = ANOMALY_BUDGET_OVERRUN_SECONDS_DEFAULT;
+        config.flightRecorderMaxBytes = FLIGHT_RECORDER_MAX_BYTES_DEFAULT;
         return config;
     }
 
@@ -20,6 +53,11 @@ public class StaticConfig implements Config {
         return reporterType;
     }
 
+    @Override
+    public List<ReporterType> getReporterTypes() {
+        return Collections.singletonList(reporterType);
+    }
+
     public void setReporterType(ReporterType reporterType) {
         this.reporterType = reporterType;
     }
@@ -32,4 +70,139 @@ public class StaticConfig implements Config {
     public void setCloudwatchMetricNamespace(String cloudwatchMetricNamespace) {
         this.cloudwatchMetricNamespace = cloudwatchMetricNamespace;
     }
+
+    @Override
+    public long getCloudWatchMaxInFlightRequests() {
+        return cloudwatchMaxInFlightRequests;
+    }
+
+    public void setCloudwatchMaxInFlightRequests(long cloudwatchMaxInFlightRequests) {
+        this.cloudwatchMaxInFlightRequests = cloudwatchMaxInFlightRequests;
+    }
+
+    @Override
+    public List<ReportingWindow> getReportingWindows() {
+        return reportingWindows;
+    }
+
+    public void setReportingWindows(String reportingWindows) {
+        this.reportingWindows = ReportingWindow.parseList(reportingWindows);
+    }
+
+    @Override
+    public long getWorldTrackerIdleExpirySeconds() {
+        return worldTrackerIdleExpirySeconds;
+    }
+
+    public void setWorldTrackerIdleExpirySeconds(long worldTrackerIdleExpirySeconds) {
+        this.worldTrackerIdleExpirySeconds = worldTrackerIdleExpirySeconds;
+    }
+
+    @Override
+    public long getStallWatchdogThresholdMillis() {
+        return stallWatchdogThresholdMillis;
+    }
+
+    public void setStallWatchdogThresholdMillis(long stallWatchdogThresholdMillis) {
+        this.stallWatchdogThresholdMillis = stallWatchdogThresholdMillis;
+    }
+
+    @Override
+    public long getStallWatchdogSampleIntervalMillis() {
+        return stallWatchdogSampleIntervalMillis;
+    }
+
+    public void setStallWatchdogSampleIntervalMillis(long stallWatchdogSampleIntervalMillis) {
+        this.stallWatchdogSampleIntervalMillis = stallWatchdogSampleIntervalMillis;
+    }
+
+    @Override
+    public String getStallWatchdogFile() {
+        return stallWatchdogFile;
+    }
+
+    public void setStallWatchdogFile(String stallWatchdogFile) {
+        this.stallWatchdogFile = stallWatchdogFile;
+    }
+
+    @Override
+    public long getTickCostTopN() {
+        return tickCostTopN;
+    }
+
+    public void setTickCostTopN(long tickCostTopN) {
+        this.tickCostTopN = tickCostTopN;
+    }
+
+    @Override
+    public long getWorldCensusBudgetPerTick() {
+        return worldCensusBudgetPerTick;
+    }
+
+    public void setWorldCensusBudgetPerTick(long worldCensusBudgetPerTick) {
+        this.worldCensusBudgetPerTick = worldCensusBudgetPerTick;
+    }
+
+    @Override
+    public boolean isTickCostTrackingEnabled() {
+        return tickCostTrackingEnabled;
+    }
+
+    public void setTickCostTrackingEnabled(boolean tickCostTrackingEnabled) {
+        this.tickCostTrackingEnabled = tickCostTrackingEnabled;
+    }
+
+    @Override
+    public boolean isConcurrentWorldTrackersEnabled() {
+        return concurrentWorldTrackersEnabled;
+    }
+
+    public void setConcurrentWorldTrackersEnabled(boolean concurrentWorldTrackersEnabled) {
+        this.concurrentWorldTrackersEnabled = concurrentWorldTrackersEnabled;
+    }
+
+    @Override
+    public boolean isTrackerSelfStatsEnabled() {
+        return trackerSelfStatsEnabled;
+    }
+
+    public void setTrackerSelfStatsEnabled(boolean trackerSelfStatsEnabled) {
+        this.trackerSelfStatsEnabled = trackerSelfStatsEnabled;
+    }
+
+    @Override
+    public boolean isAnomalyDetectionEnabled() {
+        return anomalyDetectionEnabled;
+    }
+
+    public void setAnomalyDetectionEnabled(boolean anomalyDetectionEnabled) {
+        this.anomalyDetectionEnabled = anomalyDetectionEnabled;
+    }
+
+    @Override
+    public long getAnomalyBaselineSeconds() {
+        return anomalyBaselineSeconds;
+    }
+
+    public void setAnomalyBaselineSeconds(long anomalyBaselineSeconds) {
+        this.anomalyBaselineSeconds = anomalyBaselineSeconds;
+    }
+
+    @Override
+    public long getAnomalyBudgetOverrunSeconds() {
+        return anomalyBudgetOverrunSeconds;
+    }
+
+    public void setAnomalyBudgetOverrunSeconds(long anomalyBudgetOverrunSeconds) {
+        this.anomalyBudgetOverrunSeconds = anomalyBudgetOverrunSeconds;
+    }
+
+    @Override
+    public long getFlightRecorderMaxBytes() {
+        return flightRecorderMaxBytes;
+    }
+
+    public void setFlightRecorderMaxBytes(long flightRecorderMaxBytes) {
+        this.flightRecorderMaxBytes = flightRecorderMaxBytes;
+    }
 }
@@ -0,0 +1,24 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+
+import java.time.Instant;
+
+public class StatisticBlock {
+    public final String tickSource;
+    public final ReportingWindow window;
+    public final Instant timestamp;
+    public final String name;
+    public final StatisticUnit unit;
+    public final double value;
+
+    public StatisticBlock(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                          StatisticUnit unit, double value) {
+        this.tickSource = tickSource;
+        this.window = window;
+        this.timestamp = timestamp;
+        this.name = name;
+        this.unit = unit;
+        this.value = value;
+    }
+}
@@ -5,12 +5,19 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 
-public class TestClock extends Clock {
+/**
+ * A manually-advanced clock that serves as both the wall clock and the monotonic tick time source.
+ * The current time is kept as a primitive so that advancing and reading the clock doesn't allocate.
+ */
+public class TestClock extends Clock implements TickTimeSource {
 
-    private Instant curTime;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private long curTimeNanos;
 
     public TestClock(Instant startTime) {
-        this.curTime = startTime;
+        this.curTimeNanos = startTime.getEpochSecond() * NANOS_PER_SECOND + startTime.getNano();
     }
 
     @Override
@@ -25,15 +32,29 @@ public class TestClock extends Clock {
 
     @Override
     public Instant instant() {
-        return curTime;
+        return Instant.ofEpochSecond(Math.floorDiv(curTimeNanos, NANOS_PER_SECOND),
+                                     Math.floorMod(curTimeNanos, NANOS_PER_SECOND));
     }
 
     @Override
     public long millis() {
-        return curTime.toEpochMilli();
+        return Math.floorDiv(curTimeNanos, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public long nanoTime() {
+        return curTimeNanos;
     }
 
     public void forward(Duration amount) {
-        curTime = curTime.plus(amount);
+        curTimeNanos += amount.toNanos();
+    }
+
+    public void forwardNanos(long nanos) {
+        curTimeNanos += nanos;
+    }
+
+    public void forwardMillis(long millis) {
+        curTimeNanos += millis * NANOS_PER_MILLI;
     }
 }
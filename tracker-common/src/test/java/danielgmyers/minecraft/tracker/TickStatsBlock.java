@@ -4,26 +4,33 @@ import java.time.Instant;
 
 public class TickStatsBlock {
     public final String tickSource;
+    public final ReportingWindow window;
     public final Instant timestamp;
     public final long secondsWithData;
     public final long totalTickCount;
     public final long minTickCount;
     public final long maxTickCount;
-    public final long totalTickMillis;
-    public final long minTickMillis;
-    public final long maxTickMillis;
+    public final long totalTickNanos;
+    public final long minTickNanos;
+    public final long maxTickNanos;
+    public final LogLinearHistogram tickNanosHistogram;
 
-    public TickStatsBlock(String tickSource, Instant timestamp, long secondsWithData,
+    public TickStatsBlock(String tickSource, ReportingWindow window, Instant timestamp, long secondsWithData,
                           long totalTickCount, long minTickCount, long maxTickCount,
-                          long totalTickMillis, long minTickMillis, long maxTickMillis) {
+                          long totalTickNanos, long minTickNanos, long maxTickNanos,
+                          LogLinearHistogram tickNanosHistogram) {
         this.tickSource = tickSource;
+        this.window = window;
         this.timestamp = timestamp;
         this.secondsWithData = secondsWithData;
         this.totalTickCount = totalTickCount;
         this.minTickCount = minTickCount;
         this.maxTickCount = maxTickCount;
-        this.totalTickMillis = totalTickMillis;
-        this.minTickMillis = minTickMillis;
-        this.maxTickMillis = maxTickMillis;
+        this.totalTickNanos = totalTickNanos;
+        this.minTickNanos = minTickNanos;
+        this.maxTickNanos = maxTickNanos;
+        // the tracker reuses its histogram, so we need our own copy
+        this.tickNanosHistogram = new LogLinearHistogram();
+        this.tickNanosHistogram.copyFrom(tickNanosHistogram);
     }
 }
@@ -1,20 +1,28 @@
 package danielgmyers.minecraft.tracker;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
 
 public class TickStatsTrackerTest {
 
     private static final String TICK_SOURCE = "test-tick-source";
 
     private TestClock clock;
+    private long nextTickMillis = 0;
 
     @BeforeEach
     public void setupClock() {
@@ -30,7 +38,7 @@ public class TickStatsTrackerTest {
     public void testConstantTickTimesForOneMinute() {
         InMemoryStatsReporter reporter = new InMemoryStatsReporter();
         StaticConfig testConfig = StaticConfig.create();
-        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock);
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
 
         // 20 ticks in 1 second allows 50ms per tick.
         // In practice, ticks often take less time than that, where the game waits a while
@@ -67,16 +75,89 @@ public class TickStatsTrackerTest {
         Assertions.assertEquals(20, block.minTickCount);
         Assertions.assertEquals(20, block.maxTickCount);
 
-        Assertions.assertEquals(20 * 5 * 60, block.totalTickMillis);
-        Assertions.assertEquals(5, block.minTickMillis);
-        Assertions.assertEquals(5, block.maxTickMillis);
+        Assertions.assertEquals(millisToNanos(20 * 5 * 60), block.totalTickNanos);
+        Assertions.assertEquals(millisToNanos(5), block.minTickNanos);
+        Assertions.assertEquals(millisToNanos(5), block.maxTickNanos);
+    }
+
+    @Test
+    public void testMultipleReportingWindows() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        testConfig.setReportingWindows("10,60");
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+
+        // the first 30 seconds have 5ms ticks, the rest have 15ms ticks.
+        for (int i = 0; i < 20 * 60; i++) {
+            if (i < 20 * 30) {
+                doTick(tracker, clock, 5, 45);
+            } else {
+                doTick(tracker, clock, 15, 35);
+            }
+        }
+        doTick(tracker, clock, 5, 45);
+
+        // six 10-second windows, then the minute window
+        Assertions.assertEquals(7, reporter.getTickStats().size());
+        for (int i = 0; i < 6; i++) {
+            TickStatsBlock block = reporter.getTickStats().get(i);
+            Assertions.assertEquals("10-second", block.window.getName());
+            Assertions.assertEquals(10, block.secondsWithData);
+            Assertions.assertEquals(20 * 10, block.totalTickCount);
+            long expectedTickMillis = i < 3 ? 5 : 15;
+            Assertions.assertEquals(millisToNanos(expectedTickMillis), block.minTickNanos);
+            Assertions.assertEquals(millisToNanos(expectedTickMillis), block.maxTickNanos);
+            Assertions.assertEquals(20 * 10, block.tickNanosHistogram.getTotalCount());
+        }
+
+        TickStatsBlock minuteBlock = reporter.getTickStats().get(6);
+        Assertions.assertEquals(ReportingWindow.MINUTE, minuteBlock.window);
+        Assertions.assertEquals(60, minuteBlock.secondsWithData);
+        Assertions.assertEquals(20 * 60, minuteBlock.totalTickCount);
+        Assertions.assertEquals(millisToNanos(20 * 30 * 5 + 20 * 30 * 15), minuteBlock.totalTickNanos);
+        Assertions.assertEquals(millisToNanos(5), minuteBlock.minTickNanos);
+        Assertions.assertEquals(millisToNanos(15), minuteBlock.maxTickNanos);
+        Assertions.assertEquals(20 * 60, minuteBlock.tickNanosHistogram.getTotalCount());
+        // the last 10-second window and the minute window end on the same tick, so they share a timestamp.
+        Assertions.assertEquals(reporter.getTickStats().get(5).timestamp, minuteBlock.timestamp);
+    }
+
+    @Test
+    public void testReportingWindowsFollowConfigChanges() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        testConfig.setReportingWindows("60");
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+
+        // halfway through the minute, the minute window is swapped for a 10-second one.
+        for (int i = 0; i < 20 * 30; i++) {
+            doTick(tracker, clock, 5, 45);
+        }
+        testConfig.setReportingWindows("10");
+        for (int i = 0; i < 20 * 60; i++) {
+            doTick(tracker, clock, 5, 45);
+        }
+        doTick(tracker, clock, 5, 45);
+
+        // the change is picked up when the minute ends, and the new window starts with the next second.
+        Assertions.assertEquals(4, reporter.getTickStats().size());
+        TickStatsBlock minuteBlock = reporter.getTickStats().get(0);
+        Assertions.assertEquals(ReportingWindow.MINUTE, minuteBlock.window);
+        Assertions.assertEquals(60, minuteBlock.secondsWithData);
+        Assertions.assertEquals(20 * 60, minuteBlock.totalTickCount);
+        for (int i = 1; i < 4; i++) {
+            TickStatsBlock block = reporter.getTickStats().get(i);
+            Assertions.assertEquals("10-second", block.window.getName());
+            Assertions.assertEquals(10, block.secondsWithData);
+            Assertions.assertEquals(20 * 10, block.totalTickCount);
+        }
     }
 
     @Test
     public void testVariableTickTimesForOneMinute() {
         InMemoryStatsReporter reporter = new InMemoryStatsReporter();
         StaticConfig testConfig = StaticConfig.create();
-        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock);
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
 
         Instant previousEndTickTime = null;
         // For this test, for each second we'll have two ticks take 5ms, sixteen ticks take 10ms,
@@ -122,16 +203,24 @@ public class TickStatsTrackerTest {
         Assertions.assertEquals(20, block.minTickCount);
         Assertions.assertEquals(20, block.maxTickCount);
 
-        Assertions.assertEquals(20 * 10 * 60, block.totalTickMillis);
-        Assertions.assertEquals(5, block.minTickMillis);
-        Assertions.assertEquals(15, block.maxTickMillis);
+        Assertions.assertEquals(millisToNanos(20 * 10 * 60), block.totalTickNanos);
+        Assertions.assertEquals(millisToNanos(5), block.minTickNanos);
+        Assertions.assertEquals(millisToNanos(15), block.maxTickNanos);
+
+        // 10% of ticks took 5ms, 80% took 10ms, and 10% took 15ms.
+        Assertions.assertEquals(20 * 60, block.tickNanosHistogram.getTotalCount());
+        assertSameBucket(millisToNanos(5), block.tickNanosHistogram.getValueAtPercentile(10));
+        assertSameBucket(millisToNanos(10), block.tickNanosHistogram.getValueAtPercentile(50));
+        assertSameBucket(millisToNanos(10), block.tickNanosHistogram.getValueAtPercentile(90));
+        assertSameBucket(millisToNanos(15), block.tickNanosHistogram.getValueAtPercentile(95));
+        assertSameBucket(millisToNanos(15), block.tickNanosHistogram.getValueAtPercentile(99.9));
     }
 
     @Test
     public void testEndTickBeforeStartTick() {
         InMemoryStatsReporter reporter = new InMemoryStatsReporter();
         StaticConfig testConfig = StaticConfig.create();
-        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock);
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
 
         // This shouldn't cause an exception, and the subsequent tick should have data.
         tracker.endTick();
@@ -164,11 +253,344 @@ public class TickStatsTrackerTest {
         Assertions.assertEquals(1, block.minTickCount);
         Assertions.assertEquals(1, block.maxTickCount);
 
-        Assertions.assertEquals(0, block.totalTickMillis);
-        Assertions.assertEquals(0, block.minTickMillis);
-        Assertions.assertEquals(0, block.maxTickMillis);
+        Assertions.assertEquals(0, block.totalTickNanos);
+        Assertions.assertEquals(0, block.minTickNanos);
+        Assertions.assertEquals(0, block.maxTickNanos);
+    }
+
+    @Test
+    public void testSubMillisecondTickDurations() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+
+        // each tick takes 250 microseconds, which used to show up as 0 ms.
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.startTick();
+            clock.forwardNanos(250_000);
+            tracker.endTick();
+            clock.forwardNanos(50_000_000 - 250_000);
+        }
+        tracker.startTick();
+        tracker.endTick();
+
+        Assertions.assertEquals(1, reporter.getTickStats().size());
+        TickStatsBlock block = reporter.getTickStats().get(0);
+        Assertions.assertEquals(20 * 60 * 250_000L, block.totalTickNanos);
+        Assertions.assertEquals(250_000L, block.minTickNanos);
+        Assertions.assertEquals(250_000L, block.maxTickNanos);
+    }
+
+    @Test
+    public void testWallClockStepDoesNotAffectDurations() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        // the wall clock and the tick time source are separate here, so we can step the wall clock on its own.
+        TestClock wallClock = new TestClock(clock.instant());
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, wallClock, clock);
+
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.startTick();
+            clock.forwardMillis(5);
+            // pretend NTP stepped the wall clock back by two seconds partway through this tick.
+            if (i == 600) {
+                wallClock.forwardMillis(-2000);
+            }
+            tracker.endTick();
+            clock.forwardMillis(45);
+            wallClock.forwardMillis(50);
+        }
+        wallClock.forwardMillis(2000);
+        tracker.startTick();
+        tracker.endTick();
+
+        Assertions.assertEquals(1, reporter.getTickStats().size());
+        TickStatsBlock block = reporter.getTickStats().get(0);
+        Assertions.assertEquals(20 * 60, block.totalTickCount);
+        Assertions.assertEquals(millisToNanos(5), block.minTickNanos);
+        Assertions.assertEquals(millisToNanos(5), block.maxTickNanos);
+    }
+
+    @Test
+    public void testRollingWindowSnapshot() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+
+        TickStatsSnapshot empty = tracker.getSnapshot();
+        Assertions.assertNull(empty.getLastSecond());
+        Assertions.assertTrue(Double.isNaN(empty.getMeanMillisPerTick(RollingWindow.LAST_MINUTE)));
+
+        // 55 seconds of 5ms ticks, then 5 seconds of 20ms ticks with one 45ms tick in each second.
+        for (int second = 0; second < 60; second++) {
+            for (int i = 0; i < 20; i++) {
+                long tickMillis = second < 55 ? 5 : (i == 0 ? 45 : 20);
+                doTick(tracker, clock, tickMillis, 50 - tickMillis);
+            }
+        }
+        // one more tick so the last second gets completed
+        doTick(tracker, clock, 5, 45);
+
+        TickStatsSnapshot snapshot = tracker.getSnapshot();
+        Assertions.assertEquals(clock.instant().minusSeconds(1).with(ChronoField.NANO_OF_SECOND, 0), snapshot.getLastSecond());
+        Assertions.assertEquals(5, snapshot.getSecondsWithData(RollingWindow.LAST_5_SECONDS));
+        Assertions.assertEquals(20.0, snapshot.getTicksPerSecond(RollingWindow.LAST_5_SECONDS));
+        Assertions.assertEquals(21.25, snapshot.getMeanMillisPerTick(RollingWindow.LAST_5_SECONDS), 0.0001);
+        Assertions.assertEquals(45.0, snapshot.getMaxMillisPerTick(RollingWindow.LAST_5_SECONDS));
+
+        Assertions.assertEquals(60, snapshot.getSecondsWithData(RollingWindow.LAST_MINUTE));
+        Assertions.assertEquals((55 * 20 * 5 + 5 * 21.25 * 20) / 1200, snapshot.getMeanMillisPerTick(RollingWindow.LAST_MINUTE), 0.0001);
+        Assertions.assertEquals(60, snapshot.getSecondsWithData(RollingWindow.LAST_15_MINUTES));
+    }
+
+    @Test
+    public void testSnapshotIsConsistentWhileTicking() throws Exception {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+
+        // every second has exactly 20 ticks, so a snapshot that mixes two seconds' updates would show up as
+        // a tick count that doesn't match its number of seconds.
+        Thread ticker = new Thread(() -> {
+            for (int i = 0; i < 20 * 3000; i++) {
+                doTickWithoutAllocating(tracker, 5, 45);
+            }
+        });
+        ticker.start();
+        int reads = 0;
+        while (ticker.isAlive() || reads == 0) {
+            TickStatsSnapshot snapshot = tracker.getSnapshot();
+            for (RollingWindow window : RollingWindow.values()) {
+                long seconds = snapshot.getSecondsWithData(window);
+                if (seconds > 0) {
+                    Assertions.assertEquals(20.0, snapshot.getTicksPerSecond(window));
+                    Assertions.assertEquals(5.0, snapshot.getMeanMillisPerTick(window), 0.0001);
+                }
+            }
+            reads++;
+        }
+        ticker.join();
+    }
+
+    @Test
+    public void testEndTickDoesNotAllocate() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationTracker = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assumptions.assumeTrue(allocationTracker.isThreadAllocatedMemorySupported()
+                               && allocationTracker.isThreadAllocatedMemoryEnabled());
+
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+        tracker.setScheduleStatsEnabled(true);
+
+        // Warm up for a full minute (including a minute rollover), so any lazy initialization is out of the way.
+        for (int i = 0; i < 20 * 61; i++) {
+            doTickWithoutAllocating(tracker, 5, 45);
+        }
+        Assertions.assertEquals(1, reporter.getTickStats().size());
+
+        long threadId = Thread.currentThread().getId();
+        // Reading the counter can allocate by itself, so we measure that first and allow for it.
+        long calibrationStart = allocationTracker.getThreadAllocatedBytes(threadId);
+        long calibrationEnd = allocationTracker.getThreadAllocatedBytes(threadId);
+        long measurementOverhead = calibrationEnd - calibrationStart;
+
+        // 1ms ticks with 1ms gaps, so 5000 ticks cross 10 second boundaries but stay within the same minute.
+        long before = allocationTracker.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 5000; i++) {
+            doTickWithoutAllocating(tracker, 1, 1);
+        }
+        long after = allocationTracker.getThreadAllocatedBytes(threadId);
+
+        Assertions.assertEquals(1, reporter.getTickStats().size());
+        Assertions.assertTrue(after - before <= measurementOverhead,
+                              "Expected no allocations, but " + (after - before - measurementOverhead) + " bytes were allocated.");
+    }
+
+    @Test
+    public void testScheduleStatsWithCatchUpTicks() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+        tracker.setScheduleStatsEnabled(true);
+
+        // 10ms ticks, except tick 100 which takes 250ms; the next four ticks start at least a whole tick late, so they
+        // run back to back, and the one after that is 40ms late and runs straight away too.
+        runScheduledTicks(tracker, 1200, i -> i == 100 ? 250 : 10);
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+        runScheduledTicks(tracker, 1, i -> 10);
+
+        // 1199 intervals, and the server was back on schedule by the end of the minute.
+        Assertions.assertEquals(20.0, reporter.getStatistic(TICK_SOURCE, "time-weighted-tps"), 0.0001);
+        Assertions.assertEquals(50.0, reporter.getStatistic(TICK_SOURCE, "tick-interval-avg"), 0.0001);
+        Assertions.assertEquals(50.0, reporter.getStatistic(TICK_SOURCE, "tick-interval-p50"), 1.5);
+        Assertions.assertEquals(250.0, reporter.getStatistic(TICK_SOURCE, "tick-interval-max"), 0.0001);
+        // the interval changes by 200ms, 240ms and 40ms around the slow tick.
+        Assertions.assertEquals(480.0 / 1198, reporter.getStatistic(TICK_SOURCE, "tick-jitter"), 0.0001);
+        double busyMillis = 1198 * 10 + 250;
+        Assertions.assertEquals(100 * (1199 * 50 - busyMillis) / (1199 * 50),
+                                reporter.getStatistic(TICK_SOURCE, "idle-headroom"), 0.0001);
+        Assertions.assertEquals((200 + 160 + 120 + 80 + 40) / 1199.0,
+                                reporter.getStatistic(TICK_SOURCE, "behind-schedule-avg"), 0.0001);
+        Assertions.assertEquals(200.0, reporter.getStatistic(TICK_SOURCE, "behind-schedule-max"), 0.0001);
+        Assertions.assertEquals(4, reporter.getStatistic(TICK_SOURCE, "catch-up-ticks"));
+        Assertions.assertEquals(0, reporter.getStatistic(TICK_SOURCE, "skipped-ticks"));
     }
 
+    @Test
+    public void testScheduleStatsWithSkippedTicks() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+        tracker.setScheduleStatsEnabled(true);
+
+        // tick 20 takes 3 seconds, so the server gives up on the 59 ticks it missed rather than catching up.
+        runScheduledTicks(tracker, 40, i -> i == 20 ? 3000 : 10);
+        tracker.flush();
+
+        Assertions.assertEquals(2950.0, reporter.getStatistic(TICK_SOURCE, "behind-schedule-max"), 0.0001);
+        Assertions.assertEquals(0, reporter.getStatistic(TICK_SOURCE, "catch-up-ticks"));
+        Assertions.assertEquals(59, reporter.getStatistic(TICK_SOURCE, "skipped-ticks"));
+        Assertions.assertEquals(39 * 1000.0 / (38 * 50 + 3000),
+                                reporter.getStatistic(TICK_SOURCE, "time-weighted-tps"), 0.0001);
+    }
+
+    @Test
+    public void testNoScheduleStatsUnlessEnabled() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+
+        runScheduledTicks(tracker, 1201, i -> 10);
+
+        Assertions.assertEquals(1, reporter.getTickStats().size());
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+    }
+
+    /**
+     * Runs ticks the way the vanilla server loop does: each tick is due 50ms after the previous one was due, the server
+     * waits until a tick is due before starting it, and it skips the ticks it missed once it's over two seconds behind.
+     */
+    private void runScheduledTicks(TickStatsTracker tracker, int count, IntToLongFunction tickMillis) {
+        for (int i = 0; i < count; i++) {
+            long lateMillis = clock.millis() - nextTickMillis;
+            if (nextTickMillis == 0) {
+                nextTickMillis = clock.millis();
+            } else if (lateMillis > 2000) {
+                nextTickMillis += lateMillis / 50 * 50;
+            }
+            nextTickMillis += 50;
+            tracker.startTick();
+            clock.forwardMillis(tickMillis.applyAsLong(i));
+            tracker.endTick();
+            if (clock.millis() < nextTickMillis) {
+                clock.forwardMillis(nextTickMillis - clock.millis());
+            }
+        }
+    }
+
+    @Test
+    public void testAnomalyIsReportedOnceAndCaptured() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        testConfig.setAnomalyDetectionEnabled(true);
+        testConfig.setAnomalyBaselineSeconds(30);
+        // a configured one-second window, which the captured seconds mustn't be confused with.
+        testConfig.setReportingWindows("1,60");
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+        Instant startTime = clock.instant();
+
+        for (int i = 0; i < 20 * 45; i++) {
+            doTick(tracker, clock, 5, 45);
+        }
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+
+        // the ticks get four times slower, but the source still keeps up.
+        for (int i = 0; i < 20 * 15; i++) {
+            doTick(tracker, clock, 20, 30);
+        }
+        doTick(tracker, clock, 5, 45);
+
+        // it takes three slow seconds in a row to count, and then it's only reported once.
+        Assertions.assertEquals(2, reporter.getStatistics().size());
+        StatisticBlock observed = reporter.getStatistics().get(0);
+        Assertions.assertEquals("anomaly-tick-millis", observed.name);
+        Assertions.assertEquals(TICK_SOURCE, observed.tickSource);
+        Assertions.assertEquals(ReportingWindow.ANOMALY_CAPTURE, observed.window);
+        Assertions.assertEquals(startTime.plusSeconds(48), observed.timestamp);
+        Assertions.assertEquals(20.0, observed.value, 1e-9);
+        StatisticBlock baseline = reporter.getStatistics().get(1);
+        Assertions.assertEquals("anomaly-tick-millis-baseline", baseline.name);
+        Assertions.assertEquals(5.0, baseline.value, 1e-9);
+
+        // the second that set it off and the next nine are reported on their own.
+        List<TickStatsBlock> captured = new ArrayList<>();
+        long configuredSeconds = 0;
+        for (TickStatsBlock block : reporter.getTickStats()) {
+            if (block.window.equals(ReportingWindow.ANOMALY_CAPTURE)) {
+                captured.add(block);
+            } else if (block.window.equals(ReportingWindow.SECOND)) {
+                configuredSeconds++;
+            }
+        }
+        Assertions.assertEquals(10, captured.size());
+        Assertions.assertEquals(60, configuredSeconds);
+        for (int i = 0; i < captured.size(); i++) {
+            Assertions.assertEquals(startTime.plusSeconds(48 + i), captured.get(i).timestamp);
+            Assertions.assertEquals(20, captured.get(i).totalTickCount);
+            Assertions.assertEquals(millisToNanos(20 * 20), captured.get(i).totalTickNanos);
+        }
+    }
+
+    @Test
+    public void testSustainedBudgetOverrunIsReported() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        testConfig.setAnomalyDetectionEnabled(true);
+        // the baselines are still settling, so only the budget check applies.
+        testConfig.setAnomalyBaselineSeconds(3600);
+        testConfig.setAnomalyBudgetOverrunSeconds(5);
+        TickStatsTracker tracker = new TickStatsTracker(TICK_SOURCE, testConfig, reporter, clock, clock);
+
+        for (int i = 0; i < 20 * 10; i++) {
+            doTick(tracker, clock, 5, 45);
+        }
+        // four seconds over budget isn't enough.
+        for (int i = 0; i < 10 * 4; i++) {
+            doTick(tracker, clock, 100, 0);
+        }
+        doTick(tracker, clock, 5, 45);
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+
+        for (int i = 0; i < 10 * 8; i++) {
+            doTick(tracker, clock, 100, 0);
+        }
+        doTick(tracker, clock, 5, 45);
+
+        Assertions.assertEquals(2, reporter.getStatistics().size());
+        Assertions.assertEquals("anomaly-budget-overrun-millis", reporter.getStatistics().get(0).name);
+        // the average over the overrun, which includes the second where the first fast tick started.
+        Assertions.assertEquals(98.27, reporter.getStatistics().get(0).value, 0.01);
+        Assertions.assertEquals("anomaly-budget-overrun-millis-baseline", reporter.getStatistics().get(1).name);
+        Assertions.assertTrue(reporter.getStatistics().get(1).value < 10);
+    }
+
+    private void doTickWithoutAllocating(TickStatsTracker tracker, long tickMillis, long postTickWaitMillis) {
+        tracker.startTick();
+        clock.forwardMillis(tickMillis);
+        tracker.endTick();
+        clock.forwardMillis(postTickWaitMillis);
+    }
+
+    private static long millisToNanos(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static void assertSameBucket(long expected, long actual) {
+        Assertions.assertEquals(LogLinearHistogram.indexFor(expected), LogLinearHistogram.indexFor(actual));
+    }
 
     /**
      * Returns the timestamp of the endTick call
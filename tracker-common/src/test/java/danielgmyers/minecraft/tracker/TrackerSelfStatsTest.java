@@ -0,0 +1,100 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.TrackerSelfStats.Activity;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TrackerSelfStatsTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+
+    @Test
+    public void testReportsOverheadAndHealthOncePerMinute() {
+        TestClock clock = new TestClock(Instant.parse("2022-04-01T00:00:00Z"));
+        InMemoryStatsReporter reporter = new HealthReportingStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setTrackerSelfStatsEnabled(true);
+        TrackerSelfStats selfStats = new TrackerSelfStats(config, reporter, clock, clock);
+        StatsReporter trackerReporter = selfStats.timeCalls(reporter);
+        Assertions.assertNotSame(reporter, trackerReporter);
+
+        // anything before the first update is part of a partial minute, so it's left out.
+        selfStats.lap(Activity.TICK_STATS, selfStats.start() - 5_000_000);
+        selfStats.update();
+
+        for (int i = 0; i < 20; i++) {
+            long selfNanos = selfStats.start();
+            clock.forwardNanos(100_000);
+            selfNanos = selfStats.lap(Activity.TICK_STATS, selfNanos);
+            clock.forwardNanos(50_000);
+            selfNanos = selfStats.lap(Activity.PLAYER_COUNTS, selfNanos);
+            clock.forwardNanos(25_000);
+            selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
+            clock.forwardMillis(50);
+            selfStats.update();
+        }
+        trackerReporter.reportStatistic(TICK_SOURCE, ReportingWindow.MINUTE, clock.instant(), "something",
+                                        StatisticUnit.COUNT, 1);
+        Assertions.assertEquals(1, reporter.getStatistics().size());
+
+        clock.forward(Duration.ofMinutes(1));
+        selfStats.update();
+
+        Map<String, StatisticBlock> statistics = new HashMap<>();
+        for (StatisticBlock statistic : reporter.getStatistics()) {
+            if (statistic.tickSource.equals(WorldTrackerCache.TRACKER_SELF_SOURCE)) {
+                statistics.put(statistic.name, statistic);
+            }
+        }
+        Assertions.assertEquals(2.0, statistics.get("overhead-tick-stats-millis").value, 1e-9);
+        Assertions.assertEquals(StatisticUnit.MILLISECONDS, statistics.get("overhead-tick-stats-millis").unit);
+        Assertions.assertEquals(1.0, statistics.get("overhead-player-counts-millis").value, 1e-9);
+        Assertions.assertEquals(0.5, statistics.get("overhead-other-trackers-millis").value, 1e-9);
+        Assertions.assertEquals(0.0, statistics.get("overhead-reporter-calls-millis").value, 1e-9);
+        Assertions.assertEquals(1, statistics.get("reporter-calls").value);
+        // 3.5ms out of the 61.0035 seconds since the first update, to the millisecond
+        Assertions.assertEquals(3.5 * 100 / 61_003, statistics.get("overhead-percent").value, 1e-9);
+        Assertions.assertEquals(7, statistics.get("test-health").value);
+
+        // the next minute starts from zero.
+        reporter.clear();
+        clock.forward(Duration.ofMinutes(1));
+        selfStats.update();
+        for (StatisticBlock statistic : reporter.getStatistics()) {
+            if (statistic.unit == StatisticUnit.MILLISECONDS) {
+                Assertions.assertEquals(0.0, statistic.value, statistic.name);
+            }
+        }
+    }
+
+    @Test
+    public void testNothingWhenDisabled() {
+        TestClock clock = new TestClock(Instant.parse("2022-04-01T00:00:00Z"));
+        InMemoryStatsReporter reporter = new HealthReportingStatsReporter();
+        TrackerSelfStats selfStats = new TrackerSelfStats(StaticConfig.create(), reporter, clock, clock);
+        Assertions.assertSame(reporter, selfStats.timeCalls(reporter));
+
+        for (int i = 0; i < 3; i++) {
+            long selfNanos = selfStats.start();
+            clock.forwardNanos(100_000);
+            selfStats.lap(Activity.TICK_STATS, selfNanos);
+            clock.forward(Duration.ofMinutes(1));
+            selfStats.update();
+        }
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+    }
+
+    private static class HealthReportingStatsReporter extends InMemoryStatsReporter {
+        @Override
+        public void reportHealth(StatsReporter destination, String source, ReportingWindow window, Instant timestamp) {
+            destination.reportStatistic(source, window, timestamp, "test-health", StatisticUnit.COUNT, 7);
+        }
+    }
+}
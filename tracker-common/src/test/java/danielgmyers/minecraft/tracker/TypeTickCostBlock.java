@@ -0,0 +1,24 @@
+package danielgmyers.minecraft.tracker;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+public class TypeTickCostBlock {
+    public final String tickSource;
+    public final ReportingWindow window;
+    public final Instant timestamp;
+    public final String[] typeIds;
+    public final long[] tickCounts;
+    public final long[] totalTickNanos;
+
+    public TypeTickCostBlock(String tickSource, ReportingWindow window, Instant timestamp, int typeCount,
+                             String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+        this.tickSource = tickSource;
+        this.window = window;
+        this.timestamp = timestamp;
+        // the tracker reuses its arrays, so we need our own copies
+        this.typeIds = Arrays.copyOf(typeIds, typeCount);
+        this.tickCounts = Arrays.copyOf(tickCounts, typeCount);
+        this.totalTickNanos = Arrays.copyOf(totalTickNanos, typeCount);
+    }
+}
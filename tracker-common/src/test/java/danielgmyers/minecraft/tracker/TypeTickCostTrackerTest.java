@@ -0,0 +1,169 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoField;
+import java.util.concurrent.CyclicBarrier;
+
+public class TypeTickCostTrackerTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+
+    private TestClock clock;
+    private InternedTypeIds typeIds;
+
+    @BeforeEach
+    public void setup() {
+        // set up the clock so that it's clamped to the beginning of the current minute.
+        // this will make sure we're able to consistently test crossing minute boundaries.
+        Instant startTime = Instant.now().with(ChronoField.NANO_OF_SECOND, 0);
+        LocalDateTime ldt = LocalDateTime.ofInstant(startTime, ZoneId.systemDefault());
+        startTime = startTime.minusSeconds(ldt.getSecond());
+        clock = new TestClock(startTime);
+        typeIds = new InternedTypeIds();
+    }
+
+    @Test
+    public void testReportsTopTypesOncePerMinute() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        testConfig.setTickCostTopN(2);
+        TypeTickCostTracker tracker = new TypeTickCostTracker(TICK_SOURCE, typeIds, testConfig, reporter, clock);
+
+        int zombie = typeIds.indexOf("zombie", Object::toString);
+        int furnace = typeIds.indexOf("furnace", Object::toString);
+        int chicken = typeIds.indexOf("chicken", Object::toString);
+
+        for (int i = 0; i < 20 * 60; i++) {
+            tracker.record(zombie, 30_000);
+            tracker.record(zombie, 30_000);
+            tracker.record(furnace, 50_000);
+            tracker.record(chicken, 1_000);
+            tracker.update();
+            clock.forward(Duration.ofMillis(50));
+        }
+        Assertions.assertTrue(reporter.getTypeTickCosts().isEmpty());
+
+        Instant lastUpdate = clock.instant().minusMillis(50);
+        tracker.record(chicken, 1_000);
+        tracker.update();
+
+        Assertions.assertEquals(1, reporter.getTypeTickCosts().size());
+        TypeTickCostBlock block = reporter.getTypeTickCosts().get(0);
+        Assertions.assertEquals(TICK_SOURCE, block.tickSource);
+        Assertions.assertEquals(lastUpdate, block.timestamp);
+
+        // only the top two, most expensive first
+        Assertions.assertArrayEquals(new String[] {"zombie", "furnace"}, block.typeIds);
+        Assertions.assertArrayEquals(new long[] {2 * 20 * 60, 20 * 60}, block.tickCounts);
+        Assertions.assertArrayEquals(new long[] {60_000L * 20 * 60, 50_000L * 20 * 60}, block.totalTickNanos);
+
+        // the next minute starts from scratch.
+        reporter.clear();
+        for (int i = 0; i < 20 * 60; i++) {
+            if (i == 0) {
+                tracker.record(chicken, 1_000);
+            }
+            tracker.update();
+            clock.forward(Duration.ofMillis(50));
+        }
+        tracker.update();
+        Assertions.assertEquals(1, reporter.getTypeTickCosts().size());
+        block = reporter.getTypeTickCosts().get(0);
+        Assertions.assertArrayEquals(new String[] {"chicken"}, block.typeIds);
+        Assertions.assertArrayEquals(new long[] {1}, block.tickCounts);
+        Assertions.assertArrayEquals(new long[] {1_000}, block.totalTickNanos);
+    }
+
+    @Test
+    public void testNothingReportedWithoutTicks() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        TypeTickCostTracker tracker = new TypeTickCostTracker(TICK_SOURCE, typeIds, StaticConfig.create(), reporter, clock);
+        for (int i = 0; i < 20 * 130; i++) {
+            tracker.update();
+            clock.forward(Duration.ofMillis(50));
+        }
+        Assertions.assertTrue(reporter.getTypeTickCosts().isEmpty());
+    }
+
+    @Test
+    public void testManyTypes() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        TypeTickCostTracker tracker = new TypeTickCostTracker(TICK_SOURCE, typeIds, StaticConfig.create(), reporter, clock);
+
+        tracker.update();
+        // more types than the tracker's initial capacity
+        for (int i = 0; i < 500; i++) {
+            tracker.record(typeIds.indexOf("type" + i, Object::toString), i);
+        }
+        clock.forward(Duration.ofMinutes(1));
+        tracker.update();
+
+        Assertions.assertEquals(1, reporter.getTypeTickCosts().size());
+        TypeTickCostBlock block = reporter.getTypeTickCosts().get(0);
+        Assertions.assertEquals(StaticConfig.TICK_COST_TOP_N_DEFAULT, block.typeIds.length);
+        for (int i = 0; i < block.typeIds.length; i++) {
+            Assertions.assertEquals("type" + (499 - i), block.typeIds[i]);
+            Assertions.assertEquals(499 - i, block.totalTickNanos[i]);
+        }
+    }
+
+    @Test
+    public void testTypeIdsAreOnlyResolvedOnce() {
+        Object zombieType = new Object();
+        int index = typeIds.indexOf(zombieType, type -> "minecraft:zombie");
+        Assertions.assertEquals(index, typeIds.indexOf(zombieType, type -> {
+            throw new AssertionError("resolver should only be called once per type");
+        }));
+        Assertions.assertEquals("minecraft:zombie", typeIds.typeIdAt(index));
+        Assertions.assertEquals("unknown", typeIds.typeIdAt(typeIds.indexOf(new Object(), type -> null)));
+    }
+
+    @Test
+    public void testAttributionIsPerThread() throws Exception {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig testConfig = StaticConfig.create();
+        TypeTickCostTracker first = new TypeTickCostTracker("first", TickCostAttribution.getTypeIds(), testConfig, reporter, clock);
+        TypeTickCostTracker second = new TypeTickCostTracker("second", TickCostAttribution.getTypeIds(), testConfig, reporter, clock);
+        first.update();
+        second.update();
+
+        // both threads have their tracker active at the same time, and each ticks its own type.
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Thread other = new Thread(() -> {
+            try {
+                TickCostAttribution.begin(second);
+                barrier.await();
+                TickCostAttribution.record("second-type", Object::toString, TickCostAttribution.startTiming());
+                barrier.await();
+                TickCostAttribution.end();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        other.start();
+        TickCostAttribution.begin(first);
+        barrier.await();
+        TickCostAttribution.record("first-type", Object::toString, TickCostAttribution.startTiming());
+        barrier.await();
+        TickCostAttribution.end();
+        other.join();
+
+        // nothing is active on this thread any more, so this isn't timed.
+        Assertions.assertEquals(TickCostAttribution.NOT_TIMING, TickCostAttribution.startTiming());
+
+        first.flush();
+        second.flush();
+        Assertions.assertEquals(2, reporter.getTypeTickCosts().size());
+        for (TypeTickCostBlock block : reporter.getTypeTickCosts()) {
+            Assertions.assertArrayEquals(new String[] {block.tickSource + "-type"}, block.typeIds);
+            Assertions.assertArrayEquals(new long[] {1}, block.tickCounts);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package danielgmyers.minecraft.tracker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class WorldCensusTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+
+    private TestClock clock;
+
+    // stands in for a world: its entities, the counts the game keeps for it, and each chunk's scheduled ticks.
+    private static final class World {
+        private final List<Entity> entities = new ArrayList<>();
+        private int tickingBlockEntities = 0;
+        private long loadedChunks = 0;
+        private final List<Long> scheduledBlockTicks = new ArrayList<>();
+        private final List<Long> scheduledFluidTicks = new ArrayList<>();
+    }
+
+    // Like the game's own collections, this keeps going when entities are added while it's being walked.
+    private static <T> Iterable<T> tolerantOf(List<T> list) {
+        return () -> new Iterator<T>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < list.size();
+            }
+
+            @Override
+            public T next() {
+                return list.get(index++);
+            }
+        };
+    }
+
+    private static final class Entity {
+        private final String category;
+        private boolean removed = false;
+
+        private Entity(String category) {
+            this.category = category;
+        }
+    }
+
+    // counts how many entities are classified, and makes each one take a microsecond.
+    private class Source implements WorldCensus.Source<World> {
+        private int classified = 0;
+
+        @Override
+        public Iterable<?> entities(World world) {
+            return tolerantOf(world.entities);
+        }
+
+        @Override
+        public String categoryOf(Object entity) {
+            classified++;
+            clock.forwardNanos(1000);
+            Entity e = (Entity) entity;
+            return e.removed ? null : e.category;
+        }
+
+        @Override
+        public int tickingBlockEntities(World world) {
+            return world.tickingBlockEntities;
+        }
+
+        @Override
+        public long loadedChunks(World world) {
+            return world.loadedChunks;
+        }
+
+        @Override
+        public Iterable<?> scheduledBlockTickLists(World world) {
+            return world.scheduledBlockTicks;
+        }
+
+        @Override
+        public Iterable<?> scheduledFluidTickLists(World world) {
+            return world.scheduledFluidTicks;
+        }
+
+        @Override
+        public long scheduledTickCount(Object tickList) {
+            return (Long) tickList;
+        }
+    }
+
+    @BeforeEach
+    public void setupClock() {
+        // set up the clock so that it's clamped to the beginning of the current minute.
+        Instant startTime = Instant.now().with(ChronoField.NANO_OF_SECOND, 0);
+        LocalDateTime ldt = LocalDateTime.ofInstant(startTime, ZoneId.systemDefault());
+        startTime = startTime.minusSeconds(ldt.getSecond());
+        clock = new TestClock(startTime);
+    }
+
+    @Test
+    public void testSpreadsEachPassAcrossTicks() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setWorldCensusBudgetPerTick(10);
+        WorldCensus census = new WorldCensus(TICK_SOURCE, config, reporter, clock, clock);
+        Source source = new Source();
+
+        World world = new World();
+        for (int i = 0; i < 35; i++) {
+            world.entities.add(new Entity(i % 5 == 0 ? "monster" : "creature"));
+        }
+        world.tickingBlockEntities = 12;
+        world.loadedChunks = 400;
+        world.scheduledBlockTicks.add(50L);
+        world.scheduledBlockTicks.add(30L);
+        world.scheduledFluidTicks.add(3L);
+
+        // the first tick only starts the pass, and the rest never look at more than the budget.
+        census.update(world, source);
+        Assertions.assertEquals(0, source.classified);
+        // removed before the census gets to it, so it isn't counted; the one added during the pass is, since the
+        // census hasn't got that far yet.
+        world.entities.get(20).removed = true;
+        world.entities.add(new Entity("monster"));
+        for (int i = 0; i < 20 * 60 - 1; i++) {
+            int before = source.classified;
+            census.update(world, source);
+            Assertions.assertTrue(source.classified - before <= 10);
+            clock.forwardMillis(50);
+        }
+        Assertions.assertEquals(36, source.classified);
+        Assertions.assertTrue(reporter.getStatistics().isEmpty());
+
+        // the pass is long done by the time the minute is up, so the next minute starts a new one.
+        clock.forwardMillis(50);
+        world.scheduledBlockTicks.add(1000L);
+        census.update(world, source);
+
+        Assertions.assertEquals(35, reporter.getStatistic(TICK_SOURCE, "entities"));
+        Assertions.assertEquals(7, reporter.getStatistic(TICK_SOURCE, "entities-monster"));
+        Assertions.assertEquals(28, reporter.getStatistic(TICK_SOURCE, "entities-creature"));
+        Assertions.assertEquals(12, reporter.getStatistic(TICK_SOURCE, "ticking-block-entities"));
+        Assertions.assertEquals(400, reporter.getStatistic(TICK_SOURCE, "loaded-chunks"));
+        Assertions.assertEquals(80, reporter.getStatistic(TICK_SOURCE, "scheduled-block-ticks"));
+        Assertions.assertEquals(3, reporter.getStatistic(TICK_SOURCE, "scheduled-fluid-ticks"));
+        // 36 entities at a microsecond each, over 1200 ticks, and at most ten of them in any one tick.
+        Assertions.assertEquals(36 * 0.001 / 1200, reporter.getStatistic(TICK_SOURCE, "census-time-avg"), 0.000001);
+        Assertions.assertEquals(0.01, reporter.getStatistic(TICK_SOURCE, "census-time-max"), 0.000001);
+    }
+
+    @Test
+    public void testKeepsReportingTheLastPassUntilTheNextOneIsDone() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setWorldCensusBudgetPerTick(1);
+        WorldCensus census = new WorldCensus(TICK_SOURCE, config, reporter, clock, clock);
+        Source source = new Source();
+
+        // 1500 entities at one per tick takes longer than a minute.
+        World world = new World();
+        for (int i = 0; i < 1500; i++) {
+            world.entities.add(new Entity("monster"));
+        }
+        for (int i = 0; i < 20 * 60; i++) {
+            census.update(world, source);
+            clock.forwardMillis(50);
+        }
+        census.update(world, source);
+        Assertions.assertEquals(0, count(reporter, "entities"));
+        Assertions.assertEquals(1, count(reporter, "census-time-avg"));
+
+        reporter.getStatistics().clear();
+        for (int i = 0; i < 20 * 60; i++) {
+            clock.forwardMillis(50);
+            census.update(world, source);
+        }
+        Assertions.assertEquals(1500, reporter.getStatistic(TICK_SOURCE, "entities"));
+
+        // the next pass doesn't finish within the third minute either, so that still reports the last one.
+        reporter.getStatistics().clear();
+        // the pass in progress has already counted these, so only the one after it sees them gone.
+        for (Entity entity : world.entities.subList(0, 100)) {
+            entity.removed = true;
+        }
+        for (int i = 0; i < 20 * 60; i++) {
+            clock.forwardMillis(50);
+            census.update(world, source);
+        }
+        Assertions.assertEquals(1500, reporter.getStatistic(TICK_SOURCE, "entities"));
+
+        reporter.getStatistics().clear();
+        for (int i = 0; i < 20 * 60; i++) {
+            clock.forwardMillis(50);
+            census.update(world, source);
+        }
+        Assertions.assertEquals(1400, reporter.getStatistic(TICK_SOURCE, "entities"));
+    }
+
+    @Test
+    public void testSumsCoalescedWorldsAndForgetsIdleOnes() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        WorldCensus census = new WorldCensus(TICK_SOURCE, config, reporter, clock, clock);
+        Source source = new Source();
+
+        World first = new World();
+        World second = new World();
+        for (int i = 0; i < 10; i++) {
+            first.entities.add(new Entity("monster"));
+        }
+        for (int i = 0; i < 5; i++) {
+            second.entities.add(new Entity("creature"));
+        }
+        first.scheduledBlockTicks.add(7L);
+        second.scheduledBlockTicks.add(4L);
+
+        // both worlds tick for the first minute, then only the first one does.
+        for (int i = 0; i < 20 * 60 * 2; i++) {
+            census.update(first, source);
+            if (i < 20 * 60) {
+                census.update(second, source);
+            }
+            clock.forwardMillis(50);
+        }
+        Assertions.assertEquals(15, reporter.getStatistic(TICK_SOURCE, "entities"));
+        Assertions.assertEquals(10, reporter.getStatistic(TICK_SOURCE, "entities-monster"));
+        Assertions.assertEquals(5, reporter.getStatistic(TICK_SOURCE, "entities-creature"));
+        Assertions.assertEquals(11, reporter.getStatistic(TICK_SOURCE, "scheduled-block-ticks"));
+
+        // the second world didn't tick at all during the second minute, so it's left out from then on.
+        reporter.getStatistics().clear();
+        census.update(first, source);
+        Assertions.assertEquals(10, reporter.getStatistic(TICK_SOURCE, "entities"));
+        Assertions.assertEquals(0, reporter.getStatistic(TICK_SOURCE, "entities-creature"));
+        Assertions.assertEquals(7, reporter.getStatistic(TICK_SOURCE, "scheduled-block-ticks"));
+    }
+
+    @Test
+    public void testReportsEachConfiguredWindow() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setReportingWindows("10,60");
+        WorldCensus census = new WorldCensus(TICK_SOURCE, config, reporter, clock, clock);
+        Source source = new Source();
+
+        World world = new World();
+        world.entities.add(new Entity("monster"));
+        for (int i = 0; i < 20 * 60; i++) {
+            census.update(world, source);
+            clock.forwardMillis(50);
+        }
+        census.update(world, source);
+
+        List<StatisticBlock> entities = new ArrayList<>();
+        for (StatisticBlock block : reporter.getStatistics()) {
+            if (block.name.equals("entities")) {
+                entities.add(block);
+            }
+        }
+        // six 10-second windows and one minute, all reporting the pass that finished in the first second.
+        Assertions.assertEquals(7, entities.size());
+        Assertions.assertEquals(6, entities.stream().filter(block -> block.window.getLengthSeconds() == 10).count());
+        Assertions.assertEquals(1, entities.stream().filter(block -> block.window == ReportingWindow.MINUTE).count());
+        Assertions.assertTrue(entities.stream().allMatch(block -> block.value == 1));
+    }
+
+    @Test
+    public void testGivesUpOnAPassWhenTheWorldChangesUnderIt() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setWorldCensusBudgetPerTick(1);
+        WorldCensus census = new WorldCensus(TICK_SOURCE, config, reporter, clock, clock);
+
+        World world = new World();
+        world.entities.add(new Entity("monster"));
+        world.entities.add(new Entity("monster"));
+        // the first pass walks a list that fails fast, like most of the JDK's.
+        Source failFast = new Source() {
+            @Override
+            public Iterable<?> entities(World w) {
+                return w.entities;
+            }
+        };
+        census.update(world, failFast);
+        census.update(world, failFast);
+        world.entities.add(new Entity("monster"));
+        census.update(world, failFast);
+        for (int i = 0; i < 20 * 60; i++) {
+            clock.forwardMillis(50);
+            census.update(world, failFast);
+        }
+        // the pass was given up, so there's nothing to report yet, but the next one starts on schedule.
+        Assertions.assertEquals(0, count(reporter, "entities"));
+        Assertions.assertEquals(1, count(reporter, "census-time-avg"));
+
+        reporter.getStatistics().clear();
+        for (int i = 0; i < 20 * 60; i++) {
+            clock.forwardMillis(50);
+            census.update(world, failFast);
+        }
+        Assertions.assertEquals(3, reporter.getStatistic(TICK_SOURCE, "entities"));
+    }
+
+    @Test
+    public void testGivesUpOnAPassWhenTheIteratorBreaks() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setWorldCensusBudgetPerTick(1);
+        WorldCensus census = new WorldCensus(TICK_SOURCE, config, reporter, clock, clock);
+
+        World world = new World();
+        for (int i = 0; i < 3; i++) {
+            world.entities.add(new Entity("monster"));
+        }
+        // like fastutil's iterators, this doesn't notice that the collection shrank until it runs off the end.
+        Source unchecked = new Source() {
+            @Override
+            public Iterable<?> entities(World w) {
+                int size = w.entities.size();
+                Iterable<Entity> entities = () -> new Iterator<Entity>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @Override
+                    public Entity next() {
+                        return w.entities.get(index++);
+                    }
+                };
+                return entities;
+            }
+        };
+        census.update(world, unchecked);
+        census.update(world, unchecked);
+        world.entities.remove(2);
+        world.entities.remove(1);
+        for (int i = 0; i < 20 * 60; i++) {
+            clock.forwardMillis(50);
+            census.update(world, unchecked);
+        }
+        Assertions.assertEquals(0, count(reporter, "entities"));
+
+        for (int i = 0; i < 20 * 60; i++) {
+            clock.forwardMillis(50);
+            census.update(world, unchecked);
+        }
+        Assertions.assertEquals(1, reporter.getStatistic(TICK_SOURCE, "entities"));
+    }
+
+    @Test
+    public void testReportsARemovedWindowsPartialData() {
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        StaticConfig config = StaticConfig.create();
+        config.setReportingWindows("10,60");
+        WorldCensus census = new WorldCensus(TICK_SOURCE, config, reporter, clock, clock);
+        Source source = new Source();
+
+        World world = new World();
+        world.entities.add(new Entity("monster"));
+        for (int i = 0; i < 20 * 5; i++) {
+            census.update(world, source);
+            clock.forwardMillis(50);
+        }
+        config.setReportingWindows("10");
+        for (int i = 0; i < 20 * 5; i++) {
+            census.update(world, source);
+            clock.forwardMillis(50);
+        }
+        census.update(world, source);
+
+        // the minute ended early, when the 10-second window noticed the change.
+        List<StatisticBlock> costs = new ArrayList<>();
+        for (StatisticBlock block : reporter.getStatistics()) {
+            if (block.name.equals("census-time-avg")) {
+                costs.add(block);
+            }
+        }
+        Assertions.assertEquals(2, costs.size());
+        Assertions.assertEquals(1, costs.stream().filter(block -> block.window == ReportingWindow.MINUTE).count());
+    }
+
+    private static long count(InMemoryStatsReporter reporter, String name) {
+        return reporter.getStatistics().stream().filter(block -> block.name.equals(name)).count();
+    }
+}
@@ -0,0 +1,220 @@
+package danielgmyers.minecraft.tracker;
+
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.config.DimensionCoalescingRules;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class WorldTrackerCacheTest {
+
+    // stands in for a world's registry key: identity equality, and a name that's only built on request.
+    private static final class Key {
+        private final String name;
+        private final AtomicInteger nameLookups = new AtomicInteger();
+
+        private Key(String name) {
+            this.name = name;
+        }
+
+        private String name() {
+            nameLookups.incrementAndGet();
+            return name;
+        }
+    }
+
+    @Test
+    public void testDefaultRulesCoalesceVaultDimensions() {
+        DimensionCoalescingRules rules = DimensionCoalescingRules.parse(Config.DIMENSION_COALESCING_RULES_DEFAULT);
+        Assertions.assertEquals("the_vault:vault", rules.apply("the_vault:vault_1f2e3d"));
+        Assertions.assertEquals("the_vault:arena", rules.apply("the_vault:arena_7"));
+        Assertions.assertEquals("the_vault:the_other_side", rules.apply("the_vault:the_other_side_abc"));
+        Assertions.assertEquals("the_vault:vault", rules.apply("the_vault:vault"));
+        Assertions.assertEquals("minecraft:overworld", rules.apply("minecraft:overworld"));
+    }
+
+    @Test
+    public void testRulePatterns() {
+        DimensionCoalescingRules rules = DimensionCoalescingRules.parse(
+                " mymod:*_instance_*=mymod:instances , bogus, =empty, other:dim.1=other:renamed, *:temp=temp");
+        Assertions.assertEquals("mymod:instances", rules.apply("mymod:dungeon_instance_4"));
+        Assertions.assertEquals("mymod:dungeon", rules.apply("mymod:dungeon"));
+        // everything other than '*' is matched literally.
+        Assertions.assertEquals("other:renamed", rules.apply("other:dim.1"));
+        Assertions.assertEquals("other:dimx1", rules.apply("other:dimx1"));
+        Assertions.assertEquals("temp", rules.apply("anything:temp"));
+
+        Assertions.assertSame(DimensionCoalescingRules.NONE, DimensionCoalescingRules.parse(""));
+        Assertions.assertEquals("the_vault:vault_1", DimensionCoalescingRules.NONE.apply("the_vault:vault_1"));
+    }
+
+    @Test
+    public void testResolvesEachKeyOnce() {
+        TestClock clock = new TestClock(Instant.ofEpochSecond(1_650_000_000L));
+        StaticConfig config = StaticConfig.create();
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        AtomicInteger created = new AtomicInteger();
+        WorldTrackerCache<Key> cache = new WorldTrackerCache<>(config, reporter, clock,
+                tickSource -> {
+                    created.incrementAndGet();
+                    return WorldTrackers.create(tickSource, config, reporter, clock, null);
+                });
+
+        Key overworld = new Key("minecraft:overworld");
+        Key vault1 = new Key("the_vault:vault_1");
+        Key vault2 = new Key("the_vault:vault_2");
+
+        WorldTrackers overworldTrackers = cache.get(overworld, Key::name);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertSame(overworldTrackers, cache.get(overworld, Key::name));
+        }
+        Assertions.assertEquals(1, overworld.nameLookups.get());
+        Assertions.assertEquals("minecraft:overworld", overworldTrackers.getTickSource());
+        Assertions.assertNull(overworldTrackers.getTypeTickCostTracker());
+
+        WorldTrackers vaultTrackers = cache.get(vault1, Key::name);
+        Assertions.assertEquals("the_vault:vault", vaultTrackers.getTickSource());
+        Assertions.assertSame(vaultTrackers, cache.get(vault2, Key::name));
+
+        Assertions.assertEquals(2, created.get());
+        Assertions.assertEquals(2, cache.getAll().size());
+    }
+
+    @Test
+    public void testUnloadFlushesAndDiscardsTrackers() {
+        TestClock clock = new TestClock(Instant.ofEpochSecond(1_650_000_000L));
+        StaticConfig config = StaticConfig.create();
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        WorldTrackerCache<Key> cache = new WorldTrackerCache<>(config, reporter, clock,
+                tickSource -> WorldTrackers.create(tickSource, config, reporter, clock, null));
+
+        Key overworld = new Key("minecraft:overworld");
+        Key vault1 = new Key("the_vault:vault_1");
+        Key vault2 = new Key("the_vault:vault_2");
+        Assertions.assertNull(cache.getIfPresent(overworld));
+        // ten seconds of 20 ticks each, well short of a full reporting window.
+        for (int i = 0; i < 200; i++) {
+            for (Key key : new Key[] {overworld, vault1, vault2}) {
+                WorldTrackers trackers = cache.get(key, Key::name);
+                trackers.getTickStatsTracker().startTick();
+                trackers.getTickStatsTracker().endTick();
+                trackers.getPlayerCountTracker().update(1);
+            }
+            clock.forward(Duration.ofMillis(50));
+        }
+        Assertions.assertTrue(reporter.getTickStats().isEmpty());
+        Assertions.assertSame(cache.get(overworld, Key::name), cache.getIfPresent(overworld));
+
+        // the other vault still shares the trackers, so they stay.
+        cache.unload(vault1);
+        Assertions.assertEquals(2, cache.getAll().size());
+        Assertions.assertTrue(reporter.getTickStats().isEmpty());
+
+        cache.unload(vault2);
+        Assertions.assertNull(cache.getIfPresent(vault2));
+        Assertions.assertEquals(1, cache.getAll().size());
+        Assertions.assertEquals(1, reporter.getTickStats().size());
+        TickStatsBlock tickStats = reporter.getTickStats().get(0);
+        Assertions.assertEquals("the_vault:vault", tickStats.tickSource);
+        Assertions.assertEquals(10, tickStats.secondsWithData);
+        // two vaults' worth of ticks went to the same tracker.
+        Assertions.assertEquals(400, tickStats.totalTickCount);
+        Assertions.assertEquals(1, reporter.getPlayerCounts().size());
+        Assertions.assertEquals("the_vault:vault", reporter.getPlayerCounts().get(0).tickSource);
+
+        // a new vault gets a fresh set of trackers.
+        Key vault3 = new Key("the_vault:vault_3");
+        Assertions.assertEquals("the_vault:vault", cache.get(vault3, Key::name).getTickSource());
+        Assertions.assertEquals(2, cache.getAll().size());
+    }
+
+    @Test
+    public void testCloseAllFlushesAndDiscardsTrackers() {
+        TestClock clock = new TestClock(Instant.ofEpochSecond(1_650_000_000L));
+        StaticConfig config = StaticConfig.create();
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        WorldTrackerCache<Key> cache = new WorldTrackerCache<>(config, reporter, clock,
+                tickSource -> WorldTrackers.create(tickSource, config, reporter, clock, null));
+
+        Key overworld = new Key("minecraft:overworld");
+        Key nether = new Key("minecraft:the_nether");
+        for (int i = 0; i < 200; i++) {
+            for (Key key : new Key[] {overworld, nether}) {
+                WorldTrackers trackers = cache.get(key, Key::name);
+                trackers.getTickStatsTracker().startTick();
+                trackers.getTickStatsTracker().endTick();
+            }
+            clock.forward(Duration.ofMillis(50));
+        }
+        Assertions.assertTrue(reporter.getTickStats().isEmpty());
+
+        cache.closeAll();
+        Assertions.assertTrue(cache.getAll().isEmpty());
+        Assertions.assertNull(cache.getIfPresent(overworld));
+        Assertions.assertEquals(2, reporter.getTickStats().size());
+        Assertions.assertEquals(10, reporter.getTickStats().get(0).secondsWithData);
+    }
+
+    @Test
+    public void testIdleTrackersExpire() {
+        TestClock clock = new TestClock(Instant.ofEpochSecond(1_650_000_000L));
+        StaticConfig config = StaticConfig.create();
+        config.setWorldTrackerIdleExpirySeconds(120);
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        WorldTrackerCache<Key> cache = new WorldTrackerCache<>(config, reporter, clock,
+                tickSource -> WorldTrackers.create(tickSource, config, reporter, clock, null));
+
+        Key overworld = new Key("minecraft:overworld");
+        Key temporary = new Key("mymod:instance_1");
+        // both dimensions tick for a few seconds, then only the overworld keeps going.
+        for (int i = 0; i < 20 * 60 * 5; i++) {
+            for (Key key : i < 100 ? new Key[] {overworld, temporary} : new Key[] {overworld}) {
+                WorldTrackers trackers = cache.get(key, Key::name);
+                trackers.getTickStatsTracker().startTick();
+                trackers.getTickStatsTracker().endTick();
+            }
+            cache.update();
+            clock.forward(Duration.ofMillis(50));
+        }
+
+        Assertions.assertEquals(1, cache.getAll().size());
+        Assertions.assertEquals("minecraft:overworld", cache.getAll().iterator().next().getTickSource());
+        // the temporary dimension's last few seconds were reported when it was discarded.
+        Assertions.assertEquals(1, reporter.getTickStats().stream()
+                .filter(block -> block.tickSource.equals("mymod:instance_1")).count());
+
+        List<StatisticBlock> liveCounts = reporter.getStatistics().stream()
+                .filter(block -> block.name.equals("live-world-trackers")).collect(Collectors.toList());
+        Assertions.assertEquals(4, liveCounts.size());
+        Assertions.assertEquals(2.0, liveCounts.get(0).value);
+        Assertions.assertEquals(1.0, liveCounts.get(liveCounts.size() - 1).value);
+        Assertions.assertEquals(WorldTrackerCache.TRACKER_SELF_SOURCE, liveCounts.get(0).tickSource);
+        Assertions.assertEquals(1.0, reporter.getStatistics().stream()
+                .filter(block -> block.name.equals("discarded-world-trackers"))
+                .mapToDouble(block -> block.value).sum());
+    }
+
+    @Test
+    public void testConcurrentTrackersLeaveOutSingleThreadedTrackers() {
+        TestClock clock = new TestClock(Instant.ofEpochSecond(1_650_000_000L));
+        StaticConfig config = StaticConfig.create();
+        config.setTickCostTrackingEnabled(true);
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+
+        WorldTrackers trackers = WorldTrackers.create("minecraft:overworld", config, reporter, clock, null);
+        Assertions.assertNotNull(trackers.getTypeTickCostTracker());
+        Assertions.assertFalse(trackers.getTickStatsTracker() instanceof ConcurrentTickStatsTracker);
+
+        config.setConcurrentWorldTrackersEnabled(true);
+        trackers = WorldTrackers.create("minecraft:overworld", config, reporter, clock, null);
+        Assertions.assertNull(trackers.getTypeTickCostTracker());
+        Assertions.assertNull(trackers.getChunkActivityTracker());
+        Assertions.assertNull(trackers.getCensus());
+        Assertions.assertTrue(trackers.getTickStatsTracker() instanceof ConcurrentTickStatsTracker);
+    }
+}
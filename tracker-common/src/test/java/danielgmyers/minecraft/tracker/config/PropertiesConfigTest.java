@@ -0,0 +1,106 @@
+package danielgmyers.minecraft.tracker.config;
+
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class PropertiesConfigTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSnapshotParsesValuesOnce() throws IOException {
+        Path file = write("reporter-type = statsd, prometheus\n"
+                          + "reporting-windows = 10,60\n"
+                          + "stall-watchdog-threshold-millis = 250\n"
+                          + "tick-cost-top-n = lots\n"
+                          + "profiler-enabled = TRUE\n");
+        PropertiesConfig config = PropertiesConfig.create(file);
+
+        Assertions.assertTrue(config.isEnabled());
+        Assertions.assertEquals(Arrays.asList(ReporterType.STATSD, ReporterType.PROMETHEUS), config.getReporterTypes());
+        Assertions.assertEquals(Arrays.asList(ReportingWindow.ofSeconds(10), ReportingWindow.MINUTE),
+                                config.getReportingWindows());
+        Assertions.assertEquals(250, config.getStallWatchdogThresholdMillis());
+        // an invalid number falls back to the default, and anything missing gets the default too.
+        Assertions.assertEquals(Config.TICK_COST_TOP_N_DEFAULT, config.getTickCostTopN());
+        Assertions.assertEquals(Config.STATSD_PORT_DEFAULT, config.getStatsdPort());
+        Assertions.assertTrue(config.isProfilerEnabled());
+
+        // the structured settings are the same objects every time, rather than being parsed again.
+        Assertions.assertSame(config.getReporterTypes(), config.getReporterTypes());
+        Assertions.assertSame(config.getReportingWindows(), config.getReportingWindows());
+        Assertions.assertSame(config.getDimensionCoalescingRules(), config.getDimensionCoalescingRules());
+    }
+
+    @Test
+    public void testReloadSwapsSnapshotAndNotifiesListeners() throws IOException {
+        Path file = write("reporter-type = application_log\nreporting-windows = 60\n");
+        PropertiesConfig config = PropertiesConfig.create(file);
+        List<ConfigSnapshot> reloads = new CopyOnWriteArrayList<>();
+        config.addReloadListener(reloads::add);
+        ConfigSnapshot original = config.getSnapshot();
+
+        // nothing changed, so nothing happens.
+        Assertions.assertFalse(config.reload());
+        Assertions.assertSame(original, config.getSnapshot());
+
+        write("reporter-type = none\nreporting-windows = 10\n");
+        Assertions.assertTrue(config.reload());
+        Assertions.assertFalse(config.isEnabled());
+        Assertions.assertEquals(Arrays.asList(ReportingWindow.ofSeconds(10)), config.getReportingWindows());
+        Assertions.assertEquals(1, reloads.size());
+        Assertions.assertSame(config.getSnapshot(), reloads.get(0));
+        // the old snapshot is untouched, for anyone still holding it.
+        Assertions.assertTrue(original.isEnabled());
+
+        // a file that can't be read leaves the current config in place.
+        Files.delete(file);
+        Assertions.assertFalse(config.reload());
+        Assertions.assertEquals(Arrays.asList(ReportingWindow.ofSeconds(10)), config.getReportingWindows());
+    }
+
+    @Test
+    public void testWatcherReloadsChangedFile() throws Exception {
+        Path file = write("stall-watchdog-threshold-millis = 500\n");
+        PropertiesConfig config = PropertiesConfig.create(file);
+        config.startWatching();
+        try {
+            write("stall-watchdog-threshold-millis = 900\n");
+            // some platforms poll for file changes every few seconds rather than being told about them.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (config.getStallWatchdogThresholdMillis() != 900 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            Assertions.assertEquals(900, config.getStallWatchdogThresholdMillis());
+        } finally {
+            config.stopWatching();
+        }
+    }
+
+    @Test
+    public void testMissingFileGetsDefaults() {
+        Path file = directory.resolve("tracker.properties");
+        PropertiesConfig config = PropertiesConfig.create(file);
+
+        Assertions.assertTrue(Files.exists(file));
+        Assertions.assertEquals(Config.REPORTER_TYPE_DEFAULT, config.getReporterType());
+        Assertions.assertEquals(ReportingWindow.parseList(Config.REPORTING_WINDOWS_DEFAULT), config.getReportingWindows());
+        Assertions.assertFalse(config.reload());
+    }
+
+    private Path write(String contents) throws IOException {
+        return Files.write(directory.resolve("tracker.properties"), contents.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,107 @@
+package danielgmyers.minecraft.tracker.diagnostics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class StackTrieTest {
+
+    @Test
+    public void testCollapsedOutput() throws Exception {
+        StackTrie trie = new StackTrie(1000);
+        trie.addSample(stack("Server.tick", "Level.tick", "Entity.tick"));
+        trie.addSample(stack("Server.tick", "Level.tick", "Entity.tick"));
+        trie.addSample(stack("Server.tick", "Level.tick"));
+        trie.addSample(stack("Server.tick", "Chunks.save"));
+
+        Assertions.assertEquals(4, trie.getTotalSamples());
+        Assertions.assertEquals(0, trie.getTruncatedSamples());
+        // root + Server.tick + Level.tick + Entity.tick + Chunks.save
+        Assertions.assertEquals(5, trie.getNodeCount());
+
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("Server.tick;Level.tick;Entity.tick 2",
+                                                            "Server.tick;Level.tick 1",
+                                                            "Server.tick;Chunks.save 1")),
+                                collapsedLines(trie));
+    }
+
+    @Test
+    public void testDifferentLinesOfTheSameMethodMerge() throws Exception {
+        StackTrie trie = new StackTrie(1000);
+        trie.addSample(new StackTraceElement[] {new StackTraceElement("Server", "tick", "Server.java", 10)});
+        trie.addSample(new StackTraceElement[] {new StackTraceElement("Server", "tick", "Server.java", 20)});
+
+        Assertions.assertEquals(2, trie.getNodeCount());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("Server.tick 2")), collapsedLines(trie));
+    }
+
+    @Test
+    public void testElementCacheIsBounded() throws Exception {
+        StackTrie trie = new StackTrie(100);
+        // one method sampled at many different lines, which would otherwise add a cache entry per line.
+        for (int line = 0; line < 10_000; line++) {
+            trie.addSample(new StackTraceElement[] {new StackTraceElement("Server", "tick", "Server.java", line)});
+            Assertions.assertTrue(trie.getCachedElementCount() <= 100);
+        }
+        Assertions.assertEquals(2, trie.getNodeCount());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("Server.tick 10000")), collapsedLines(trie));
+    }
+
+    @Test
+    public void testNodeCapTruncatesSamples() throws Exception {
+        StackTrie trie = new StackTrie(3);
+        trie.addSample(stack("Server.tick", "Level.tick"));
+        trie.addSample(stack("Server.tick", "Level.tick", "Entity.tick"));
+        trie.addSample(stack("Server.tick", "Chunks.save"));
+
+        Assertions.assertEquals(3, trie.getNodeCount());
+        Assertions.assertEquals(2, trie.getTruncatedSamples());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("Server.tick;Level.tick 2", "Server.tick 1")),
+                                collapsedLines(trie));
+    }
+
+    @Test
+    public void testClearAndGrow() throws Exception {
+        StackTrie trie = new StackTrie(100000);
+        for (int i = 0; i < 5000; i++) {
+            trie.addSample(stack("Server.tick", "Method" + i + ".run"));
+        }
+        // root + Server.tick + one node per method
+        Assertions.assertEquals(5002, trie.getNodeCount());
+        Assertions.assertEquals(5000, collapsedLines(trie).size());
+
+        trie.clear();
+        Assertions.assertEquals(1, trie.getNodeCount());
+        Assertions.assertEquals(0, trie.getTotalSamples());
+        Assertions.assertTrue(collapsedLines(trie).isEmpty());
+
+        trie.addSample(stack("Server.tick", "Method7.run"));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("Server.tick;Method7.run 1")), collapsedLines(trie));
+    }
+
+    private static Set<String> collapsedLines(StackTrie trie) throws Exception {
+        StringBuilder out = new StringBuilder();
+        trie.writeCollapsed(out);
+        Set<String> lines = new HashSet<>();
+        for (String line : out.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    // frames are given outermost first, which is the opposite of how the JVM orders them.
+    private static StackTraceElement[] stack(String... frames) {
+        StackTraceElement[] stack = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            String frame = frames[frames.length - 1 - i];
+            int dot = frame.lastIndexOf('.');
+            stack[i] = new StackTraceElement(frame.substring(0, dot), frame.substring(dot + 1), null, -1);
+        }
+        return stack;
+    }
+}
@@ -0,0 +1,88 @@
+package danielgmyers.minecraft.tracker.diagnostics;
+
+import danielgmyers.minecraft.tracker.InMemoryStatsReporter;
+import danielgmyers.minecraft.tracker.StaticConfig;
+import danielgmyers.minecraft.tracker.TickStatsTracker;
+import danielgmyers.minecraft.tracker.config.Config;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+
+public class StallWatchdogTest {
+
+    @TempDir
+    Path logDirectory;
+
+    @Test
+    public void testStallIsCapturedWhileTickIsRunning() throws Exception {
+        StaticConfig config = StaticConfig.create();
+        config.setStallWatchdogThresholdMillis(50);
+        config.setStallWatchdogSampleIntervalMillis(5);
+
+        TickStatsTracker tracker = new TickStatsTracker("server", config, new InMemoryStatsReporter(), Clock.systemUTC());
+        StallWatchdog watchdog = new StallWatchdog(tracker, config, logDirectory, Clock.systemUTC());
+        watchdog.start();
+        try {
+            // a couple of fast ticks shouldn't be reported.
+            tracker.startTick();
+            tracker.endTick();
+            tracker.startTick();
+            tracker.endTick();
+
+            tracker.startTick();
+            slowTickBody();
+            tracker.endTick();
+
+            String report = waitForReport(logDirectory.resolve(Config.STALL_WATCHDOG_FILE_DEFAULT));
+            Assertions.assertTrue(report.contains("Stall on source 'server'"), report);
+            Assertions.assertTrue(report.contains("slowTickBody"), report);
+            // only the one slow tick should have been written.
+            Assertions.assertEquals(report.indexOf("==="), report.lastIndexOf("==="), report);
+        } finally {
+            watchdog.stop();
+        }
+    }
+
+    @Test
+    public void testStallsAreWrittenToTheConfiguredFile() throws Exception {
+        StaticConfig config = StaticConfig.create();
+        config.setStallWatchdogThresholdMillis(50);
+        config.setStallWatchdogSampleIntervalMillis(5);
+        config.setStallWatchdogFile("stalls/server.log");
+
+        TickStatsTracker tracker = new TickStatsTracker("server", config, new InMemoryStatsReporter(), Clock.systemUTC());
+        StallWatchdog watchdog = new StallWatchdog(tracker, config, logDirectory, Clock.systemUTC());
+        watchdog.start();
+        try {
+            tracker.startTick();
+            slowTickBody();
+            tracker.endTick();
+
+            String report = waitForReport(logDirectory.resolve("stalls").resolve("server.log"));
+            Assertions.assertTrue(report.contains("Stall on source 'server'"), report);
+            Assertions.assertFalse(Files.exists(logDirectory.resolve(Config.STALL_WATCHDOG_FILE_DEFAULT)));
+        } finally {
+            watchdog.stop();
+        }
+    }
+
+    private static String waitForReport(Path stallLog) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        // the watchdog creates the file before it writes the report, so wait for there to be something in it.
+        while ((!Files.exists(stallLog) || Files.size(stallLog) == 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assertions.assertTrue(Files.exists(stallLog));
+        return new String(Files.readAllBytes(stallLog), StandardCharsets.UTF_8);
+    }
+
+    private void slowTickBody() throws InterruptedException {
+        Thread.sleep(400);
+    }
+}
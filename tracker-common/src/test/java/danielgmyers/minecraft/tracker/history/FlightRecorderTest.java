@@ -0,0 +1,149 @@
+package danielgmyers.minecraft.tracker.history;
+
+import danielgmyers.minecraft.tracker.StaticConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FlightRecorderTest {
+
+    private static final long START_MILLIS = 1_650_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsEveryTickOfEverySource() throws IOException {
+        StaticConfig config = StaticConfig.create();
+        config.setFlightRecorderMaxBytes(1024 * 1024);
+        FlightRecorder recorder = new FlightRecorder(config, directory.resolve("flight.rec"));
+        recorder.start();
+        FlightLog server = recorder.forSource("server");
+        FlightLog overworld = recorder.forSource("minecraft:overworld");
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            long startMillis = START_MILLIS + i * 50L;
+            // the odd tick that's very slow, or from a clock that went backwards, has to survive the encoding too.
+            long serverNanos = i % 1000 == 999 ? 12_345_678_000L : 1_000_000L + i * 1000;
+            server.record(startMillis, serverNanos);
+            expected.add("server " + startMillis + " " + serverNanos / 1000);
+            if (i % 2 == 0) {
+                long overworldStart = i == 1000 ? startMillis - 5000 : startMillis + 3;
+                overworld.record(overworldStart, 250_000);
+                expected.add("minecraft:overworld " + overworldStart + " 250");
+            }
+            if (i % 500 == 499) {
+                recorder.flush();
+            }
+        }
+        overworld.close();
+        recorder.stop();
+
+        // ticks from different sources can come out in a different order, but each source's are in order.
+        List<String> actual = readAll(recorder.getFile());
+        Assertions.assertEquals(bySource(expected, "server"), bySource(actual, "server"));
+        Assertions.assertEquals(bySource(expected, "minecraft:overworld"), bySource(actual, "minecraft:overworld"));
+        Assertions.assertEquals(expected.size(), actual.size());
+    }
+
+    @Test
+    public void testOldestTicksAreOverwritten() throws IOException {
+        StaticConfig config = StaticConfig.create();
+        // as small as it gets: two chunks
+        config.setFlightRecorderMaxBytes(1);
+        FlightRecorder recorder = new FlightRecorder(config, directory.resolve("flight.rec"));
+        recorder.start();
+        FlightLog server = recorder.forSource("server");
+
+        int tickCount = 100_000;
+        for (int i = 0; i < tickCount; i++) {
+            server.record(START_MILLIS + i * 50L, 5_000_000);
+            if (i % 1000 == 999) {
+                recorder.flush();
+            }
+        }
+        recorder.stop();
+
+        long[] firstAndLast = {Long.MAX_VALUE, 0};
+        long[] count = {0};
+        try (FlightRecordingReader reader = new FlightRecordingReader(recorder.getFile())) {
+            reader.read((source, tickStartTimeMillis, tickMicros) -> {
+                Assertions.assertEquals(5000, tickMicros);
+                firstAndLast[0] = Math.min(firstAndLast[0], tickStartTimeMillis);
+                firstAndLast[1] = tickStartTimeMillis;
+                count[0]++;
+            });
+        }
+        // what's left is at least a chunk's worth of the most recent ticks, with none missing.
+        Assertions.assertTrue(count[0] > FlightRecorder.CHUNK_BYTES / 4, "only " + count[0] + " ticks left");
+        Assertions.assertTrue(count[0] < tickCount);
+        Assertions.assertEquals(START_MILLIS + (tickCount - 1) * 50L, firstAndLast[1]);
+        Assertions.assertEquals(count[0], (firstAndLast[1] - firstAndLast[0]) / 50 + 1);
+    }
+
+    @Test
+    public void testDropsTicksInsteadOfWaiting() throws IOException {
+        StaticConfig config = StaticConfig.create();
+        config.setFlightRecorderMaxBytes(1024 * 1024);
+        FlightRecorder recorder = new FlightRecorder(config, directory.resolve("flight.rec"));
+        recorder.start();
+        FlightLog server = recorder.forSource("server");
+
+        // the recorder's own thread could drain some of these, but not before the ring is full.
+        synchronized (recorder) {
+            for (int i = 0; i < FlightLog.CAPACITY + 100; i++) {
+                server.record(START_MILLIS + i * 50L, 5_000_000);
+            }
+        }
+        Assertions.assertEquals(100, server.getDroppedTicks());
+        recorder.stop();
+        Assertions.assertEquals(FlightLog.CAPACITY, readAll(recorder.getFile()).size());
+    }
+
+    @Test
+    public void testKeepsPreviousRecordings() throws IOException {
+        StaticConfig config = StaticConfig.create();
+        config.setFlightRecorderMaxBytes(1024 * 1024);
+        Path file = directory.resolve("flight.rec");
+        for (int run = 0; run < 5; run++) {
+            FlightRecorder recorder = new FlightRecorder(config, file);
+            recorder.start();
+            recorder.forSource("server").record(START_MILLIS + run, 1_000_000);
+            recorder.stop();
+        }
+
+        Assertions.assertEquals(1, readAll(file).size());
+        Assertions.assertEquals("server " + (START_MILLIS + 3) + " 1000", readAll(directory.resolve("flight.rec.1")).get(0));
+        Assertions.assertEquals("server " + (START_MILLIS + 1) + " 1000", readAll(directory.resolve("flight.rec.3")).get(0));
+        Assertions.assertFalse(Files.exists(directory.resolve("flight.rec.4")));
+        // and the recorder stops recording once it's stopped.
+        Assertions.assertNull(new FlightRecorder(config, file).forSource("server"));
+    }
+
+    private static List<String> readAll(Path file) throws IOException {
+        List<String> ticks = new ArrayList<>();
+        try (FlightRecordingReader reader = new FlightRecordingReader(file)) {
+            reader.read((source, tickStartTimeMillis, tickMicros) -> {
+                ticks.add(source + " " + tickStartTimeMillis + " " + tickMicros);
+            });
+        }
+        return ticks;
+    }
+
+    private static List<String> bySource(List<String> ticks, String source) {
+        List<String> result = new ArrayList<>();
+        for (String tick : ticks) {
+            if (tick.startsWith(source + " ")) {
+                result.add(tick);
+            }
+        }
+        return result;
+    }
+}
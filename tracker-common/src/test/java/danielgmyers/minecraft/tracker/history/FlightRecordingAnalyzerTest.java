@@ -0,0 +1,70 @@
+package danielgmyers.minecraft.tracker.history;
+
+import danielgmyers.minecraft.tracker.StaticConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class FlightRecordingAnalyzerTest {
+
+    private static final long START_MILLIS = 1_650_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSummarizesSourcesAndSpikes() throws IOException {
+        StaticConfig config = StaticConfig.create();
+        config.setFlightRecorderMaxBytes(1024 * 1024);
+        FlightRecorder recorder = new FlightRecorder(config, directory.resolve("flight.rec"));
+        recorder.start();
+        FlightLog server = recorder.forSource("server");
+        FlightLog nether = recorder.forSource("minecraft:the_nether");
+        for (int i = 0; i < 1000; i++) {
+            long startMillis = START_MILLIS + i * 50L;
+            // two slow ticks close together at 10s, and one on its own at 40s
+            boolean slow = i == 200 || i == 206 || i == 800;
+            server.record(startMillis, slow ? 400_000_000 : 10_000_000);
+            nether.record(startMillis, 1_000_000);
+            if (i % 500 == 499) {
+                recorder.flush();
+            }
+        }
+        recorder.stop();
+
+        String output = analyze(recorder.getFile(), 50);
+        Assertions.assertTrue(output.startsWith("Flight recording " + recorder.getFile() + ": 2000 ticks from "
+                                                + "2022-04-15T05:20:00Z to 2022-04-15T05:20:49.950Z."), output);
+        Assertions.assertTrue(output.matches("(?s).*\nminecraft:the_nether +1000 +20\\.02 +1\\.00 .* 0\n.*"), output);
+        Assertions.assertTrue(output.matches("(?s).*\nserver +1000 +20\\.02 +11\\.17 .* 400\\.00 +3\n.*"), output);
+        Assertions.assertTrue(output.contains("counted together): 2\n"), output);
+        Assertions.assertTrue(output.contains("2022-04-15T05:20:10Z  server                2 tick(s) over 0.7 s, "
+                                              + "worst 400.00 ms\n"), output);
+        Assertions.assertTrue(output.contains("2022-04-15T05:20:40Z  server                1 tick(s) over 0.4 s, "
+                                              + "worst 400.00 ms\n"), output);
+
+        Assertions.assertTrue(analyze(recorder.getFile(), 1000).contains("No ticks took 1000 ms or more."));
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("not-a-recording.txt");
+        Files.write(file, new byte[FlightRecorder.HEADER_BYTES]);
+        Assertions.assertThrows(IOException.class, () -> analyze(file, 50));
+    }
+
+    private static String analyze(Path file, long spikeMillis) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bytes, true, "UTF-8")) {
+            FlightRecordingAnalyzer.analyze(file, spikeMillis, out);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,230 @@
+package danielgmyers.minecraft.tracker.history;
+
+import danielgmyers.minecraft.tracker.InMemoryStatsReporter;
+import danielgmyers.minecraft.tracker.PlayerCountTracker;
+import danielgmyers.minecraft.tracker.StaticConfig;
+import danielgmyers.minecraft.tracker.TestClock;
+import danielgmyers.minecraft.tracker.TickStatsTracker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TimeSeriesStoreTest {
+
+    // the start of a minute, so the per-minute buckets line up with the test's minutes.
+    private static final long START_SECOND = 1_650_000_000L / 60 * 60;
+
+    @TempDir
+    Path directory;
+
+    private TestClock clock;
+    private StaticConfig config;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new TestClock(Instant.ofEpochSecond(START_SECOND));
+        config = StaticConfig.create();
+    }
+
+    @Test
+    public void testQueriesRecentSecondsAndOlderMinutes() {
+        TimeSeriesStore store = new TimeSeriesStore(config, directory, clock);
+        SourceHistory history = store.forSource("minecraft:overworld");
+        // two minutes of data: 20 ticks at 5ms in the first, 10 ticks at 50ms in the second.
+        for (long second = 0; second < 120; second++) {
+            long ticks = second < 60 ? 20 : 10;
+            long tickNanos = second < 60 ? 5_000_000 : 50_000_000;
+            history.recordTickSecond(START_SECOND + second, ticks, ticks * tickNanos, tickNanos, tickNanos);
+            history.recordPlayerSecond(START_SECOND + second, second < 60 ? 2 : 4);
+        }
+        clock.forward(Duration.ofSeconds(120));
+
+        List<HistoryBucket> seconds = store.query("minecraft:overworld", Instant.ofEpochSecond(START_SECOND + 58),
+                                                  Instant.ofEpochSecond(START_SECOND + 62), 1);
+        Assertions.assertEquals(4, seconds.size());
+        Assertions.assertEquals(20.0, seconds.get(1).get(TimeSeriesStore.Metric.TICKS_PER_SECOND, TimeSeriesStore.Aggregation.AVG));
+        Assertions.assertEquals(10.0, seconds.get(2).get(TimeSeriesStore.Metric.TICKS_PER_SECOND, TimeSeriesStore.Aggregation.AVG));
+        Assertions.assertEquals(Instant.ofEpochSecond(START_SECOND + 60), seconds.get(2).getStart());
+
+        List<HistoryBucket> minutes = store.query("minecraft:overworld", Instant.ofEpochSecond(START_SECOND),
+                                                  Instant.ofEpochSecond(START_SECOND + 120), 60);
+        Assertions.assertEquals(2, minutes.size());
+        HistoryBucket first = minutes.get(0);
+        Assertions.assertEquals(60, first.getDurationSeconds());
+        Assertions.assertEquals(60, first.getTickSeconds());
+        Assertions.assertEquals(1200, first.getTickCount());
+        Assertions.assertEquals(5.0, first.get(TimeSeriesStore.Metric.MILLIS_PER_TICK, TimeSeriesStore.Aggregation.AVG));
+        Assertions.assertEquals(2.0, first.get(TimeSeriesStore.Metric.PLAYER_COUNT, TimeSeriesStore.Aggregation.MAX));
+
+        HistoryBucket both = store.aggregate("minecraft:overworld", Instant.ofEpochSecond(START_SECOND),
+                                             Instant.ofEpochSecond(START_SECOND + 120));
+        Assertions.assertEquals(15.0, both.get(TimeSeriesStore.Metric.TICKS_PER_SECOND, TimeSeriesStore.Aggregation.AVG));
+        Assertions.assertEquals(10.0, both.get(TimeSeriesStore.Metric.TICKS_PER_SECOND, TimeSeriesStore.Aggregation.MIN));
+        Assertions.assertEquals(50.0, both.get(TimeSeriesStore.Metric.MILLIS_PER_TICK, TimeSeriesStore.Aggregation.MAX));
+        Assertions.assertEquals(3.0, both.get(TimeSeriesStore.Metric.PLAYER_COUNT, TimeSeriesStore.Aggregation.AVG));
+
+        Assertions.assertTrue(store.query("unknown", Instant.ofEpochSecond(START_SECOND),
+                                          Instant.ofEpochSecond(START_SECOND + 120), 1).isEmpty());
+        Assertions.assertTrue(Double.isNaN(store.aggregate("unknown", TimeSeriesStore.Metric.PLAYER_COUNT,
+                                                           TimeSeriesStore.Aggregation.AVG, Instant.ofEpochSecond(0),
+                                                           Instant.ofEpochSecond(START_SECOND))));
+        store.stop();
+    }
+
+    @Test
+    public void testHistorySurvivesReopening() {
+        TimeSeriesStore store = new TimeSeriesStore(config, directory, clock);
+        store.forSource("server").recordPlayerSecond(START_SECOND, 7);
+        // no stop() or flush(): whatever made it into the mapping is there for the next process.
+
+        TimeSeriesStore reopened = new TimeSeriesStore(config, directory, clock);
+        Assertions.assertEquals(7.0, reopened.aggregate("server", TimeSeriesStore.Metric.PLAYER_COUNT,
+                                                        TimeSeriesStore.Aggregation.MAX, Instant.ofEpochSecond(START_SECOND),
+                                                        Instant.ofEpochSecond(START_SECOND + 1)));
+        store.stop();
+        reopened.stop();
+    }
+
+    @Test
+    public void testRingOverwritesOldestBuckets() throws Exception {
+        RingSegment ring = new RingSegment(directory.resolve("small.ring"), 1, 10);
+        for (long second = 0; second < 15; second++) {
+            ring.mergePlayers(START_SECOND + second, second);
+        }
+
+        long[] fields = new long[RingSegment.FIELDS];
+        // seconds 0-4 share slots with 10-14, so they're gone.
+        Assertions.assertFalse(ring.read(START_SECOND + 4, fields));
+        Assertions.assertTrue(ring.read(START_SECOND + 5, fields));
+        Assertions.assertEquals(5, fields[RingSegment.PLAYER_COUNT_SUM]);
+        Assertions.assertTrue(ring.read(START_SECOND + 14, fields));
+        Assertions.assertEquals(14, fields[RingSegment.MAX_PLAYER_COUNT]);
+        ring.close();
+
+        // reopening with a different size starts the ring over rather than misreading it.
+        RingSegment resized = new RingSegment(directory.resolve("small.ring"), 1, 20);
+        Assertions.assertFalse(resized.read(START_SECOND + 14, fields));
+        resized.close();
+    }
+
+    @Test
+    public void testReadersNeverSeeAHalfMergedBucket() throws Exception {
+        RingSegment ring = new RingSegment(directory.resolve("busy.ring"), 60, 10);
+        AtomicBoolean done = new AtomicBoolean();
+        // every second has one player, so a consistent bucket always has as many players as seconds.
+        Thread writer = new Thread(() -> {
+            for (long second = 0; second < 2_000_000; second++) {
+                ring.mergePlayers(START_SECOND + second % 60, 1);
+            }
+            done.set(true);
+        });
+        writer.start();
+        long[] fields = new long[RingSegment.FIELDS];
+        while (!done.get()) {
+            if (ring.read(START_SECOND, fields)) {
+                Assertions.assertEquals(fields[RingSegment.PLAYER_SECONDS], fields[RingSegment.PLAYER_COUNT_SUM]);
+            }
+        }
+        writer.join();
+        Assertions.assertTrue(ring.read(START_SECOND, fields));
+        Assertions.assertEquals(2_000_000, fields[RingSegment.PLAYER_COUNT_SUM]);
+        ring.close();
+    }
+
+    @Test
+    public void testQueriesOnlyLookAtWhatTheRingHolds() {
+        TimeSeriesStore store = new TimeSeriesStore(config, directory, clock);
+        store.forSource("server").recordPlayerSecond(START_SECOND, 7);
+        // decades of seconds, almost all of which the ring can't hold.
+        List<HistoryBucket> buckets = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> store.query(
+                "server", Instant.EPOCH, Instant.ofEpochSecond(START_SECOND * 2), 1));
+        Assertions.assertEquals(1, buckets.size());
+        Assertions.assertEquals(Instant.ofEpochSecond(START_SECOND), buckets.get(0).getStart());
+        store.stop();
+    }
+
+    @Test
+    public void testClosedHistoryDropsRecords() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(config, directory, clock);
+        SourceHistory history = store.forSource("server");
+        history.recordPlayerSecond(START_SECOND, 7);
+        history.close();
+        Assertions.assertFalse(history.isOpen());
+        history.recordPlayerSecond(START_SECOND + 1, 9);
+        history.force();
+        // and it doesn't come back if something tries to open it afterwards.
+        history.open();
+        Assertions.assertFalse(history.isOpen());
+        store.stop();
+    }
+
+    @Test
+    public void testTrackersRecordEachSecond() {
+        TimeSeriesStore store = new TimeSeriesStore(config, directory, clock);
+        InMemoryStatsReporter reporter = new InMemoryStatsReporter();
+        TickStatsTracker tickTracker = new TickStatsTracker("server", config, reporter, clock, clock);
+        PlayerCountTracker playerTracker = new PlayerCountTracker("server", config, reporter, clock);
+        tickTracker.setHistory(store.forSource("server"));
+        playerTracker.setHistory(store.forSource("server"));
+
+        // three seconds of 20 ticks at 10ms each, plus one tick to close out the last second.
+        for (int i = 0; i < 20 * 3 + 1; i++) {
+            tickTracker.startTick();
+            clock.forward(Duration.ofMillis(10));
+            tickTracker.endTick();
+            playerTracker.update(3);
+            clock.forward(Duration.ofMillis(40));
+        }
+
+        HistoryBucket bucket = store.aggregate("server", Instant.ofEpochSecond(START_SECOND),
+                                               Instant.ofEpochSecond(START_SECOND + 3));
+        Assertions.assertEquals(3, bucket.getTickSeconds());
+        Assertions.assertEquals(60, bucket.getTickCount());
+        Assertions.assertEquals(10.0, bucket.get(TimeSeriesStore.Metric.MILLIS_PER_TICK, TimeSeriesStore.Aggregation.AVG));
+        Assertions.assertEquals(3, bucket.getPlayerSeconds());
+        Assertions.assertEquals(3.0, bucket.get(TimeSeriesStore.Metric.PLAYER_COUNT, TimeSeriesStore.Aggregation.MIN));
+        store.stop();
+    }
+
+    @Test
+    public void testSimilarSourcesGetTheirOwnDirectories() {
+        Assertions.assertEquals("minecraft%3Aoverworld", TimeSeriesStore.directoryNameFor("minecraft:overworld"));
+        Assertions.assertNotEquals(TimeSeriesStore.directoryNameFor("mod:dim"), TimeSeriesStore.directoryNameFor("mod_dim"));
+        Assertions.assertNotEquals(TimeSeriesStore.directoryNameFor("Mod_Dim").toLowerCase(),
+                                   TimeSeriesStore.directoryNameFor("mod_dim"));
+        Assertions.assertEquals("%2E.", TimeSeriesStore.directoryNameFor(".."));
+        Assertions.assertEquals("a%25b", TimeSeriesStore.directoryNameFor("a%b"));
+
+        TimeSeriesStore store = new TimeSeriesStore(config, directory, clock);
+        store.forSource("mod:dim").recordPlayerSecond(START_SECOND, 1);
+        store.forSource("mod_dim").recordPlayerSecond(START_SECOND, 9);
+        Assertions.assertEquals(1.0, store.aggregate("mod:dim", TimeSeriesStore.Metric.PLAYER_COUNT,
+                                                     TimeSeriesStore.Aggregation.MAX, Instant.ofEpochSecond(START_SECOND),
+                                                     Instant.ofEpochSecond(START_SECOND + 1)));
+        store.stop();
+    }
+
+    @Test
+    public void testOpensSourcesInTheBackgroundWhileRunning() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(config, directory, clock);
+        store.start();
+        SourceHistory history = store.forSourceInBackground("minecraft:overworld");
+        Assertions.assertSame(history, store.forSourceInBackground("minecraft:overworld"));
+        for (int i = 0; i < 500 && !history.isOpen(); i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(history.isOpen());
+        history.recordPlayerSecond(START_SECOND, 5);
+        Assertions.assertEquals(5.0, store.aggregate("minecraft:overworld", TimeSeriesStore.Metric.PLAYER_COUNT,
+                                                     TimeSeriesStore.Aggregation.MAX, Instant.ofEpochSecond(START_SECOND),
+                                                     Instant.ofEpochSecond(START_SECOND + 1)));
+        store.stop();
+    }
+}
@@ -0,0 +1,254 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import danielgmyers.minecraft.tracker.InMemoryStatsReporter;
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.PlayerCountStatsBlock;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.StatisticBlock;
+import danielgmyers.minecraft.tracker.TickStatsBlock;
+import danielgmyers.minecraft.tracker.TypeTickCostBlock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DispatchingStatsReporterTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+
+    @Test
+    public void testEventsReachEverySink() throws Exception {
+        InMemoryStatsReporter first = new SynchronizedInMemoryStatsReporter();
+        InMemoryStatsReporter second = new SynchronizedInMemoryStatsReporter();
+        Map<String, StatsReporter> sinks = new LinkedHashMap<>();
+        sinks.put("first", first);
+        sinks.put("second", second);
+        DispatchingStatsReporter reporter = new DispatchingStatsReporter(sinks, 16);
+        reporter.start();
+
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        histogram.record(5_000_000);
+        histogram.record(7_000_000);
+        Instant timestamp = Instant.ofEpochMilli(1_000_000);
+        reporter.reportTickStats(TICK_SOURCE, ReportingWindow.MINUTE, timestamp, 60,
+                                 1200, 20, 20, 12_000_000, 5_000_000, 7_000_000, histogram);
+        // the caller reuses its histogram and arrays right away, which must not affect what the sinks see.
+        histogram.clear();
+        String[] typeIds = {"minecraft:zombie", "minecraft:furnace"};
+        long[] tickCounts = {10, 20};
+        long[] totalTickNanos = {300, 200};
+        reporter.reportTickCostsByType(TICK_SOURCE, ReportingWindow.MINUTE, timestamp, 2, typeIds, tickCounts, totalTickNanos);
+        typeIds[0] = "overwritten";
+        reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, timestamp, 60, 120, 1, 3);
+        reporter.reportStatistic(TICK_SOURCE, ReportingWindow.MINUTE, timestamp, "live-world-trackers",
+                                 StatisticUnit.COUNT, 4);
+        reporter.stop();
+
+        for (InMemoryStatsReporter sink : new InMemoryStatsReporter[] {first, second}) {
+            Assertions.assertEquals(1, sink.getTickStats().size());
+            TickStatsBlock block = sink.getTickStats().get(0);
+            Assertions.assertEquals(TICK_SOURCE, block.tickSource);
+            Assertions.assertEquals(timestamp, block.timestamp);
+            Assertions.assertEquals(1200, block.totalTickCount);
+            Assertions.assertEquals(7_000_000, block.maxTickNanos);
+            Assertions.assertEquals(2, block.tickNanosHistogram.getTotalCount());
+
+            Assertions.assertEquals(1, sink.getTypeTickCosts().size());
+            TypeTickCostBlock costs = sink.getTypeTickCosts().get(0);
+            Assertions.assertArrayEquals(new String[] {"minecraft:zombie", "minecraft:furnace"}, costs.typeIds);
+            Assertions.assertArrayEquals(new long[] {300, 200}, costs.totalTickNanos);
+
+            Assertions.assertEquals(1, sink.getPlayerCounts().size());
+            Assertions.assertEquals(120, sink.getPlayerCounts().get(0).playerCountSum);
+
+            Assertions.assertEquals(1, sink.getStatistics().size());
+            Assertions.assertEquals("live-world-trackers", sink.getStatistics().get(0).name);
+            Assertions.assertEquals(StatisticUnit.COUNT, sink.getStatistics().get(0).unit);
+            Assertions.assertEquals(4.0, sink.getStatistics().get(0).value);
+        }
+        Assertions.assertEquals(0, reporter.getDroppedEvents());
+    }
+
+    @Test
+    public void testDropsInsteadOfBlockingWhenFull() {
+        InMemoryStatsReporter sink = new SynchronizedInMemoryStatsReporter();
+        Map<String, StatsReporter> sinks = new LinkedHashMap<>();
+        sinks.put("sink", sink);
+        // not started, so nothing drains the queue.
+        DispatchingStatsReporter reporter = new DispatchingStatsReporter(sinks, 8);
+        for (int i = 0; i < 13; i++) {
+            reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, Instant.EPOCH, 60, i, i, i);
+        }
+        Assertions.assertEquals(5, reporter.getDroppedEvents());
+
+        reporter.start();
+        reporter.stop();
+        Assertions.assertEquals(8, sink.getPlayerCounts().size());
+        // the oldest events are the ones that were kept.
+        Assertions.assertEquals(0, sink.getPlayerCounts().get(0).playerCountSum);
+        Assertions.assertEquals(7, sink.getPlayerCounts().get(7).playerCountSum);
+    }
+
+    @Test
+    public void testReportsDropsSinceLastHealthReport() {
+        Map<String, StatsReporter> sinks = new LinkedHashMap<>();
+        sinks.put("application_log", new SynchronizedInMemoryStatsReporter());
+        // not started, so nothing drains the queue.
+        DispatchingStatsReporter reporter = new DispatchingStatsReporter(sinks, 4);
+        for (int i = 0; i < 6; i++) {
+            reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, Instant.EPOCH, 60, i, i, i);
+        }
+
+        InMemoryStatsReporter destination = new InMemoryStatsReporter();
+        reporter.reportHealth(destination, "tracker-self", ReportingWindow.MINUTE, Instant.EPOCH);
+        reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, Instant.EPOCH, 60, 0, 0, 0);
+        reporter.reportHealth(destination, "tracker-self", ReportingWindow.MINUTE, Instant.EPOCH);
+
+        List<StatisticBlock> statistics = destination.getStatistics();
+        Assertions.assertEquals(4, statistics.size());
+        Assertions.assertEquals("reporter-dropped-reports", statistics.get(0).name);
+        Assertions.assertEquals("tracker-self", statistics.get(0).tickSource);
+        Assertions.assertEquals(2, statistics.get(0).value);
+        Assertions.assertEquals("reporter-application-log-dropped-reports", statistics.get(1).name);
+        Assertions.assertEquals(0, statistics.get(1).value);
+        // only the drop since the first report.
+        Assertions.assertEquals(1, statistics.get(2).value);
+    }
+
+    @Test
+    public void testSlowSinkDoesNotHoldUpOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stuck = new CountDownLatch(1);
+        InMemoryStatsReporter slow = new SynchronizedInMemoryStatsReporter() {
+            @Override
+            public synchronized void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp,
+                                                       long secondsWithData, long playerCountSum,
+                                                       long minPlayerCount, long maxPlayerCount) {
+                stuck.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.reportPlayerCount(tickSource, window, timestamp, secondsWithData,
+                                        playerCountSum, minPlayerCount, maxPlayerCount);
+            }
+        };
+        InMemoryStatsReporter fast = new SynchronizedInMemoryStatsReporter();
+        Map<String, StatsReporter> sinks = new LinkedHashMap<>();
+        sinks.put("slow", slow);
+        sinks.put("fast", fast);
+        DispatchingStatsReporter reporter = new DispatchingStatsReporter(sinks, 4);
+        reporter.start();
+
+        reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, Instant.EPOCH, 60, 0, 0, 0);
+        Assertions.assertTrue(stuck.await(10, TimeUnit.SECONDS));
+
+        // the slow sink is stuck on the first event; keep feeding events slowly enough that the shared queue never fills.
+        int events = 50;
+        for (int i = 1; i < events; i++) {
+            reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, Instant.EPOCH, 60, i, i, i);
+            waitFor(fast, i + 1);
+        }
+        Assertions.assertEquals(events, fast.getPlayerCounts().size());
+        Assertions.assertEquals(0, reporter.getDroppedEvents());
+        Assertions.assertEquals(0, reporter.getDroppedEvents("fast"));
+        // the event the slow sink is stuck on still occupies a slot of its four-slot queue,
+        // so it only kept three more; the rest were dropped.
+        Assertions.assertEquals(events - 4, reporter.getDroppedEvents("slow"));
+
+        release.countDown();
+        reporter.stop();
+        Assertions.assertEquals(4, slow.getPlayerCounts().size());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        InMemoryStatsReporter sink = new SynchronizedInMemoryStatsReporter();
+        Map<String, StatsReporter> sinks = new LinkedHashMap<>();
+        sinks.put("sink", sink);
+        DispatchingStatsReporter reporter = new DispatchingStatsReporter(sinks, 32768);
+        reporter.start();
+
+        int producers = 4;
+        int eventsPerProducer = 5000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final long producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, Instant.EPOCH, 60,
+                                               producer * eventsPerProducer + i, 0, 0);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reporter.stop();
+
+        Assertions.assertEquals(0, reporter.getDroppedEvents());
+        List<PlayerCountStatsBlock> counts = sink.getPlayerCounts();
+        Assertions.assertEquals(producers * eventsPerProducer, counts.size());
+        Set<Long> seen = new HashSet<>();
+        for (PlayerCountStatsBlock block : counts) {
+            Assertions.assertTrue(seen.add(block.playerCountSum), "duplicate event " + block.playerCountSum);
+        }
+    }
+
+    private static void waitFor(InMemoryStatsReporter sink, int playerCounts) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            synchronized (sink) {
+                if (sink.getPlayerCounts().size() >= playerCounts) {
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+        Assertions.fail("timed out waiting for " + playerCounts + " player counts");
+    }
+
+    // The sinks are written by the worker threads and read by the test thread.
+    private static class SynchronizedInMemoryStatsReporter extends InMemoryStatsReporter {
+        @Override
+        public synchronized void reportTickStats(String tickSource, ReportingWindow window, Instant timestamp,
+                                                 long secondsWithData,
+                                                 long totalTickCount, long minTickCount, long maxTickCount,
+                                                 long totalTickNanos, long minTickNanos, long maxTickNanos,
+                                                 LogLinearHistogram tickNanosHistogram) {
+            super.reportTickStats(tickSource, window, timestamp, secondsWithData,
+                                  totalTickCount, minTickCount, maxTickCount,
+                                  totalTickNanos, minTickNanos, maxTickNanos, tickNanosHistogram);
+        }
+
+        @Override
+        public synchronized void reportPlayerCount(String tickSource, ReportingWindow window, Instant timestamp,
+                                                   long secondsWithData,
+                                                   long playerCountSum, long minPlayerCount, long maxPlayerCount) {
+            super.reportPlayerCount(tickSource, window, timestamp, secondsWithData,
+                                    playerCountSum, minPlayerCount, maxPlayerCount);
+        }
+
+        @Override
+        public synchronized void reportTickCostsByType(String tickSource, ReportingWindow window, Instant timestamp,
+                                                       int typeCount,
+                                                       String[] typeIds, long[] tickCounts, long[] totalTickNanos) {
+            super.reportTickCostsByType(tickSource, window, timestamp, typeCount, typeIds, tickCounts, totalTickNanos);
+        }
+
+        @Override
+        public synchronized void reportStatistic(String tickSource, ReportingWindow window, Instant timestamp, String name,
+                                                 StatisticUnit unit, double value) {
+            super.reportStatistic(tickSource, window, timestamp, name, unit, value);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package danielgmyers.minecraft.tracker.reporters;
+
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.config.ConfigSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Properties;
+
+public class ReloadableStatsReporterTest {
+
+    @Test
+    public void testKeepsThePreviousReporterWhenTheNewOneFails() {
+        ConfigSnapshot working = snapshot("STATSD", "8125");
+        ReloadableStatsReporter reporter = new ReloadableStatsReporter(working, Clock.systemUTC());
+        try {
+            StatsReporter original = reporter.getDelegate();
+            Assertions.assertTrue(original instanceof DispatchingStatsReporter);
+
+            // not a valid port, so the new reporter can't be built.
+            reporter.reconfigure(snapshot("STATSD", "70000"));
+            StatsReporter restored = reporter.getDelegate();
+            Assertions.assertNotSame(original, restored);
+            Assertions.assertTrue(restored instanceof DispatchingStatsReporter);
+            reporter.reportStatistic("server", ReportingWindow.MINUTE, Instant.now(), "test", StatisticUnit.COUNT, 1);
+
+            // the same broken settings are tried again on the next reload, and fail the same way.
+            reporter.reconfigure(snapshot("STATSD", "70000"));
+            Assertions.assertTrue(reporter.getDelegate() instanceof DispatchingStatsReporter);
+
+            reporter.reconfigure(snapshot("NONE", "8125"));
+            Assertions.assertFalse(reporter.getDelegate() instanceof DispatchingStatsReporter);
+        } finally {
+            reporter.close();
+        }
+    }
+
+    private static ConfigSnapshot snapshot(String reporterType, String statsdPort) {
+        Properties properties = new Properties();
+        properties.setProperty(Config.REPORTER_TYPE, reporterType);
+        properties.setProperty(Config.STATSD_HOST, "127.0.0.1");
+        properties.setProperty(Config.STATSD_PORT, statsdPort);
+        return ConfigSnapshot.of(properties);
+    }
+}
@@ -0,0 +1,134 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchlogs;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.StaticConfig;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+public class CloudwatchLogsEmfReporterTest {
+
+    private static final Instant TIMESTAMP = Instant.ofEpochMilli(1_650_000_000_000L);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testWritesEmfLines() throws Exception {
+        Path file = tempDir.resolve("logs").resolve("tracker-emf.log");
+        CloudwatchLogsEmfReporter reporter = new CloudwatchLogsEmfReporter(StaticConfig.create(), file);
+
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        histogram.record(40_000_000);
+        histogram.record(60_000_000);
+        reporter.reportTickStats("minecraft:overworld", ReportingWindow.MINUTE, TIMESTAMP, 60,
+                                 1200, 19, 20, 60_000_000_000L, 40_000_000, 60_000_000, histogram);
+        reporter.reportPlayerCount("server", ReportingWindow.ofSeconds(10), TIMESTAMP, 10, 25, 2, 3);
+        reporter.reportTickCostsByType("minecraft:overworld", ReportingWindow.MINUTE, TIMESTAMP, 2,
+                                       new String[] {"minecraft:zombie", "weird\"mod:thing"},
+                                       new long[] {100, 50}, new long[] {3_000_000, 1_500_000});
+
+        // every report is flushed as soon as it's made.
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assertions.assertEquals(4, lines.size());
+
+        String tickStats = lines.get(0);
+        Assertions.assertTrue(tickStats.startsWith("{\"_aws\":{\"Timestamp\":1650000000000,"
+                                                   + "\"CloudWatchMetrics\":[{\"Namespace\":\"minecraft-tracker\","
+                                                   + "\"Dimensions\":[[\"Source\",\"Window\"]],\"Metrics\":["), tickStats);
+        Assertions.assertTrue(tickStats.contains("{\"Name\":\"tick-millis-p99\",\"Unit\":\"Milliseconds\"}"), tickStats);
+        Assertions.assertTrue(tickStats.contains("\"Source\":\"minecraft:overworld\",\"Window\":\"minute\""), tickStats);
+        Assertions.assertTrue(tickStats.contains("\"tick-count-avg\":20.0,"), tickStats);
+        Assertions.assertTrue(tickStats.contains("\"tick-millis-avg\":50.0,"), tickStats);
+        Assertions.assertTrue(tickStats.contains("\"tick-millis-max\":60.0,"), tickStats);
+        Assertions.assertTrue(tickStats.endsWith("}"), tickStats);
+
+        String playerCount = lines.get(1);
+        Assertions.assertTrue(playerCount.contains("\"Source\":\"server\",\"Window\":\"10-second\""), playerCount);
+        Assertions.assertTrue(playerCount.contains("\"player-count-avg\":2.5,"), playerCount);
+        Assertions.assertTrue(playerCount.endsWith("\"player-count-max\":3}"), playerCount);
+
+        Assertions.assertTrue(lines.get(2).contains("\"Dimensions\":[[\"Source\",\"Window\",\"Type\"]]"), lines.get(2));
+        Assertions.assertTrue(lines.get(2).endsWith("\"Type\":\"minecraft:zombie\",\"tick-millis\":3.0,\"tick-count\":100}"),
+                              lines.get(2));
+        Assertions.assertTrue(lines.get(3).contains("\"Type\":\"weird\\\"mod:thing\""), lines.get(3));
+    }
+
+    @Test
+    public void testSkipsStatisticsThatArentFinite() throws Exception {
+        Path file = tempDir.resolve("tracker-emf.log");
+        CloudwatchLogsEmfReporter reporter = new CloudwatchLogsEmfReporter(StaticConfig.create(), file);
+
+        reporter.reportStatistic("server", ReportingWindow.MINUTE, TIMESTAMP, "not-a-number",
+                                 StatisticUnit.MILLISECONDS, Double.NaN);
+        reporter.reportStatistic("server", ReportingWindow.MINUTE, TIMESTAMP, "too-big",
+                                 StatisticUnit.MILLISECONDS, Double.POSITIVE_INFINITY);
+        reporter.reportStatistic("server", ReportingWindow.MINUTE, TIMESTAMP, "too-small",
+                                 StatisticUnit.MILLISECONDS, Double.NEGATIVE_INFINITY);
+        reporter.reportStatistic("server", ReportingWindow.MINUTE, TIMESTAMP, "fine",
+                                 StatisticUnit.COUNT, 3);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assertions.assertEquals(1, lines.size());
+        Assertions.assertTrue(lines.get(0).endsWith("\"fine\":3.0}"), lines.get(0));
+        Assertions.assertFalse(lines.get(0).contains("NaN") || lines.get(0).contains("Infinity"), lines.get(0));
+    }
+
+    @Test
+    public void testRotatesOnWholeLines() throws Exception {
+        Path file = tempDir.resolve("tracker-emf.log");
+        EmfLogWriter writer = new EmfLogWriter(file, 100, 2, 0);
+        for (int i = 0; i < 20; i++) {
+            writer.appendLine("line number " + i + " is about thirty bytes");
+            writer.flush();
+        }
+        writer.close();
+
+        Assertions.assertTrue(Files.exists(file));
+        Assertions.assertTrue(Files.exists(tempDir.resolve("tracker-emf.log.1")));
+        Assertions.assertTrue(Files.exists(tempDir.resolve("tracker-emf.log.2")));
+        Assertions.assertFalse(Files.exists(tempDir.resolve("tracker-emf.log.3")));
+        for (String name : new String[] {"tracker-emf.log", "tracker-emf.log.1", "tracker-emf.log.2"}) {
+            Path path = tempDir.resolve(name);
+            Assertions.assertTrue(Files.size(path) <= 100);
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                Assertions.assertTrue(line.matches("line number \\d+ is about thirty bytes"), line);
+            }
+        }
+        List<String> newest = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assertions.assertEquals("line number 19 is about thirty bytes", newest.get(newest.size() - 1));
+    }
+
+    @Test
+    public void testBuffersUntilFlushed() throws Exception {
+        Path file = tempDir.resolve("tracker-emf.log");
+        EmfLogWriter writer = new EmfLogWriter(file, 1024 * 1024, 2, 0);
+        writer.appendLine("first");
+        writer.appendLine("second");
+        Assertions.assertEquals(0, Files.size(file));
+
+        writer.flush();
+        Assertions.assertEquals(2, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+
+        // lines longer than the buffer still come out whole.
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            longLine.append((char) ('a' + i % 26));
+        }
+        writer.appendLine(longLine);
+        writer.appendLine("last");
+        writer.close();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assertions.assertEquals(4, lines.size());
+        Assertions.assertEquals(longLine.toString(), lines.get(2));
+        Assertions.assertEquals("last", lines.get(3));
+    }
+}
@@ -0,0 +1,252 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchmetrics;
+
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.StaticConfig;
+import danielgmyers.minecraft.tracker.TestClock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.awscore.DefaultAwsResponseMetadata;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class CloudwatchMetricsReporterTest {
+
+    private static final String TICK_SOURCE = "test-tick-source";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testFailedBatchesAreSpooledAndReplayedInOrder() throws Exception {
+        StubCloudWatchClient client = new StubCloudWatchClient();
+        List<PutMetricDataRequest> accepted = Collections.synchronizedList(new ArrayList<>());
+        boolean[] reachable = {false};
+        client.behavior = request -> {
+            synchronized (reachable) {
+                if (!reachable[0]) {
+                    return failed(SdkClientException.create("Unable to execute HTTP request"));
+                }
+            }
+            accepted.add(request);
+            return succeeded();
+        };
+        MetricSpool spool = new MetricSpool(tempDir.resolve("metrics.spool"), 1024 * 1024);
+        TestClock clock = new TestClock(Instant.parse("2022-04-01T00:00:00Z"));
+        CloudwatchMetricsReporter reporter = new CloudwatchMetricsReporter(StaticConfig.create(), clock, client, spool, 1);
+
+        // each report is a minute apart, so each one is submitted as its own batch.
+        for (int i = 0; i < 3; i++) {
+            reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, clock.instant(), 60, i, i, i);
+            clock.forward(Duration.ofMinutes(2));
+        }
+        synchronized (reachable) {
+            reachable[0] = true;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (accepted.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(3, accepted.size());
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals((double) i, accepted.get(i).metricData().get(0).statisticValues().sum());
+        }
+        waitForEmpty(spool);
+    }
+
+    @Test
+    public void testRejectedBatchesAreNotRetried() throws Exception {
+        StubCloudWatchClient client = new StubCloudWatchClient();
+        int[] calls = {0};
+        client.behavior = request -> {
+            calls[0]++;
+            if (calls[0] == 1) {
+                return failed(CloudWatchException.builder().statusCode(400).message("InvalidParameterValue").build());
+            } else if (calls[0] == 2) {
+                return failed(CloudWatchException.builder().statusCode(429).message("Throttling").build());
+            }
+            return succeeded();
+        };
+        MetricSpool spool = new MetricSpool(tempDir.resolve("metrics.spool"), 1024 * 1024);
+        TestClock clock = new TestClock(Instant.parse("2022-04-01T00:00:00Z"));
+        CloudwatchMetricsReporter reporter = new CloudwatchMetricsReporter(StaticConfig.create(), clock, client, spool, 1);
+
+        reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, clock.instant(), 60, 0, 0, 0);
+        clock.forward(Duration.ofMinutes(2));
+        reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, clock.instant(), 60, 1, 1, 1);
+
+        // only the throttled batch comes back; if the rejected one had been spooled, it would have been replayed first.
+        List<PutMetricDataRequest> requests = client.waitForRequests(3);
+        Assertions.assertEquals(3, requests.size());
+        Assertions.assertEquals(requests.get(1).metricData(), requests.get(2).metricData());
+        waitForEmpty(spool);
+        Thread.sleep(50);
+        Assertions.assertEquals(3, client.getRequests().size());
+    }
+
+    @Test
+    public void testLimitsRequestsInFlight() throws Exception {
+        StubCloudWatchClient client = new StubCloudWatchClient();
+        List<CompletableFuture<PutMetricDataResponse>> pending = Collections.synchronizedList(new ArrayList<>());
+        client.behavior = request -> {
+            CompletableFuture<PutMetricDataResponse> response = new CompletableFuture<>();
+            pending.add(response);
+            return response;
+        };
+        MetricSpool spool = new MetricSpool(tempDir.resolve("metrics.spool"), 1024 * 1024);
+        TestClock clock = new TestClock(Instant.parse("2022-04-01T00:00:00Z"));
+        StaticConfig config = StaticConfig.create();
+        config.setCloudwatchMaxInFlightRequests(2);
+        CloudwatchMetricsReporter reporter = new CloudwatchMetricsReporter(config, clock, client, spool, 1);
+
+        for (int i = 0; i < 4; i++) {
+            reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, clock.instant(), 60, i, i, i);
+            clock.forward(Duration.ofMinutes(2));
+        }
+        // the last two batches had to wait in the spool, and can't be replayed until a request finishes.
+        Thread.sleep(50);
+        Assertions.assertEquals(2, client.getRequests().size());
+        Assertions.assertFalse(spool.isEmpty());
+
+        client.behavior = request -> succeeded();
+        for (CompletableFuture<PutMetricDataResponse> response : new ArrayList<>(pending)) {
+            response.complete(response());
+        }
+
+        List<PutMetricDataRequest> requests = client.waitForRequests(4);
+        Assertions.assertEquals(4, requests.size());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals((double) i, requests.get(i).metricData().get(0).statisticValues().sum());
+        }
+        waitForEmpty(spool);
+    }
+
+    @Test
+    public void testReportingDoesntWaitForTheSpool() throws Exception {
+        StubCloudWatchClient client = new StubCloudWatchClient();
+        client.behavior = request -> new CompletableFuture<>();
+        CountDownLatch diskIsSlow = new CountDownLatch(1);
+        MetricSpool spool = new MetricSpool(tempDir.resolve("metrics.spool"), 1024 * 1024) {
+            @Override
+            boolean append(List<MetricDatum> batch) throws IOException {
+                try {
+                    diskIsSlow.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.append(batch);
+            }
+        };
+        TestClock clock = new TestClock(Instant.parse("2022-04-01T00:00:00Z"));
+        StaticConfig config = StaticConfig.create();
+        config.setCloudwatchMaxInFlightRequests(1);
+        CloudwatchMetricsReporter reporter = new CloudwatchMetricsReporter(config, clock, client, spool, 1);
+
+        // the first batch never finishes sending, so every later one has to be spooled.
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 3; i++) {
+                reporter.reportPlayerCount(TICK_SOURCE, ReportingWindow.MINUTE, clock.instant(), 60, i, i, i);
+                clock.forward(Duration.ofMinutes(2));
+            }
+        });
+        Assertions.assertTrue(spool.isEmpty());
+
+        diskIsSlow.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (spool.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertFalse(spool.isEmpty());
+        Assertions.assertEquals(1, client.getRequests().size());
+    }
+
+    @Test
+    public void testRetryableErrors() {
+        Assertions.assertTrue(CloudwatchMetricsReporter.isRetryable(SdkClientException.create("timed out")));
+        Assertions.assertTrue(CloudwatchMetricsReporter.isRetryable(
+                CloudWatchException.builder().statusCode(503).build()));
+        Assertions.assertTrue(CloudwatchMetricsReporter.isRetryable(
+                CloudWatchException.builder().statusCode(429).build()));
+        Assertions.assertFalse(CloudwatchMetricsReporter.isRetryable(
+                CloudWatchException.builder().statusCode(400).build()));
+        Assertions.assertFalse(CloudwatchMetricsReporter.isRetryable(
+                new CompletionException(CloudWatchException.builder().statusCode(403).build())));
+    }
+
+    private static void waitForEmpty(MetricSpool spool) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!spool.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertTrue(spool.isEmpty());
+    }
+
+    private static CompletableFuture<PutMetricDataResponse> succeeded() {
+        return CompletableFuture.completedFuture(response());
+    }
+
+    private static PutMetricDataResponse response() {
+        return (PutMetricDataResponse) PutMetricDataResponse.builder()
+                .responseMetadata(DefaultAwsResponseMetadata.create(Collections.singletonMap("AWS_REQUEST_ID", "test")))
+                .build();
+    }
+
+    private static CompletableFuture<PutMetricDataResponse> failed(Throwable throwable) {
+        CompletableFuture<PutMetricDataResponse> response = new CompletableFuture<>();
+        response.completeExceptionally(throwable);
+        return response;
+    }
+
+    // Stands in for CloudWatch; every request is recorded and answered by the current behavior.
+    private static class StubCloudWatchClient implements CloudWatchAsyncClient {
+        private final List<PutMetricDataRequest> requests = new ArrayList<>();
+        private volatile Function<PutMetricDataRequest, CompletableFuture<PutMetricDataResponse>> behavior;
+
+        @Override
+        public CompletableFuture<PutMetricDataResponse> putMetricData(PutMetricDataRequest request) {
+            synchronized (this) {
+                requests.add(request);
+            }
+            return behavior.apply(request);
+        }
+
+        synchronized List<PutMetricDataRequest> getRequests() {
+            return new ArrayList<>(requests);
+        }
+
+        List<PutMetricDataRequest> waitForRequests(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (getRequests().size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            return getRequests();
+        }
+
+        @Override
+        public String serviceName() {
+            return "monitoring";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package danielgmyers.minecraft.tracker.reporters.cloudwatchmetrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MetricSpoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testEncodingRoundTrip() throws Exception {
+        MetricDatum stats = MetricDatum.builder()
+                .metricName("server.minute.tick-count")
+                .timestamp(Instant.ofEpochMilli(1_650_000_000_123L))
+                .unit(StandardUnit.COUNT_SECOND)
+                .storageResolution(60)
+                .statisticValues(StatisticSet.builder().sampleCount(60.0).sum(1200.0).minimum(19.0).maximum(20.0).build())
+                .build();
+        MetricDatum distribution = MetricDatum.builder()
+                .metricName("server.10-second.tick-millis")
+                .timestamp(Instant.ofEpochMilli(1_650_000_000_000L))
+                .unit(StandardUnit.MILLISECONDS)
+                .storageResolution(1)
+                .values(Arrays.asList(1.5, 2.5, 50.0))
+                .counts(Arrays.asList(3.0, 1.0, 1.0))
+                .build();
+        MetricDatum single = MetricDatum.builder()
+                .metricName("server.minute.type.minecraft:zombie.tick-millis")
+                .timestamp(Instant.ofEpochMilli(1_650_000_000_000L))
+                .unit(StandardUnit.MILLISECONDS)
+                .value(12.25)
+                .build();
+        List<MetricDatum> batch = Arrays.asList(stats, distribution, single);
+
+        Assertions.assertEquals(batch, MetricSpool.decode(MetricSpool.encode(batch)));
+    }
+
+    @Test
+    public void testBatchesComeBackOldestFirstAndSurviveReopening() throws Exception {
+        Path file = tempDir.resolve("metrics.spool");
+        MetricSpool spool = new MetricSpool(file, 1024 * 1024);
+        Assertions.assertTrue(spool.isEmpty());
+        Assertions.assertNull(spool.peekOldest());
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(spool.append(batch(i)));
+        }
+        Assertions.assertEquals(batch(0), spool.peekOldest());
+        spool.removeOldest();
+        Assertions.assertEquals(batch(1), spool.peekOldest());
+
+        // a new instance over the same file picks up where the old one left off, without replaying batch 0.
+        MetricSpool reopened = new MetricSpool(file, 1024 * 1024);
+        Assertions.assertEquals(batch(1), reopened.peekOldest());
+        reopened.removeOldest();
+        Assertions.assertEquals(batch(2), reopened.peekOldest());
+        reopened.removeOldest();
+        Assertions.assertTrue(reopened.isEmpty());
+        Assertions.assertNull(reopened.peekOldest());
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testEvictsOldestWhenFull() throws Exception {
+        long recordBytes = 8 + MetricSpool.encode(batch(0)).length;
+        MetricSpool spool = new MetricSpool(tempDir.resolve("metrics.spool"), recordBytes * 3);
+
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(spool.append(batch(i)));
+            Assertions.assertTrue(spool.pendingBytes() <= recordBytes * 3);
+            Assertions.assertTrue(Files.size(tempDir.resolve("metrics.spool")) <= recordBytes * 3);
+        }
+        for (int i = 2; i < 5; i++) {
+            Assertions.assertEquals(batch(i), spool.peekOldest());
+            spool.removeOldest();
+        }
+        Assertions.assertTrue(spool.isEmpty());
+
+        MetricSpool tiny = new MetricSpool(tempDir.resolve("tiny.spool"), recordBytes - 1);
+        Assertions.assertFalse(tiny.append(batch(0)));
+        Assertions.assertTrue(tiny.isEmpty());
+    }
+
+    @Test
+    public void testBatchEvictedWhileBeingReplayedIsntRemovedAgain() throws Exception {
+        long recordBytes = 8 + MetricSpool.encode(batch(0)).length;
+        MetricSpool spool = new MetricSpool(tempDir.resolve("metrics.spool"), recordBytes * 2);
+        spool.append(batch(0));
+        spool.append(batch(1));
+
+        MetricSpool.SpooledBatch replaying = spool.peekOldestSpooled();
+        Assertions.assertEquals(batch(0), replaying.batch);
+        // while batch 0 is being sent, a new batch comes in and evicts it.
+        spool.append(batch(2));
+        Assertions.assertFalse(spool.removeOldest(replaying.sequence));
+        Assertions.assertEquals(batch(1), spool.peekOldest());
+
+        MetricSpool.SpooledBatch next = spool.peekOldestSpooled();
+        Assertions.assertTrue(spool.removeOldest(next.sequence));
+        Assertions.assertFalse(spool.removeOldest(next.sequence));
+        Assertions.assertEquals(batch(2), spool.peekOldest());
+    }
+
+    @Test
+    public void testDiscardsTornRecord() throws Exception {
+        Path file = tempDir.resolve("metrics.spool");
+        MetricSpool spool = new MetricSpool(file, 1024 * 1024);
+        spool.append(batch(0));
+        spool.append(batch(1));
+        // simulate the server dying partway through writing a third record.
+        Files.write(file, new byte[] {0, 0, 1, 0, 42, 42}, StandardOpenOption.APPEND);
+
+        MetricSpool reopened = new MetricSpool(file, 1024 * 1024);
+        Assertions.assertEquals(batch(0), reopened.peekOldest());
+        reopened.removeOldest();
+        Assertions.assertEquals(batch(1), reopened.peekOldest());
+        reopened.removeOldest();
+        Assertions.assertNull(reopened.peekOldest());
+        Assertions.assertTrue(reopened.isEmpty());
+    }
+
+    private static List<MetricDatum> batch(int id) {
+        return Collections.singletonList(MetricDatum.builder()
+                                                 .metricName("server.minute.player-count")
+                                                 .timestamp(Instant.ofEpochMilli(1_650_000_000_000L + id * 60_000L))
+                                                 .unit(StandardUnit.COUNT)
+                                                 .storageResolution(60)
+                                                 .value((double) id)
+                                                 .build());
+    }
+}
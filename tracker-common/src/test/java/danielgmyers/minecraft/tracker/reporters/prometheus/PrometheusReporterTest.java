@@ -0,0 +1,173 @@
+package danielgmyers.minecraft.tracker.reporters.prometheus;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+public class PrometheusReporterTest {
+
+    @Test
+    public void testServesLatestReports() throws Exception {
+        PrometheusReporter reporter = new PrometheusReporter("127.0.0.1", 0);
+        reporter.start();
+        try {
+            LogLinearHistogram histogram = new LogLinearHistogram();
+            histogram.record(50_000_000);
+            reporter.reportTickStats("minecraft:overworld", ReportingWindow.MINUTE, Instant.EPOCH, 60,
+                                     1200, 19, 20, 60_000_000_000L, 40_000_000, 60_000_000, histogram);
+            reporter.reportPlayerCount("server", ReportingWindow.MINUTE, Instant.EPOCH, 60, 150, 2, 3);
+            reporter.reportTickCostsByType("minecraft:overworld", ReportingWindow.MINUTE, Instant.EPOCH, 1,
+                                           new String[] {"minecraft:zombie", "ignored"},
+                                           new long[] {100, 1}, new long[] {3_000_000, 1});
+
+            String body = scrape(reporter);
+            Assertions.assertTrue(body.contains("# TYPE tracker_ticks_per_second gauge\n"), body);
+            Assertions.assertTrue(body.contains(
+                    "tracker_ticks_per_second{source=\"minecraft:overworld\",window=\"minute\",stat=\"avg\"} 20.0\n"), body);
+            Assertions.assertTrue(body.contains(
+                    "tracker_tick_duration_seconds{source=\"minecraft:overworld\",window=\"minute\",stat=\"max\"} 0.06\n"), body);
+            Assertions.assertTrue(body.contains(
+                    "tracker_player_count{source=\"server\",window=\"minute\",stat=\"avg\"} 2.5\n"), body);
+            Assertions.assertTrue(body.contains(
+                    "tracker_type_tick_seconds{source=\"minecraft:overworld\",window=\"minute\",type=\"minecraft:zombie\"} 0.003\n"), body);
+            Assertions.assertFalse(body.contains("ignored"), body);
+
+            // a newer report replaces the old one.
+            reporter.reportPlayerCount("server", ReportingWindow.MINUTE, Instant.EPOCH, 60, 600, 10, 10);
+            body = scrape(reporter);
+            Assertions.assertTrue(body.contains(
+                    "tracker_player_count{source=\"server\",window=\"minute\",stat=\"avg\"} 10.0\n"), body);
+            Assertions.assertFalse(body.contains("stat=\"avg\"} 2.5"), body);
+        } finally {
+            reporter.stop();
+        }
+    }
+
+    @Test
+    public void testRendersOnlyWhenSomethingChanged() {
+        PrometheusReporter reporter = new PrometheusReporter("127.0.0.1", 0);
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, Instant.EPOCH, 60, 60, 1, 1);
+
+        byte[] first = reporter.currentBody();
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertSame(first, reporter.currentBody());
+        }
+        Assertions.assertEquals(1, reporter.renderCount.get());
+
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, Instant.EPOCH, 60, 120, 2, 2);
+        Assertions.assertNotSame(first, reporter.currentBody());
+        Assertions.assertEquals(2, reporter.renderCount.get());
+    }
+
+    @Test
+    public void testRendersStatistics() {
+        PrometheusReporter reporter = new PrometheusReporter("127.0.0.1", 0);
+        reporter.reportStatistic("tracker-self", ReportingWindow.MINUTE, Instant.EPOCH, "live-world-trackers",
+                                 StatisticUnit.COUNT, 12);
+        reporter.reportStatistic("jvm", ReportingWindow.MINUTE, Instant.EPOCH, "gc-pause", StatisticUnit.MILLISECONDS, 1.5);
+        String body = new String(reporter.currentBody(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(body.contains("# TYPE tracker_live_world_trackers gauge\n"), body);
+        Assertions.assertTrue(body.contains(
+                "tracker_live_world_trackers{source=\"tracker-self\",window=\"minute\"} 12.0\n"), body);
+        Assertions.assertTrue(body.contains(
+                "tracker_gc_pause_milliseconds{source=\"jvm\",window=\"minute\"} 1.5\n"), body);
+    }
+
+    @Test
+    public void testWritesEachStatisticFamilyOnce() {
+        PrometheusReporter reporter = new PrometheusReporter("127.0.0.1", 0);
+        // these all sanitize to tracker_a_b, and sort apart from each other by name.
+        reporter.reportStatistic("one", ReportingWindow.MINUTE, Instant.EPOCH, "a-b", StatisticUnit.COUNT, 1);
+        reporter.reportStatistic("two", ReportingWindow.MINUTE, Instant.EPOCH, "a.b", StatisticUnit.COUNT, 2);
+        reporter.reportStatistic("one", ReportingWindow.MINUTE, Instant.EPOCH, "a_b", StatisticUnit.COUNT, 3);
+        reporter.reportStatistic("one", ReportingWindow.MINUTE, Instant.EPOCH, "a-a", StatisticUnit.COUNT, 4);
+        String body = new String(reporter.currentBody(), StandardCharsets.UTF_8);
+        Assertions.assertEquals(body.indexOf("# TYPE tracker_a_b gauge\n"),
+                                body.lastIndexOf("# TYPE tracker_a_b gauge\n"), body);
+        Assertions.assertEquals(body.indexOf("# HELP tracker_a_b "), body.lastIndexOf("# HELP tracker_a_b "), body);
+        // the same series is only written once, with the latest value.
+        Assertions.assertTrue(body.contains("tracker_a_b{source=\"one\",window=\"minute\"} 3.0\n"), body);
+        Assertions.assertFalse(body.contains("} 1.0\n"), body);
+        Assertions.assertTrue(body.contains("tracker_a_b{source=\"two\",window=\"minute\"} 2.0\n"), body);
+        Assertions.assertTrue(body.contains("tracker_a_a{source=\"one\",window=\"minute\"} 4.0\n"), body);
+    }
+
+    @Test
+    public void testDropsSeriesThatStopBeingReported() {
+        PrometheusReporter reporter = new PrometheusReporter("127.0.0.1", 0);
+        Instant start = Instant.parse("2022-01-01T00:00:00Z");
+        reporter.reportPlayerCount("minecraft:the_nether", ReportingWindow.MINUTE, start, 60, 60, 1, 1);
+        reporter.reportStatistic("minecraft:the_nether", ReportingWindow.HOUR, start, "entities", StatisticUnit.COUNT, 5);
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, start, 60, 60, 1, 1);
+
+        // five minutes on, the minute series is still there.
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, start.plusSeconds(300), 60, 60, 1, 1);
+        String body = new String(reporter.currentBody(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(body.contains("source=\"minecraft:the_nether\",window=\"minute\""), body);
+
+        // then it goes, but the hour series lasts for two hours.
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, start.plusSeconds(301), 60, 60, 1, 1);
+        body = new String(reporter.currentBody(), StandardCharsets.UTF_8);
+        Assertions.assertFalse(body.contains("source=\"minecraft:the_nether\",window=\"minute\""), body);
+        Assertions.assertTrue(body.contains("tracker_entities{source=\"minecraft:the_nether\",window=\"hour\"}"), body);
+        Assertions.assertTrue(body.contains("source=\"server\""), body);
+
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, start.plusSeconds(7201), 60, 60, 1, 1);
+        body = new String(reporter.currentBody(), StandardCharsets.UTF_8);
+        Assertions.assertFalse(body.contains("minecraft:the_nether"), body);
+        Assertions.assertTrue(body.contains("source=\"server\""), body);
+    }
+
+    @Test
+    public void testWritesNonFiniteValuesTheWayPrometheusSpellsThem() {
+        PrometheusReporter reporter = new PrometheusReporter("127.0.0.1", 0);
+        reporter.reportStatistic("up", ReportingWindow.MINUTE, Instant.EPOCH, "value", StatisticUnit.COUNT,
+                                 Double.POSITIVE_INFINITY);
+        reporter.reportStatistic("down", ReportingWindow.MINUTE, Instant.EPOCH, "value", StatisticUnit.COUNT,
+                                 Double.NEGATIVE_INFINITY);
+        reporter.reportStatistic("none", ReportingWindow.MINUTE, Instant.EPOCH, "value", StatisticUnit.COUNT,
+                                 Double.NaN);
+        String body = new String(reporter.currentBody(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(body.contains("tracker_value{source=\"up\",window=\"minute\"} +Inf\n"), body);
+        Assertions.assertTrue(body.contains("tracker_value{source=\"down\",window=\"minute\"} -Inf\n"), body);
+        Assertions.assertTrue(body.contains("tracker_value{source=\"none\",window=\"minute\"} NaN\n"), body);
+        Assertions.assertFalse(body.contains("Infinity"), body);
+    }
+
+    @Test
+    public void testEscapesLabelValues() {
+        PrometheusReporter reporter = new PrometheusReporter("127.0.0.1", 0);
+        reporter.reportPlayerCount("odd\"source\\name", ReportingWindow.MINUTE, Instant.EPOCH, 60, 60, 1, 1);
+        String body = new String(reporter.currentBody(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(body.contains("source=\"odd\\\"source\\\\name\""), body);
+    }
+
+    private static String scrape(PrometheusReporter reporter) throws Exception {
+        URL url = new URL("http://127.0.0.1:" + reporter.getPort() + "/metrics");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            Assertions.assertEquals(200, connection.getResponseCode());
+            Assertions.assertEquals(PrometheusReporter.CONTENT_TYPE, connection.getContentType());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
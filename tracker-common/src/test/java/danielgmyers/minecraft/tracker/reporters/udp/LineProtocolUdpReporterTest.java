@@ -0,0 +1,161 @@
+package danielgmyers.minecraft.tracker.reporters.udp;
+
+import danielgmyers.minecraft.tracker.LogLinearHistogram;
+import danielgmyers.minecraft.tracker.ReportingWindow;
+import danielgmyers.minecraft.tracker.reporters.StatisticUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LineProtocolUdpReporterTest {
+
+    private static final int MAX_PACKET_BYTES = 512;
+
+    private DatagramChannel listener;
+    private InetSocketAddress target;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        listener = DatagramChannel.open();
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+        listener.configureBlocking(false);
+        target = (InetSocketAddress) listener.getLocalAddress();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        listener.close();
+    }
+
+    @Test
+    public void testStatsdLines() throws Exception {
+        LineProtocolUdpReporter reporter = new LineProtocolUdpReporter(LineProtocolUdpReporter.Protocol.STATSD,
+                                                                       target, MAX_PACKET_BYTES, 60_000);
+        reporter.reportPlayerCount("minecraft:overworld", ReportingWindow.MINUTE, Instant.EPOCH, 60, 150, 2, 3);
+        reporter.reportTickCostsByType("server", ReportingWindow.ofSeconds(10), Instant.EPOCH, 1,
+                                       new String[] {"minecraft:zombie"}, new long[] {40}, new long[] {1_234_567});
+        reporter.reportStatistic("tracker-self", ReportingWindow.MINUTE, Instant.EPOCH, "live-world-trackers",
+                                 StatisticUnit.COUNT, 12);
+        reporter.flush();
+
+        List<String> lines = linesOf(receive());
+        Assertions.assertEquals(Arrays.asList(
+                "tracker.minecraft_overworld.minute.players.min:2|g",
+                "tracker.minecraft_overworld.minute.players.avg:2.500|g",
+                "tracker.minecraft_overworld.minute.players.max:3|g",
+                "tracker.server.10-second.type.minecraft_zombie.tick_millis:1.235|g",
+                "tracker.server.10-second.type.minecraft_zombie.ticks:40|g",
+                "tracker.tracker-self.minute.live-world-trackers:12.000|g"), lines);
+        Assertions.assertEquals(1, reporter.getSentPackets());
+    }
+
+    @Test
+    public void testInfluxLines() throws Exception {
+        LineProtocolUdpReporter reporter = new LineProtocolUdpReporter(LineProtocolUdpReporter.Protocol.INFLUX,
+                                                                       target, MAX_PACKET_BYTES, 60_000);
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        histogram.record(50_000_000);
+        reporter.reportTickStats("my world", ReportingWindow.MINUTE, Instant.ofEpochSecond(1_650_000_000, 5),
+                                 60, 1200, 19, 20, 60_000_000_000L, 40_000_000, 60_000_000, histogram);
+        reporter.flush();
+
+        List<String> lines = linesOf(receive());
+        Assertions.assertEquals(1, lines.size());
+        String line = lines.get(0);
+        Assertions.assertTrue(line.startsWith("tracker_tick,source=my\\ world,window=minute "
+                                              + "tps_min=19i,tps_avg=20.000,tps_max=20i,"
+                                              + "millis_min=40.000,millis_avg=50.000,millis_max=60.000,millis_p50="), line);
+        Assertions.assertTrue(line.endsWith(" 1650000000000000005"), line);
+
+        reporter.reportStatistic("tracker-self", ReportingWindow.MINUTE, Instant.ofEpochSecond(1_650_000_000),
+                                 "live-world-trackers", StatisticUnit.COUNT, 12);
+        reporter.flush();
+        Assertions.assertEquals(Arrays.asList(
+                "tracker_stat,source=tracker-self,window=minute,name=live-world-trackers value=12.000 1650000000000000000"),
+                linesOf(receive()));
+    }
+
+    @Test
+    public void testPacksLinesIntoDatagrams() throws Exception {
+        LineProtocolUdpReporter reporter = new LineProtocolUdpReporter(LineProtocolUdpReporter.Protocol.STATSD,
+                                                                       target, MAX_PACKET_BYTES, 60_000);
+        int sources = 200;
+        int expectedBytes = 0;
+        for (int i = 0; i < sources; i++) {
+            reporter.reportPlayerCount("source" + i, ReportingWindow.MINUTE, Instant.EPOCH, 60, 60, 1, 1);
+            expectedBytes += ("tracker.source" + i + ".minute.players.min:1|g\n").length()
+                    + ("tracker.source" + i + ".minute.players.avg:1.000|g\n").length()
+                    + ("tracker.source" + i + ".minute.players.max:1|g\n").length();
+        }
+        reporter.flush();
+
+        List<String> lines = new ArrayList<>();
+        int packets = 0;
+        while (lines.size() < sources * 3) {
+            String packet = receive();
+            Assertions.assertTrue(packet.getBytes(StandardCharsets.UTF_8).length <= MAX_PACKET_BYTES);
+            Assertions.assertTrue(packet.endsWith("\n"), "lines are never split across datagrams");
+            lines.addAll(linesOf(packet));
+            packets++;
+        }
+        Assertions.assertEquals(sources * 3, lines.size());
+        Assertions.assertEquals("tracker.source0.minute.players.min:1|g", lines.get(0));
+        Assertions.assertEquals("tracker.source199.minute.players.max:1|g", lines.get(lines.size() - 1));
+        // only the last datagram should be partly empty, give or take a line's worth of slack in each.
+        Assertions.assertTrue(packets <= expectedBytes / (MAX_PACKET_BYTES - 50) + 1, "sent " + packets + " datagrams");
+        Assertions.assertEquals(packets, reporter.getSentPackets());
+    }
+
+    @Test
+    public void testLingeringDatagramIsSentWithoutExplicitFlush() throws Exception {
+        LineProtocolUdpReporter reporter = new LineProtocolUdpReporter(LineProtocolUdpReporter.Protocol.STATSD,
+                                                                       target, MAX_PACKET_BYTES, 10);
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, Instant.EPOCH, 60, 60, 1, 1);
+        Assertions.assertEquals(3, linesOf(receive()).size());
+    }
+
+    @Test
+    public void testDropsLinesTooLongForADatagram() throws Exception {
+        LineProtocolUdpReporter reporter = new LineProtocolUdpReporter(LineProtocolUdpReporter.Protocol.STATSD,
+                                                                       target, MAX_PACKET_BYTES, 60_000);
+        StringBuilder longType = new StringBuilder();
+        for (int i = 0; i < MAX_PACKET_BYTES; i++) {
+            longType.append('x');
+        }
+        reporter.reportTickCostsByType("server", ReportingWindow.MINUTE, Instant.EPOCH, 1,
+                                       new String[] {longType.toString()}, new long[] {1}, new long[] {1});
+        reporter.reportPlayerCount("server", ReportingWindow.MINUTE, Instant.EPOCH, 60, 60, 1, 1);
+        reporter.flush();
+
+        Assertions.assertEquals(2, reporter.getDroppedLines());
+        Assertions.assertEquals(3, linesOf(receive()).size());
+    }
+
+    private String receive() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.receive(buffer) == null) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new SocketTimeoutException("no datagram received");
+            }
+            Thread.sleep(1);
+        }
+        buffer.flip();
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private static List<String> linesOf(String packet) {
+        return Arrays.asList(packet.split("\n"));
+    }
+}
@@ -0,0 +1,70 @@
+package danielgmyers.minecraft.tracker.fabric;
+
+import danielgmyers.minecraft.tracker.WorldCensus;
+import danielgmyers.minecraft.tracker.fabric.mixin.WorldAccessor;
+import danielgmyers.minecraft.tracker.fabric.mixin.WorldTickSchedulerAccessor;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.tick.ChunkTickScheduler;
+import net.minecraft.world.tick.WorldTickScheduler;
+
+import java.util.Collections;
+
+// What the world census counts in a server world.
+public final class CensusSource implements WorldCensus.Source<ServerWorld> {
+
+    public static final CensusSource INSTANCE = new CensusSource();
+
+    private CensusSource() {}
+
+    @Override
+    public Iterable<?> entities(ServerWorld world) {
+        return world.iterateEntities();
+    }
+
+    @Override
+    public String categoryOf(Object entity) {
+        Entity e = (Entity) entity;
+        return e.isRemoved() ? null : e.getType().getSpawnGroup().getName();
+    }
+
+    @Override
+    public int tickingBlockEntities(ServerWorld world) {
+        // the accessor is optional, and isn't there if another mod's changes kept it from being applied.
+        if (!(world instanceof WorldAccessor)) {
+            return 0;
+        }
+        return ((WorldAccessor) world).tracker$getBlockEntityTickers().size();
+    }
+
+    @Override
+    public long loadedChunks(ServerWorld world) {
+        return world.getChunkManager().getLoadedChunkCount();
+    }
+
+    @Override
+    public Iterable<?> scheduledBlockTickLists(ServerWorld world) {
+        return perChunk(world.getBlockTickScheduler());
+    }
+
+    @Override
+    public Iterable<?> scheduledFluidTickLists(ServerWorld world) {
+        return perChunk(world.getFluidTickScheduler());
+    }
+
+    @Override
+    public long scheduledTickCount(Object tickList) {
+        if (tickList instanceof ChunkTickScheduler) {
+            return ((ChunkTickScheduler<?>) tickList).getTickCount();
+        }
+        return ((WorldTickScheduler<?>) tickList).getTickCount();
+    }
+
+    private static Iterable<?> perChunk(WorldTickScheduler<?> scheduler) {
+        // the accessor is optional; without it, all of the world's scheduled ticks are counted in one go.
+        if (!(scheduler instanceof WorldTickSchedulerAccessor)) {
+            return Collections.singletonList(scheduler);
+        }
+        return ((WorldTickSchedulerAccessor) scheduler).tracker$getChunkTickSchedulers().values();
+    }
+}
@@ -0,0 +1,32 @@
+package danielgmyers.minecraft.tracker.fabric;
+
+import danielgmyers.minecraft.tracker.ChunkActivityTracker;
+import danielgmyers.minecraft.tracker.WorldTrackerCache;
+import danielgmyers.minecraft.tracker.WorldTrackers;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.World;
+
+// Finds the chunk activity tracker for the chunk event handlers and ChunkSerializerMixin. Chunk events can fire on
+// worldgen threads, before a dimension's first tick, or after it's been unloaded; the last two aren't counted, rather
+// than bringing back trackers that were just discarded.
+public final class ChunkActivityHooks {
+
+    private static volatile WorldTrackerCache<RegistryKey<World>> worldTrackers;
+
+    private ChunkActivityHooks() {}
+
+    static void install(WorldTrackerCache<RegistryKey<World>> cache) {
+        worldTrackers = cache;
+    }
+
+    // null if chunk stats are disabled or the dimension doesn't have trackers right now
+    public static ChunkActivityTracker trackerFor(ServerWorld world) {
+        WorldTrackerCache<RegistryKey<World>> cache = worldTrackers;
+        if (cache == null) {
+            return null;
+        }
+        WorldTrackers trackers = cache.getIfPresent(world.getRegistryKey());
+        return trackers != null ? trackers.getChunkActivityTracker() : null;
+    }
+}
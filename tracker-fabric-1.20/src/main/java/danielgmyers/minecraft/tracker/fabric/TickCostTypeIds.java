@@ -0,0 +1,21 @@
+package danielgmyers.minecraft.tracker.fabric;
+
+import net.minecraft.block.entity.BlockEntityType;
+import net.minecraft.entity.EntityType;
+import net.minecraft.util.Identifier;
+
+import java.util.function.Function;
+
+// Turns the type objects the tick cost hooks see into registry IDs, e.g. "minecraft:zombie".
+public final class TickCostTypeIds {
+
+    public static final Function<Object, String> ENTITY_TYPE
+            = type -> EntityType.getId((EntityType<?>) type).toString();
+
+    public static final Function<Object, String> BLOCK_ENTITY_TYPE = type -> {
+        Identifier id = BlockEntityType.getId((BlockEntityType<?>) type);
+        return id == null ? null : id.toString();
+    };
+
+    private TickCostTypeIds() {}
+}
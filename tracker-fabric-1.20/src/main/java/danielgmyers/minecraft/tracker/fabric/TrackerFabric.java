@@ -1,21 +1,42 @@
 package danielgmyers.minecraft.tracker.fabric;
 
+import danielgmyers.minecraft.tracker.ChunkActivityTracker;
+import danielgmyers.minecraft.tracker.JvmStatsTracker;
+import danielgmyers.minecraft.tracker.LiveStatsSummary;
 import danielgmyers.minecraft.tracker.PlayerCountTracker;
-import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.RollingWindow;
+import danielgmyers.minecraft.tracker.TickCostAttribution;
+import danielgmyers.minecraft.tracker.WorldTrackerCache;
+import danielgmyers.minecraft.tracker.WorldTrackers;
 import danielgmyers.minecraft.tracker.config.PropertiesConfig;
+import danielgmyers.minecraft.tracker.diagnostics.SamplingProfiler;
+import danielgmyers.minecraft.tracker.diagnostics.StallWatchdog;
+import danielgmyers.minecraft.tracker.history.FlightRecorder;
+import danielgmyers.minecraft.tracker.history.TimeSeriesStore;
 import danielgmyers.minecraft.tracker.reporters.StatsReporterFactory;
 import danielgmyers.minecraft.tracker.reporters.StatsReporter;
 import danielgmyers.minecraft.tracker.TickStatsTracker;
+import danielgmyers.minecraft.tracker.TrackerSelfStats;
+import danielgmyers.minecraft.tracker.TrackerSelfStats.Activity;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.world.World;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.nio.file.Path;
 import java.time.Clock;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.List;
 
 public class TrackerFabric implements ModInitializer {
     // This logger is used to write text to the console and the log file.
@@ -23,15 +44,21 @@ public class TrackerFabric implements ModInitializer {
     // That way, it's clear which mod wrote info, warnings, and errors.
     public static final Logger LOGGER = LogManager.getLogger("tracker-fabric");
 
+    private PropertiesConfig config;
+    private StatsReporter statsReporter;
     private TickStatsTracker serverTickTracker;
-    private final ConcurrentMap<String, TickStatsTracker> worldTickTracker;
+    private JvmStatsTracker jvmStatsTracker;
+    private StallWatchdog stallWatchdog;
+    private SamplingProfiler samplingProfiler;
+    private TimeSeriesStore history;
+    private FlightRecorder flightRecorder;
     private PlayerCountTracker playerCountTracker;
-    private final ConcurrentMap<String, PlayerCountTracker> worldPlayerCountTracker;
-
-    public TrackerFabric() {
-        this.worldTickTracker = new ConcurrentHashMap<>();
-        this.worldPlayerCountTracker = new ConcurrentHashMap<>();
-    }
+    private TrackerSelfStats selfStats;
+    private WorldTrackerCache<RegistryKey<World>> worldTrackers;
+    // whether the current server tick is being tracked, and whether the server has stopped; only written by the server
+    // thread
+    private boolean tracking = false;
+    private boolean stopped = false;
 
     @Override
     public void onInitialize() {
@@ -39,37 +66,198 @@ public class TrackerFabric implements ModInitializer {
         // However, some things (like resources) may still be uninitialized.
         // Proceed with mild caution.
         Path configPath = FabricLoader.getInstance().getConfigDir().resolve("tracker.properties");
-        Config config = PropertiesConfig.create(configPath);
+        config = PropertiesConfig.create(configPath);
 
         if (!config.isEnabled()) {
             LOGGER.warn("Stats tracking is disabled!");
             return;
         }
 
-        StatsReporter reporter = StatsReporterFactory.create(config, Clock.systemUTC());
+        StatsReporter reloadableReporter = StatsReporterFactory.createReloadable(config, Clock.systemUTC());
+        // when self stats are enabled, the trackers' calls into the reporter are timed; self stats bypass that.
+        this.selfStats = new TrackerSelfStats(config, reloadableReporter, Clock.systemUTC());
+        StatsReporter reporter = selfStats.timeCalls(reloadableReporter);
+        this.statsReporter = reporter;
+        // thresholds, reporting windows and reporter settings are picked up from the file as it changes.
+        config.startWatching();
+        if (config.isHistoryEnabled()) {
+            Path historyDirectory = FabricLoader.getInstance().getGameDir().resolve(config.getHistoryDirectory());
+            this.history = new TimeSeriesStore(config, historyDirectory, Clock.systemUTC());
+            this.history.start();
+        }
+        if (config.isFlightRecorderEnabled()) {
+            Path flightRecording = FabricLoader.getInstance().getGameDir().resolve(config.getFlightRecorderFile());
+            this.flightRecorder = new FlightRecorder(config, flightRecording);
+            this.flightRecorder.start();
+        }
         this.serverTickTracker = new TickStatsTracker("server", config, reporter, Clock.systemUTC());
+        serverTickTracker.setScheduleStatsEnabled(config.isTickScheduleStatsEnabled());
         this.playerCountTracker = new PlayerCountTracker("server", config, reporter, Clock.systemUTC());
+        if (history != null) {
+            serverTickTracker.setHistory(history.forSource("server"));
+            playerCountTracker.setHistory(history.forSource("server"));
+        }
+        if (flightRecorder != null) {
+            serverTickTracker.setFlightLog(flightRecorder.forSource("server"));
+        }
+        this.worldTrackers = new WorldTrackerCache<>(config, reporter, Clock.systemUTC(),
+                tickSource -> WorldTrackers.create(tickSource, config, reporter, Clock.systemUTC(), history,
+                                                   flightRecorder));
+
+        if (config.isJvmStatsEnabled()) {
+            this.jvmStatsTracker = new JvmStatsTracker(serverTickTracker, config, reporter, Clock.systemUTC());
+            this.jvmStatsTracker.start();
+        }
+
+        Path logDirectory = FabricLoader.getInstance().getGameDir().resolve("logs");
+        if (config.isStallWatchdogEnabled()) {
+            this.stallWatchdog = new StallWatchdog(serverTickTracker, config, logDirectory, Clock.systemUTC());
+            this.stallWatchdog.start();
+        }
+        if (config.isProfilerEnabled()) {
+            // the profiler reports from its own thread, so its calls aren't timed as part of the tick.
+            this.samplingProfiler = new SamplingProfiler(serverTickTracker, config, reloadableReporter,
+                                                         logDirectory.resolve("tracker-profiles"), Clock.systemUTC());
+            this.samplingProfiler.start();
+        }
 
-        ServerTickEvents.START_SERVER_TICK.register(s -> { serverTickTracker.startTick(); });
+        ServerTickEvents.START_SERVER_TICK.register(s -> {
+            // Reloading the config can turn tracking off (reporter-type NONE) and back on, so we check once per tick,
+            // and skip or track the whole tick, worlds included.
+            tracking = !stopped && config.isEnabled();
+            if (!tracking) {
+                return;
+            }
+            long selfNanos = selfStats.start();
+            serverTickTracker.startTick();
+            selfStats.lap(Activity.TICK_STATS, selfNanos);
+        });
         ServerTickEvents.END_SERVER_TICK.register(s -> {
+            if (!tracking) {
+                return;
+            }
+            long selfNanos = selfStats.start();
             serverTickTracker.endTick();
+            selfNanos = selfStats.lap(Activity.TICK_STATS, selfNanos);
+            if (jvmStatsTracker != null) {
+                jvmStatsTracker.update();
+            }
+            selfNanos = selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
             playerCountTracker.update(s.getCurrentPlayerCount());
+            selfNanos = selfStats.lap(Activity.PLAYER_COUNTS, selfNanos);
+            worldTrackers.update();
+            selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
+            selfStats.update();
         });
+        // The name (and any coalescing, e.g. of per-instance dimensions) is only worked out the first time each
+        // dimension ticks; after that each of these is a single lookup on the dimension's registry key.
         ServerTickEvents.START_WORLD_TICK.register(world -> {
-            String dimension = world.getRegistryKey().getValue().toString();
-            worldTickTracker.computeIfAbsent(dimension,
-                                             d -> new TickStatsTracker(d, config, reporter, Clock.systemUTC()))
-                    .startTick();
+            if (!tracking) {
+                return;
+            }
+            long selfNanos = selfStats.start();
+            WorldTrackers trackers = worldTrackers.get(world.getRegistryKey(), key -> key.getValue().toString());
+            selfNanos = selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
+            trackers.getTickStatsTracker().startTick();
+            selfNanos = selfStats.lap(Activity.TICK_STATS, selfNanos);
+            // Entity and block entity ticks are attributed to whichever dimension's tracker is active while they run.
+            if (trackers.getTypeTickCostTracker() != null) {
+                TickCostAttribution.begin(trackers.getTypeTickCostTracker());
+            }
+            selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
         });
         ServerTickEvents.END_WORLD_TICK.register(world -> {
-            String dimension = world.getRegistryKey().getValue().toString();
-            worldTickTracker.computeIfAbsent(dimension,
-                                             d -> new TickStatsTracker(d, config, reporter, Clock.systemUTC()))
-                    .endTick();
-            worldPlayerCountTracker.computeIfAbsent(dimension,
-                                                    d -> new PlayerCountTracker(d, config, reporter, Clock.systemUTC()))
-                    .update(world.getPlayers().size());
+            if (!tracking) {
+                return;
+            }
+            long selfNanos = selfStats.start();
+            WorldTrackers trackers = worldTrackers.get(world.getRegistryKey(), key -> key.getValue().toString());
+            if (trackers.getTypeTickCostTracker() != null) {
+                TickCostAttribution.end();
+                trackers.getTypeTickCostTracker().update();
+            }
+            selfNanos = selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
+            trackers.getTickStatsTracker().endTick();
+            selfNanos = selfStats.lap(Activity.TICK_STATS, selfNanos);
+            trackers.getPlayerCountTracker().update(world, world.getPlayers().size());
+            selfNanos = selfStats.lap(Activity.PLAYER_COUNTS, selfNanos);
+            if (trackers.getChunkActivityTracker() != null) {
+                trackers.getChunkActivityTracker().update(world, world.getChunkManager().getLoadedChunkCount());
+            }
+            if (trackers.getCensus() != null) {
+                trackers.getCensus().update(world, CensusSource.INSTANCE);
+            }
+            selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
+        });
+        // Per-run dimensions come and go, so their trackers report what they have and are discarded along with them.
+        ServerWorldEvents.UNLOAD.register((server, world) -> worldTrackers.unload(world.getRegistryKey()));
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            stopped = true;
+            stopTracking();
         });
+
+        if (config.isChunkStatsEnabled()) {
+            ChunkActivityHooks.install(worldTrackers);
+            ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+                ChunkActivityTracker tracker = ChunkActivityHooks.trackerFor(world);
+                if (tracker != null) {
+                    tracker.chunkLoaded();
+                }
+            });
+            ServerChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> {
+                ChunkActivityTracker tracker = ChunkActivityHooks.trackerFor(world);
+                if (tracker != null) {
+                    tracker.chunkUnloaded();
+                }
+            });
+        }
+
+        // "/tracker" shows the last minute; "/tracker 5s", "/tracker 1m" and "/tracker 15m" pick a window.
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
+            LiteralArgumentBuilder<ServerCommandSource> command = CommandManager.literal("tracker")
+                    .requires(source -> source.hasPermissionLevel(2))
+                    .executes(context -> sendLiveStats(context.getSource(), RollingWindow.LAST_MINUTE));
+            for (RollingWindow window : RollingWindow.values()) {
+                command.then(CommandManager.literal(window.getName())
+                                     .executes(context -> sendLiveStats(context.getSource(), window)));
+            }
+            dispatcher.register(command);
+        });
+    }
+
+    // Reports what's been gathered towards the current windows, stops the background threads, and closes the
+    // reporters and files, rather than leaving it all to the JVM's exit.
+    private void stopTracking() {
+        LOGGER.info("Server stopping, flushing stats.");
+        serverTickTracker.flush();
+        playerCountTracker.flush();
+        worldTrackers.closeAll();
+        if (jvmStatsTracker != null) {
+            jvmStatsTracker.stop();
+        }
+        if (stallWatchdog != null) {
+            stallWatchdog.stop();
+        }
+        if (samplingProfiler != null) {
+            samplingProfiler.stop();
+        }
+        if (flightRecorder != null) {
+            flightRecorder.stop();
+        }
+        if (history != null) {
+            history.stop();
+        }
+        config.stopWatching();
+        statsReporter.close();
+    }
+
+    private int sendLiveStats(ServerCommandSource source, RollingWindow window) {
+        List<String> lines = LiveStatsSummary.describe(serverTickTracker, playerCountTracker, worldTrackers.getAll(),
+                                                       window, LiveStatsSummary.DEFAULT_MAX_DIMENSIONS);
+        for (String line : lines) {
+            source.sendFeedback(() -> Text.literal(line), false);
+        }
+        return lines.size();
     }
 
 }
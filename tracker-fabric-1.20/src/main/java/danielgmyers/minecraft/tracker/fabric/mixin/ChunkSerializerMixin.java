@@ -0,0 +1,30 @@
+package danielgmyers.minecraft.tracker.fabric.mixin;
+
+import danielgmyers.minecraft.tracker.ChunkActivityTracker;
+import danielgmyers.minecraft.tracker.fabric.ChunkActivityHooks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.ChunkSerializer;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.ProtoChunk;
+import net.minecraft.world.poi.PointOfInterestStorage;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+// Counts the full chunks read from disk; Fabric's chunk load event doesn't say whether a chunk was generated, so the
+// chunk activity tracker works that out from this.
+@Mixin(ChunkSerializer.class)
+public abstract class ChunkSerializerMixin {
+
+    @Inject(method = "deserialize", at = @At("RETURN"))
+    private static void tracker$afterDeserialize(ServerWorld world, PointOfInterestStorage poiStorage, ChunkPos chunkPos,
+                                                 NbtCompound nbt, CallbackInfoReturnable<ProtoChunk> cir) {
+        ChunkActivityTracker tracker = ChunkActivityHooks.trackerFor(world);
+        if (tracker != null && cir.getReturnValue().getStatus().getChunkType() == ChunkStatus.ChunkType.LEVELCHUNK) {
+            tracker.chunkReadFromDisk();
+        }
+    }
+}
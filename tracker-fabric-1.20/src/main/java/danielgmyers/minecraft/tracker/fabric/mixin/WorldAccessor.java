@@ -0,0 +1,16 @@
+package danielgmyers.minecraft.tracker.fabric.mixin;
+
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.BlockEntityTickInvoker;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.util.List;
+
+// Lets the world census count the ticking block entities, which the game keeps to itself.
+@Mixin(World.class)
+public interface WorldAccessor {
+
+    @Accessor("blockEntityTickers")
+    List<BlockEntityTickInvoker> tracker$getBlockEntityTickers();
+}
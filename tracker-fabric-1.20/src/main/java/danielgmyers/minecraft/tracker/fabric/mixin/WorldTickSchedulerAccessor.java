@@ -0,0 +1,15 @@
+package danielgmyers.minecraft.tracker.fabric.mixin;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.minecraft.world.tick.ChunkTickScheduler;
+import net.minecraft.world.tick.WorldTickScheduler;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+// Lets the world census count the scheduled ticks one chunk at a time, rather than all of them in one tick.
+@Mixin(WorldTickScheduler.class)
+public interface WorldTickSchedulerAccessor {
+
+    @Accessor("chunkTickSchedulers")
+    Long2ObjectMap<ChunkTickScheduler<?>> tracker$getChunkTickSchedulers();
+}
@@ -0,0 +1,58 @@
+package danielgmyers.minecraft.tracker.forge;
+
+import danielgmyers.minecraft.tracker.WorldCensus;
+import danielgmyers.minecraft.tracker.forge.mixin.ServerWorldAccessor;
+import net.minecraft.entity.Entity;
+import net.minecraft.world.server.ServerTickList;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.Collections;
+
+// What the world census counts in a server world.
+public final class CensusSource implements WorldCensus.Source<ServerWorld> {
+
+    public static final CensusSource INSTANCE = new CensusSource();
+
+    private CensusSource() {}
+
+    @Override
+    public Iterable<?> entities(ServerWorld world) {
+        // the accessor is optional, and isn't there if another mod's changes kept it from being applied.
+        if (!(world instanceof ServerWorldAccessor)) {
+            return Collections.emptyList();
+        }
+        return ((ServerWorldAccessor) world).tracker$getEntitiesById().values();
+    }
+
+    @Override
+    public String categoryOf(Object entity) {
+        Entity e = (Entity) entity;
+        return e.removed ? null : e.getType().getCategory().getName();
+    }
+
+    @Override
+    public int tickingBlockEntities(ServerWorld world) {
+        return world.tickableBlockEntities.size();
+    }
+
+    @Override
+    public long loadedChunks(ServerWorld world) {
+        return world.getChunkSource().getLoadedChunksCount();
+    }
+
+    // The scheduled ticks are kept in one list per world, whose size is cheap to get.
+    @Override
+    public Iterable<?> scheduledBlockTickLists(ServerWorld world) {
+        return Collections.singletonList(world.getBlockTicks());
+    }
+
+    @Override
+    public Iterable<?> scheduledFluidTickLists(ServerWorld world) {
+        return Collections.singletonList(world.getLiquidTicks());
+    }
+
+    @Override
+    public long scheduledTickCount(Object tickList) {
+        return ((ServerTickList<?>) tickList).size();
+    }
+}
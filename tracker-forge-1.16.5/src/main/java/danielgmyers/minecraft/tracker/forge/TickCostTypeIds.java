@@ -0,0 +1,21 @@
+package danielgmyers.minecraft.tracker.forge;
+
+import net.minecraft.entity.EntityType;
+import net.minecraft.tileentity.TileEntityType;
+import net.minecraft.util.ResourceLocation;
+
+import java.util.function.Function;
+
+// Turns the type objects the tick cost hooks see into registry IDs, e.g. "minecraft:zombie".
+public final class TickCostTypeIds {
+
+    public static final Function<Object, String> ENTITY_TYPE
+            = type -> EntityType.getKey((EntityType<?>) type).toString();
+
+    public static final Function<Object, String> BLOCK_ENTITY_TYPE = type -> {
+        ResourceLocation id = TileEntityType.getKey((TileEntityType<?>) type);
+        return id == null ? null : id.toString();
+    };
+
+    private TickCostTypeIds() {}
+}
@@ -1,15 +1,44 @@
 package danielgmyers.minecraft.tracker.forge;
 
+import danielgmyers.minecraft.tracker.ChunkActivityTracker;
+import danielgmyers.minecraft.tracker.JvmStatsTracker;
+import danielgmyers.minecraft.tracker.LiveStatsSummary;
 import danielgmyers.minecraft.tracker.PlayerCountTracker;
+import danielgmyers.minecraft.tracker.RollingWindow;
+import danielgmyers.minecraft.tracker.TickCostAttribution;
 import danielgmyers.minecraft.tracker.TickStatsTracker;
-import danielgmyers.minecraft.tracker.config.Config;
+import danielgmyers.minecraft.tracker.TrackerSelfStats;
+import danielgmyers.minecraft.tracker.TrackerSelfStats.Activity;
+import danielgmyers.minecraft.tracker.TypeTickCostTracker;
+import danielgmyers.minecraft.tracker.WorldTrackerCache;
+import danielgmyers.minecraft.tracker.WorldTrackers;
 import danielgmyers.minecraft.tracker.config.PropertiesConfig;
+import danielgmyers.minecraft.tracker.diagnostics.SamplingProfiler;
+import danielgmyers.minecraft.tracker.diagnostics.StallWatchdog;
+import danielgmyers.minecraft.tracker.history.FlightRecorder;
+import danielgmyers.minecraft.tracker.history.TimeSeriesStore;
 import danielgmyers.minecraft.tracker.reporters.StatsReporterFactory;
 import danielgmyers.minecraft.tracker.reporters.StatsReporter;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.ChunkDataEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.LogicalSide;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
 import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.fml.server.ServerLifecycleHooks;
 import org.apache.logging.log4j.LogManager;
@@ -17,8 +46,7 @@ import org.apache.logging.log4j.Logger;
 
 import java.nio.file.Path;
 import java.time.Clock;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.List;
 
 // The value here should match an entry in the META-INF/mods.toml file
 @Mod("tracker_forge")
@@ -27,17 +55,21 @@ public class TrackerForge {
     // Directly reference a log4j logger.
     private static final Logger LOGGER = LogManager.getLogger("tracker_forge");
 
-    private Config config;
+    private PropertiesConfig config;
     private StatsReporter statsReporter;
     private TickStatsTracker serverTickTracker;
-    private final ConcurrentMap<String, TickStatsTracker> worldTickTracker;
+    private JvmStatsTracker jvmStatsTracker;
+    private StallWatchdog stallWatchdog;
+    private SamplingProfiler samplingProfiler;
+    private TimeSeriesStore history;
+    private FlightRecorder flightRecorder;
     private PlayerCountTracker playerCountTracker;
-    private final ConcurrentMap<String, PlayerCountTracker> worldPlayerCountTracker;
+    private TrackerSelfStats selfStats;
+    private WorldTrackerCache<RegistryKey<World>> worldTrackers;
+    // whether the current server tick is being tracked; only written by the server thread
+    private boolean tracking = false;
 
     public TrackerForge() {
-        this.worldTickTracker = new ConcurrentHashMap<>();
-        this.worldPlayerCountTracker = new ConcurrentHashMap<>();
-
         Path configPath = FMLPaths.CONFIGDIR.get().resolve("tracker.properties");
         config = PropertiesConfig.create(configPath);
 
@@ -46,9 +78,52 @@ public class TrackerForge {
             return;
         }
 
-        statsReporter = StatsReporterFactory.create(config, Clock.systemUTC());
+        StatsReporter reporter = StatsReporterFactory.createReloadable(config, Clock.systemUTC());
+        // when self stats are enabled, the trackers' calls into the reporter are timed; self stats bypass that.
+        this.selfStats = new TrackerSelfStats(config, reporter, Clock.systemUTC());
+        statsReporter = selfStats.timeCalls(reporter);
+        // thresholds, reporting windows and reporter settings are picked up from the file as it changes.
+        config.startWatching();
+        if (config.isHistoryEnabled()) {
+            Path historyDirectory = FMLPaths.GAMEDIR.get().resolve(config.getHistoryDirectory());
+            this.history = new TimeSeriesStore(config, historyDirectory, Clock.systemUTC());
+            this.history.start();
+        }
+        if (config.isFlightRecorderEnabled()) {
+            Path flightRecording = FMLPaths.GAMEDIR.get().resolve(config.getFlightRecorderFile());
+            this.flightRecorder = new FlightRecorder(config, flightRecording);
+            this.flightRecorder.start();
+        }
         this.serverTickTracker = new TickStatsTracker("server", config, statsReporter, Clock.systemUTC());
+        serverTickTracker.setScheduleStatsEnabled(config.isTickScheduleStatsEnabled());
         this.playerCountTracker = new PlayerCountTracker("server", config, statsReporter, Clock.systemUTC());
+        if (history != null) {
+            serverTickTracker.setHistory(history.forSource("server"));
+            playerCountTracker.setHistory(history.forSource("server"));
+        }
+        if (flightRecorder != null) {
+            serverTickTracker.setFlightLog(flightRecorder.forSource("server"));
+        }
+        this.worldTrackers = new WorldTrackerCache<>(config, statsReporter, Clock.systemUTC(),
+                (tickSource) -> WorldTrackers.create(tickSource, config, statsReporter, Clock.systemUTC(), history,
+                                                     flightRecorder));
+
+        if (config.isJvmStatsEnabled()) {
+            this.jvmStatsTracker = new JvmStatsTracker(serverTickTracker, config, statsReporter, Clock.systemUTC());
+            this.jvmStatsTracker.start();
+        }
+
+        Path logDirectory = FMLPaths.GAMEDIR.get().resolve("logs");
+        if (config.isStallWatchdogEnabled()) {
+            this.stallWatchdog = new StallWatchdog(serverTickTracker, config, logDirectory, Clock.systemUTC());
+            this.stallWatchdog.start();
+        }
+        if (config.isProfilerEnabled()) {
+            // the profiler reports from its own thread, so its calls aren't timed as part of the tick.
+            this.samplingProfiler = new SamplingProfiler(serverTickTracker, config, reporter,
+                                                         logDirectory.resolve("tracker-profiles"), Clock.systemUTC());
+            this.samplingProfiler.start();
+        }
 
         // Register ourselves for server and other game events we are interested in
         MinecraftForge.EVENT_BUS.register(this);
@@ -57,33 +132,171 @@ public class TrackerForge {
 
     @SubscribeEvent
     public void onServerTick(final TickEvent.ServerTickEvent event) {
-        if (!config.isEnabled()) {
-            // if we're disabled, just unregister the tracker entirely
-            MinecraftForge.EVENT_BUS.unregister(this);
+        if (event.phase == TickEvent.Phase.START) {
+            // Reloading the config can turn tracking off (reporter-type NONE) and back on, so we check once per tick,
+            // and skip or track the whole tick, worlds included.
+            tracking = config.isEnabled();
+        }
+        if (!tracking) {
+            return;
         }
 
+        long selfNanos = selfStats.start();
         if (event.phase == TickEvent.Phase.START) {
             serverTickTracker.startTick();
+            selfStats.lap(Activity.TICK_STATS, selfNanos);
         } else {
             serverTickTracker.endTick();
-
+            selfNanos = selfStats.lap(Activity.TICK_STATS, selfNanos);
+            if (jvmStatsTracker != null) {
+                jvmStatsTracker.update();
+            }
+            selfNanos = selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
             playerCountTracker.update(ServerLifecycleHooks.getCurrentServer().getPlayerCount());
+            selfNanos = selfStats.lap(Activity.PLAYER_COUNTS, selfNanos);
+            worldTrackers.update();
+            selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
+            selfStats.update();
         }
     }
 
     @SubscribeEvent
     public void onWorldTick(final TickEvent.WorldTickEvent event) {
-        String dimension = event.world.dimension().location().toString();
-        TickStatsTracker trackerForDimension = worldTickTracker.computeIfAbsent(dimension,
-                    (d) -> new TickStatsTracker(d, config, statsReporter, Clock.systemUTC()));
+        if (!tracking) {
+            return;
+        }
+        long selfNanos = selfStats.start();
+        // The name (and any coalescing, e.g. of Vault Hunters' per-run dimensions) is only worked out the first
+        // time each dimension ticks; after that this is a single lookup on the dimension's registry key.
+        WorldTrackers trackers = worldTrackers.get(event.world.dimension(), (key) -> key.location().toString());
+        TickStatsTracker trackerForDimension = trackers.getTickStatsTracker();
+
+        // Entity and block entity ticks are attributed to whichever dimension's tracker is active while they run.
+        TypeTickCostTracker typeTickCostTracker = event.side == LogicalSide.SERVER ? trackers.getTypeTickCostTracker() : null;
+
         if (event.phase == TickEvent.Phase.START) {
+            selfNanos = selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
             trackerForDimension.startTick();
+            selfNanos = selfStats.lap(Activity.TICK_STATS, selfNanos);
+            if (typeTickCostTracker != null) {
+                TickCostAttribution.begin(typeTickCostTracker);
+            }
+            selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
         } else {
+            if (typeTickCostTracker != null) {
+                TickCostAttribution.end();
+                typeTickCostTracker.update();
+            }
+            selfNanos = selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
             trackerForDimension.endTick();
+            selfNanos = selfStats.lap(Activity.TICK_STATS, selfNanos);
+            trackers.getPlayerCountTracker().update(event.world, event.world.players().size());
+            selfNanos = selfStats.lap(Activity.PLAYER_COUNTS, selfNanos);
+            if (trackers.getChunkActivityTracker() != null && event.side == LogicalSide.SERVER) {
+                trackers.getChunkActivityTracker().update(event.world,
+                                                          event.world.getChunkSource().getLoadedChunksCount());
+            }
+            if (trackers.getCensus() != null && event.world instanceof ServerWorld) {
+                trackers.getCensus().update((ServerWorld) event.world, CensusSource.INSTANCE);
+            }
+            selfStats.lap(Activity.OTHER_TRACKERS, selfNanos);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(final WorldEvent.Unload event) {
+        // Per-run dimensions come and go, so their trackers report what they have and are discarded along with them.
+        if (!event.getWorld().isClientSide() && event.getWorld() instanceof World) {
+            worldTrackers.unload(((World) event.getWorld()).dimension());
+        }
+    }
+
+    @SubscribeEvent
+    public void onServerStopping(final FMLServerStoppingEvent event) {
+        MinecraftForge.EVENT_BUS.unregister(this);
+        stopTracking();
+    }
+
+    // Reports what's been gathered towards the current windows, stops the background threads, and closes the
+    // reporters and files, rather than leaving it all to the JVM's exit.
+    private void stopTracking() {
+        LOGGER.info("Server stopping, flushing stats.");
+        serverTickTracker.flush();
+        playerCountTracker.flush();
+        worldTrackers.closeAll();
+        if (jvmStatsTracker != null) {
+            jvmStatsTracker.stop();
+        }
+        if (stallWatchdog != null) {
+            stallWatchdog.stop();
+        }
+        if (samplingProfiler != null) {
+            samplingProfiler.stop();
+        }
+        if (flightRecorder != null) {
+            flightRecorder.stop();
+        }
+        if (history != null) {
+            history.stop();
+        }
+        config.stopWatching();
+        statsReporter.close();
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(final ChunkEvent.Load event) {
+        ChunkActivityTracker tracker = chunkActivityTrackerFor(event.getWorld());
+        if (tracker != null && event.getChunk() instanceof Chunk) {
+            tracker.chunkLoaded();
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkDataLoad(final ChunkDataEvent.Load event) {
+        // Forge doesn't say whether a loaded chunk was generated, so we count the full chunks read from disk instead.
+        ChunkActivityTracker tracker = chunkActivityTrackerFor(event.getWorld());
+        if (tracker != null && event.getStatus() == ChunkStatus.Type.LEVELCHUNK) {
+            tracker.chunkReadFromDisk();
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(final ChunkEvent.Unload event) {
+        ChunkActivityTracker tracker = chunkActivityTrackerFor(event.getWorld());
+        if (tracker != null && event.getChunk() instanceof Chunk) {
+            tracker.chunkUnloaded();
+        }
+    }
+
+    // Chunk events can fire on worldgen threads, before a dimension's first tick, or after it's been unloaded; the
+    // last two aren't counted, rather than bringing back trackers that were just discarded.
+    private ChunkActivityTracker chunkActivityTrackerFor(IWorld world) {
+        if (world == null || world.isClientSide() || !(world instanceof World)) {
+            return null;
+        }
+        WorldTrackers trackers = worldTrackers.getIfPresent(((World) world).dimension());
+        return trackers != null ? trackers.getChunkActivityTracker() : null;
+    }
+
+    @SubscribeEvent
+    public void onRegisterCommands(final RegisterCommandsEvent event) {
+        // "/tracker" shows the last minute; "/tracker 5s", "/tracker 1m" and "/tracker 15m" pick a window.
+        LiteralArgumentBuilder<CommandSource> command = Commands.literal("tracker")
+                .requires(source -> source.hasPermission(2))
+                .executes(context -> sendLiveStats(context.getSource(), RollingWindow.LAST_MINUTE));
+        for (RollingWindow window : RollingWindow.values()) {
+            command.then(Commands.literal(window.getName())
+                                 .executes(context -> sendLiveStats(context.getSource(), window)));
+        }
+        event.getDispatcher().register(command);
+    }
 
-            PlayerCountTracker playerCountTracker = worldPlayerCountTracker.computeIfAbsent(dimension,
-                    (d) -> new PlayerCountTracker(d, config, statsReporter, Clock.systemUTC()));
-            playerCountTracker.update(event.world.players().size());
+    private int sendLiveStats(CommandSource source, RollingWindow window) {
+        List<String> lines = LiveStatsSummary.describe(serverTickTracker, playerCountTracker, worldTrackers.getAll(),
+                                                       window, LiveStatsSummary.DEFAULT_MAX_DIMENSIONS);
+        for (String line : lines) {
+            source.sendSuccess(new StringTextComponent(line), false);
         }
+        return lines.size();
     }
 }
@@ -0,0 +1,15 @@
+package danielgmyers.minecraft.tracker.forge.mixin;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import net.minecraft.entity.Entity;
+import net.minecraft.world.server.ServerWorld;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+// Lets the world census walk the world's entities, which the game keeps to itself.
+@Mixin(ServerWorld.class)
+public interface ServerWorldAccessor {
+
+    @Accessor("entitiesById")
+    Int2ObjectMap<Entity> tracker$getEntitiesById();
+}
@@ -0,0 +1,29 @@
+package danielgmyers.minecraft.tracker.forge.mixin;
+
+import danielgmyers.minecraft.tracker.TickCostAttribution;
+import danielgmyers.minecraft.tracker.forge.TickCostTypeIds;
+import net.minecraft.entity.Entity;
+import net.minecraft.world.server.ServerWorld;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+// Times each top-level entity tick; passengers are ticked from inside their vehicle's tick, so they count toward it.
+@Mixin(ServerWorld.class)
+public abstract class ServerWorldMixin {
+
+    @Unique
+    private long tracker$entityTickStartNanos;
+
+    @Inject(method = "tickNonPassenger", at = @At("HEAD"))
+    private void tracker$beforeEntityTick(Entity entity, CallbackInfo ci) {
+        tracker$entityTickStartNanos = TickCostAttribution.startTiming();
+    }
+
+    @Inject(method = "tickNonPassenger", at = @At("RETURN"))
+    private void tracker$afterEntityTick(Entity entity, CallbackInfo ci) {
+        TickCostAttribution.record(entity.getType(), TickCostTypeIds.ENTITY_TYPE, tracker$entityTickStartNanos);
+    }
+}
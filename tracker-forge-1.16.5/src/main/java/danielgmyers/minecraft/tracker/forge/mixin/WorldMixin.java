@@ -0,0 +1,24 @@
+package danielgmyers.minecraft.tracker.forge.mixin;
+
+import danielgmyers.minecraft.tracker.TickCostAttribution;
+import danielgmyers.minecraft.tracker.forge.TickCostTypeIds;
+import net.minecraft.tileentity.ITickableTileEntity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+// Times each block entity tick. World is shared by the client and server, but
+// TickCostAttribution ignores anything that isn't on the thread ticking the active dimension.
+@Mixin(World.class)
+public abstract class WorldMixin {
+
+    @Redirect(method = "tickBlockEntities",
+              at = @At(value = "INVOKE", target = "Lnet/minecraft/tileentity/ITickableTileEntity;tick()V"))
+    private void tracker$timeBlockEntityTick(ITickableTileEntity tickable) {
+        long startNanos = TickCostAttribution.startTiming();
+        tickable.tick();
+        TickCostAttribution.record(((TileEntity) tickable).getType(), TickCostTypeIds.BLOCK_ENTITY_TYPE, startNanos);
+    }
+}
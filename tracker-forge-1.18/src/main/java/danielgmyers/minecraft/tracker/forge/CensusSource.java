@@ -0,0 +1,70 @@
+package danielgmyers.minecraft.tracker.forge;
+
+import danielgmyers.minecraft.tracker.WorldCensus;
+import danielgmyers.minecraft.tracker.forge.mixin.LevelMixin;
+import danielgmyers.minecraft.tracker.forge.mixin.LevelTicksAccessor;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.ticks.LevelChunkTicks;
+import net.minecraft.world.ticks.LevelTicks;
+
+import java.util.Collections;
+
+// What the world census counts in a server level.
+public final class CensusSource implements WorldCensus.Source<ServerLevel> {
+
+    public static final CensusSource INSTANCE = new CensusSource();
+
+    private CensusSource() {}
+
+    @Override
+    public Iterable<?> entities(ServerLevel world) {
+        return world.getAllEntities();
+    }
+
+    @Override
+    public String categoryOf(Object entity) {
+        Entity e = (Entity) entity;
+        return e.isRemoved() ? null : e.getType().getCategory().getName();
+    }
+
+    @Override
+    public int tickingBlockEntities(ServerLevel world) {
+        // the accessor is optional, and isn't there if another mod's changes kept it from being applied.
+        if (!(world instanceof LevelMixin)) {
+            return 0;
+        }
+        return ((LevelMixin) world).tracker$getBlockEntityTickers().size();
+    }
+
+    @Override
+    public long loadedChunks(ServerLevel world) {
+        return world.getChunkSource().getLoadedChunksCount();
+    }
+
+    @Override
+    public Iterable<?> scheduledBlockTickLists(ServerLevel world) {
+        return perChunk(world.getBlockTicks());
+    }
+
+    @Override
+    public Iterable<?> scheduledFluidTickLists(ServerLevel world) {
+        return perChunk(world.getFluidTicks());
+    }
+
+    @Override
+    public long scheduledTickCount(Object tickList) {
+        if (tickList instanceof LevelChunkTicks) {
+            return ((LevelChunkTicks<?>) tickList).count();
+        }
+        return ((LevelTicks<?>) tickList).count();
+    }
+
+    private static Iterable<?> perChunk(LevelTicks<?> ticks) {
+        // the accessor is optional; without it, all of the level's scheduled ticks are counted in one go.
+        if (!(ticks instanceof LevelTicksAccessor)) {
+            return Collections.singletonList(ticks);
+        }
+        return ((LevelTicksAccessor) ticks).tracker$getAllContainers().values();
+    }
+}
@@ -0,0 +1,16 @@
+package danielgmyers.minecraft.tracker.forge.mixin;
+
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.util.List;
+
+// Lets the world census count the ticking block entities, which the game keeps to itself.
+@Mixin(Level.class)
+public interface LevelMixin {
+
+    @Accessor("blockEntityTickers")
+    List<TickingBlockEntity> tracker$getBlockEntityTickers();
+}
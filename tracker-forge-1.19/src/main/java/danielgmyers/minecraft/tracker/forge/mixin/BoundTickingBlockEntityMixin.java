@@ -0,0 +1,35 @@
+package danielgmyers.minecraft.tracker.forge.mixin;
+
+import danielgmyers.minecraft.tracker.TickCostAttribution;
+import danielgmyers.minecraft.tracker.forge.TickCostTypeIds;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+// Times each block entity tick. This wrapper is used for both client and server chunks, but
+// TickCostAttribution ignores anything that isn't on the thread ticking the active dimension.
+@Mixin(targets = "net.minecraft.world.level.chunk.LevelChunk$BoundTickingBlockEntity")
+public abstract class BoundTickingBlockEntityMixin {
+
+    @Shadow
+    @Final
+    private BlockEntity blockEntity;
+
+    @Unique
+    private long tracker$tickStartNanos;
+
+    @Inject(method = "tick", at = @At("HEAD"))
+    private void tracker$beforeTick(CallbackInfo ci) {
+        tracker$tickStartNanos = TickCostAttribution.startTiming();
+    }
+
+    @Inject(method = "tick", at = @At("RETURN"))
+    private void tracker$afterTick(CallbackInfo ci) {
+        TickCostAttribution.record(blockEntity.getType(), TickCostTypeIds.BLOCK_ENTITY_TYPE, tracker$tickStartNanos);
+    }
+}
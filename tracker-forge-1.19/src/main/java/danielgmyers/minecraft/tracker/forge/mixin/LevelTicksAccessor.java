@@ -0,0 +1,15 @@
+package danielgmyers.minecraft.tracker.forge.mixin;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.minecraft.world.ticks.LevelChunkTicks;
+import net.minecraft.world.ticks.LevelTicks;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+// Lets the world census count the scheduled ticks one chunk at a time, rather than all of them in one tick.
+@Mixin(LevelTicks.class)
+public interface LevelTicksAccessor {
+
+    @Accessor("allContainers")
+    Long2ObjectMap<LevelChunkTicks<?>> tracker$getAllContainers();
+}